@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.data;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Benchmarks for Blog class. Run them using the benchmark target of the build
+ * which by default also reports allocation rate per operation.
+ * 
+ * @author bastafidli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlogBenchmark
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Length of the comments of the blogs.
+    */
+   @Param({"100", "10000", "100000"})
+   public int m_iCommentsLength;
+
+   /**
+    * Timestamp used for all blogs.
+    */
+   protected Timestamp m_timestamp;
+
+   /**
+    * Comments of the blogs with the only newline at the end so that checking
+    * if they are preformatted has to scan the whole text.
+    */
+   protected String m_strComments;
+
+   /**
+    * Blog used by the benchmarks.
+    */
+   protected Blog m_blog;
+
+   /**
+    * Blog with the same content as m_blog but different instances of values.
+    */
+   protected Blog m_sameBlog;
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Prepare data used by the benchmarks.
+    * 
+    * @throws OSSException - an error has occurred
+    */
+   @Setup
+   public void setUp(
+   ) throws OSSException
+   {
+      StringBuilder sbComments = new StringBuilder(m_iCommentsLength);
+
+      while (sbComments.length() < m_iCommentsLength - 1)
+      {
+         sbComments.append("Lorem ipsum dolor sit amet ");
+      }
+      sbComments.setLength(m_iCommentsLength - 1);
+      sbComments.append('\n');
+
+      m_timestamp = new Timestamp(System.currentTimeMillis());
+      m_strComments = sbComments.toString();
+      m_blog = createBlog(m_strComments);
+      m_sameBlog = createBlog(new String(m_strComments));
+   }
+
+   /**
+    * Create blog using the full constructor.
+    * 
+    * @param strComments - comments of the blog
+    * @return Blog - new blog
+    * @throws OSSException - an error has occurred
+    */
+   protected Blog createBlog(
+      String strComments
+   ) throws OSSException
+   {
+      return new Blog(1, 2, m_timestamp, m_timestamp, "blogfolder", 
+                      "Blog caption", strComments);
+   }
+
+   // Benchmarks ///////////////////////////////////////////////////////////////
+
+   /**
+    * Construct blog using the full constructor.
+    * 
+    * @return Blog - constructed blog
+    * @throws OSSException - an error has occurred
+    */
+   @Benchmark
+   public Blog construct(
+   ) throws OSSException
+   {
+      return createBlog(m_strComments);
+   }
+
+   /**
+    * Compare two blogs with the same content.
+    * 
+    * @return boolean - result of the comparison
+    */
+   @Benchmark
+   public boolean isSame(
+   )
+   {
+      return m_blog.isSame(m_sameBlog);
+   }
+
+   /**
+    * Check if the comments are preformatted on a fresh instance, the way it 
+    * happens when the blog is rendered after it was read from the database.
+    * 
+    * @return boolean - preformatted flag
+    * @throws OSSException - an error has occurred
+    */
+   @Benchmark
+   public boolean getIsPreformated(
+   ) throws OSSException
+   {
+      return createBlog(m_strComments).getIsPreformated();
+   }
+
+   /**
+    * Convert blog to string.
+    * 
+    * @return StringBuilder - string representation of the blog
+    */
+   @Benchmark
+   public StringBuilder toStringBuilder(
+   )
+   {
+      StringBuilder sb = new StringBuilder();
+
+      m_blog.toString(sb, 0);
+
+      return sb;
+   }
+}
@@ -19,6 +19,11 @@
 
 package org.opensubsystems.chronicle.data;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.sql.Timestamp;
 import java.util.EnumSet;
 
@@ -91,6 +96,7 @@ public class Blog extends ModifiableDataObjectImpl
 			BLOG_FOLDER(BLOG_DATA_TYPE_DESIRED_VALUE + 6),
 			BLOG_CAPTION(BLOG_DATA_TYPE_DESIRED_VALUE + 7),
 			BLOG_COMMENTS(BLOG_DATA_TYPE_DESIRED_VALUE + 8),
+			BLOG_PREFORMATED(BLOG_DATA_TYPE_DESIRED_VALUE + 9),
 			;
 
 			private final int iValue;
@@ -107,15 +113,160 @@ public class Blog extends ModifiableDataObjectImpl
 		}
 	}
 
+   /**
+    * Compact serialized form of the blog. The blog is replaced with this 
+    * object when it is serialized and this object is replaced back with the 
+    * blog when it is deserialized. The fields are written one by one using 
+    * CompactFormat instead of the default serialization, which writes also 
+    * names and types of all the fields.
+    */
+   private static final class SerializedForm implements Externalizable
+   {
+      // Constants /////////////////////////////////////////////////////////////
+
+      /**
+       * Generated serial version id for this class.
+       */
+      private static final long serialVersionUID = 3069731433597967692L;
+
+      /**
+       * Version of the format written by this class.
+       */
+      private static final int FORMAT_VERSION = 1;
+
+      // Attributes ////////////////////////////////////////////////////////////
+
+      /**
+       * Blog being serialized or deserialized.
+       */
+      private Blog m_data;
+
+      // Constructors //////////////////////////////////////////////////////////
+
+      /**
+       * Constructor used when the blog is deserialized.
+       */
+      public SerializedForm(
+      )
+      {
+         // Do nothing
+      }
+
+      /**
+       * Constructor used when the blog is serialized.
+       *
+       * @param data - blog to serialize
+       */
+      SerializedForm(
+         Blog data
+      )
+      {
+         m_data = data;
+      }
+
+      // Logic /////////////////////////////////////////////////////////////////
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void writeExternal(
+         ObjectOutput out
+      ) throws IOException
+      {
+         out.writeByte(FORMAT_VERSION);
+         CompactFormat.writeVarLong(out, m_data.getId());
+         CompactFormat.writeVarLong(out, m_data.getDomainId());
+         CompactFormat.writeTimestamp(out, m_data.getCreationTimestamp());
+         CompactFormat.writeTimestamp(out, m_data.getModificationTimestamp());
+         CompactFormat.writeString(out, m_data.m_strFolder);
+         CompactFormat.writeString(out, m_data.m_strCaption);
+         CompactFormat.writeString(out, m_data.m_strComments);
+         out.writeByte(CompactFormat.getPreformated(m_data.m_bIsPreformated));
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void readExternal(
+         ObjectInput in
+      ) throws IOException
+      {
+         long      lId;
+         long      lDomainId;
+         Timestamp creationTimestamp;
+         Timestamp modificationTimestamp;
+         String    strFolder;
+         String    strCaption;
+         String    strComments;
+         Boolean   bIsPreformated;
+
+         checkVersion(in.readUnsignedByte());
+         lId = CompactFormat.readVarLong(in);
+         lDomainId = CompactFormat.readVarLong(in);
+         creationTimestamp = CompactFormat.readTimestamp(in);
+         modificationTimestamp = CompactFormat.readTimestamp(in);
+         strFolder = CompactFormat.readString(in);
+         strCaption = CompactFormat.readString(in);
+         strComments = CompactFormat.readString(in);
+         bIsPreformated = CompactFormat.getPreformated(in.readUnsignedByte());
+         try
+         {
+            m_data = new Blog(lId, lDomainId, creationTimestamp, 
+                              modificationTimestamp, strFolder, strCaption, 
+                              strComments);
+         }
+         catch (OSSException ossExc)
+         {
+            throw new IOException("Cannot create deserialized blog", ossExc);
+         }
+         m_data.m_bIsPreformated = bIsPreformated;
+      }
+
+      // Helper methods ////////////////////////////////////////////////////////
+
+      /**
+       * Replace this object with the deserialized blog.
+       *
+       * @return Object - deserialized blog
+       */
+      private Object readResolve(
+      )
+      {
+         return m_data;
+      }
+
+      /**
+       * Make sure the data were written in the format this class understands.
+       *
+       * @param iVersion - version of the format read from the stream
+       * @throws IOException - the version is not supported
+       */
+      private static void checkVersion(
+         int iVersion
+      ) throws IOException
+      {
+         if (iVersion != FORMAT_VERSION)
+         {
+            throw new InvalidClassException(SerializedForm.class.getName(),
+                                            "Unsupported format version " 
+                                            + iVersion);
+         }
+      }
+   }
+
 	// Constants ////////////////////////////////////////////////////////////////
 
 	// Cached values ////////////////////////////////////////////////////////////
 	
    /**
     * Flag signaling if the text contains formatting or not. Example of such 
-    * formatting is a newline character.
+    * formatting is a newline character. The flag is stored in the persistence
+    * store so that it doesn't have to be determined from the text every time
+    * the blog is loaded. Null if it wasn't determined yet.
     */
-   protected Boolean m_bIsPreformated = null;
+   protected volatile Boolean m_bIsPreformated = null;
 
    // Attributes ///////////////////////////////////////////////////////////////
    
@@ -194,6 +345,37 @@ public class Blog extends ModifiableDataObjectImpl
       m_strCaption  = strCaption;
       m_strComments = strComments;
    }
+
+   /**
+    * Create blog from a given parameters including the flag determined when 
+    * the blog was stored so that the comments don't have to be examined.
+    *
+    * @param lId - Unique ID identifying this Blog
+    * @param lDomainId - Id of the domain this blog belongs to 
+    * @param creationTimestamp - Timestamp when the Blog was created
+    * @param modificationTimestamp - Timestamp when the Blog was last time modified
+    * @param strBlogFolder - Folder allows to categorize Blogs to groups
+    * @param strCaption - More descriptive name of the Blog
+    * @param strComments - Any additional description of the Blog
+    * @param bIsPreformated - Flag signaling if the comments contain formatting
+	 * @throws OSSException - an error has occurred
+    */ 
+   public Blog(
+      long      lId,
+      long      lDomainId,
+      Timestamp creationTimestamp,
+      Timestamp modificationTimestamp,
+      String    strBlogFolder,
+      String    strCaption,
+      String    strComments,
+      boolean   bIsPreformated
+   ) throws OSSException
+   {
+      this(lId, lDomainId, creationTimestamp, modificationTimestamp, 
+           strBlogFolder, strCaption, strComments);
+      
+      m_bIsPreformated = Boolean.valueOf(bIsPreformated);
+   }
    
    // Public methods ///////////////////////////////////////////////////////////
    
@@ -239,20 +421,23 @@ public class Blog extends ModifiableDataObjectImpl
 	@SuppressWarnings({ "BoxedValueEquality" })
    public boolean getIsPreformated()
    {
-      if (m_bIsPreformated == null)
+      Boolean bIsPreformated = m_bIsPreformated;
+
+      if (bIsPreformated == null)
       {
          if (m_strComments == null)
          {
-            m_bIsPreformated = Boolean.FALSE;
+            bIsPreformated = Boolean.FALSE;
          }
          else
          {
-            m_bIsPreformated = ((m_strComments.indexOf('\n') != -1) ? Boolean.TRUE 
-                                                                    : Boolean.FALSE);
+            bIsPreformated = ((m_strComments.indexOf('\n') != -1) ? Boolean.TRUE 
+                                                                  : Boolean.FALSE);
          }
+         m_bIsPreformated = bIsPreformated;
       }
       
-      return (m_bIsPreformated == Boolean.TRUE);
+      return (bIsPreformated == Boolean.TRUE);
    }
 
    /**
@@ -305,4 +490,17 @@ public class Blog extends ModifiableDataObjectImpl
       super.toString(sb, ind + 1);
       append(sb, ind + 0, "]", true);
    }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Replace the blog with its compact form when it is serialized.
+    * 
+    * @return Object - object to serialize instead of this blog
+    */
+   private Object writeReplace(
+   )
+   {
+      return new SerializedForm(this);
+   }
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Helper methods to write the data objects into a compact binary form and to
+ * read them back. Numbers are written as variable length integers so that 
+ * small ids occupy only a byte or two and strings are written as UTF-8 bytes
+ * prefixed by their length. Unlike the default serialization no names of the
+ * fields or classes are written for each object.
+ *
+ * @author bastafidli
+ */
+final class CompactFormat
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Value of the flag signaling that it is not known if the text contains 
+    * formatting.
+    */
+   static final int PREFORMATED_UNKNOWN = 0;
+
+   /**
+    * Value of the flag signaling that the text doesn't contain formatting.
+    */
+   static final int PREFORMATED_FALSE = 1;
+
+   /**
+    * Value of the flag signaling that the text contains formatting.
+    */
+   static final int PREFORMATED_TRUE = 2;
+
+   /**
+    * Number of nanoseconds in a millisecond.
+    */
+   private static final int NANOS_PER_MILLI = 1000000;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Private constructor since this class cannot be instantiated
+    */
+   private CompactFormat(
+   )
+   {
+      // Do nothing
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Write signed number as variable length integer. The number is zig-zag 
+    * encoded first so that small negative numbers such as DataObject.NEW_ID
+    * are also written using a single byte.
+    *
+    * @param out - output to write to
+    * @param lValue - value to write
+    * @throws IOException - an error has occurred
+    */
+   static void writeVarLong(
+      DataOutput out,
+      long       lValue
+   ) throws IOException
+   {
+      writeUnsignedVarLong(out, (lValue << 1) ^ (lValue >> 63));
+   }
+
+   /**
+    * Read signed number written by writeVarLong.
+    *
+    * @param in - input to read from
+    * @return long - value read
+    * @throws IOException - an error has occurred
+    */
+   static long readVarLong(
+      DataInput in
+   ) throws IOException
+   {
+      long lValue = readUnsignedVarLong(in);
+
+      return (lValue >>> 1) ^ -(lValue & 1);
+   }
+
+   /**
+    * Write string as its length followed by its UTF-8 bytes. 
+    *
+    * @param out - output to write to
+    * @param strValue - value to write, can be null
+    * @throws IOException - an error has occurred
+    */
+   static void writeString(
+      DataOutput out,
+      String     strValue
+   ) throws IOException
+   {
+      if (strValue == null)
+      {
+         writeUnsignedVarLong(out, 0);
+      }
+      else
+      {
+         byte[] arrBytes = strValue.getBytes(StandardCharsets.UTF_8);
+
+         // Length is shifted by one to distinguish null from empty string
+         writeUnsignedVarLong(out, arrBytes.length + 1L);
+         out.write(arrBytes);
+      }
+   }
+
+   /**
+    * Read string written by writeString.
+    *
+    * @param in - input to read from
+    * @return String - value read, can be null
+    * @throws IOException - an error has occurred
+    */
+   static String readString(
+      DataInput in
+   ) throws IOException
+   {
+      long   lLength = readUnsignedVarLong(in);
+      String strValue = null;
+
+      if (lLength > Integer.MAX_VALUE)
+      {
+         throw new StreamCorruptedException("Invalid length of string " 
+                                            + lLength);
+      }
+      if (lLength > 0)
+      {
+         byte[] arrBytes = new byte[(int)lLength - 1];
+
+         in.readFully(arrBytes);
+         strValue = new String(arrBytes, StandardCharsets.UTF_8);
+      }
+
+      return strValue;
+   }
+
+   /**
+    * Write timestamp as number of milliseconds followed by the nanoseconds, 
+    * which are not part of the milliseconds, so that timestamps read from the
+    * database with greater precision are preserved.
+    *
+    * @param out - output to write to
+    * @param value - value to write, can be null
+    * @throws IOException - an error has occurred
+    */
+   static void writeTimestamp(
+      DataOutput out,
+      Timestamp  value
+   ) throws IOException
+   {
+      if (value == null)
+      {
+         writeUnsignedVarLong(out, 0);
+      }
+      else
+      {
+         // Nanoseconds are shifted by one to distinguish null timestamp
+         writeUnsignedVarLong(out, value.getNanos() % NANOS_PER_MILLI + 1L);
+         writeVarLong(out, value.getTime());
+      }
+   }
+
+   /**
+    * Read timestamp written by writeTimestamp.
+    *
+    * @param in - input to read from
+    * @return Timestamp - value read, can be null
+    * @throws IOException - an error has occurred
+    */
+   static Timestamp readTimestamp(
+      DataInput in
+   ) throws IOException
+   {
+      long      lNanos = readUnsignedVarLong(in);
+      Timestamp value = null;
+
+      if (lNanos > NANOS_PER_MILLI)
+      {
+         throw new StreamCorruptedException("Invalid timestamp nanoseconds " 
+                                            + lNanos);
+      }
+      if (lNanos > 0)
+      {
+         value = new Timestamp(readVarLong(in));
+         value.setNanos(value.getNanos() + (int)lNanos - 1);
+      }
+
+      return value;
+   }
+
+   /**
+    * Get value of the flag signaling if the text contains formatting.
+    *
+    * @param bIsPreformated - flag to encode, can be null if it is not known
+    * @return int - one of the PREFORMATED_XXX constants
+    */
+   static int getPreformated(
+      Boolean bIsPreformated
+   )
+   {
+      int iPreformated;
+
+      if (bIsPreformated == null)
+      {
+         iPreformated = PREFORMATED_UNKNOWN;
+      }
+      else if (bIsPreformated.booleanValue())
+      {
+         iPreformated = PREFORMATED_TRUE;
+      }
+      else
+      {
+         iPreformated = PREFORMATED_FALSE;
+      }
+
+      return iPreformated;
+   }
+
+   /**
+    * Get the flag signaling if the text contains formatting.
+    *
+    * @param iPreformated - one of the PREFORMATED_XXX constants
+    * @return Boolean - flag, null if it is not known
+    * @throws IOException - the value is not valid
+    */
+   static Boolean getPreformated(
+      int iPreformated
+   ) throws IOException
+   {
+      Boolean bIsPreformated;
+
+      switch (iPreformated)
+      {
+         case PREFORMATED_UNKNOWN:
+            bIsPreformated = null;
+            break;
+         case PREFORMATED_FALSE:
+            bIsPreformated = Boolean.FALSE;
+            break;
+         case PREFORMATED_TRUE:
+            bIsPreformated = Boolean.TRUE;
+            break;
+         default:
+            throw new StreamCorruptedException("Invalid preformated flag " 
+                                               + iPreformated);
+      }
+
+      return bIsPreformated;
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Write unsigned number as variable length integer using 7 bits per byte.
+    *
+    * @param out - output to write to
+    * @param lValue - value to write
+    * @throws IOException - an error has occurred
+    */
+   private static void writeUnsignedVarLong(
+      DataOutput out,
+      long       lValue
+   ) throws IOException
+   {
+      while ((lValue & ~0x7FL) != 0)
+      {
+         out.writeByte((int)((lValue & 0x7F) | 0x80));
+         lValue >>>= 7;
+      }
+      out.writeByte((int)lValue);
+   }
+
+   /**
+    * Read unsigned number written by writeUnsignedVarLong.
+    *
+    * @param in - input to read from
+    * @return long - value read
+    * @throws IOException - an error has occurred
+    */
+   private static long readUnsignedVarLong(
+      DataInput in
+   ) throws IOException
+   {
+      long lValue = 0;
+      int  iShift = 0;
+      int  iByte;
+
+      do
+      {
+         if (iShift > 63)
+         {
+            throw new StreamCorruptedException(
+                         "Variable length integer is too long");
+         }
+         iByte = in.readUnsignedByte();
+         lValue |= (long)(iByte & 0x7F) << iShift;
+         iShift += 7;
+      }
+      while ((iByte & 0x80) != 0);
+
+      return lValue;
+   }
+}
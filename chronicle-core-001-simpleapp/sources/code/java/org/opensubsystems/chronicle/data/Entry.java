@@ -19,13 +19,22 @@
 
 package org.opensubsystems.chronicle.data;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.sql.Timestamp;
 import java.util.EnumSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.opensubsystems.core.data.DataObject;
 import org.opensubsystems.core.data.impl.DataDescriptorImpl;
 import org.opensubsystems.core.data.impl.ModifiableDataObjectImpl;
 import org.opensubsystems.core.error.OSSException;
+import org.opensubsystems.core.error.OSSInternalErrorException;
 
 /**
  * Entry within a blog. Entry has caption, text and can have an image associated 
@@ -93,6 +102,7 @@ public class Entry extends ModifiableDataObjectImpl
 			ENTRY_COMMENTS(ENTRY_DATA_TYPE_DESIRED_VALUE + 8),
 			ENTRY_IMAGEURL(ENTRY_DATA_TYPE_DESIRED_VALUE + 9),
 			ENTRY_TARGETURL(ENTRY_DATA_TYPE_DESIRED_VALUE + 10),
+			ENTRY_PREFORMATED(ENTRY_DATA_TYPE_DESIRED_VALUE + 11),
 			;
 
 			private final int iValue;
@@ -109,15 +119,185 @@ public class Entry extends ModifiableDataObjectImpl
 		}
 	}
 
+   /**
+    * Loader of comments of entries which were retrieved from the persistence 
+    * store without them. Comments contain the whole text of the entry and they
+    * are not needed e.g. to display list of entries.
+    */
+   public interface CommentsLoader
+   {
+      /**
+       * Load comments of the specified entry from the persistence store.
+       * 
+       * @param entry - entry to load comments for
+       * @return String - comments of the entry
+       * @throws OSSException - an error has occurred
+       */
+      String loadComments(
+         Entry entry
+      ) throws OSSException;
+   }
+
+   /**
+    * Compact serialized form of the entry. The entry is replaced with this 
+    * object when it is serialized and this object is replaced back with the 
+    * entry when it is deserialized. The fields are written one by one using 
+    * CompactFormat instead of the default serialization, which writes also 
+    * names and types of all the fields.
+    */
+   private static final class SerializedForm implements Externalizable
+   {
+      // Constants /////////////////////////////////////////////////////////////
+
+      /**
+       * Generated serial version id for this class.
+       */
+      private static final long serialVersionUID = -2183337626352651035L;
+
+      /**
+       * Version of the format written by this class.
+       */
+      private static final int FORMAT_VERSION = 1;
+
+      // Attributes ////////////////////////////////////////////////////////////
+
+      /**
+       * Entry being serialized or deserialized.
+       */
+      private Entry m_data;
+
+      // Constructors //////////////////////////////////////////////////////////
+
+      /**
+       * Constructor used when the entry is deserialized.
+       */
+      public SerializedForm(
+      )
+      {
+         // Do nothing
+      }
+
+      /**
+       * Constructor used when the entry is serialized.
+       *
+       * @param data - entry to serialize
+       */
+      SerializedForm(
+         Entry data
+      )
+      {
+         m_data = data;
+      }
+
+      // Logic /////////////////////////////////////////////////////////////////
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void writeExternal(
+         ObjectOutput out
+      ) throws IOException
+      {
+         out.writeByte(FORMAT_VERSION);
+         CompactFormat.writeVarLong(out, m_data.getId());
+         CompactFormat.writeVarLong(out, m_data.getDomainId());
+         CompactFormat.writeTimestamp(out, m_data.getCreationTimestamp());
+         CompactFormat.writeTimestamp(out, m_data.getModificationTimestamp());
+         CompactFormat.writeVarLong(out, m_data.m_lParentId);
+         CompactFormat.writeString(out, m_data.m_strCaption);
+         CompactFormat.writeString(out, m_data.m_strComments);
+         CompactFormat.writeString(out, m_data.m_strImageURL);
+         CompactFormat.writeString(out, m_data.m_strTargetURL);
+         out.writeByte(CompactFormat.getPreformated(m_data.m_bIsPreformated));
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void readExternal(
+         ObjectInput in
+      ) throws IOException
+      {
+         long      lId;
+         long      lDomainId;
+         Timestamp creationTimestamp;
+         Timestamp modificationTimestamp;
+         long      lParentId;
+         String    strCaption;
+         String    strComments;
+         String    strImageURL;
+         String    strTargetURL;
+         Boolean   bIsPreformated;
+
+         checkVersion(in.readUnsignedByte());
+         lId = CompactFormat.readVarLong(in);
+         lDomainId = CompactFormat.readVarLong(in);
+         creationTimestamp = CompactFormat.readTimestamp(in);
+         modificationTimestamp = CompactFormat.readTimestamp(in);
+         lParentId = CompactFormat.readVarLong(in);
+         strCaption = CompactFormat.readString(in);
+         strComments = CompactFormat.readString(in);
+         strImageURL = CompactFormat.readString(in);
+         strTargetURL = CompactFormat.readString(in);
+         bIsPreformated = CompactFormat.getPreformated(in.readUnsignedByte());
+         try
+         {
+            m_data = new Entry(lId, lDomainId, creationTimestamp, 
+                               modificationTimestamp, lParentId, strCaption, 
+                               strComments, strImageURL, strTargetURL);
+         }
+         catch (OSSException ossExc)
+         {
+            throw new IOException("Cannot create deserialized entry", ossExc);
+         }
+         m_data.m_bIsPreformated = bIsPreformated;
+      }
+
+      // Helper methods ////////////////////////////////////////////////////////
+
+      /**
+       * Replace this object with the deserialized entry.
+       *
+       * @return Object - deserialized entry
+       */
+      private Object readResolve(
+      )
+      {
+         return m_data;
+      }
+
+      /**
+       * Make sure the data were written in the format this class understands.
+       *
+       * @param iVersion - version of the format read from the stream
+       * @throws IOException - the version is not supported
+       */
+      private static void checkVersion(
+         int iVersion
+      ) throws IOException
+      {
+         if (iVersion != FORMAT_VERSION)
+         {
+            throw new InvalidClassException(SerializedForm.class.getName(),
+                                            "Unsupported format version " 
+                                            + iVersion);
+         }
+      }
+   }
+
 	// Constants ////////////////////////////////////////////////////////////////
 
    // Cached values ////////////////////////////////////////////////////////////
 
    /**
     * Flag signaling if the text contains formatting or not. Example of such 
-    * formatting is a newline character.
+    * formatting is a newline character. The flag is stored in the persistence
+    * store so that it doesn't have to be determined from the text every time
+    * the entry is loaded. Null if it wasn't determined yet.
     */
-   protected Boolean m_bIsPreformated = null;
+   protected volatile Boolean m_bIsPreformated = null;
 
    // Attributes ///////////////////////////////////////////////////////////////
 
@@ -151,6 +331,19 @@ public class Entry extends ModifiableDataObjectImpl
     */
    protected String m_strTargetURL;
 
+   /**
+    * Loader of the comments if they were not loaded yet, null if the comments 
+    * are already known.
+    */
+   protected transient volatile CommentsLoader m_commentsLoader;
+
+   /**
+    * Load of the comments which is in progress, null if no thread is loading 
+    * them. Threads requesting the comments while they are being loaded wait 
+    * for this load instead of holding lock of the entry.
+    */
+   protected transient FutureTask<String> m_commentsLoad;
+
    // Constructors /////////////////////////////////////////////////////////////
    
    /**
@@ -231,6 +424,41 @@ public class Entry extends ModifiableDataObjectImpl
       m_strTargetURL = strTargetURL;
    }
 
+   /**
+    * Create entry from a given parameters including the flag determined when 
+    * the entry was stored so that the comments don't have to be examined.
+    *
+    * @param lId - Id of the entry 
+    * @param lDomainId - Id of the domain this domain belongs to 
+    * @param creationTimestamp - Timestamp when the entry was created
+    * @param modificationTimestamp - Timestamp when the entry was last time modified
+    * @param lParentId - Id of the parent this entry belongs to
+    * @param strCaption - More descriptive name of the entry
+    * @param strComments - Any additional text of the entry
+    * @param strImageURL - Image URL of image associated with the entry
+    * @param strTargetURL - Target URL for the image when user clicks on the image
+    * @param bIsPreformated - Flag signaling if the comments contain formatting
+	 * @throws OSSException - an error has occurred
+    */
+   public Entry(
+      long      lId,
+      long      lDomainId,
+      Timestamp creationTimestamp,
+      Timestamp modificationTimestamp,
+      long      lParentId,
+      String    strCaption,
+      String    strComments,
+      String    strImageURL,
+      String    strTargetURL,
+      boolean   bIsPreformated
+   ) throws OSSException
+   {
+      this(lId, lDomainId, creationTimestamp, modificationTimestamp, lParentId,
+           strCaption, strComments, strImageURL, strTargetURL);
+
+      m_bIsPreformated = Boolean.valueOf(bIsPreformated);
+   }
+
    // Accessors ////////////////////////////////////////////////////////////////
 
    /**
@@ -268,16 +496,146 @@ public class Entry extends ModifiableDataObjectImpl
    }
 
    /**
-    * Comments is any additional description of the entry.
+    * Comments is any additional description of the entry. If the entry was 
+    * retrieved without comments, they are loaded from the persistence store 
+    * when this method is called for the first time. Since this is a plain 
+    * getter, failure to load the comments is reported as unchecked exception.
+    * Callers which need to handle such failure, e.g. to display an error 
+    * page, should call fetchComments instead.
     *
     * @return String
+    * @throws IllegalStateException - comments could not be loaded, the cause
+    *                                 is the OSSException thrown by the loader
+    * @see #fetchComments
     */
    public String getComments(
    )
    {
+      if (m_commentsLoader != null)
+      {
+         try
+         {
+            fetchComments();
+         }
+         catch (OSSException ossExc)
+         {
+            throw new IllegalStateException("Cannot load comments of entry " 
+                                            + getId(), ossExc);
+         }
+      }
+
       return m_strComments;
    }
 
+   /**
+    * Make sure the comments are loaded from the persistence store if the entry
+    * was retrieved without them. Only one thread loads the comments, other 
+    * threads requesting them at the same time wait for the result of that 
+    * load. If the load fails, all of them receive the error and the next call
+    * tries to load the comments again.
+    *
+    * @return String - comments of the entry
+    * @throws OSSException - an error has occurred loading the comments
+    */
+   public String fetchComments(
+   ) throws OSSException
+   {
+      FutureTask<String> load = null;
+      CommentsLoader     loader = null;
+      boolean            bLoad = false;
+      boolean            bLoaded = false;
+      String             strComments = null;
+
+      if (m_commentsLoader != null)
+      {
+         // The lock is held only to find out who loads the comments, never 
+         // while they are being loaded
+         synchronized (this)
+         {
+            loader = m_commentsLoader;
+            if (loader != null)
+            {
+               load = m_commentsLoad;
+               if (load == null)
+               {
+                  load = createCommentsLoad(loader);
+                  m_commentsLoad = load;
+                  bLoad = true;
+               }
+            }
+         }
+      }
+      if (load == null)
+      {
+         strComments = m_strComments;
+      }
+      else
+      {
+         if (bLoad)
+         {
+            load.run();
+         }
+         try
+         {
+            strComments = getComments(load);
+            bLoaded = true;
+         }
+         finally
+         {
+            if (bLoad)
+            {
+               synchronized (this)
+               {
+                  // The loader may have been replaced while the comments were 
+                  // being loaded
+                  if (m_commentsLoad == load)
+                  {
+                     m_commentsLoad = null;
+                     if ((bLoaded) && (m_commentsLoader == loader))
+                     {
+                        m_strComments = strComments;
+                        m_commentsLoader = null;
+                     }
+                  }
+               }
+            }
+         }
+      }
+
+      return strComments;
+   }
+
+   /**
+    * Check if the comments of the entry are known or if they will be loaded 
+    * from the persistence store once they are requested.
+    *
+    * @return boolean - true if the comments are loaded
+    */
+   public boolean isCommentsLoaded(
+   )
+   {
+      return m_commentsLoader == null;
+   }
+
+   /**
+    * Specify that the entry was retrieved without comments and they should be
+    * loaded from the persistence store once they are requested. The flag 
+    * signaling if the comments contain formatting is kept if it is known.
+    *
+    * @param commentsLoader - loader of the comments
+    */
+   public void setCommentsLoader(
+      CommentsLoader commentsLoader
+   )
+   {
+      synchronized (this)
+      {
+         m_strComments = null;
+         m_commentsLoader = commentsLoader;
+         m_commentsLoad = null;
+      }
+   }
+
    /**
     * Image URL of image associated with the entry. 
     *
@@ -310,20 +668,25 @@ public class Entry extends ModifiableDataObjectImpl
 	@SuppressWarnings({ "BoxedValueEquality" })
    public boolean getIsPreformated()
    {
-      if (m_bIsPreformated == null)
+      Boolean bIsPreformated = m_bIsPreformated;
+
+      if (bIsPreformated == null)
       {
-         if (m_strComments == null)
+         String strComments = getComments();
+
+         if (strComments == null)
          {
-            m_bIsPreformated = Boolean.FALSE;
+            bIsPreformated = Boolean.FALSE;
          }
          else
          {
-            m_bIsPreformated = ((m_strComments.indexOf('\n') != -1) ? Boolean.TRUE 
-                                                                    : Boolean.FALSE);
+            bIsPreformated = ((strComments.indexOf('\n') != -1) ? Boolean.TRUE 
+                                                                : Boolean.FALSE);
          }
+         m_bIsPreformated = bIsPreformated;
       }
       
-      return (m_bIsPreformated == Boolean.TRUE);
+      return (bIsPreformated == Boolean.TRUE);
    }
    
    /**
@@ -352,8 +715,7 @@ public class Entry extends ModifiableDataObjectImpl
             bReturn = data.getParentId() == m_lParentId
                      && ((data.getCaption() == null && m_strCaption == null)
                            || data.getCaption().equals(m_strCaption))
-                     && ((data.getComments() == null && m_strComments == null)
-                           || data.getComments().equals(m_strComments))
+                     && isSameComments(data)
                      && ((data.getImageURL() == null && m_strImageURL == null)
                            || data.getImageURL().equals(m_strImageURL))
                      && ((data.getTargetURL() == null && m_strTargetURL == null)
@@ -375,10 +737,124 @@ public class Entry extends ModifiableDataObjectImpl
       append(sb, ind + 0, "Entry[", true);
       append(sb, ind + 1, "m_lParentId = ", m_lParentId);
       append(sb, ind + 1, "m_strCaption = ", m_strCaption);
-      append(sb, ind + 1, "m_strComments = ", m_strComments);
+      append(sb, ind + 1, "m_strComments = ", 
+             isCommentsLoaded() ? m_strComments : "<not loaded>");
       append(sb, ind + 1, "m_strImageURL = ", m_strImageURL);
       append(sb, ind + 1, "m_strTargetURL = ", m_strTargetURL);
       super.toString(sb, ind + 1);
       append(sb, ind + 0, "]", true);
    }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Check if the entry has the same comments as this one. Comments which 
+    * were not loaded yet are loaded from the persistence store so that the 
+    * content of the comments is always compared.
+    *
+    * @param data - entry to compare comments with
+    * @return boolean - true if the comments are the same
+    * @throws IllegalStateException - comments could not be loaded
+    */
+   private boolean isSameComments(
+      Entry data
+   )
+   {
+      String strComments = getComments();
+      String strOtherComments = data.getComments();
+
+      return (strOtherComments == null) ? (strComments == null)
+                                        : strOtherComments.equals(strComments);
+   }
+
+   /**
+    * Create load of the comments using the specified loader.
+    *
+    * @param loader - loader of the comments
+    * @return FutureTask - load of the comments which was not started yet
+    */
+   private FutureTask<String> createCommentsLoad(
+      final CommentsLoader loader
+   )
+   {
+      return new FutureTask<>(new Callable<String>()
+      {
+         @Override
+         public String call(
+         ) throws OSSException
+         {
+            return loader.loadComments(Entry.this);
+         }
+      });
+   }
+
+   /**
+    * Wait for the load of the comments to finish and get its result.
+    *
+    * @param load - load of the comments
+    * @return String - loaded comments
+    * @throws OSSException - an error has occurred loading the comments
+    */
+   private String getComments(
+      FutureTask<String> load
+   ) throws OSSException
+   {
+      String    strComments;
+      Throwable cause;
+
+      try
+      {
+         strComments = load.get();
+      }
+      catch (InterruptedException ieExc)
+      {
+         Thread.currentThread().interrupt();
+         throw new OSSInternalErrorException("Interrupted while waiting for"
+                                             + " comments of entry " + getId(),
+                                             ieExc);
+      }
+      catch (ExecutionException eeExc)
+      {
+         cause = eeExc.getCause();
+         if (cause instanceof OSSException)
+         {
+            throw (OSSException)cause;
+         }
+         else if (cause instanceof RuntimeException)
+         {
+            throw (RuntimeException)cause;
+         }
+         else if (cause instanceof Error)
+         {
+            throw (Error)cause;
+         }
+         throw new OSSInternalErrorException("Cannot load comments of entry " 
+                                             + getId(), cause);
+      }
+
+      return strComments;
+   }
+
+   /**
+    * Replace the entry with its compact form when it is serialized. The 
+    * comments are loaded first since the loader cannot be serialized.
+    * 
+    * @return Object - object to serialize instead of this entry
+    * @throws IOException - an error has occurred loading the comments
+    */
+   private Object writeReplace(
+   ) throws IOException
+   {
+      try
+      {
+         fetchComments();
+      }
+      catch (OSSException ossExc)
+      {
+         throw new IOException("Cannot load comments of entry " + getId(), 
+                               ossExc);
+      }
+
+      return new SerializedForm(this);
+   }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.data;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Dictionary of frequently repeated strings, such as folders of blogs and 
+ * URLs of images and targets of entries, which allows all data objects with 
+ * the same value to share single instance of the string instead of each of 
+ * them holding its own copy read from the database.
+ * 
+ * The dictionary has fixed number of slots and each string can be stored only
+ * in the slot selected by its hash code. When another string is stored in the
+ * slot, the previous one is forgotten. This keeps the memory used by the 
+ * dictionary bounded no matter how many different strings pass through it 
+ * while the strings, which repeat often, stay in it. The slots are accessed 
+ * without any locking so the dictionary can be used by many threads at the 
+ * same time. Unlike String.intern the strings are not kept in the shared JVM
+ * string table and they are released when the dictionary forgets them. 
+ *
+ * @author bastafidli
+ */
+public class StringDictionary
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Default number of strings kept in the dictionary.
+    */
+   public static final int DEFAULT_CAPACITY = 4096;
+
+   /**
+    * Default maximal length of strings kept in the dictionary. Longer strings
+    * are not likely to repeat.
+    */
+   public static final int DEFAULT_MAX_LENGTH = 1024;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Slots storing the strings.
+    */
+   protected final AtomicReferenceArray<String> m_arrStrings;
+
+   /**
+    * Mask selecting slot from hash code of the string.
+    */
+   protected final int m_iMask;
+
+   /**
+    * Maximal length of strings kept in the dictionary.
+    */
+   protected final int m_iMaxLength;
+
+   // Cached values ////////////////////////////////////////////////////////////
+
+   /**
+    * Dictionary shared by all factories which are not configured with their
+    * own.
+    */
+   private static final StringDictionary s_defaultInstance 
+                                            = new StringDictionary();
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new dictionary with the default capacity.
+    */
+   public StringDictionary(
+   )
+   {
+      this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+   }
+
+   /**
+    * Create new dictionary.
+    *
+    * @param iCapacity - number of strings kept in the dictionary, it is 
+    *                    rounded up to power of two
+    * @param iMaxLength - maximal length of strings kept in the dictionary
+    */
+   public StringDictionary(
+      int iCapacity,
+      int iMaxLength
+   )
+   {
+      int iSlots = 1;
+
+      if (iCapacity <= 0)
+      {
+         throw new IllegalArgumentException("Capacity has to be positive");
+      }
+      if (iCapacity > (1 << 30))
+      {
+         throw new IllegalArgumentException("Capacity is too large");
+      }
+      while (iSlots < iCapacity)
+      {
+         iSlots <<= 1;
+      }
+      m_arrStrings = new AtomicReferenceArray<>(iSlots);
+      m_iMask = iSlots - 1;
+      m_iMaxLength = iMaxLength;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Get dictionary shared by all factories which are not configured with 
+    * their own.
+    *
+    * @return StringDictionary
+    */
+   public static StringDictionary getDefaultInstance(
+   )
+   {
+      return s_defaultInstance;
+   }
+
+   /**
+    * Number of strings kept in the dictionary.
+    *
+    * @return int
+    */
+   public int getCapacity(
+   )
+   {
+      return m_arrStrings.length();
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Get canonical instance of the string. If an equal string is kept in the 
+    * dictionary, it is returned, otherwise the specified string is remembered
+    * and returned.
+    *
+    * @param strValue - string to get canonical instance of, can be null
+    * @return String - string equal to the specified one
+    */
+   public String canonicalize(
+      String strValue
+   )
+   {
+      String strExisting;
+      int    iHash;
+      int    iSlot;
+
+      if ((strValue == null) || (strValue.length() > m_iMaxLength))
+      {
+         return strValue;
+      }
+
+      iHash = strValue.hashCode();
+      // Spread the higher bits since only the lower ones select the slot
+      iSlot = (iHash ^ (iHash >>> 16)) & m_iMask;
+      strExisting = m_arrStrings.get(iSlot);
+      if ((strExisting != null) && (strExisting.hashCode() == iHash) 
+         && (strExisting.equals(strValue)))
+      {
+         return strExisting;
+      }
+      // Readers don't need to see the new string immediately, they will just
+      // keep their own copy
+      m_arrStrings.lazySet(iSlot, strValue);
+
+      return strValue;
+   }
+
+   /**
+    * Forget all strings kept in the dictionary.
+    */
+   public void clear(
+   )
+   {
+      for (int iSlot = 0; iSlot < m_arrStrings.length(); iSlot++)
+      {
+         m_arrStrings.set(iSlot, null);
+      }
+   }
+}
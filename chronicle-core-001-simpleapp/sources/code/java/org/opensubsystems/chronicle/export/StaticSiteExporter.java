@@ -0,0 +1,1012 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.export;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
+import org.opensubsystems.chronicle.persist.BlogFactory;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryHandler;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Exporter rendering blogs and their entries to static HTML pages, which can
+ * be served directly from disk or from a content delivery network. Each blog
+ * is exported to a directory named by its folder. The directory contains 
+ * page for every entry named by id of the entry and index pages listing the
+ * entries from the most recent one.
+ * 
+ * The export is incremental. State of the last export is stored together 
+ * with the pages and the next export of the blog regenerates only pages of 
+ * entries modified since then and index pages listing different entries than
+ * before. The state remembers also ids of entries modified at the same time 
+ * as the most recent one, so entries modified within the same millisecond 
+ * after the export are not missed. Everything is regenerated only when the 
+ * blog itself was modified since it is displayed on every page. Every file is 
+ * written to a temporary file first, which is then atomically renamed so the 
+ * server never sees partially written page. The state is written last so if 
+ * the export fails, the next export just repeats it.
+ * 
+ * Text of the blogs and entries is always escaped so the pages display it as 
+ * it was entered. Preformated text is displayed with its line breaks.
+ *
+ * @author bastafidli
+ */
+public class StaticSiteExporter
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Exception used to pass error writing a page through EntryHandler, which
+    * can throw only OSSException.
+    */
+   protected static class OSSExportException extends OSSException
+   {
+      /**
+       * Generated serial version id for this class.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Create new exception.
+       *
+       * @param cause - error which has occurred writing the page
+       */
+      public OSSExportException(
+         IOException cause
+      )
+      {
+         super(cause);
+      }
+   }
+
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Default number of entries listed on single index page.
+    */
+   public static final int DEFAULT_INDEX_PAGE_SIZE = 20;
+
+   /**
+    * Name of the first index page of a blog.
+    */
+   public static final String INDEX_FILE_NAME = "index.html";
+
+   /**
+    * Name of the file storing the state of the last export of a blog.
+    */
+   public static final String STATE_FILE_NAME = "export.properties";
+
+   /**
+    * Extension of the generated pages.
+    */
+   public static final String PAGE_EXTENSION = ".html";
+
+   /**
+    * Prefix of names of the index pages following the first one.
+    */
+   protected static final String INDEX_PAGE_PREFIX = "index-";
+
+   /**
+    * Pattern matching names of the entry pages.
+    */
+   protected static final Pattern ENTRY_FILE_PATTERN 
+                                     = Pattern.compile("(\\d+)\\.html");
+
+   /**
+    * Pattern matching names of the index pages following the first one.
+    */
+   protected static final Pattern INDEX_FILE_PATTERN 
+                                     = Pattern.compile("index-(\\d+)\\.html");
+
+   /**
+    * Format of dates displayed on the pages.
+    */
+   protected static final String DATE_FORMAT = "yyyy-MM-dd HH:mm";
+
+   /**
+    * Name of the state property storing modification time of the blog.
+    */
+   protected static final String STATE_BLOG_MODIFIED = "blog.modified";
+
+   /**
+    * Name of the state property storing the most recent modification time of
+    * the entries.
+    */
+   protected static final String STATE_ENTRIES_MODIFIED = "entries.modified";
+
+   /**
+    * Name of the state property storing number of entries.
+    */
+   protected static final String STATE_ENTRIES_COUNT = "entries.count";
+
+   /**
+    * Name of the state property storing ids of entries modified at the most 
+    * recent modification time of the entries.
+    */
+   protected static final String STATE_ENTRIES_BOUNDARY = "entries.boundary";
+
+   /**
+    * Prefix of names of the state properties storing which entries are listed
+    * on the index pages.
+    */
+   protected static final String STATE_INDEX_PREFIX = "index.";
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory used to retrieve blogs.
+    */
+   protected final BlogFactory m_blogFactory;
+
+   /**
+    * Factory used to retrieve entries.
+    */
+   protected final EntryFactory m_entryFactory;
+
+   /**
+    * Directory, where the blogs are exported.
+    */
+   protected final File m_rootDirectory;
+
+   /**
+    * Number of entries listed on single index page.
+    */
+   protected final int m_iIndexPageSize;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new exporter listing the default number of entries on index pages.
+    *
+    * @param blogFactory - factory used to retrieve blogs
+    * @param entryFactory - factory used to retrieve entries
+    * @param rootDirectory - directory, where the blogs are exported
+    */
+   public StaticSiteExporter(
+      BlogFactory  blogFactory,
+      EntryFactory entryFactory,
+      File         rootDirectory
+   )
+   {
+      this(blogFactory, entryFactory, rootDirectory, DEFAULT_INDEX_PAGE_SIZE);
+   }
+
+   /**
+    * Create new exporter.
+    *
+    * @param blogFactory - factory used to retrieve blogs
+    * @param entryFactory - factory used to retrieve entries
+    * @param rootDirectory - directory, where the blogs are exported
+    * @param iIndexPageSize - number of entries listed on single index page
+    */
+   public StaticSiteExporter(
+      BlogFactory  blogFactory,
+      EntryFactory entryFactory,
+      File         rootDirectory,
+      int          iIndexPageSize
+   )
+   {
+      if ((blogFactory == null) || (entryFactory == null))
+      {
+         throw new IllegalArgumentException("Factories cannot be null");
+      }
+      if (rootDirectory == null)
+      {
+         throw new IllegalArgumentException("Root directory cannot be null");
+      }
+      if (iIndexPageSize <= 0)
+      {
+         throw new IllegalArgumentException(
+                      "Number of entries on index page has to be positive");
+      }
+      m_blogFactory = blogFactory;
+      m_entryFactory = entryFactory;
+      m_rootDirectory = rootDirectory;
+      m_iIndexPageSize = iIndexPageSize;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Directory, where the blogs are exported.
+    *
+    * @return File
+    */
+   public File getRootDirectory(
+   )
+   {
+      return m_rootDirectory;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Export all blogs, which have changed since the last export. Directories
+    * of blogs, which were deleted, are left untouched.
+    *
+    * @return int - number of written pages
+    * @throws OSSException - an error has occurred retrieving data
+    * @throws IOException - an error has occurred writing pages
+    */
+   public int export(
+   ) throws OSSException, 
+            IOException
+   {
+      List<Blog> lstBlogs = m_blogFactory.getAll();
+      int        iPages = 0;
+
+      for (Blog blog : lstBlogs)
+      {
+         iPages += export(blog);
+      }
+
+      return iPages;
+   }
+
+   /**
+    * Export the blog if it has changed since the last export. Only pages 
+    * affected by the changes are regenerated. 
+    *
+    * @param blog - blog to export
+    * @return int - number of written pages, 0 if the blog hasn't changed
+    * @throws OSSException - an error has occurred retrieving data
+    * @throws IOException - an error has occurred writing pages
+    */
+   public int export(
+      final Blog blog
+   ) throws OSSException, 
+            IOException
+   {
+      final File       directory = getBlogDirectory(blog);
+      final Set<Long>  setEntryIds;
+      final Set<Long>  setBoundaryIds = new HashSet<>();
+      final int[]      arrPages = {0};
+      final Timestamp  lastModified;
+      Properties       previous;
+      Properties       current;
+      Set<Long>        setModifiedIds;
+      Set<Long>        setExportedIds;
+      List<Entry>      lstModified;
+      long             lExported;
+      int              iCreated;
+
+      if ((!directory.isDirectory()) && (!directory.mkdirs()))
+      {
+         throw new IOException("Cannot create directory " + directory);
+      }
+
+      previous = readState(directory);
+      lastModified = m_entryFactory.getLastModified(blog.getId());
+      current = createState(blog, lastModified, 
+                            m_entryFactory.getCount(blog.getId()));
+      if (isSameState(current, previous))
+      {
+         return 0;
+      }
+
+      if ((previous == null) 
+         || (!current.getProperty(STATE_BLOG_MODIFIED).equals(
+                 previous.getProperty(STATE_BLOG_MODIFIED)))
+         || (previous.getProperty(STATE_ENTRIES_MODIFIED) == null))
+      {
+         // Everything has to be regenerated, the entries are streamed so that
+         // even large blogs are exported in constant memory
+         setEntryIds = new HashSet<>();
+         try
+         {
+            m_entryFactory.forEach(blog.getId(), new EntryHandler()
+            {
+               @Override
+               public boolean handle(
+                  Entry entry
+               ) throws OSSException
+               {
+                  try
+                  {
+                     writeEntry(directory, blog, entry);
+                  }
+                  catch (IOException ioeExc)
+                  {
+                     throw new OSSExportException(ioeExc);
+                  }
+                  setEntryIds.add(entry.getId());
+                  if (isBoundary(entry, lastModified))
+                  {
+                     setBoundaryIds.add(entry.getId());
+                  }
+                  arrPages[0]++;
+                  return true;
+               }
+            });
+         }
+         catch (OSSExportException oeeExc)
+         {
+            throw (IOException)oeeExc.getCause();
+         }
+         arrPages[0] += writeIndex(directory, blog, null, null, current);
+      }
+      else
+      {
+         // Entries modified at the time of the last export are retrieved 
+         // again since they could have been modified within the same 
+         // millisecond right after the export. Those which were exported are 
+         // then skipped.
+         lExported = Long.parseLong(previous.getProperty(
+                                       STATE_ENTRIES_MODIFIED));
+         setExportedIds = parseIds(previous.getProperty(
+                                      STATE_ENTRIES_BOUNDARY));
+         lstModified = m_entryFactory.getModifiedSince(blog.getId(), 
+                          new Timestamp(lExported - 1));
+         setModifiedIds = new HashSet<>();
+         iCreated = 0;
+         for (Entry entry : lstModified)
+         {
+            if (isBoundary(entry, lastModified))
+            {
+               setBoundaryIds.add(entry.getId());
+            }
+            if ((entry.getModificationTimestamp().getTime() == lExported)
+               && (setExportedIds.contains(entry.getId())))
+            {
+               continue;
+            }
+            writeEntry(directory, blog, entry);
+            setModifiedIds.add(entry.getId());
+            if (entry.getCreationTimestamp().getTime() >= lExported)
+            {
+               iCreated++;
+            }
+            arrPages[0]++;
+         }
+         if (Integer.parseInt(current.getProperty(STATE_ENTRIES_COUNT))
+             < Integer.parseInt(previous.getProperty(STATE_ENTRIES_COUNT)) 
+               + iCreated)
+         {
+            // Some entries were deleted, find which pages have to be removed
+            setEntryIds = new HashSet<>();
+            for (Entry entry : m_entryFactory.getAll(blog.getId(), 
+                                  EnumSet.of(EntryFields.ENTRY_ID)))
+            {
+               setEntryIds.add(entry.getId());
+            }
+         }
+         else
+         {
+            setEntryIds = null;
+         }
+         arrPages[0] += writeIndex(directory, blog, previous, setModifiedIds, 
+                                   current);
+      }
+
+      if (setEntryIds != null)
+      {
+         deleteEntries(directory, setEntryIds);
+      }
+      if (!setBoundaryIds.isEmpty())
+      {
+         current.setProperty(STATE_ENTRIES_BOUNDARY, formatIds(setBoundaryIds));
+      }
+      writeState(directory, current);
+
+      return arrPages[0];
+   }
+
+   /**
+    * Get directory, where the blog is exported. The directory is always 
+    * located directly in the root directory so folders, which would point
+    * elsewhere, e.g. "../x", are rejected.
+    *
+    * @param blog - blog to get the directory for
+    * @return File - directory of the blog
+    * @throws IOException - folder of the blog cannot be used as a directory 
+    *                       name
+    */
+   public File getBlogDirectory(
+      Blog blog
+   ) throws IOException
+   {
+      String strFolder = blog.getFolder();
+
+      if ((strFolder == null) || (strFolder.length() == 0)
+         || (".".equals(strFolder)) || ("..".equals(strFolder))
+         || (strFolder.indexOf('/') != -1) || (strFolder.indexOf('\\') != -1)
+         || (strFolder.indexOf(File.separatorChar) != -1)
+         || (strFolder.indexOf('\0') != -1))
+      {
+         throw new IOException("Folder \"" + strFolder + "\" of blog " 
+                               + blog.getId() + " is not valid directory name");
+      }
+
+      return new File(m_rootDirectory, strFolder);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Write page of the entry.
+    *
+    * @param directory - directory of the blog
+    * @param blog - blog the entry belongs to
+    * @param entry - entry to write
+    * @throws IOException - an error has occurred
+    */
+   protected void writeEntry(
+      File  directory,
+      Blog  blog,
+      Entry entry
+   ) throws IOException
+   {
+      StringBuilder sbPage = new StringBuilder();
+      DateFormat    dateFormat = new SimpleDateFormat(DATE_FORMAT);
+
+      appendHeader(sbPage, blog, entry.getCaption());
+      sbPage.append("<h2>");
+      appendEscaped(sbPage, entry.getCaption());
+      sbPage.append("</h2>\n");
+      sbPage.append("<p class=\"date\">");
+      sbPage.append(dateFormat.format(entry.getCreationTimestamp()));
+      sbPage.append("</p>\n");
+      if ((entry.getImageURL() != null) && (entry.getImageURL().length() > 0))
+      {
+         sbPage.append("<p><img src=\"");
+         appendEscaped(sbPage, entry.getImageURL());
+         sbPage.append("\" alt=\"\"></p>\n");
+      }
+      appendText(sbPage, entry.getComments(), entry.getIsPreformated());
+      if ((entry.getTargetURL() != null) 
+         && (entry.getTargetURL().length() > 0))
+      {
+         sbPage.append("<p><a href=\"");
+         appendEscaped(sbPage, entry.getTargetURL());
+         sbPage.append("\">");
+         appendEscaped(sbPage, entry.getTargetURL());
+         sbPage.append("</a></p>\n");
+      }
+      sbPage.append("<p><a href=\"").append(INDEX_FILE_NAME)
+            .append("\">Back to the blog</a></p>\n");
+      appendFooter(sbPage);
+
+      write(new File(directory, entry.getId() + PAGE_EXTENSION), 
+            sbPage.toString());
+   }
+
+   /**
+    * Write index pages of the blog and remove the ones, which are no longer 
+    * needed. Index page is written only if it lists different entries than
+    * during the last export or if any of its entries was modified. Which 
+    * entries are listed on every page is stored in the current state.
+    *
+    * @param directory - directory of the blog
+    * @param blog - blog to write index pages of
+    * @param previous - state of the last export or null if all pages should
+    *                   be written
+    * @param setModifiedIds - ids of entries modified since the last export, 
+    *                         can be null if previous is null
+    * @param current - state of the current export
+    * @return int - number of written pages
+    * @throws OSSException - an error has occurred retrieving entries
+    * @throws IOException - an error has occurred writing pages
+    */
+   protected int writeIndex(
+      File       directory,
+      Blog       blog,
+      Properties previous,
+      Set<Long>  setModifiedIds,
+      Properties current
+   ) throws OSSException, 
+            IOException
+   {
+      DateFormat    dateFormat = new SimpleDateFormat(DATE_FORMAT);
+      StringBuilder sbPage;
+      EntryPage     page = null;
+      int           iPage = 0;
+      int           iWritten = 0;
+      boolean       bModified;
+      String        strListed;
+      File          pageFile;
+      File[]        arrFiles;
+      Matcher       matcher;
+
+      do
+      {
+         // Comments are not needed for the index
+         page = m_entryFactory.getSummaryPage(blog.getId(), 
+                   (page == null) ? null : page.getNextCursor(), 
+                   m_iIndexPageSize);
+         iPage++;
+
+         pageFile = new File(directory, getIndexFileName(iPage));
+         strListed = describeListed(page);
+         current.setProperty(STATE_INDEX_PREFIX + iPage, strListed);
+         bModified = false;
+         if (setModifiedIds != null)
+         {
+            for (Entry entry : page.getEntries())
+            {
+               if (setModifiedIds.contains(entry.getId()))
+               {
+                  bModified = true;
+                  break;
+               }
+            }
+         }
+         if ((previous != null) && (!bModified) && (pageFile.isFile())
+            && (strListed.equals(previous.getProperty(
+                                    STATE_INDEX_PREFIX + iPage))))
+         {
+            // The page lists the same entries as before
+            continue;
+         }
+
+         sbPage = new StringBuilder();
+         appendHeader(sbPage, blog, null);
+         if (iPage == 1)
+         {
+            appendText(sbPage, blog.getComments(), blog.getIsPreformated());
+         }
+         sbPage.append("<ul>\n");
+         for (Entry entry : page.getEntries())
+         {
+            sbPage.append("<li><a href=\"").append(entry.getId())
+                  .append(PAGE_EXTENSION).append("\">");
+            appendEscaped(sbPage, entry.getCaption());
+            sbPage.append("</a> <span class=\"date\">");
+            sbPage.append(dateFormat.format(entry.getCreationTimestamp()));
+            sbPage.append("</span></li>\n");
+         }
+         sbPage.append("</ul>\n");
+         if (iPage > 1)
+         {
+            sbPage.append("<p><a href=\"").append(getIndexFileName(iPage - 1))
+                  .append("\">Newer entries</a></p>\n");
+         }
+         if (page.hasNext())
+         {
+            sbPage.append("<p><a href=\"").append(getIndexFileName(iPage + 1))
+                  .append("\">Older entries</a></p>\n");
+         }
+         appendFooter(sbPage);
+
+         write(pageFile, sbPage.toString());
+         iWritten++;
+      }
+      while (page.hasNext());
+
+      // Remove index pages, which were needed when the blog had more entries
+      arrFiles = directory.listFiles();
+      if (arrFiles != null)
+      {
+         for (File file : arrFiles)
+         {
+            matcher = INDEX_FILE_PATTERN.matcher(file.getName());
+            if ((matcher.matches()) 
+               && (Integer.parseInt(matcher.group(1)) > iPage))
+            {
+               Files.deleteIfExists(file.toPath());
+            }
+         }
+      }
+
+      return iWritten;
+   }
+
+   /**
+    * Delete pages of entries, which no longer exist.
+    *
+    * @param directory - directory of the blog
+    * @param setEntryIds - ids of all existing entries of the blog
+    * @throws IOException - an error has occurred
+    */
+   protected void deleteEntries(
+      File      directory,
+      Set<Long> setEntryIds
+   ) throws IOException
+   {
+      File[]  arrFiles = directory.listFiles();
+      Matcher matcher;
+
+      if (arrFiles != null)
+      {
+         for (File file : arrFiles)
+         {
+            matcher = ENTRY_FILE_PATTERN.matcher(file.getName());
+            if ((matcher.matches()) 
+               && (!setEntryIds.contains(Long.valueOf(matcher.group(1)))))
+            {
+               Files.deleteIfExists(file.toPath());
+            }
+         }
+      }
+   }
+
+   /**
+    * Get name of the index page.
+    *
+    * @param iPage - number of the page starting from 1
+    * @return String - name of the file of the page
+    */
+   protected static String getIndexFileName(
+      int iPage
+   )
+   {
+      return (iPage == 1) ? INDEX_FILE_NAME 
+                          : INDEX_PAGE_PREFIX + iPage + PAGE_EXTENSION;
+   }
+
+   /**
+    * Append beginning of the page up to the start of its content.
+    *
+    * @param sbPage - buffer to append to
+    * @param blog - blog the page belongs to
+    * @param strTitle - title of the page or null if it is the blog index
+    */
+   protected static void appendHeader(
+      StringBuilder sbPage,
+      Blog          blog,
+      String        strTitle
+   )
+   {
+      sbPage.append("<!DOCTYPE html>\n<html>\n<head>\n");
+      sbPage.append("<meta charset=\"UTF-8\">\n<title>");
+      if (strTitle != null)
+      {
+         appendEscaped(sbPage, strTitle);
+         sbPage.append(" - ");
+      }
+      appendEscaped(sbPage, blog.getCaption());
+      sbPage.append("</title>\n</head>\n<body>\n<h1><a href=\"")
+            .append(INDEX_FILE_NAME).append("\">");
+      appendEscaped(sbPage, blog.getCaption());
+      sbPage.append("</a></h1>\n");
+   }
+
+   /**
+    * Append end of the page.
+    *
+    * @param sbPage - buffer to append to
+    */
+   protected static void appendFooter(
+      StringBuilder sbPage
+   )
+   {
+      sbPage.append("</body>\n</html>\n");
+   }
+
+   /**
+    * Append text of blog or entry.
+    *
+    * @param sbPage - buffer to append to
+    * @param strText - text to append, can be null
+    * @param bPreformated - true if the line breaks of the text should be 
+    *                       preserved
+    */
+   protected static void appendText(
+      StringBuilder sbPage,
+      String        strText,
+      boolean       bPreformated
+   )
+   {
+      if ((strText != null) && (strText.length() > 0))
+      {
+         sbPage.append(bPreformated ? "<pre>" : "<p>");
+         appendEscaped(sbPage, strText);
+         sbPage.append(bPreformated ? "</pre>\n" : "</p>\n");
+      }
+   }
+
+   /**
+    * Append text escaping characters with special meaning in HTML.
+    *
+    * @param sbPage - buffer to append to
+    * @param strText - text to append, can be null
+    */
+   protected static void appendEscaped(
+      StringBuilder sbPage,
+      String        strText
+   )
+   {
+      char chCharacter;
+
+      if (strText != null)
+      {
+         for (int iIndex = 0; iIndex < strText.length(); iIndex++)
+         {
+            chCharacter = strText.charAt(iIndex);
+            switch (chCharacter)
+            {
+               case '<':
+                  sbPage.append("&lt;");
+                  break;
+               case '>':
+                  sbPage.append("&gt;");
+                  break;
+               case '&':
+                  sbPage.append("&amp;");
+                  break;
+               case '"':
+                  sbPage.append("&quot;");
+                  break;
+               default:
+                  sbPage.append(chCharacter);
+                  break;
+            }
+         }
+      }
+   }
+
+   /**
+    * Describe which entries are listed on the index page so that it can be 
+    * found out if the page has to be written again.
+    *
+    * @param page - page of entries listed on the index page
+    * @return String - ids of the first and the last entry on the page, number
+    *                  of entries and if there is following page
+    */
+   protected static String describeListed(
+      EntryPage page
+   )
+   {
+      List<Entry> lstEntries = page.getEntries();
+
+      if (lstEntries.isEmpty())
+      {
+         return "0," + page.hasNext();
+      }
+
+      return lstEntries.get(0).getId() + "-" 
+             + lstEntries.get(lstEntries.size() - 1).getId() + "," 
+             + lstEntries.size() + "," + page.hasNext();
+   }
+
+   /**
+    * Check if the entry was modified at the most recent modification time of 
+    * the entries of the blog.
+    *
+    * @param entry - entry to check
+    * @param lastModified - the most recent modification time of the entries,
+    *                       can be null
+    * @return boolean - true if the entry was modified at that time
+    */
+   protected static boolean isBoundary(
+      Entry     entry,
+      Timestamp lastModified
+   )
+   {
+      return (lastModified != null) 
+             && (entry.getModificationTimestamp().getTime() 
+                 == lastModified.getTime());
+   }
+
+   /**
+    * Check if the state of the export describes the same content of the blog
+    * as the state of the last export.
+    *
+    * @param current - state of the current export
+    * @param previous - state of the last export, can be null
+    * @return boolean - true if the blog hasn't changed since the last export
+    */
+   protected static boolean isSameState(
+      Properties current,
+      Properties previous
+   )
+   {
+      return (previous != null)
+             && (Objects.equals(current.getProperty(STATE_BLOG_MODIFIED), 
+                                previous.getProperty(STATE_BLOG_MODIFIED)))
+             && (Objects.equals(current.getProperty(STATE_ENTRIES_MODIFIED), 
+                                previous.getProperty(STATE_ENTRIES_MODIFIED)))
+             && (Objects.equals(current.getProperty(STATE_ENTRIES_COUNT), 
+                                previous.getProperty(STATE_ENTRIES_COUNT)));
+   }
+
+   /**
+    * Parse ids of entries stored in the state.
+    *
+    * @param strIds - comma separated ids, can be null
+    * @return Set - parsed ids, never null
+    */
+   protected static Set<Long> parseIds(
+      String strIds
+   )
+   {
+      Set<Long> setIds = new HashSet<>();
+
+      if ((strIds != null) && (strIds.length() > 0))
+      {
+         for (String strId : strIds.split(","))
+         {
+            setIds.add(Long.valueOf(strId));
+         }
+      }
+
+      return setIds;
+   }
+
+   /**
+    * Format ids of entries to store them in the state.
+    *
+    * @param setIds - ids to format
+    * @return String - comma separated ids
+    */
+   protected static String formatIds(
+      Set<Long> setIds
+   )
+   {
+      StringBuilder sbIds = new StringBuilder();
+
+      for (Long lId : setIds)
+      {
+         if (sbIds.length() > 0)
+         {
+            sbIds.append(',');
+         }
+         sbIds.append(lId);
+      }
+
+      return sbIds.toString();
+   }
+
+   /**
+    * Create state of the export of the blog.
+    *
+    * @param blog - exported blog
+    * @param lastModified - the most recent modification time of the entries
+    *                       of the blog, null if it doesn't have any
+    * @param iCount - number of entries of the blog
+    * @return Properties - state of the export
+    */
+   protected static Properties createState(
+      Blog      blog,
+      Timestamp lastModified,
+      int       iCount
+   )
+   {
+      Properties state = new Properties();
+
+      state.setProperty(STATE_BLOG_MODIFIED, 
+                        String.valueOf(blog.getModificationTimestamp() == null 
+                           ? 0 : blog.getModificationTimestamp().getTime()));
+      if (lastModified != null)
+      {
+         state.setProperty(STATE_ENTRIES_MODIFIED, 
+                           String.valueOf(lastModified.getTime()));
+      }
+      state.setProperty(STATE_ENTRIES_COUNT, String.valueOf(iCount));
+
+      return state;
+   }
+
+   /**
+    * Read state of the last export of the blog.
+    *
+    * @param directory - directory of the blog
+    * @return Properties - state of the last export or null if the blog was 
+    *                      not exported yet
+    * @throws IOException - an error has occurred
+    */
+   protected static Properties readState(
+      File directory
+   ) throws IOException
+   {
+      File       file = new File(directory, STATE_FILE_NAME);
+      Properties state = null;
+
+      if (file.isFile())
+      {
+         state = new Properties();
+         try (InputStream input = new FileInputStream(file))
+         {
+            state.load(input);
+         }
+      }
+
+      return state;
+   }
+
+   /**
+    * Write state of the export of the blog.
+    *
+    * @param directory - directory of the blog
+    * @param state - state to write
+    * @throws IOException - an error has occurred
+    */
+   protected static void writeState(
+      File       directory,
+      Properties state
+   ) throws IOException
+   {
+      StringWriter writer = new StringWriter();
+
+      state.store(writer, null);
+      write(new File(directory, STATE_FILE_NAME), writer.toString());
+   }
+
+   /**
+    * Write file encoded using UTF-8. The content is written to temporary file
+    * first, which then replaces the file atomically if the file system 
+    * supports it.
+    *
+    * @param file - file to write
+    * @param strContent - content of the file
+    * @throws IOException - an error has occurred
+    */
+   protected static void write(
+      File   file,
+      String strContent
+   ) throws IOException
+   {
+      File temporary;
+
+      // The temporary file has to be in the same directory so it can be
+      // renamed to the target file
+      temporary = File.createTempFile(file.getName(), ".tmp", 
+                                      file.getParentFile());
+      try
+      {
+         try (Writer writer = new OutputStreamWriter(
+                                 new FileOutputStream(temporary), 
+                                 StandardCharsets.UTF_8))
+         {
+            writer.write(strContent);
+         }
+         try
+         {
+            Files.move(temporary.toPath(), file.toPath(), 
+                       StandardCopyOption.ATOMIC_MOVE);
+         }
+         catch (AtomicMoveNotSupportedException amnsExc)
+         {
+            Files.move(temporary.toPath(), file.toPath(), 
+                       StandardCopyOption.REPLACE_EXISTING);
+         }
+      }
+      finally
+      {
+         Files.deleteIfExists(temporary.toPath());
+      }
+   }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.feed;
+
+/**
+ * Formats of the feeds of blog entries.
+ *
+ * @author bastafidli
+ */
+public enum FeedFormat
+{
+   /**
+    * RSS 2.0 feed.
+    */
+   RSS("application/rss+xml"),
+
+   /**
+    * Atom 1.0 feed.
+    */
+   ATOM("application/atom+xml");
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Content type of the feed.
+    */
+   private final String m_strContentType;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new format.
+    *
+    * @param strContentType - content type of the feed
+    */
+   FeedFormat(
+      String strContentType
+   )
+   {
+      m_strContentType = strContentType;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Content type of the feed to send to the clients.
+    *
+    * @return String
+    */
+   public String getContentType(
+   )
+   {
+      return m_strContentType;
+   }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.feed;
+
+/**
+ * Version of a feed used to answer conditional requests. The version changes
+ * whenever the blog or any of its entries is created, modified or deleted so 
+ * the clients, which already have the current version of the feed, can be 
+ * told so without generating the feed again.
+ *
+ * @author bastafidli
+ */
+public final class FeedVersion
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Value of the If-None-Match header matching any version.
+    */
+   public static final String ANY_ETAG = "*";
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Entity tag of the feed including the quotes.
+    */
+   private final String m_strETag;
+
+   /**
+    * Time of the last modification of the feed in milliseconds truncated to
+    * seconds since HTTP dates do not have better precision.
+    */
+   private final long m_lLastModified;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new version of the feed.
+    *
+    * @param strETag - entity tag of the feed including the quotes
+    * @param lLastModified - time of the last modification of the feed in 
+    *                        milliseconds
+    */
+   public FeedVersion(
+      String strETag,
+      long   lLastModified
+   )
+   {
+      m_strETag = strETag;
+      m_lLastModified = lLastModified - (lLastModified % 1000);
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Entity tag of the feed including the quotes to send in the ETag header.
+    *
+    * @return String
+    */
+   public String getETag(
+   )
+   {
+      return m_strETag;
+   }
+
+   /**
+    * Time of the last modification of the feed in milliseconds to send in the
+    * Last-Modified header.
+    *
+    * @return long
+    */
+   public long getLastModified(
+   )
+   {
+      return m_lLastModified;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Check if the client already has this version of the feed. The entity 
+    * tags take precedence over the modification date if the client sent both.
+    *
+    * @param strIfNoneMatch - value of the If-None-Match header or null if it 
+    *                         was not sent
+    * @param lIfModifiedSince - value of the If-Modified-Since header in 
+    *                           milliseconds or -1 if it was not sent
+    * @return boolean - true if the client has this version and the feed 
+    *                   doesn't have to be sent
+    */
+   public boolean isNotModified(
+      String strIfNoneMatch,
+      long   lIfModifiedSince
+   )
+   {
+      boolean bNotModified = false;
+
+      if (strIfNoneMatch != null)
+      {
+         for (String strETag : strIfNoneMatch.split(","))
+         {
+            strETag = strETag.trim();
+            // Weak comparison is used so the weak indicator is ignored
+            if (strETag.startsWith("W/"))
+            {
+               strETag = strETag.substring(2);
+            }
+            if (ANY_ETAG.equals(strETag) || m_strETag.equals(strETag))
+            {
+               bNotModified = true;
+               break;
+            }
+         }
+      }
+      else if (lIfModifiedSince >= 0)
+      {
+         bNotModified = (m_lLastModified <= lIfModifiedSince);
+      }
+
+      return bNotModified;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString(
+   )
+   {
+      return m_strETag;
+   }
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.feed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Writer of RSS and Atom feeds of blog entries. The feed is written element by
+ * element while the entries are traversed without building the whole document
+ * in memory. Only the most recent entries, up to the configured number, are 
+ * included in the feed and they are retrieved using a single page query.
+ * 
+ * The version of the feed can be determined without retrieving the entries 
+ * so that requests of clients, which already have the current feed, can be 
+ * answered without generating it.
+ *
+ * @author bastafidli
+ */
+public class FeedWriter
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Default number of the most recent entries included in the feed.
+    */
+   public static final int DEFAULT_MAX_ENTRIES = 20;
+
+   /**
+    * Namespace of the Atom elements.
+    */
+   public static final String ATOM_NAMESPACE = "http://www.w3.org/2005/Atom";
+
+   /**
+    * Format of dates in RSS feeds as defined by RFC 822.
+    */
+   protected static final String RSS_DATE_FORMAT 
+      = "EEE, dd MMM yyyy HH:mm:ss 'GMT'";
+
+   /**
+    * Format of dates in Atom feeds as defined by RFC 3339.
+    */
+   protected static final String ATOM_DATE_FORMAT 
+      = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory used to retrieve entries.
+    */
+   protected final EntryFactory m_entryFactory;
+
+   /**
+    * URL of the application under which the blogs are accessible.
+    */
+   protected final String m_strBaseURL;
+
+   /**
+    * Maximal number of entries included in the feed.
+    */
+   protected final int m_iMaxEntries;
+
+   // Cached values ////////////////////////////////////////////////////////////
+
+   /**
+    * Factory creating the XML writers. It is safe to use it from multiple 
+    * threads once it is configured.
+    */
+   private static final XMLOutputFactory s_outputFactory 
+                                            = XMLOutputFactory.newInstance();
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new feed writer including the default number of entries.
+    *
+    * @param entryFactory - factory used to retrieve entries
+    * @param strBaseURL - URL of the application under which the blogs are 
+    *                     accessible
+    */
+   public FeedWriter(
+      EntryFactory entryFactory,
+      String       strBaseURL
+   )
+   {
+      this(entryFactory, strBaseURL, DEFAULT_MAX_ENTRIES);
+   }
+
+   /**
+    * Create new feed writer.
+    *
+    * @param entryFactory - factory used to retrieve entries
+    * @param strBaseURL - URL of the application under which the blogs are 
+    *                     accessible
+    * @param iMaxEntries - maximal number of the most recent entries included
+    *                      in the feed
+    */
+   public FeedWriter(
+      EntryFactory entryFactory,
+      String       strBaseURL,
+      int          iMaxEntries
+   )
+   {
+      if (entryFactory == null)
+      {
+         throw new IllegalArgumentException("Entry factory cannot be null");
+      }
+      if (iMaxEntries <= 0)
+      {
+         throw new IllegalArgumentException(
+                      "Maximal number of entries has to be positive");
+      }
+      m_entryFactory = entryFactory;
+      m_strBaseURL = strBaseURL.endsWith("/") ? strBaseURL : strBaseURL + "/";
+      m_iMaxEntries = iMaxEntries;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Get version of the feed of the specified blog. Neither the entries nor 
+    * their text are retrieved so this is much cheaper than writing the feed.
+    * The version includes the number of entries since deleting an entry 
+    * doesn't have to change the most recent modification timestamp.
+    *
+    * @param blog - blog to get version of the feed for
+    * @param format - format of the feed
+    * @return FeedVersion - version of the feed
+    * @throws OSSException - an error has occurred
+    */
+   public FeedVersion getVersion(
+      Blog       blog,
+      FeedFormat format
+   ) throws OSSException
+   {
+      Timestamp lastModified;
+      long      lLastModified = 0;
+      int       iCount;
+
+      lastModified = m_entryFactory.getLastModified(blog.getId());
+      if (lastModified != null)
+      {
+         lLastModified = lastModified.getTime();
+      }
+      if ((blog.getModificationTimestamp() != null)
+         && (blog.getModificationTimestamp().getTime() > lLastModified))
+      {
+         lLastModified = blog.getModificationTimestamp().getTime();
+      }
+      iCount = m_entryFactory.getCount(blog.getId());
+
+      return new FeedVersion("\"" + format.ordinal() 
+                             + "-" + Long.toString(blog.getId(), 36) 
+                             + "-" + Long.toString(lLastModified, 36) 
+                             + "-" + Integer.toString(iCount, 36) + "\"", 
+                             lLastModified);
+   }
+
+   /**
+    * Write feed of the specified blog encoded using UTF-8.
+    *
+    * @param blog - blog to write feed for
+    * @param format - format of the feed
+    * @param out - stream to write the feed to, it is not closed
+    * @return int - number of entries written
+    * @throws OSSException - an error has occurred retrieving entries
+    * @throws IOException - an error has occurred writing the feed
+    */
+   public int write(
+      Blog         blog,
+      FeedFormat   format,
+      OutputStream out
+   ) throws OSSException, 
+            IOException
+   {
+      Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+      int    iCount;
+
+      iCount = write(blog, format, writer);
+      writer.flush();
+
+      return iCount;
+   }
+
+   /**
+    * Write feed of the specified blog.
+    *
+    * @param blog - blog to write feed for
+    * @param format - format of the feed
+    * @param out - writer to write the feed to encoding the characters using 
+    *              UTF-8, it is not closed
+    * @return int - number of entries written
+    * @throws OSSException - an error has occurred retrieving entries
+    * @throws IOException - an error has occurred writing the feed
+    */
+   public int write(
+      Blog       blog,
+      FeedFormat format,
+      Writer     out
+   ) throws OSSException, 
+            IOException
+   {
+      EntryPage       page;
+      XMLStreamWriter writer;
+
+      page = m_entryFactory.getPage(blog.getId(), null, m_iMaxEntries);
+      try
+      {
+         writer = s_outputFactory.createXMLStreamWriter(out);
+         try
+         {
+            writer.writeStartDocument("UTF-8", "1.0");
+            if (format == FeedFormat.ATOM)
+            {
+               writeAtom(writer, blog, page);
+            }
+            else
+            {
+               writeRss(writer, blog, page);
+            }
+            writer.writeEndDocument();
+            writer.flush();
+         }
+         finally
+         {
+            // This doesn't close the underlying writer
+            writer.close();
+         }
+      }
+      catch (XMLStreamException xmlseExc)
+      {
+         throw new IOException("Cannot write feed of blog " + blog.getFolder(), 
+                               xmlseExc);
+      }
+
+      return page.getEntries().size();
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Write RSS 2.0 feed.
+    *
+    * @param writer - writer to write the feed to
+    * @param blog - blog to write feed for
+    * @param page - the most recent entries of the blog
+    * @throws XMLStreamException - an error has occurred
+    */
+   protected void writeRss(
+      XMLStreamWriter writer,
+      Blog            blog,
+      EntryPage       page
+   ) throws XMLStreamException
+   {
+      DateFormat dateFormat = createDateFormat(RSS_DATE_FORMAT);
+      Timestamp  updated = getUpdated(blog, page);
+
+      writer.writeStartElement("rss");
+      writer.writeAttribute("version", "2.0");
+      writer.writeStartElement("channel");
+      writeElement(writer, null, "title", blog.getCaption());
+      writeElement(writer, null, "link", getBlogURL(blog));
+      writeElement(writer, null, "description", blog.getComments());
+      if (updated != null)
+      {
+         writeElement(writer, null, "lastBuildDate", 
+                      dateFormat.format(updated));
+      }
+      for (Entry entry : page.getEntries())
+      {
+         writer.writeStartElement("item");
+         writeElement(writer, null, "title", entry.getCaption());
+         writeElement(writer, null, "link", getEntryURL(blog, entry));
+         writer.writeStartElement("guid");
+         writer.writeAttribute("isPermaLink", "true");
+         writer.writeCharacters(getEntryURL(blog, entry));
+         writer.writeEndElement();
+         if (entry.getCreationTimestamp() != null)
+         {
+            writeElement(writer, null, "pubDate", 
+                         dateFormat.format(entry.getCreationTimestamp()));
+         }
+         writeElement(writer, null, "description", entry.getComments());
+         writer.writeEndElement();
+      }
+      writer.writeEndElement();
+      writer.writeEndElement();
+   }
+
+   /**
+    * Write Atom 1.0 feed.
+    *
+    * @param writer - writer to write the feed to
+    * @param blog - blog to write feed for
+    * @param page - the most recent entries of the blog
+    * @throws XMLStreamException - an error has occurred
+    */
+   protected void writeAtom(
+      XMLStreamWriter writer,
+      Blog            blog,
+      EntryPage       page
+   ) throws XMLStreamException
+   {
+      DateFormat dateFormat = createDateFormat(ATOM_DATE_FORMAT);
+      Timestamp  updated = getUpdated(blog, page);
+
+      writer.setDefaultNamespace(ATOM_NAMESPACE);
+      writer.writeStartElement(ATOM_NAMESPACE, "feed");
+      writer.writeDefaultNamespace(ATOM_NAMESPACE);
+      writeElement(writer, ATOM_NAMESPACE, "id", getBlogURL(blog));
+      writeElement(writer, ATOM_NAMESPACE, "title", blog.getCaption());
+      writeElement(writer, ATOM_NAMESPACE, "subtitle", blog.getComments());
+      writeLink(writer, getBlogURL(blog));
+      if (updated != null)
+      {
+         writeElement(writer, ATOM_NAMESPACE, "updated", 
+                      dateFormat.format(updated));
+      }
+      for (Entry entry : page.getEntries())
+      {
+         writer.writeStartElement(ATOM_NAMESPACE, "entry");
+         writeElement(writer, ATOM_NAMESPACE, "id", 
+                      getEntryURL(blog, entry));
+         writeElement(writer, ATOM_NAMESPACE, "title", entry.getCaption());
+         writeLink(writer, getEntryURL(blog, entry));
+         if (entry.getCreationTimestamp() != null)
+         {
+            writeElement(writer, ATOM_NAMESPACE, "published", 
+                         dateFormat.format(entry.getCreationTimestamp()));
+         }
+         if (entry.getModificationTimestamp() != null)
+         {
+            writeElement(writer, ATOM_NAMESPACE, "updated", 
+                         dateFormat.format(entry.getModificationTimestamp()));
+         }
+         writer.writeStartElement(ATOM_NAMESPACE, "content");
+         writer.writeAttribute("type", "text");
+         writer.writeCharacters(entry.getComments() == null 
+                                ? "" : entry.getComments());
+         writer.writeEndElement();
+         writer.writeEndElement();
+      }
+      writer.writeEndElement();
+   }
+
+   /**
+    * Write element with text content. Elements with null text are not 
+    * written.
+    *
+    * @param writer - writer to write the element to
+    * @param strNamespace - namespace of the element or null if it doesn't 
+    *                       have any
+    * @param strName - name of the element
+    * @param strText - text of the element, can be null
+    * @throws XMLStreamException - an error has occurred
+    */
+   protected static void writeElement(
+      XMLStreamWriter writer,
+      String          strNamespace,
+      String          strName,
+      String          strText
+   ) throws XMLStreamException
+   {
+      if (strText != null)
+      {
+         if (strNamespace == null)
+         {
+            writer.writeStartElement(strName);
+         }
+         else
+         {
+            writer.writeStartElement(strNamespace, strName);
+         }
+         writer.writeCharacters(strText);
+         writer.writeEndElement();
+      }
+   }
+
+   /**
+    * Write Atom link to the alternate representation of the feed or entry.
+    *
+    * @param writer - writer to write the link to
+    * @param strURL - URL of the alternate representation
+    * @throws XMLStreamException - an error has occurred
+    */
+   protected static void writeLink(
+      XMLStreamWriter writer,
+      String          strURL
+   ) throws XMLStreamException
+   {
+      writer.writeEmptyElement(ATOM_NAMESPACE, "link");
+      writer.writeAttribute("rel", "alternate");
+      writer.writeAttribute("href", strURL);
+   }
+
+   /**
+    * Get URL of the blog. 
+    *
+    * @param blog - blog to get URL of
+    * @return String - URL of the blog
+    */
+   protected String getBlogURL(
+      Blog blog
+   )
+   {
+      return m_strBaseURL + blog.getFolder() + "/";
+   }
+
+   /**
+    * Get URL of the entry. 
+    *
+    * @param blog - blog the entry belongs to
+    * @param entry - entry to get URL of
+    * @return String - URL of the entry
+    */
+   protected String getEntryURL(
+      Blog  blog,
+      Entry entry
+   )
+   {
+      return getBlogURL(blog) + entry.getId();
+   }
+
+   /**
+    * Get the time when the content of the feed was last changed.
+    *
+    * @param blog - blog to write feed for
+    * @param page - the most recent entries of the blog
+    * @return Timestamp - the most recent modification timestamp or null if 
+    *                     it is not known
+    */
+   protected static Timestamp getUpdated(
+      Blog      blog,
+      EntryPage page
+   )
+   {
+      Timestamp updated = blog.getModificationTimestamp();
+
+      for (Entry entry : page.getEntries())
+      {
+         if ((entry.getModificationTimestamp() != null)
+            && ((updated == null) 
+               || (entry.getModificationTimestamp().after(updated))))
+         {
+            updated = entry.getModificationTimestamp();
+         }
+      }
+
+      return updated;
+   }
+
+   /**
+    * Create format of dates in GMT. The format is not thread safe so a new 
+    * one is created for each feed.
+    *
+    * @param strPattern - pattern of the format
+    * @return DateFormat - format of dates
+    */
+   protected static DateFormat createDateFormat(
+      String strPattern
+   )
+   {
+      DateFormat dateFormat = new SimpleDateFormat(strPattern, Locale.US);
+
+      dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+      return dateFormat;
+   }
+}
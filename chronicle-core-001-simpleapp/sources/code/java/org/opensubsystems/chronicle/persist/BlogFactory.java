@@ -19,9 +19,13 @@
  
 package org.opensubsystems.chronicle.persist;
 
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 
 import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Blog.BlogDataDescriptor.BlogFields;
 import org.opensubsystems.core.error.OSSException;
 import org.opensubsystems.core.persist.ModifiableDataFactory;
 
@@ -52,4 +56,66 @@ public interface BlogFactory extends ModifiableDataFactory
     */
    List getAll(
    ) throws OSSException;
+
+   /**
+    * Return collection of all blogs in the persistence store with only the 
+    * specified fields retrieved. Fields which were not retrieved keep their 
+    * default values, e.g. null or DataObject.NEW_ID.
+    *
+    * @param fields - fields to retrieve, e.g. BLOG_ID, BLOG_FOLDER and 
+    *                 BLOG_CAPTION to display list of blogs
+    * @return List  - list of Blogs objects sorted alphabetically, never null
+    * @throws OSSException - an error has occurred
+    */
+   List<Blog> getAll(
+      EnumSet<BlogFields> fields
+   ) throws OSSException;
+
+   /**
+    * Get blogs modified after the specified time, e.g. to synchronize copies
+    * of blogs without retrieving all of them. Blogs modified at the same time
+    * are returned in the order of their ids so the modification timestamp of 
+    * the last returned blog can be used to ask for the following changes.
+    * Deleted blogs are not returned.
+    *
+    * @param  modifiedSince - only blogs modified after this time are returned
+    * @return List - list of blogs sorted from the least recently modified one,
+    *                never null
+    * @throws OSSException - an error has occurred
+    */
+   List<Blog> getModifiedSince(
+      Timestamp modifiedSince
+   ) throws OSSException;
+
+   /**
+    * Create all blogs in a single transaction. The blogs are sent to the 
+    * persistence store in batches of the specified size to minimize number of
+    * round trips, e.g. when migrating blogs from other system.
+    *
+    * @param colBlogs - blogs to create
+    * @param iBatchSize - number of blogs sent to the persistence store at once
+    * @return List - created blogs with generated ids and timestamps in the same
+    *                order as they were specified
+    * @throws OSSException - an error has occurred, no blog was created
+    */
+   List<Blog> createAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException;
+
+   /**
+    * Save all blogs in a single transaction. The blogs are sent to the 
+    * persistence store in batches of the specified size to minimize number of
+    * round trips.
+    *
+    * @param colBlogs - blogs to save
+    * @param iBatchSize - number of blogs sent to the persistence store at once
+    * @return List - saved blogs with updated modification timestamps in the 
+    *                same order as they were specified
+    * @throws OSSException - an error has occurred, no blog was saved
+    */
+   List<Blog> saveAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException;
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Blog.BlogDataDescriptor.BlogFields;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Blog factory passing all calls to another blog factory. It is the base for
+ * factories which add functionality such as caching or monitoring to any 
+ * other implementation and need to override only the methods they care about.
+ *
+ * @author bastafidli
+ */
+public abstract class DelegatingBlogFactory implements BlogFactory
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory all calls are passed to.
+    */
+   protected final BlogFactory m_delegate;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create factory passing all calls to the specified factory.
+    *
+    * @param delegate - factory all calls are passed to
+    */
+   protected DelegatingBlogFactory(
+      BlogFactory delegate
+   )
+   {
+      if (delegate == null)
+      {
+         throw new IllegalArgumentException("Delegate factory cannot be null");
+      }
+      m_delegate = delegate;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Factory all calls are passed to.
+    *
+    * @return BlogFactory
+    */
+   public BlogFactory getDelegate(
+   )
+   {
+      return m_delegate;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      return m_delegate.get(lId, lDomainId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Blog get(
+      String strFolder
+   ) throws OSSException
+   {
+      return m_delegate.get(strFolder);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+   ) throws OSSException
+   {
+      return m_delegate.getAll();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> getAll(
+      EnumSet<BlogFields> fields
+   ) throws OSSException
+   {
+      return m_delegate.getAll(fields);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> getModifiedSince(
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      return m_delegate.getModifiedSince(modifiedSince);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      return m_delegate.create(data);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      return m_delegate.create(colDataObject);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> createAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      return m_delegate.createAll(colBlogs, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> saveAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      return m_delegate.saveAll(colBlogs, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      return m_delegate.save(data);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      m_delegate.delete(lId, lDomainId);
+   }
+}
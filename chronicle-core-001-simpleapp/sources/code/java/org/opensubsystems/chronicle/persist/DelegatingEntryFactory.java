@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Entry factory passing all calls to another entry factory. It is the base for
+ * factories which add functionality such as caching or monitoring to any 
+ * other implementation and need to override only the methods they care about.
+ *
+ * @author bastafidli
+ */
+public abstract class DelegatingEntryFactory implements EntryFactory
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory all calls are passed to.
+    */
+   protected final EntryFactory m_delegate;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create factory passing all calls to the specified factory.
+    *
+    * @param delegate - factory all calls are passed to
+    */
+   protected DelegatingEntryFactory(
+      EntryFactory delegate
+   )
+   {
+      if (delegate == null)
+      {
+         throw new IllegalArgumentException("Delegate factory cannot be null");
+      }
+      m_delegate = delegate;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Factory all calls are passed to.
+    *
+    * @return EntryFactory
+    */
+   public EntryFactory getDelegate(
+   )
+   {
+      return m_delegate;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      return m_delegate.get(lId, lDomainId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+      long lBlogId
+   ) throws OSSException
+   {
+      return m_delegate.getAll(lBlogId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Entry getLast(
+      long lBlogId
+   ) throws OSSException
+   {
+      return m_delegate.getLast(lBlogId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<Long, Entry> getLast(
+      Collection<Long> colBlogIds
+   ) throws OSSException
+   {
+      return m_delegate.getLast(colBlogIds);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getCount(
+      long lBlogId
+   ) throws OSSException
+   {
+      return m_delegate.getCount(lBlogId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getByMonth(
+      long lBlogId,
+      int  iYear,
+      int  iMonth
+   ) throws OSSException
+   {
+      return m_delegate.getByMonth(lBlogId, iYear, iMonth);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<EntryMonth> getMonthCounts(
+      long lBlogId
+   ) throws OSSException
+   {
+      return m_delegate.getMonthCounts(lBlogId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Timestamp getLastModified(
+      long lBlogId
+   ) throws OSSException
+   {
+      return m_delegate.getLastModified(lBlogId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getModifiedSince(
+      long      lBlogId,
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      return m_delegate.getModifiedSince(lBlogId, modifiedSince);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      return m_delegate.getPage(lBlogId, cursor, iLimit);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getAll(
+      long                 lBlogId,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      return m_delegate.getAll(lBlogId, fields);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long                 lBlogId,
+      EntryPageCursor      cursor,
+      int                  iLimit,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      return m_delegate.getPage(lBlogId, cursor, iLimit, fields);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getSummaries(
+      long lBlogId
+   ) throws OSSException
+   {
+      return m_delegate.getSummaries(lBlogId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getSummaryPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      return m_delegate.getSummaryPage(lBlogId, cursor, iLimit);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String getComments(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      return m_delegate.getComments(lId, lDomainId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int forEach(
+      long         lBlogId,
+      EntryHandler handler
+   ) throws OSSException
+   {
+      return m_delegate.forEach(lBlogId, handler);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      return m_delegate.create(data);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      return m_delegate.create(colDataObject);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> createAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      return m_delegate.createAll(colEntries, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> saveAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      return m_delegate.saveAll(colEntries, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int deleteAll(
+      Collection<Long> colIds,
+      long             lDomainId,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      return m_delegate.deleteAll(colIds, lDomainId, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      return m_delegate.save(data);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      m_delegate.delete(lId, lDomainId);
+   }
+}
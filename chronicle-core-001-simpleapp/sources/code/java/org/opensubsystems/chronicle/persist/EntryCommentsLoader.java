@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Loader of comments of entries retrieved without them using an entry factory.
+ *
+ * @author bastafidli
+ */
+public class EntryCommentsLoader implements Entry.CommentsLoader
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory used to load the comments.
+    */
+   protected final EntryFactory m_factory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new loader of comments.
+    *
+    * @param factory - factory used to load the comments
+    */
+   public EntryCommentsLoader(
+      EntryFactory factory
+   )
+   {
+      m_factory = factory;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String loadComments(
+      Entry entry
+   ) throws OSSException
+   {
+      return m_factory.getComments(entry.getId(), entry.getDomainId());
+   }
+}
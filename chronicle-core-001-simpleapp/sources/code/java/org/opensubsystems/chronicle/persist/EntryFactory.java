@@ -19,9 +19,14 @@
 
 package org.opensubsystems.chronicle.persist;
 
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
 import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
 import org.opensubsystems.core.error.OSSException;
 import org.opensubsystems.core.persist.ModifiableDataFactory;
 
@@ -55,4 +60,266 @@ public interface EntryFactory extends ModifiableDataFactory
    Entry getLast(
       long lBlogId
    ) throws OSSException;
+
+   /**
+    * Get last added entry of each of the specified blogs at once, e.g. to 
+    * display list of all blogs, instead of retrieving them one by one.
+    *
+    * @param  colBlogIds - ids of the blogs to get entries from
+    * @return Map - last added entries by ids of their blogs, blogs without 
+    *               entries are not included, never null
+    * @throws OSSException - an error has occurred
+    */
+   Map<Long, Entry> getLast(
+      Collection<Long> colBlogIds
+   ) throws OSSException;
+
+   /**
+    * Get number of entries in the specified blog without retrieving them.
+    *
+    * @param  lBlogId - id of the blog to count entries of
+    * @return int - number of entries in the blog, 0 if the blog doesn't exist
+    * @throws OSSException - an error has occurred
+    */
+   int getCount(
+      long lBlogId
+   ) throws OSSException;
+
+   /**
+    * Get entries of blog created in the specified month, e.g. to display
+    * archive of the blog.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @param  iYear - year of the month
+    * @param  iMonth - month within the year, 1 for January
+    * @return List - list of entries sorted from the most recent to the oldest
+    *                one, never null
+    * @throws OSSException - an error has occurred
+    */
+   List<Entry> getByMonth(
+      long lBlogId,
+      int  iYear,
+      int  iMonth
+   ) throws OSSException;
+
+   /**
+    * Get number of entries of blog created in every month without retrieving
+    * them, e.g. to display list of months in archive of the blog.
+    *
+    * @param  lBlogId - id of the blog to count entries of
+    * @return List - list of months sorted from the most recent one, months
+    *                without any entries are not included, never null
+    * @throws OSSException - an error has occurred
+    */
+   List<EntryMonth> getMonthCounts(
+      long lBlogId
+   ) throws OSSException;
+
+   /**
+    * Get the most recent modification timestamp of entries in the specified 
+    * blog without retrieving them, e.g. to find out if the blog has changed.
+    *
+    * @param  lBlogId - id of the blog to check entries of
+    * @return Timestamp - the most recent modification timestamp or null if 
+    *                     the blog has no entries
+    * @throws OSSException - an error has occurred
+    */
+   Timestamp getLastModified(
+      long lBlogId
+   ) throws OSSException;
+
+   /**
+    * Get entries of blog modified after the specified time, e.g. to update 
+    * index or copy of the blog without retrieving all its entries. Entries 
+    * modified at the same time are returned in the order of their ids so the 
+    * modification timestamp of the last returned entry can be used to ask for
+    * the following changes. Deleted entries are not returned.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @param  modifiedSince - only entries modified after this time are 
+    *                         returned
+    * @return List - list of entries sorted from the least recently modified
+    *                one, never null
+    * @throws OSSException - an error has occurred
+    * @see #getLastModified
+    */
+   List<Entry> getModifiedSince(
+      long      lBlogId,
+      Timestamp modifiedSince
+   ) throws OSSException;
+
+   /**
+    * Get single page of entries from blog. The page is located using the 
+    * position of the last entry returned on the previous page so retrieving 
+    * any page costs the same as retrieving the first one.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @param  cursor - cursor returned with the previous page or null to get 
+    *                  the first page
+    * @param  iLimit - maximal number of entries on the page
+    * @return EntryPage - page of entries sorted from the most recent to the 
+    *                     oldest one, never null
+    * @throws OSSException - an error has occurred
+    */
+   EntryPage getPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException;
+
+   /**
+    * Get all entries from blog with only the specified fields retrieved. 
+    * Fields which were not retrieved keep their default values, e.g. null or 
+    * DataObject.NEW_ID.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @param  fields - fields to retrieve, e.g. ENTRY_ID, ENTRY_CREATION_DATE 
+    *                  and ENTRY_CAPTION to display archive of the blog
+    * @return List - list of entries sorted from the most recent to the oldest 
+    *                one, never null but empty if none exists
+    * @throws OSSException - an error has occurred
+    */
+   List<Entry> getAll(
+      long                 lBlogId,
+      EnumSet<EntryFields> fields
+   ) throws OSSException;
+
+   /**
+    * Get single page of entries from blog with only the specified fields 
+    * retrieved. ENTRY_ID and ENTRY_CREATION_DATE are always retrieved since 
+    * they are needed to locate the next page.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @param  cursor - cursor returned with the previous page or null to get 
+    *                  the first page
+    * @param  iLimit - maximal number of entries on the page
+    * @param  fields - fields to retrieve
+    * @return EntryPage - page of entries sorted from the most recent to the 
+    *                     oldest one, never null
+    * @throws OSSException - an error has occurred
+    * @see #getPage
+    * @see #getAll(long, EnumSet)
+    */
+   EntryPage getPage(
+      long                 lBlogId,
+      EntryPageCursor      cursor,
+      int                  iLimit,
+      EnumSet<EntryFields> fields
+   ) throws OSSException;
+
+   /**
+    * Get all entries from blog without their comments. Comments contain the 
+    * whole text of the entry and they are not needed e.g. to display archive 
+    * or list of entries in a feed. Comments are loaded when they are requested
+    * from the entry for the first time.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @return List - list of entries sorted from the most recent to the oldest 
+    *                one, never null
+    * @throws OSSException - an error has occurred
+    */
+   List<Entry> getSummaries(
+      long lBlogId
+   ) throws OSSException;
+
+   /**
+    * Get single page of entries from blog without their comments. Comments 
+    * are loaded when they are requested from the entry for the first time.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @param  cursor - cursor returned with the previous page or null to get 
+    *                  the first page
+    * @param  iLimit - maximal number of entries on the page
+    * @return EntryPage - page of entries sorted from the most recent to the 
+    *                     oldest one, never null
+    * @throws OSSException - an error has occurred
+    * @see #getPage
+    */
+   EntryPage getSummaryPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException;
+
+   /**
+    * Get comments of entry retrieved without them.
+    *
+    * @param  lId - id of the entry
+    * @param  lDomainId - id of the domain the entry belongs to
+    * @return String - comments of the entry or null if the entry doesn't exist
+    * @throws OSSException - an error has occurred
+    */
+   String getComments(
+      long lId,
+      long lDomainId
+   ) throws OSSException;
+
+   /**
+    * Pass all entries from blog one by one to the specified handler while they
+    * are being read from the persistence store. Only the entry being processed
+    * is kept in memory.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @param  handler - handler to process entries sorted from the most recent 
+    *                   to the oldest one
+    * @return int - number of entries passed to the handler
+    * @throws OSSException - an error has occurred
+    */
+   int forEach(
+      long         lBlogId,
+      EntryHandler handler
+   ) throws OSSException;
+
+   /**
+    * Create all entries in a single transaction. The entries are sent to the 
+    * persistence store in batches of the specified size to minimize number of
+    * round trips, e.g. when importing a blog.
+    *
+    * @param colEntries - entries to create
+    * @param iBatchSize - number of entries sent to the persistence store at 
+    *                     once
+    * @return List - created entries with generated ids and timestamps in the 
+    *                same order as they were specified
+    * @throws OSSException - an error has occurred, no entry was created
+    */
+   List<Entry> createAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException;
+
+   /**
+    * Save all entries in a single transaction. The entries are sent to the 
+    * persistence store in batches of the specified size to minimize number of
+    * round trips.
+    *
+    * @param colEntries - entries to save
+    * @param iBatchSize - number of entries sent to the persistence store at 
+    *                     once
+    * @return List - saved entries with updated modification timestamps in the 
+    *                same order as they were specified
+    * @throws OSSException - an error has occurred, no entry was saved
+    */
+   List<Entry> saveAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException;
+
+   /**
+    * Delete all entries in a single transaction. The entries are sent to the 
+    * persistence store in batches of the specified size to minimize number of
+    * round trips, e.g. when the entries are moved to archive. Entries which 
+    * don't exist are skipped.
+    *
+    * @param colIds - ids of the entries to delete
+    * @param lDomainId - id of the domain the entries belong to
+    * @param iBatchSize - number of entries sent to the persistence store at 
+    *                     once
+    * @return int - number of deleted entries
+    * @throws OSSException - an error has occurred, no entry was deleted
+    */
+   int deleteAll(
+      Collection<Long> colIds,
+      long             lDomainId,
+      int              iBatchSize
+   ) throws OSSException;
 }
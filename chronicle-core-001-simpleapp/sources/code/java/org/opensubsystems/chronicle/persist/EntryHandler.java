@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Callback receiving entries one by one as they are read from the persistence
+ * store so that whole blog can be processed without keeping all its entries
+ * in memory.
+ *
+ * @author bastafidli
+ */
+public interface EntryHandler
+{
+   /**
+    * Process single entry.
+    *
+    * @param  entry - entry read from the persistence store
+    * @return boolean - true if the next entry should be read, false if the 
+    *                   processing should stop
+    * @throws OSSException - an error has occurred and processing should stop
+    */
+   boolean handle(
+      Entry entry
+   ) throws OSSException;
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Number of entries of a blog created in single month, e.g. to display archive
+ * of the blog. Months are determined in the default time zone, the same one in
+ * which the timestamps are stored in the persistence store.
+ *
+ * @author bastafidli
+ */
+public final class EntryMonth implements Serializable
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Number of months in a year.
+    */
+   public static final int MONTHS_PER_YEAR = 12;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Generated serial version id for this class.
+    */
+   private static final long serialVersionUID = -6031827493045123879L;
+
+   /**
+    * Year of the month.
+    */
+   private final int m_iYear;
+
+   /**
+    * Month within the year, 1 for January.
+    */
+   private final int m_iMonth;
+
+   /**
+    * Number of entries created in the month.
+    */
+   private final int m_iCount;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new number of entries in a month.
+    *
+    * @param iYear - year of the month
+    * @param iMonth - month within the year, 1 for January
+    * @param iCount - number of entries created in the month
+    */
+   public EntryMonth(
+      int iYear,
+      int iMonth,
+      int iCount
+   )
+   {
+      checkMonth(iMonth);
+      m_iYear = iYear;
+      m_iMonth = iMonth;
+      m_iCount = iCount;
+   }
+
+   /**
+    * Create new number of entries in a month.
+    *
+    * @param iKey - key identifying the month
+    * @param iCount - number of entries created in the month
+    * @see #getKey(int, int)
+    */
+   public EntryMonth(
+      int iKey,
+      int iCount
+   )
+   {
+      this(iKey / MONTHS_PER_YEAR, iKey % MONTHS_PER_YEAR + 1, iCount);
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Year of the month.
+    *
+    * @return int
+    */
+   public int getYear(
+   )
+   {
+      return m_iYear;
+   }
+
+   /**
+    * Month within the year.
+    *
+    * @return int - 1 for January
+    */
+   public int getMonth(
+   )
+   {
+      return m_iMonth;
+   }
+
+   /**
+    * Number of entries created in the month.
+    *
+    * @return int
+    */
+   public int getCount(
+   )
+   {
+      return m_iCount;
+   }
+
+   /**
+    * Key identifying the month, which increases with time.
+    *
+    * @return int
+    * @see #getKey(int, int)
+    */
+   public int getKey(
+   )
+   {
+      return getKey(m_iYear, m_iMonth);
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Get key identifying the month, which increases with time, so that months
+    * can be compared and used as keys.
+    *
+    * @param iYear - year of the month
+    * @param iMonth - month within the year, 1 for January
+    * @return int - key of the month
+    */
+   public static int getKey(
+      int iYear,
+      int iMonth
+   )
+   {
+      return iYear * MONTHS_PER_YEAR + iMonth - 1;
+   }
+
+   /**
+    * Get key of the month containing the timestamp.
+    *
+    * @param timestamp - timestamp, e.g. creation timestamp of an entry
+    * @return int - key of the month
+    * @see #getKey(int, int)
+    */
+   public static int getKey(
+      Timestamp timestamp
+   )
+   {
+      Calendar calendar = Calendar.getInstance();
+
+      calendar.setTime(timestamp);
+
+      return getKey(calendar.get(Calendar.YEAR), 
+                    calendar.get(Calendar.MONTH) + 1);
+   }
+
+   /**
+    * Get the first moment of the month.
+    *
+    * @param iYear - year of the month
+    * @param iMonth - month within the year, 1 for January
+    * @return Timestamp - start of the month, entries of the month were 
+    *                     created at or after this time
+    */
+   public static Timestamp getStart(
+      int iYear,
+      int iMonth
+   )
+   {
+      Calendar calendar = Calendar.getInstance();
+
+      checkMonth(iMonth);
+      calendar.clear();
+      calendar.set(iYear, iMonth - 1, 1);
+
+      return new Timestamp(calendar.getTimeInMillis());
+   }
+
+   /**
+    * Get the first moment of the following month.
+    *
+    * @param iYear - year of the month
+    * @param iMonth - month within the year, 1 for January
+    * @return Timestamp - end of the month, entries of the month were created
+    *                     before this time
+    */
+   public static Timestamp getEnd(
+      int iYear,
+      int iMonth
+   )
+   {
+      return (iMonth == MONTHS_PER_YEAR) ? getStart(iYear + 1, 1) 
+                                         : getStart(iYear, iMonth + 1);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean equals(
+      Object oObject
+   )
+   {
+      boolean bReturn = false;
+
+      if (oObject == this)
+      {
+         bReturn = true;
+      }
+      else if (oObject instanceof EntryMonth)
+      {
+         EntryMonth month = (EntryMonth)oObject;
+
+         bReturn = (m_iYear == month.m_iYear) && (m_iMonth == month.m_iMonth)
+                   && (m_iCount == month.m_iCount);
+      }
+
+      return bReturn;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int hashCode(
+   )
+   {
+      return 31 * getKey() + m_iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString(
+   )
+   {
+      return "EntryMonth[" + m_iYear + "-" + m_iMonth + ", " + m_iCount + "]";
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Check that the month is valid.
+    *
+    * @param iMonth - month within the year
+    */
+   private static void checkMonth(
+      int iMonth
+   )
+   {
+      if ((iMonth < 1) || (iMonth > MONTHS_PER_YEAR))
+      {
+         throw new IllegalArgumentException("Month has to be between 1 and " 
+                                            + MONTHS_PER_YEAR);
+      }
+   }
+}
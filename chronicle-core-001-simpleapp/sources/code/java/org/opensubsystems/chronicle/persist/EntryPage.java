@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Entry;
+
+/**
+ * Single page of entries of a blog sorted from the most recent to the oldest
+ * one together with the cursor identifying where the next page starts.
+ *
+ * @author bastafidli
+ */
+public final class EntryPage
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Entries on this page.
+    */
+   private final List<Entry> m_lstEntries;
+
+   /**
+    * Cursor to retrieve the next page or null if this is the last page.
+    */
+   private final EntryPageCursor m_nextCursor;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new page of entries.
+    *
+    * @param lstEntries - entries on this page, never null
+    * @param nextCursor - cursor to retrieve the next page or null if this is
+    *                     the last page
+    */
+   public EntryPage(
+      List<Entry>     lstEntries,
+      EntryPageCursor nextCursor
+   )
+   {
+      m_lstEntries = Collections.unmodifiableList(lstEntries);
+      m_nextCursor = nextCursor;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Entries on this page.
+    *
+    * @return List - entries sorted from the most recent to the oldest one,
+    *                never null
+    */
+   public List<Entry> getEntries(
+   )
+   {
+      return m_lstEntries;
+   }
+
+   /**
+    * Cursor to retrieve the next page.
+    *
+    * @return EntryPageCursor - cursor or null if this is the last page
+    */
+   public EntryPageCursor getNextCursor(
+   )
+   {
+      return m_nextCursor;
+   }
+
+   /**
+    * Check if there are more entries after this page.
+    *
+    * @return boolean - true if there is a next page
+    */
+   public boolean hasNext(
+   )
+   {
+      return m_nextCursor != null;
+   }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+import org.opensubsystems.chronicle.data.Entry;
+
+/**
+ * Position in the list of entries of a blog sorted from the most recent to the
+ * oldest one. The position is identified by the creation timestamp and the id
+ * of the last entry already returned so that the next page can be located
+ * directly using the index without skipping all previous entries.
+ *
+ * @author bastafidli
+ */
+public final class EntryPageCursor implements Serializable
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Generated serial version id for this class.
+    */
+   private static final long serialVersionUID = 4410394327652207615L;
+
+   /**
+    * Creation timestamp of the last entry already returned.
+    */
+   private final Timestamp m_creationTimestamp;
+
+   /**
+    * Id of the last entry already returned.
+    */
+   private final long m_lEntryId;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create cursor positioned after the specified entry.
+    *
+    * @param creationTimestamp - creation timestamp of the last returned entry
+    * @param lEntryId - id of the last returned entry
+    */
+   public EntryPageCursor(
+      Timestamp creationTimestamp,
+      long      lEntryId
+   )
+   {
+      if (creationTimestamp == null)
+      {
+         throw new IllegalArgumentException(
+                      "Creation timestamp of the cursor cannot be null");
+      }
+      m_creationTimestamp = creationTimestamp;
+      m_lEntryId = lEntryId;
+   }
+
+   /**
+    * Create cursor positioned after the specified entry.
+    *
+    * @param entry - last returned entry
+    */
+   public EntryPageCursor(
+      Entry entry
+   )
+   {
+      this(entry.getCreationTimestamp(), entry.getId());
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Creation timestamp of the last entry already returned.
+    *
+    * @return Timestamp
+    */
+   public Timestamp getCreationTimestamp(
+   )
+   {
+      return m_creationTimestamp;
+   }
+
+   /**
+    * Id of the last entry already returned.
+    *
+    * @return long
+    */
+   public long getEntryId(
+   )
+   {
+      return m_lEntryId;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean equals(
+      Object oObject
+   )
+   {
+      boolean bReturn = false;
+
+      if (oObject == this)
+      {
+         bReturn = true;
+      }
+      else if (oObject instanceof EntryPageCursor)
+      {
+         EntryPageCursor cursor = (EntryPageCursor)oObject;
+
+         bReturn = (m_lEntryId == cursor.m_lEntryId)
+                   && m_creationTimestamp.equals(cursor.m_creationTimestamp);
+      }
+
+      return bReturn;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int hashCode(
+   )
+   {
+      return 31 * m_creationTimestamp.hashCode() 
+             + (int)(m_lEntryId ^ (m_lEntryId >>> 32));
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString(
+   )
+   {
+      return "EntryPageCursor[" + m_creationTimestamp + ", " + m_lEntryId + "]";
+   }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist;
+
+import java.sql.Timestamp;
+
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSConcurentModifyException;
+
+/**
+ * Helper methods implementing optimistic concurrency control shared by all 
+ * persistence stores. The modification timestamp read together with the data
+ * is used as a version, the data are saved only if the stored modification 
+ * timestamp still matches it and the save sets a new one, which always 
+ * differs from the previous one.
+ *
+ * @author bastafidli
+ */
+public final class OptimisticConcurrency
+{
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Private constructor since this class cannot be instantiated
+    */
+   private OptimisticConcurrency(
+   )
+   {
+      // Do nothing
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Get timestamp to use as creation or modification timestamp of data being
+    * written to the persistence store.
+    *
+    * @return Timestamp - current time
+    */
+   public static Timestamp getCurrentTimestamp(
+   )
+   {
+      return new Timestamp(System.currentTimeMillis());
+   }
+
+   /**
+    * Get timestamp to use as modification timestamp of saved data. The 
+    * timestamp always differs from the previous one so that the data read 
+    * before the save never match the saved version, even when they are saved
+    * within the same millisecond.
+    *
+    * @param tmstpNow - current time
+    * @param previous - modification timestamp of the saved version, can be 
+    *                   null
+    * @return Timestamp - current time or the first millisecond after the 
+    *                     previous timestamp if it is not before the current
+    *                     time
+    */
+   public static Timestamp getModificationTimestamp(
+      Timestamp tmstpNow,
+      Timestamp previous
+   )
+   {
+      return ((previous == null) || (tmstpNow.after(previous))) 
+             ? tmstpNow : new Timestamp(previous.getTime() + 1);
+   }
+
+   /**
+    * Check that the data being saved were not modified or deleted since they
+    * were read.
+    *
+    * @param data - data being saved with the modification timestamp they were
+    *               read with
+    * @param stored - modification timestamp of the stored version or null if
+    *                 the data don't exist
+    * @throws OSSConcurentModifyException - the data were modified or deleted
+    *                                       by someone else
+    */
+   public static void checkModification(
+      ModifiableDataObject data,
+      Timestamp            stored
+   ) throws OSSConcurentModifyException
+   {
+      if ((stored == null) || (!stored.equals(data.getModificationTimestamp())))
+      {
+         throw createModifiedException(data);
+      }
+   }
+
+   /**
+    * Create exception reporting that the data being saved were modified or 
+    * deleted since they were read.
+    *
+    * @param data - data being saved
+    * @return OSSConcurentModifyException - exception to throw
+    */
+   public static OSSConcurentModifyException createModifiedException(
+      ModifiableDataObject data
+   )
+   {
+      return new OSSConcurentModifyException(
+                    data.getClass().getSimpleName() + " " + data.getId() 
+                    + " was modified or deleted by someone else since it"
+                    + " was read.");
+   }
+}
@@ -0,0 +1,670 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPageCursor;
+import org.opensubsystems.core.error.OSSException;
+import org.opensubsystems.core.error.OSSInternalErrorException;
+
+/**
+ * Immutable file storing archived entries of single blog, which is read 
+ * through memory mapped buffer so the entries are read directly from the 
+ * page cache of the operating system without copying the file into the heap.
+ * 
+ * The file starts with a header followed by an index with record of fixed
+ * width for every entry and by the data of the entries. The index records
+ * contain id of the blog, creation timestamp and id of the entry and they are
+ * sorted the same way as entries are listed, from the most recent one to the
+ * oldest one. Page of entries is therefore found using binary search of the 
+ * index and read sequentially from there.
+ *
+ * @author bastafidli
+ */
+public class ArchiveSegment
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Value identifying the archive segment files.
+    */
+   public static final int MAGIC = 0x43485241;
+
+   /**
+    * Version of the format of the file.
+    */
+   public static final int FORMAT_VERSION = 2;
+
+   /**
+    * Size of the header of the file. The header contains magic value (int), 
+    * version of the format (int), id of the blog (long), number of entries 
+    * (int), reserved space (int), the most recent modification time of the
+    * entries in milliseconds (long) and the lowest and the highest id of the 
+    * entries (long).
+    */
+   public static final int HEADER_SIZE = 48;
+
+   /**
+    * Size of the index record. The record contains id of the blog (long), 
+    * creation time of the entry in milliseconds (long), nanoseconds of the 
+    * creation time within the millisecond (int), id of the entry (long), 
+    * offset of the entry data within the data section (long) and length of 
+    * the entry data (int).
+    */
+   public static final int INDEX_RECORD_SIZE = 40;
+
+   /**
+    * Offset of the id of the blog within the header.
+    */
+   protected static final int HEADER_BLOG_ID = 8;
+
+   /**
+    * Offset of the number of entries within the header.
+    */
+   protected static final int HEADER_COUNT = 16;
+
+   /**
+    * Offset of the most recent modification time within the header.
+    */
+   protected static final int HEADER_LAST_MODIFIED = 24;
+
+   /**
+    * Offset of the lowest id of the entries within the header.
+    */
+   protected static final int HEADER_MIN_ENTRY_ID = 32;
+
+   /**
+    * Offset of the highest id of the entries within the header.
+    */
+   protected static final int HEADER_MAX_ENTRY_ID = 40;
+
+   /**
+    * Offset of the creation time within the index record.
+    */
+   protected static final int INDEX_CREATION_TIME = 8;
+
+   /**
+    * Offset of the nanoseconds of the creation time within the index record.
+    */
+   protected static final int INDEX_CREATION_NANOS = 16;
+
+   /**
+    * Offset of the id of the entry within the index record.
+    */
+   protected static final int INDEX_ENTRY_ID = 20;
+
+   /**
+    * Offset of the offset of the entry data within the index record.
+    */
+   protected static final int INDEX_DATA_OFFSET = 28;
+
+   /**
+    * Offset of the length of the entry data within the index record.
+    */
+   protected static final int INDEX_DATA_LENGTH = 36;
+
+   /**
+    * Number of nanoseconds in a millisecond.
+    */
+   protected static final int NANOS_PER_MILLI = 1000000;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * File of the segment.
+    */
+   protected final File m_file;
+
+   /**
+    * Buffer mapped to the whole file. Only the absolute get methods are used
+    * to read it so it can be shared by multiple threads.
+    */
+   protected final MappedByteBuffer m_buffer;
+
+   /**
+    * Id of the blog the entries belong to.
+    */
+   protected final long m_lBlogId;
+
+   /**
+    * Number of entries in the segment.
+    */
+   protected final int m_iCount;
+
+   /**
+    * The most recent modification time of the entries in milliseconds.
+    */
+   protected final long m_lLastModified;
+
+   /**
+    * The lowest id of the entries.
+    */
+   protected final long m_lMinEntryId;
+
+   /**
+    * The highest id of the entries.
+    */
+   protected final long m_lMaxEntryId;
+
+   /**
+    * Position of the data section within the file.
+    */
+   protected final int m_iDataStart;
+
+   // Cached values ////////////////////////////////////////////////////////////
+
+   /**
+    * Numbers of entries in every month. They are counted from the index when
+    * they are requested for the first time and since the segment never 
+    * changes they never have to be counted again.
+    */
+   protected List<EntryMonth> m_lstMonthCounts;
+
+   /**
+    * Ids of the entries sorted in ascending order. They are read from the 
+    * index when an entry is looked up by id for the first time.
+    */
+   protected long[] m_arrSortedIds;
+
+   /**
+    * Indexes of the entries in the same order as their ids in m_arrSortedIds.
+    */
+   protected int[] m_arrSortedIndexes;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Open existing segment.
+    *
+    * @param file - file of the segment
+    * @throws IOException - the file cannot be read or it is not valid segment
+    */
+   public ArchiveSegment(
+      File file
+   ) throws IOException
+   {
+      long lSize;
+
+      m_file = file;
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+      {
+         lSize = raf.length();
+         if (lSize > Integer.MAX_VALUE)
+         {
+            throw new IOException("Archive segment " + file + " is too large");
+         }
+         if (lSize < HEADER_SIZE)
+         {
+            throw new IOException("Archive segment " + file + " is truncated");
+         }
+         // The mapping stays valid after the channel is closed
+         m_buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, 
+                                         lSize);
+      }
+      if ((m_buffer.getInt(0) != MAGIC) 
+         || (m_buffer.getInt(4) != FORMAT_VERSION))
+      {
+         throw new IOException(file + " is not supported archive segment");
+      }
+      m_lBlogId = m_buffer.getLong(HEADER_BLOG_ID);
+      m_iCount = m_buffer.getInt(HEADER_COUNT);
+      m_lLastModified = m_buffer.getLong(HEADER_LAST_MODIFIED);
+      m_lMinEntryId = m_buffer.getLong(HEADER_MIN_ENTRY_ID);
+      m_lMaxEntryId = m_buffer.getLong(HEADER_MAX_ENTRY_ID);
+      if ((m_iCount < 0) 
+         || ((long)HEADER_SIZE + (long)m_iCount * INDEX_RECORD_SIZE > lSize))
+      {
+         throw new IOException("Archive segment " + file + " is truncated");
+      }
+      m_iDataStart = HEADER_SIZE + m_iCount * INDEX_RECORD_SIZE;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * File of the segment.
+    *
+    * @return File
+    */
+   public File getFile(
+   )
+   {
+      return m_file;
+   }
+
+   /**
+    * Id of the blog the entries belong to.
+    *
+    * @return long
+    */
+   public long getBlogId(
+   )
+   {
+      return m_lBlogId;
+   }
+
+   /**
+    * Number of entries in the segment.
+    *
+    * @return int
+    */
+   public int getCount(
+   )
+   {
+      return m_iCount;
+   }
+
+   /**
+    * The most recent modification time of the entries.
+    *
+    * @return Timestamp - null if the segment is empty
+    */
+   public Timestamp getLastModified(
+   )
+   {
+      return (m_iCount == 0) ? null : new Timestamp(m_lLastModified);
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Get index of the first entry following the cursor.
+    *
+    * @param cursor - cursor positioned after the last returned entry or null 
+    *                 to start from the most recent entry
+    * @return int - index of the entry, it is equal to the number of entries 
+    *               if there is no entry following the cursor
+    */
+   public int find(
+      EntryPageCursor cursor
+   )
+   {
+      int iLow = 0;
+      int iHigh = m_iCount;
+      int iMiddle;
+      
+      if (cursor != null)
+      {
+         while (iLow < iHigh)
+         {
+            iMiddle = (iLow + iHigh) >>> 1;
+            if (compare(iMiddle, cursor.getCreationTimestamp(), 
+                        cursor.getEntryId()) < 0)
+            {
+               iHigh = iMiddle;
+            }
+            else
+            {
+               iLow = iMiddle + 1;
+            }
+         }
+      }
+
+      return iLow;
+   }
+
+   /**
+    * Check if the segment contains the entry.
+    *
+    * @param creationTimestamp - creation timestamp of the entry
+    * @param lEntryId - id of the entry
+    * @return boolean - true if the segment contains the entry
+    */
+   public boolean contains(
+      Timestamp creationTimestamp,
+      long      lEntryId
+   )
+   {
+      int iIndex;
+
+      // Find the first entry which is not newer than the specified one
+      iIndex = find(new EntryPageCursor(creationTimestamp, lEntryId + 1));
+
+      return (iIndex < m_iCount) 
+             && (compare(iIndex, creationTimestamp, lEntryId) == 0);
+   }
+
+   /**
+    * Check if the id is within the range of ids of the entries in the 
+    * segment, which is stored in the header so it can be checked without 
+    * reading the index.
+    *
+    * @param lEntryId - id of the entry
+    * @return boolean - false if the segment certainly doesn't contain the 
+    *                   entry
+    */
+   public boolean mayContain(
+      long lEntryId
+   )
+   {
+      return (m_iCount > 0) && (lEntryId >= m_lMinEntryId) 
+             && (lEntryId <= m_lMaxEntryId);
+   }
+
+   /**
+    * Get index of the entry with the specified id. The ids are sorted when 
+    * an id within the range of ids of the segment is requested for the first
+    * time, which occupies 12 bytes of the heap for every entry, and then they
+    * are found using binary search.
+    *
+    * @param lEntryId - id of the entry
+    * @return int - index of the entry or -1 if there is no such entry
+    */
+   public synchronized int indexOf(
+      long lEntryId
+   )
+   {
+      int iPosition;
+
+      if (!mayContain(lEntryId))
+      {
+         return -1;
+      }
+      if (m_arrSortedIds == null)
+      {
+         sortIds();
+      }
+      iPosition = Arrays.binarySearch(m_arrSortedIds, lEntryId);
+
+      return (iPosition < 0) ? -1 : m_arrSortedIndexes[iPosition];
+   }
+
+   /**
+    * Get entries following the cursor.
+    *
+    * @param cursor - cursor positioned after the last returned entry or null 
+    *                 to start from the most recent entry
+    * @param iLimit - maximal number of entries to get
+    * @return List - entries sorted from the most recent to the oldest one
+    * @throws OSSException - the segment is corrupted
+    */
+   public List<Entry> getEntries(
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      int         iIndex = find(cursor);
+      int         iEnd = (int)Math.min((long)iIndex + iLimit, m_iCount);
+      List<Entry> lstEntries = new ArrayList<>(Math.max(iEnd - iIndex, 0));
+
+      for (; iIndex < iEnd; iIndex++)
+      {
+         lstEntries.add(getEntry(iIndex));
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * Get creation timestamp of entry from the index without reading the 
+    * entry.
+    *
+    * @param iIndex - index of the entry
+    * @return Timestamp - creation timestamp of the entry
+    */
+   public Timestamp getCreationTimestamp(
+      int iIndex
+   )
+   {
+      int       iPosition = getIndexPosition(iIndex);
+      Timestamp creationTimestamp;
+
+      if ((iIndex < 0) || (iIndex >= m_iCount))
+      {
+         throw new IndexOutOfBoundsException("Invalid index of entry " 
+                                             + iIndex);
+      }
+      creationTimestamp = new Timestamp(
+                             m_buffer.getLong(iPosition + INDEX_CREATION_TIME));
+      creationTimestamp.setNanos(creationTimestamp.getNanos() 
+                         + m_buffer.getInt(iPosition + INDEX_CREATION_NANOS));
+
+      return creationTimestamp;
+   }
+
+   /**
+    * Get numbers of entries in the segment created in every month.
+    *
+    * @return List - months sorted from the most recent one, never null
+    */
+   public synchronized List<EntryMonth> getMonthCounts(
+   )
+   {
+      Map<Integer, Integer> mpMonths;
+      Integer               iCount;
+      int                   iKey;
+
+      if (m_lstMonthCounts == null)
+      {
+         mpMonths = new TreeMap<>(Collections.reverseOrder());
+         for (int iIndex = 0; iIndex < m_iCount; iIndex++)
+         {
+            iKey = EntryMonth.getKey(getCreationTimestamp(iIndex));
+            iCount = mpMonths.get(iKey);
+            mpMonths.put(iKey, (iCount == null) ? 1 : iCount + 1);
+         }
+         m_lstMonthCounts = new ArrayList<>(mpMonths.size());
+         for (Map.Entry<Integer, Integer> month : mpMonths.entrySet())
+         {
+            m_lstMonthCounts.add(new EntryMonth(month.getKey(), 
+                                                month.getValue()));
+         }
+         m_lstMonthCounts = Collections.unmodifiableList(m_lstMonthCounts);
+      }
+
+      return m_lstMonthCounts;
+   }
+
+   /**
+    * Read ids of all entries from the index and sort them so that entries can
+    * be found by id using binary search.
+    */
+   protected void sortIds(
+   )
+   {
+      Integer[] arrIndexes = new Integer[m_iCount];
+      long[]    arrIds = new long[m_iCount];
+      int[]     arrSortedIndexes = new int[m_iCount];
+
+      for (int iIndex = 0; iIndex < m_iCount; iIndex++)
+      {
+         arrIndexes[iIndex] = iIndex;
+      }
+      Arrays.sort(arrIndexes, new Comparator<Integer>()
+      {
+         @Override
+         public int compare(
+            Integer first,
+            Integer second
+         )
+         {
+            return Long.compare(m_buffer.getLong(getIndexPosition(first) 
+                                                 + INDEX_ENTRY_ID), 
+                                m_buffer.getLong(getIndexPosition(second) 
+                                                 + INDEX_ENTRY_ID));
+         }
+      });
+      for (int iIndex = 0; iIndex < m_iCount; iIndex++)
+      {
+         arrSortedIndexes[iIndex] = arrIndexes[iIndex];
+         arrIds[iIndex] = m_buffer.getLong(getIndexPosition(arrIndexes[iIndex]) 
+                                           + INDEX_ENTRY_ID);
+      }
+      m_arrSortedIndexes = arrSortedIndexes;
+      m_arrSortedIds = arrIds;
+   }
+
+   /**
+    * Read entry from the segment.
+    *
+    * @param iIndex - index of the entry
+    * @return Entry - the entry
+    * @throws OSSException - the segment is corrupted
+    */
+   public Entry getEntry(
+      int iIndex
+   ) throws OSSException
+   {
+      ByteBuffer data;
+      int        iPosition = getIndexPosition(iIndex);
+      long       lOffset;
+      int        iLength;
+
+      if ((iIndex < 0) || (iIndex >= m_iCount))
+      {
+         throw new IndexOutOfBoundsException("Invalid index of entry " 
+                                             + iIndex);
+      }
+      lOffset = m_buffer.getLong(iPosition + INDEX_DATA_OFFSET);
+      iLength = m_buffer.getInt(iPosition + INDEX_DATA_LENGTH);
+      try
+      {
+         // Duplicate has its own position so it doesn't affect other threads
+         data = m_buffer.duplicate();
+         data.position((int)(m_iDataStart + lOffset));
+         data.limit(data.position() + iLength);
+
+         return new Entry(data.getLong(), data.getLong(), readTimestamp(data),
+                          readTimestamp(data), data.getLong(), 
+                          readString(data), readString(data), 
+                          readString(data), readString(data), 
+                          data.get() != 0);
+      }
+      catch (BufferUnderflowException | IllegalArgumentException exc)
+      {
+         throw new OSSInternalErrorException("Archive segment " + m_file 
+                                             + " is corrupted", exc);
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Compare key of the index record with the specified key in the order in 
+    * which the entries are listed.
+    *
+    * @param iIndex - index of the record
+    * @param creationTimestamp - creation timestamp of the key
+    * @param lEntryId - entry id of the key
+    * @return int - negative value if the record follows the key, 0 if they 
+    *               are equal, positive value if the record precedes the key
+    */
+   protected int compare(
+      int       iIndex,
+      Timestamp creationTimestamp,
+      long      lEntryId
+   )
+   {
+      int iPosition = getIndexPosition(iIndex);
+      int iResult;
+
+      iResult = Long.compare(m_buffer.getLong(iPosition + INDEX_CREATION_TIME),
+                             creationTimestamp.getTime());
+      if (iResult == 0)
+      {
+         iResult = Integer.compare(
+                      m_buffer.getInt(iPosition + INDEX_CREATION_NANOS),
+                      creationTimestamp.getNanos() % NANOS_PER_MILLI);
+         if (iResult == 0)
+         {
+            iResult = Long.compare(
+                         m_buffer.getLong(iPosition + INDEX_ENTRY_ID), 
+                         lEntryId);
+         }
+      }
+
+      return iResult;
+   }
+
+   /**
+    * Get position of the index record within the file.
+    *
+    * @param iIndex - index of the record
+    * @return int - position of the record
+    */
+   protected static int getIndexPosition(
+      int iIndex
+   )
+   {
+      return HEADER_SIZE + iIndex * INDEX_RECORD_SIZE;
+   }
+
+   /**
+    * Read timestamp written by ArchiveSegmentWriter.
+    *
+    * @param data - buffer to read from
+    * @return Timestamp - read timestamp, can be null
+    */
+   protected static Timestamp readTimestamp(
+      ByteBuffer data
+   )
+   {
+      Timestamp timestamp = null;
+
+      if (data.get() != 0)
+      {
+         timestamp = new Timestamp(data.getLong());
+         timestamp.setNanos(timestamp.getNanos() + data.getInt());
+      }
+
+      return timestamp;
+   }
+
+   /**
+    * Read string prefixed by length of its UTF-8 encoding.
+    *
+    * @param data - buffer to read from
+    * @return String - read string, can be null
+    */
+   protected static String readString(
+      ByteBuffer data
+   )
+   {
+      int    iLength = data.getInt();
+      byte[] arrBytes;
+
+      if (iLength < 0)
+      {
+         return null;
+      }
+      arrBytes = new byte[iLength];
+      data.get(arrBytes);
+
+      return new String(arrBytes, StandardCharsets.UTF_8);
+   }
+}
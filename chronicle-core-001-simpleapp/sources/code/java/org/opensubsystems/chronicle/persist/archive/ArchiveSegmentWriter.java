@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+
+import org.opensubsystems.chronicle.data.Entry;
+
+/**
+ * Writer creating new archive segment. Entries have to be added in the order 
+ * in which they are listed, from the most recent one to the oldest one. The 
+ * index and the data are written to temporary files first and the segment is
+ * assembled from them when the writer is committed, so the heap usage doesn't
+ * depend on the number of archived entries. The segment appears under its 
+ * final name only when it was completely written.
+ *
+ * @author bastafidli
+ */
+public class ArchiveSegmentWriter
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * File of the created segment.
+    */
+   protected final File m_file;
+
+   /**
+    * Id of the blog the entries belong to.
+    */
+   protected final long m_lBlogId;
+
+   /**
+    * Temporary file with the index records.
+    */
+   protected final File m_indexFile;
+
+   /**
+    * Temporary file with the entry data.
+    */
+   protected final File m_dataFile;
+
+   /**
+    * Stream writing the index records.
+    */
+   protected final DataOutputStream m_index;
+
+   /**
+    * Stream writing the entry data.
+    */
+   protected final DataOutputStream m_data;
+
+   /**
+    * Number of entries added to the segment.
+    */
+   protected int m_iCount;
+
+   /**
+    * The most recent modification time of the added entries in milliseconds.
+    */
+   protected long m_lLastModified;
+
+   /**
+    * The lowest id of the added entries.
+    */
+   protected long m_lMinEntryId = Long.MAX_VALUE;
+
+   /**
+    * The highest id of the added entries.
+    */
+   protected long m_lMaxEntryId = Long.MIN_VALUE;
+
+   /**
+    * Last entry added to the segment, used to verify the order of entries.
+    */
+   protected Entry m_lastEntry;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Start writing new segment.
+    *
+    * @param file - file of the segment to create, it must not exist
+    * @param lBlogId - id of the blog the entries belong to
+    * @throws IOException - the temporary files cannot be created
+    */
+   public ArchiveSegmentWriter(
+      File file,
+      long lBlogId
+   ) throws IOException
+   {
+      File directory = file.getAbsoluteFile().getParentFile();
+
+      m_file = file;
+      m_lBlogId = lBlogId;
+      m_indexFile = File.createTempFile("index", ".tmp", directory);
+      m_dataFile = File.createTempFile("data", ".tmp", directory);
+      m_index = new DataOutputStream(new BufferedOutputStream(
+                                        new FileOutputStream(m_indexFile)));
+      m_data = new DataOutputStream(new BufferedOutputStream(
+                                       new FileOutputStream(m_dataFile)));
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * File of the created segment.
+    *
+    * @return File
+    */
+   public File getFile(
+   )
+   {
+      return m_file;
+   }
+
+   /**
+    * Number of entries added to the segment.
+    *
+    * @return int
+    */
+   public int getCount(
+   )
+   {
+      return m_iCount;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Add entry to the segment.
+    *
+    * @param entry - entry to add, it has to belong to the blog of the segment
+    *                and it has to be older than the previously added entry
+    * @throws IOException - an error has occurred writing the entry
+    */
+   public void add(
+      Entry entry
+   ) throws IOException
+   {
+      Timestamp creationTimestamp = entry.getCreationTimestamp();
+      Timestamp modificationTimestamp = entry.getModificationTimestamp();
+      int       iStart = m_data.size();
+
+      if (entry.getParentId() != m_lBlogId)
+      {
+         throw new IllegalArgumentException("Entry " + entry.getId() 
+                                            + " doesn't belong to blog " 
+                                            + m_lBlogId);
+      }
+      if ((m_lastEntry != null) && (!precedes(m_lastEntry, entry)))
+      {
+         throw new IllegalArgumentException("Entry " + entry.getId() 
+                                            + " is not older than entry " 
+                                            + m_lastEntry.getId());
+      }
+      if (m_iCount == (Integer.MAX_VALUE - ArchiveSegment.HEADER_SIZE) 
+                      / ArchiveSegment.INDEX_RECORD_SIZE)
+      {
+         throw new IOException("Too many entries in archive segment " 
+                               + m_file);
+      }
+
+      m_data.writeLong(entry.getId());
+      m_data.writeLong(entry.getDomainId());
+      writeTimestamp(m_data, creationTimestamp);
+      writeTimestamp(m_data, modificationTimestamp);
+      m_data.writeLong(entry.getParentId());
+      writeString(m_data, entry.getCaption());
+      writeString(m_data, entry.getComments());
+      writeString(m_data, entry.getImageURL());
+      writeString(m_data, entry.getTargetURL());
+      m_data.writeByte(entry.getIsPreformated() ? 1 : 0);
+
+      m_index.writeLong(m_lBlogId);
+      m_index.writeLong(creationTimestamp.getTime());
+      m_index.writeInt(creationTimestamp.getNanos() 
+                       % ArchiveSegment.NANOS_PER_MILLI);
+      m_index.writeLong(entry.getId());
+      m_index.writeLong(iStart);
+      m_index.writeInt(m_data.size() - iStart);
+
+      if (modificationTimestamp != null)
+      {
+         m_lLastModified = Math.max(m_lLastModified, 
+                                    modificationTimestamp.getTime());
+      }
+      m_lMinEntryId = Math.min(m_lMinEntryId, entry.getId());
+      m_lMaxEntryId = Math.max(m_lMaxEntryId, entry.getId());
+      m_lastEntry = entry;
+      m_iCount++;
+      if (m_data.size() < 0)
+      {
+         // DataOutputStream stops counting at Integer.MAX_VALUE
+         throw new IOException("Archive segment " + m_file + " is too large");
+      }
+   }
+
+   /**
+    * Assemble the segment from the written index and data and move it to its
+    * final location.
+    *
+    * @throws IOException - an error has occurred, the segment was not created
+    */
+   public void commit(
+   ) throws IOException
+   {
+      File       segmentFile;
+      ByteBuffer header;
+
+      m_index.close();
+      m_data.close();
+      if ((long)ArchiveSegment.HEADER_SIZE + m_indexFile.length() 
+          + m_dataFile.length() > Integer.MAX_VALUE)
+      {
+         abort();
+         throw new IOException("Archive segment " + m_file + " is too large");
+      }
+      segmentFile = File.createTempFile("segment", ".tmp", 
+                                        m_indexFile.getParentFile());
+      try
+      {
+         try (FileChannel output = FileChannel.open(segmentFile.toPath(), 
+                                      StandardOpenOption.WRITE, 
+                                      StandardOpenOption.TRUNCATE_EXISTING))
+         {
+            header = ByteBuffer.allocate(ArchiveSegment.HEADER_SIZE);
+            header.putInt(ArchiveSegment.MAGIC);
+            header.putInt(ArchiveSegment.FORMAT_VERSION);
+            header.putLong(m_lBlogId);
+            header.putInt(m_iCount);
+            header.putInt(0);
+            header.putLong(m_lLastModified);
+            header.putLong(m_lMinEntryId);
+            header.putLong(m_lMaxEntryId);
+            header.flip();
+            while (header.hasRemaining())
+            {
+               output.write(header);
+            }
+            append(output, m_indexFile);
+            append(output, m_dataFile);
+            // The segment has to be on disk before the entries are removed
+            // from the database
+            output.force(true);
+         }
+         try
+         {
+            Files.move(segmentFile.toPath(), m_file.toPath(), 
+                       StandardCopyOption.ATOMIC_MOVE);
+         }
+         catch (AtomicMoveNotSupportedException amnsExc)
+         {
+            Files.move(segmentFile.toPath(), m_file.toPath());
+         }
+      }
+      finally
+      {
+         Files.deleteIfExists(segmentFile.toPath());
+         abort();
+      }
+   }
+
+   /**
+    * Discard the written entries and delete the temporary files.
+    *
+    * @throws IOException - an error has occurred
+    */
+   public void abort(
+   ) throws IOException
+   {
+      try
+      {
+         m_index.close();
+         m_data.close();
+      }
+      finally
+      {
+         Files.deleteIfExists(m_indexFile.toPath());
+         Files.deleteIfExists(m_dataFile.toPath());
+      }
+   }
+
+   /**
+    * Check if the first entry is listed before the second one, that is it is
+    * more recent or it was created at the same time and it has higher id.
+    *
+    * @param first - first entry
+    * @param second - second entry
+    * @return boolean - true if the first entry is listed before the second one
+    */
+   public static boolean precedes(
+      Entry first,
+      Entry second
+   )
+   {
+      int iResult;
+
+      iResult = first.getCreationTimestamp().compareTo(
+                   second.getCreationTimestamp());
+
+      return (iResult > 0) 
+             || ((iResult == 0) && (first.getId() > second.getId()));
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Append content of the file to the channel.
+    *
+    * @param output - channel to append to
+    * @param file - file to append
+    * @throws IOException - an error has occurred
+    */
+   protected static void append(
+      FileChannel output,
+      File        file
+   ) throws IOException
+   {
+      long lPosition = 0;
+      long lSize;
+
+      try (FileChannel input = FileChannel.open(file.toPath(), 
+                                                StandardOpenOption.READ))
+      {
+         lSize = input.size();
+         while (lPosition < lSize)
+         {
+            lPosition += input.transferTo(lPosition, lSize - lPosition, output);
+         }
+      }
+   }
+
+   /**
+    * Write timestamp in the format read by ArchiveSegment.
+    *
+    * @param output - stream to write to
+    * @param timestamp - timestamp to write, can be null
+    * @throws IOException - an error has occurred
+    */
+   protected static void writeTimestamp(
+      DataOutputStream output,
+      Timestamp        timestamp
+   ) throws IOException
+   {
+      if (timestamp == null)
+      {
+         output.writeByte(0);
+      }
+      else
+      {
+         output.writeByte(1);
+         output.writeLong(timestamp.getTime());
+         output.writeInt(timestamp.getNanos() 
+                         % ArchiveSegment.NANOS_PER_MILLI);
+      }
+   }
+
+   /**
+    * Write string prefixed by length of its UTF-8 encoding.
+    *
+    * @param output - stream to write to
+    * @param strValue - string to write, can be null
+    * @throws IOException - an error has occurred
+    */
+   protected static void writeString(
+      DataOutputStream output,
+      String           strValue
+   ) throws IOException
+   {
+      byte[] arrBytes;
+
+      if (strValue == null)
+      {
+         output.writeInt(-1);
+      }
+      else
+      {
+         arrBytes = strValue.getBytes(StandardCharsets.UTF_8);
+         output.writeInt(arrBytes.length);
+         output.write(arrBytes);
+      }
+   }
+}
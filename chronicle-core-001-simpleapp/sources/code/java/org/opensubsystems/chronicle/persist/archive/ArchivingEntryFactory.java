@@ -0,0 +1,1400 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
+import org.opensubsystems.chronicle.persist.DelegatingEntryFactory;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryHandler;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.chronicle.persist.EntryPageCursor;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+import org.opensubsystems.core.error.OSSInternalErrorException;
+
+/**
+ * Entry factory moving old entries out of the persistence store into read-only
+ * archive segments. Old entries are rarely read but they make the tables and
+ * their indexes larger, which slows down access to the recent entries. The 
+ * archived entries are read through memory mapped segments so they don't 
+ * occupy the heap and the operating system keeps in memory only the parts, 
+ * which are actually read.
+ *
+ * The archived entries are still returned by all methods listing entries of a
+ * blog merged with the entries from the persistence store in the usual order.
+ * The archived entries are read-only, attempt to save or delete them fails
+ * with OSSArchivedEntryException.
+ *
+ * Every call of the archive method creates new segment for the blog. The 
+ * segment is written completely before the entries are deleted from the 
+ * persistence store in a single transaction, so if the process is 
+ * interrupted, the entries are only temporarily available from both places 
+ * and they are deleted from the persistence store by the next archive call.
+ * Such entries are listed and counted only once.
+ *
+ * @author bastafidli
+ */
+public class ArchivingEntryFactory extends DelegatingEntryFactory
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Comparator sorting entries from the most recent to the oldest one, the 
+    * same way as the entries are listed.
+    */
+   protected static class ListingOrder implements Comparator<Entry>
+   {
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int compare(
+         Entry first,
+         Entry second
+      )
+      {
+         int iResult;
+
+         iResult = second.getCreationTimestamp().compareTo(
+                      first.getCreationTimestamp());
+         if (iResult == 0)
+         {
+            iResult = Long.compare(second.getId(), first.getId());
+         }
+
+         return iResult;
+      }
+   }
+
+   /**
+    * Comparator sorting entries from the least recently modified one, the 
+    * same way as the modified entries are returned.
+    */
+   protected static class ModificationOrder implements Comparator<Entry>
+   {
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int compare(
+         Entry first,
+         Entry second
+      )
+      {
+         int iResult;
+
+         iResult = first.getModificationTimestamp().compareTo(
+                      second.getModificationTimestamp());
+         if (iResult == 0)
+         {
+            iResult = Long.compare(first.getId(), second.getId());
+         }
+
+         return iResult;
+      }
+   }
+
+   /**
+    * Handler merging archived entries into the entries passed from the 
+    * persistence store so that the wrapped handler receives all of them in 
+    * the order in which they are listed.
+    */
+   protected static class MergingHandler implements EntryHandler
+   {
+      /**
+       * Handler receiving the merged entries.
+       */
+      protected final EntryHandler m_handler;
+
+      /**
+       * Segments with the archived entries.
+       */
+      protected final List<ArchiveSegment> m_lstSegments;
+
+      /**
+       * Index of the next entry to pass from each segment.
+       */
+      protected final int[] m_arrPositions;
+
+      /**
+       * Number of entries passed to the wrapped handler.
+       */
+      protected int m_iCount;
+
+      /**
+       * Flag signaling that the wrapped handler has stopped the processing.
+       */
+      protected boolean m_bStopped;
+
+      /**
+       * Create new merging handler.
+       *
+       * @param handler - handler receiving the merged entries
+       * @param lstSegments - segments with the archived entries
+       */
+      public MergingHandler(
+         EntryHandler         handler,
+         List<ArchiveSegment> lstSegments
+      )
+      {
+         m_handler = handler;
+         m_lstSegments = lstSegments;
+         m_arrPositions = new int[lstSegments.size()];
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public boolean handle(
+         Entry entry
+      ) throws OSSException
+      {
+         if (flush(entry))
+         {
+            m_iCount++;
+            m_bStopped = !m_handler.handle(entry);
+         }
+
+         return !m_bStopped;
+      }
+
+      /**
+       * Pass archived entries listed before the specified entry to the wrapped
+       * handler. The archived entry equal to the specified one is skipped.
+       *
+       * @param entry - entry from the persistence store or null to pass all 
+       *                remaining archived entries
+       * @return boolean - true if the processing should continue
+       * @throws OSSException - an error has occurred
+       */
+      public boolean flush(
+         Entry entry
+      ) throws OSSException
+      {
+         ArchiveSegment segment;
+         Entry          next;
+         int            iNext;
+
+         while (!m_bStopped)
+         {
+            // Find the most recent archived entry which wasn't passed yet
+            next = null;
+            iNext = -1;
+            for (int iIndex = 0; iIndex < m_arrPositions.length; iIndex++)
+            {
+               segment = m_lstSegments.get(iIndex);
+               if ((m_arrPositions[iIndex] < segment.getCount())
+                  && ((next == null) 
+                     || (segment.compare(m_arrPositions[iIndex], 
+                                         next.getCreationTimestamp(), 
+                                         next.getId()) > 0)))
+               {
+                  next = segment.getEntry(m_arrPositions[iIndex]);
+                  iNext = iIndex;
+               }
+            }
+            if ((next == null) 
+               || ((entry != null) 
+                  && (!ArchiveSegmentWriter.precedes(next, entry))))
+            {
+               if ((next != null) && (next.getId() == entry.getId()))
+               {
+                  // Entry wasn't deleted from the persistence store yet
+                  m_arrPositions[iNext]++;
+               }
+               break;
+            }
+            m_arrPositions[iNext]++;
+            m_iCount++;
+            m_bStopped = !m_handler.handle(next);
+         }
+
+         return !m_bStopped;
+      }
+
+      /**
+       * Number of entries passed to the wrapped handler.
+       *
+       * @return int
+       */
+      public int getCount(
+      )
+      {
+         return m_iCount;
+      }
+   }
+
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Extension of the segment files.
+    */
+   public static final String SEGMENT_EXTENSION = ".seg";
+
+   /**
+    * Number of entries read from the persistence store at once when they are
+    * archived.
+    */
+   protected static final int ARCHIVE_PAGE_SIZE = 100;
+
+   /**
+    * Number of archived entries deleted from the persistence store at once.
+    */
+   protected static final int DELETE_BATCH_SIZE = 100;
+
+   /**
+    * Pattern of names of the segment files containing id of the blog and 
+    * sequence number of the segment.
+    */
+   protected static final Pattern SEGMENT_NAME 
+      = Pattern.compile("(\\d+)-(\\d+)\\" + SEGMENT_EXTENSION);
+
+   /**
+    * Comparator sorting entries in the order in which they are listed.
+    */
+   protected static final Comparator<Entry> LISTING_ORDER = new ListingOrder();
+
+   /**
+    * Comparator sorting entries in the order in which the modified entries 
+    * are returned.
+    */
+   protected static final Comparator<Entry> MODIFICATION_ORDER 
+      = new ModificationOrder();
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Directory containing the segment files.
+    */
+   protected final File m_directory;
+
+   /**
+    * Segments of each blog ordered from the most recently created one. The 
+    * lists are never modified, they are replaced when new segment is created.
+    */
+   protected final ConcurrentMap<Long, List<ArchiveSegment>> m_mpSegments;
+
+   /**
+    * Sequence number of the next created segment.
+    */
+   protected long m_lNextSequence;
+
+   /**
+    * Creation timestamps by ids of archived entries of each blog, which are 
+    * still in the persistence store since the archive call was interrupted 
+    * before they were deleted. The maps are never modified, they are replaced
+    * when the entries are archived or deleted. Blogs, which were not checked
+    * since the segments were opened, are not included.
+    */
+   protected final ConcurrentMap<Long, Map<Long, Timestamp>> m_mpUndeleted;
+
+   // Cached values ////////////////////////////////////////////////////////////
+
+   /**
+    * Logger for this class
+    */
+   private static Logger s_logger = Logger.getLogger(
+                                       ArchivingEntryFactory.class.getName());
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new archiving factory and open all segments found in the 
+    * directory.
+    *
+    * @param delegate - factory used to access the persistence store
+    * @param directory - directory containing the segment files, it is created
+    *                    if it doesn't exist
+    * @throws OSSException - the segments cannot be opened
+    */
+   public ArchivingEntryFactory(
+      EntryFactory delegate,
+      File         directory
+   ) throws OSSException
+   {
+      super(delegate);
+
+      Map<Long, List<ArchiveSegment>> mpSegments = new HashMap<>();
+      List<ArchiveSegment>            lstSegments;
+      final Map<File, Long>           mpSequences = new HashMap<>();
+      File[]                          arrFiles;
+      Matcher                         matcher;
+      long                            lSequence;
+
+      if (directory == null)
+      {
+         throw new IllegalArgumentException("Directory cannot be null");
+      }
+      if ((!directory.isDirectory()) && (!directory.mkdirs()))
+      {
+         throw new OSSInternalErrorException("Cannot create directory " 
+                                             + directory);
+      }
+      m_directory = directory;
+      m_mpSegments = new ConcurrentHashMap<>();
+      m_mpUndeleted = new ConcurrentHashMap<>();
+      m_lNextSequence = 1;
+
+      arrFiles = directory.listFiles();
+      try
+      {
+         for (File file : arrFiles)
+         {
+            matcher = SEGMENT_NAME.matcher(file.getName());
+            if (matcher.matches())
+            {
+               lSequence = Long.parseLong(matcher.group(2));
+               m_lNextSequence = Math.max(m_lNextSequence, lSequence + 1);
+               mpSequences.put(file, lSequence);
+               lstSegments = mpSegments.get(Long.valueOf(matcher.group(1)));
+               if (lstSegments == null)
+               {
+                  lstSegments = new ArrayList<>();
+                  mpSegments.put(Long.valueOf(matcher.group(1)), lstSegments);
+               }
+               lstSegments.add(new ArchiveSegment(file));
+            }
+            else if (file.getName().endsWith(".tmp"))
+            {
+               // Left behind when the process was interrupted while archiving
+               if (!file.delete())
+               {
+                  s_logger.log(Level.WARNING, 
+                               "Cannot delete temporary file {0}", file);
+               }
+            }
+         }
+      }
+      catch (IOException | NumberFormatException exc)
+      {
+         throw new OSSInternalErrorException("Cannot open archive segments in " 
+                                             + directory, exc);
+      }
+      for (Map.Entry<Long, List<ArchiveSegment>> blogSegments 
+          : mpSegments.entrySet())
+      {
+         lstSegments = blogSegments.getValue();
+         Collections.sort(lstSegments, new Comparator<ArchiveSegment>()
+         {
+            @Override
+            public int compare(
+               ArchiveSegment first,
+               ArchiveSegment second
+            )
+            {
+               return Long.compare(mpSequences.get(second.getFile()), 
+                                   mpSequences.get(first.getFile()));
+            }
+         });
+         m_mpSegments.put(blogSegments.getKey(), 
+                          Collections.unmodifiableList(lstSegments));
+      }
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Directory containing the segment files.
+    *
+    * @return File
+    */
+   public File getDirectory(
+   )
+   {
+      return m_directory;
+   }
+
+   /**
+    * Get segments of the blog.
+    *
+    * @param lBlogId - id of the blog
+    * @return List - segments ordered from the most recently created one, 
+    *                never null
+    */
+   public List<ArchiveSegment> getSegments(
+      long lBlogId
+   )
+   {
+      List<ArchiveSegment> lstSegments = m_mpSegments.get(lBlogId);
+
+      if (lstSegments == null)
+      {
+         lstSegments = Collections.emptyList();
+      }
+
+      return lstSegments;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Move entries of the blog created before the specified time from the 
+    * persistence store to new archive segment. The call can be repeated if it
+    * fails, entries which were already archived are only deleted from the 
+    * persistence store. Entries cannot be saved or deleted while they are 
+    * archived so that no change is lost when they are deleted from the 
+    * persistence store.
+    *
+    * @param lBlogId - id of the blog to archive
+    * @param olderThan - entries created before this time are archived
+    * @return int - number of entries removed from the persistence store
+    * @throws OSSException - an error has occurred
+    */
+   public synchronized int archive(
+      long      lBlogId,
+      Timestamp olderThan
+   ) throws OSSException
+   {
+      List<ArchiveSegment>  lstSegments = getSegments(lBlogId);
+      List<ArchiveSegment>  lstNewSegments = lstSegments;
+      Map<Long, Timestamp>  mpUndeleted;
+      Map<Long, Timestamp>  mpArchived = new HashMap<>();
+      Map<Long, List<Long>> mpDomainIds = new HashMap<>();
+      List<Long>            lstIds;
+      ArchiveSegmentWriter  writer;
+      EntryPageCursor       cursor;
+      EntryPage             page;
+      File                  file;
+
+      mpUndeleted = new HashMap<>(getUndeleted(lBlogId));
+      file = new File(m_directory, lBlogId + "-" + m_lNextSequence 
+                                   + SEGMENT_EXTENSION);
+      try
+      {
+         writer = new ArchiveSegmentWriter(file, lBlogId);
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSInternalErrorException("Cannot create archive segment " 
+                                             + file, ioeExc);
+      }
+      try
+      {
+         // The cursor positioned after the oldest possible entry created at 
+         // the specified time returns only entries created before that time
+         cursor = new EntryPageCursor(olderThan, Long.MIN_VALUE);
+         do
+         {
+            page = m_delegate.getPage(lBlogId, cursor, ARCHIVE_PAGE_SIZE);
+            for (Entry entry : page.getEntries())
+            {
+               // Entries already archived by interrupted archive call are
+               // only deleted
+               if (!isArchived(lstSegments, entry))
+               {
+                  writer.add(entry);
+               }
+               // Only ids are kept so the entries don't stay in memory
+               mpArchived.put(entry.getId(), entry.getCreationTimestamp());
+               lstIds = mpDomainIds.get(entry.getDomainId());
+               if (lstIds == null)
+               {
+                  lstIds = new ArrayList<>();
+                  mpDomainIds.put(entry.getDomainId(), lstIds);
+               }
+               lstIds.add(entry.getId());
+            }
+            cursor = page.getNextCursor();
+         }
+         while (page.hasNext());
+
+         if (writer.getCount() > 0)
+         {
+            writer.commit();
+            lstNewSegments = new ArrayList<>(lstSegments.size() + 1);
+            lstNewSegments.add(new ArchiveSegment(file));
+            lstNewSegments.addAll(lstSegments);
+            lstNewSegments = Collections.unmodifiableList(lstNewSegments);
+            m_lNextSequence++;
+         }
+         else
+         {
+            writer.abort();
+         }
+      }
+      catch (IOException ioeExc)
+      {
+         try
+         {
+            writer.abort();
+         }
+         catch (IOException ioeExc2)
+         {
+            s_logger.log(Level.WARNING, "Cannot delete temporary files.", 
+                         ioeExc2);
+         }
+         throw new OSSInternalErrorException("Cannot write archive segment " 
+                                             + file, ioeExc);
+      }
+      catch (OSSException ossExc)
+      {
+         try
+         {
+            writer.abort();
+         }
+         catch (IOException ioeExc2)
+         {
+            s_logger.log(Level.WARNING, "Cannot delete temporary files.", 
+                         ioeExc2);
+         }
+         throw ossExc;
+      }
+
+      // The entries are counted only once until they are deleted
+      mpUndeleted.putAll(mpArchived);
+      m_mpUndeleted.put(lBlogId, Collections.unmodifiableMap(
+                                    new HashMap<>(mpUndeleted)));
+      m_mpSegments.put(lBlogId, lstNewSegments);
+
+      for (Map.Entry<Long, List<Long>> domainIds : mpDomainIds.entrySet())
+      {
+         m_delegate.deleteAll(domainIds.getValue(), domainIds.getKey(), 
+                              DELETE_BATCH_SIZE);
+      }
+      mpUndeleted.keySet().removeAll(mpArchived.keySet());
+      m_mpUndeleted.put(lBlogId, Collections.unmodifiableMap(mpUndeleted));
+
+      return mpArchived.size();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      DataObject data = m_delegate.get(lId, lDomainId);
+
+      if (data == null)
+      {
+         data = findArchived(lId, lDomainId);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+      long lBlogId
+   ) throws OSSException
+   {
+      List<Entry> lstEntries = m_delegate.getAll(lBlogId);
+
+      if (!getSegments(lBlogId).isEmpty())
+      {
+         lstEntries = mergeAll(lBlogId, lstEntries);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Entry getLast(
+      long lBlogId
+   ) throws OSSException
+   {
+      return getLast(lBlogId, m_delegate.getLast(lBlogId));
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<Long, Entry> getLast(
+      Collection<Long> colBlogIds
+   ) throws OSSException
+   {
+      Map<Long, Entry> mpEntries = m_delegate.getLast(colBlogIds);
+      Map<Long, Entry> mpMerged = null;
+      Entry            last;
+
+      for (Long lBlogId : colBlogIds)
+      {
+         if (!getSegments(lBlogId).isEmpty())
+         {
+            if (mpMerged == null)
+            {
+               mpMerged = new HashMap<>(mpEntries);
+            }
+            last = getLast(lBlogId, mpEntries.get(lBlogId));
+            if (last != null)
+            {
+               mpMerged.put(lBlogId, last);
+            }
+         }
+      }
+
+      return (mpMerged == null) ? mpEntries : mpMerged;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getCount(
+      long lBlogId
+   ) throws OSSException
+   {
+      int iCount = m_delegate.getCount(lBlogId);
+
+      for (ArchiveSegment segment : getSegments(lBlogId))
+      {
+         iCount += segment.getCount();
+      }
+      // Entries which are also in the persistence store are counted once
+      iCount -= getUndeleted(lBlogId).size();
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getByMonth(
+      long lBlogId,
+      int  iYear,
+      int  iMonth
+   ) throws OSSException
+   {
+      List<Entry> lstEntries = m_delegate.getByMonth(lBlogId, iYear, iMonth);
+      List<Entry> lstArchived = new ArrayList<>();
+      Timestamp   start = EntryMonth.getStart(iYear, iMonth);
+      Timestamp   end = EntryMonth.getEnd(iYear, iMonth);
+      int         iIndex;
+
+      for (ArchiveSegment segment : getSegments(lBlogId))
+      {
+         // The entry with the lowest id is listed after all entries created 
+         // at the same time
+         iIndex = segment.find(new EntryPageCursor(end, Long.MIN_VALUE));
+         while ((iIndex < segment.getCount()) 
+                && (!segment.getCreationTimestamp(iIndex).before(start)))
+         {
+            lstArchived.add(segment.getEntry(iIndex++));
+         }
+      }
+      if (!lstArchived.isEmpty())
+      {
+         lstArchived.addAll(lstEntries);
+         Collections.sort(lstArchived, LISTING_ORDER);
+         lstEntries = removeDuplicates(lstArchived);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<EntryMonth> getMonthCounts(
+      long lBlogId
+   ) throws OSSException
+   {
+      List<EntryMonth>      lstMonths = m_delegate.getMonthCounts(lBlogId);
+      List<ArchiveSegment>  lstSegments = getSegments(lBlogId);
+      Map<Integer, Integer> mpMonths;
+      Integer               iCount;
+      int                   iKey;
+
+      if (!lstSegments.isEmpty())
+      {
+         mpMonths = new TreeMap<>(Collections.reverseOrder());
+         for (EntryMonth month : lstMonths)
+         {
+            mpMonths.put(month.getKey(), month.getCount());
+         }
+         for (ArchiveSegment segment : lstSegments)
+         {
+            for (EntryMonth month : segment.getMonthCounts())
+            {
+               iCount = mpMonths.get(month.getKey());
+               mpMonths.put(month.getKey(), (iCount == null) 
+                                            ? month.getCount()
+                                            : iCount + month.getCount());
+            }
+         }
+         // Entries which are also in the persistence store are counted once
+         for (Timestamp creationTimestamp : getUndeleted(lBlogId).values())
+         {
+            iKey = EntryMonth.getKey(creationTimestamp);
+            iCount = mpMonths.get(iKey);
+            if ((iCount == null) || (iCount <= 1))
+            {
+               mpMonths.remove(iKey);
+            }
+            else
+            {
+               mpMonths.put(iKey, iCount - 1);
+            }
+         }
+         lstMonths = new ArrayList<>(mpMonths.size());
+         for (Map.Entry<Integer, Integer> month : mpMonths.entrySet())
+         {
+            lstMonths.add(new EntryMonth(month.getKey(), month.getValue()));
+         }
+      }
+
+      return lstMonths;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Timestamp getLastModified(
+      long lBlogId
+   ) throws OSSException
+   {
+      Timestamp lastModified = m_delegate.getLastModified(lBlogId);
+      Timestamp segmentModified;
+
+      for (ArchiveSegment segment : getSegments(lBlogId))
+      {
+         segmentModified = segment.getLastModified();
+         if ((segmentModified != null) 
+            && ((lastModified == null) 
+               || (segmentModified.after(lastModified))))
+         {
+            lastModified = segmentModified;
+         }
+      }
+
+      return lastModified;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getModifiedSince(
+      long      lBlogId,
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      List<Entry> lstEntries = m_delegate.getModifiedSince(lBlogId, 
+                                                           modifiedSince);
+      List<Entry> lstArchived = new ArrayList<>();
+      Entry       entry;
+      Timestamp   lastModified;
+
+      for (ArchiveSegment segment : getSegments(lBlogId))
+      {
+         lastModified = segment.getLastModified();
+         // Millisecond precision of the segment is enough to skip segments
+         // without any modified entry
+         if ((lastModified != null) 
+            && (lastModified.getTime() >= modifiedSince.getTime()))
+         {
+            for (int iIndex = 0; iIndex < segment.getCount(); iIndex++)
+            {
+               entry = segment.getEntry(iIndex);
+               if (entry.getModificationTimestamp().after(modifiedSince))
+               {
+                  lstArchived.add(entry);
+               }
+            }
+         }
+      }
+      if (!lstArchived.isEmpty())
+      {
+         lstArchived.addAll(lstEntries);
+         Collections.sort(lstArchived, MODIFICATION_ORDER);
+         lstEntries = removeDuplicates(lstArchived);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      return mergePage(lBlogId, cursor, iLimit, 
+                       m_delegate.getPage(lBlogId, cursor, iLimit));
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * Archived entries are always returned with all their fields.
+    */
+   @Override
+   public List<Entry> getAll(
+      long                 lBlogId,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      List<Entry> lstEntries = m_delegate.getAll(lBlogId, fields);
+
+      if (!getSegments(lBlogId).isEmpty())
+      {
+         lstEntries = mergeAll(lBlogId, lstEntries);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * Archived entries are always returned with all their fields.
+    */
+   @Override
+   public EntryPage getPage(
+      long                 lBlogId,
+      EntryPageCursor      cursor,
+      int                  iLimit,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      return mergePage(lBlogId, cursor, iLimit, 
+                       m_delegate.getPage(lBlogId, cursor, iLimit, fields));
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * Archived entries are always returned with their comments.
+    */
+   @Override
+   public List<Entry> getSummaries(
+      long lBlogId
+   ) throws OSSException
+   {
+      List<Entry> lstEntries = m_delegate.getSummaries(lBlogId);
+
+      if (!getSegments(lBlogId).isEmpty())
+      {
+         lstEntries = mergeAll(lBlogId, lstEntries);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * Archived entries are always returned with their comments.
+    */
+   @Override
+   public EntryPage getSummaryPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      return mergePage(lBlogId, cursor, iLimit, 
+                       m_delegate.getSummaryPage(lBlogId, cursor, iLimit));
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String getComments(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      String strComments = m_delegate.getComments(lId, lDomainId);
+      Entry  entry;
+
+      if (strComments == null)
+      {
+         entry = findArchived(lId, lDomainId);
+         if (entry != null)
+         {
+            strComments = entry.getComments();
+         }
+      }
+
+      return strComments;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int forEach(
+      long         lBlogId,
+      EntryHandler handler
+   ) throws OSSException
+   {
+      List<ArchiveSegment> lstSegments = getSegments(lBlogId);
+      MergingHandler       merging;
+
+      if (lstSegments.isEmpty())
+      {
+         return m_delegate.forEach(lBlogId, handler);
+      }
+      merging = new MergingHandler(handler, lstSegments);
+      m_delegate.forEach(lBlogId, merging);
+      merging.flush(null);
+
+      return merging.getCount();
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * @throws OSSArchivedEntryException - any of the entries is archived
+    */
+   @Override
+   public synchronized List<Entry> saveAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      for (Entry data : colEntries)
+      {
+         checkNotArchived(data);
+      }
+
+      return m_delegate.saveAll(colEntries, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * @throws OSSArchivedEntryException - the entry is archived
+    */
+   @Override
+   public synchronized ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      if (data instanceof Entry)
+      {
+         checkNotArchived((Entry)data);
+      }
+      else
+      {
+         checkNotArchived(data.getId(), data.getDomainId());
+      }
+
+      return m_delegate.save(data);
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * @throws OSSArchivedEntryException - any of the entries is archived
+    */
+   @Override
+   public synchronized int deleteAll(
+      Collection<Long> colIds,
+      long             lDomainId,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      for (Long lId : colIds)
+      {
+         checkNotArchived(lId, lDomainId);
+      }
+
+      return m_delegate.deleteAll(colIds, lDomainId, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * @throws OSSArchivedEntryException - the entry is archived
+    */
+   @Override
+   public synchronized void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      checkNotArchived(lId, lDomainId);
+      m_delegate.delete(lId, lDomainId);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Check that the entry is not archived so it can be modified. Only the 
+    * segments of the blog the entry belongs to are searched.
+    *
+    * @param data - entry to check
+    * @throws OSSArchivedEntryException - the entry is archived
+    * @throws OSSException - an error has occurred
+    */
+   protected void checkNotArchived(
+      Entry data
+   ) throws OSSException
+   {
+      if ((data.getId() != DataObject.NEW_ID) 
+          && (findArchived(getSegments(data.getParentId()), data.getId(), 
+                           data.getDomainId()) != null))
+      {
+         throw new OSSArchivedEntryException(data.getId());
+      }
+   }
+
+   /**
+    * Check that the entry is not archived so it can be modified or deleted.
+    * Segments of all blogs are searched since the blog of the entry is not 
+    * known.
+    *
+    * @param lId - id of the entry
+    * @param lDomainId - id of the domain the entry belongs to
+    * @throws OSSArchivedEntryException - the entry is archived
+    * @throws OSSException - an error has occurred
+    */
+   protected void checkNotArchived(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      if ((lId != DataObject.NEW_ID) && (findArchived(lId, lDomainId) != null))
+      {
+         throw new OSSArchivedEntryException(lId);
+      }
+   }
+
+   /**
+    * Get archived entries of the blog, which are still in the persistence 
+    * store since the archive call was interrupted. The persistence store is 
+    * checked when this is called for the first time for the blog.
+    *
+    * @param lBlogId - id of the blog
+    * @return Map - creation timestamps by ids of the entries, never null
+    * @throws OSSException - an error has occurred
+    */
+   protected Map<Long, Timestamp> getUndeleted(
+      long lBlogId
+   ) throws OSSException
+   {
+      Map<Long, Timestamp> mpUndeleted = m_mpUndeleted.get(lBlogId);
+      Map<Long, Timestamp> mpExisting;
+      List<ArchiveSegment> lstSegments;
+      Entry                newest;
+      EntryPageCursor      cursor;
+      EntryPage            page;
+
+      if (mpUndeleted == null)
+      {
+         lstSegments = getSegments(lBlogId);
+         newest = getLast(lBlogId, null);
+         if (newest == null)
+         {
+            return Collections.emptyMap();
+         }
+         // Only entries which are not newer than the newest archived one can 
+         // be archived
+         mpUndeleted = new HashMap<>();
+         cursor = new EntryPageCursor(newest.getCreationTimestamp(), 
+                                      newest.getId() + 1);
+         do
+         {
+            page = m_delegate.getPage(lBlogId, cursor, ARCHIVE_PAGE_SIZE,
+                                      EnumSet.of(EntryFields.ENTRY_ID));
+            for (Entry entry : page.getEntries())
+            {
+               if (isArchived(lstSegments, entry))
+               {
+                  mpUndeleted.put(entry.getId(), 
+                                  entry.getCreationTimestamp());
+               }
+            }
+            cursor = page.getNextCursor();
+         }
+         while (page.hasNext());
+         mpUndeleted = Collections.unmodifiableMap(mpUndeleted);
+         mpExisting = m_mpUndeleted.putIfAbsent(lBlogId, mpUndeleted);
+         if (mpExisting != null)
+         {
+            mpUndeleted = mpExisting;
+         }
+      }
+
+      return mpUndeleted;
+   }
+
+   /**
+    * Check if the entry is already stored in any of the segments.
+    *
+    * @param lstSegments - segments to check
+    * @param entry - entry to find
+    * @return boolean - true if the entry is archived
+    */
+   protected static boolean isArchived(
+      List<ArchiveSegment> lstSegments,
+      Entry                entry
+   )
+   {
+      for (ArchiveSegment segment : lstSegments)
+      {
+         if (segment.contains(entry.getCreationTimestamp(), entry.getId()))
+         {
+            return true;
+         }
+      }
+
+      return false;
+   }
+
+   /**
+    * Find archived entry by its id.
+    *
+    * @param lId - id of the entry
+    * @param lDomainId - id of the domain the entry belongs to
+    * @return Entry - archived entry or null if it is not archived
+    * @throws OSSException - an error has occurred
+    */
+   protected Entry findArchived(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Entry entry;
+
+      for (List<ArchiveSegment> lstSegments : m_mpSegments.values())
+      {
+         entry = findArchived(lstSegments, lId, lDomainId);
+         if (entry != null)
+         {
+            return entry;
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Find archived entry by its id in the specified segments. Segments which
+    * cannot contain the id are skipped without reading their index.
+    *
+    * @param lstSegments - segments to search
+    * @param lId - id of the entry
+    * @param lDomainId - id of the domain the entry belongs to
+    * @return Entry - archived entry or null if it is not archived
+    * @throws OSSException - an error has occurred
+    */
+   protected static Entry findArchived(
+      List<ArchiveSegment> lstSegments,
+      long                 lId,
+      long                 lDomainId
+   ) throws OSSException
+   {
+      Entry entry;
+      int   iIndex;
+
+      for (ArchiveSegment segment : lstSegments)
+      {
+         iIndex = segment.indexOf(lId);
+         if (iIndex != -1)
+         {
+            entry = segment.getEntry(iIndex);
+            return (entry.getDomainId() == lDomainId) ? entry : null;
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Get the most recent of the last entry from the persistence store and the
+    * archived entries.
+    *
+    * @param lBlogId - id of the blog
+    * @param last - last entry from the persistence store, can be null
+    * @return Entry - the most recent entry or null if there is none
+    * @throws OSSException - an error has occurred
+    */
+   protected Entry getLast(
+      long  lBlogId,
+      Entry last
+   ) throws OSSException
+   {
+      Entry archived;
+
+      for (ArchiveSegment segment : getSegments(lBlogId))
+      {
+         if (segment.getCount() > 0)
+         {
+            archived = segment.getEntry(0);
+            if ((last == null) 
+               || (ArchiveSegmentWriter.precedes(archived, last)))
+            {
+               last = archived;
+            }
+         }
+      }
+
+      return last;
+   }
+
+   /**
+    * Merge all archived entries of the blog with the entries from the 
+    * persistence store.
+    *
+    * @param lBlogId - id of the blog
+    * @param lstEntries - entries from the persistence store, can be null
+    * @return List - merged entries sorted from the most recent to the oldest
+    *                one or null if there are none
+    * @throws OSSException - an error has occurred
+    */
+   protected List<Entry> mergeAll(
+      long        lBlogId,
+      List<Entry> lstEntries
+   ) throws OSSException
+   {
+      List<Entry> lstMerged = new ArrayList<>();
+
+      if (lstEntries != null)
+      {
+         lstMerged.addAll(lstEntries);
+      }
+      for (ArchiveSegment segment : getSegments(lBlogId))
+      {
+         lstMerged.addAll(segment.getEntries(null, segment.getCount()));
+      }
+      if (lstMerged.isEmpty())
+      {
+         return lstEntries;
+      }
+      Collections.sort(lstMerged, LISTING_ORDER);
+
+      return removeDuplicates(lstMerged);
+   }
+
+   /**
+    * Merge archived entries following the cursor into the page read from the
+    * persistence store.
+    *
+    * @param lBlogId - id of the blog
+    * @param cursor - cursor used to read the page
+    * @param iLimit - maximal number of entries on the page
+    * @param page - page read from the persistence store
+    * @return EntryPage - merged page
+    * @throws OSSException - an error has occurred
+    */
+   protected EntryPage mergePage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit,
+      EntryPage       page
+   ) throws OSSException
+   {
+      List<ArchiveSegment> lstSegments = getSegments(lBlogId);
+      List<Entry>          lstMerged;
+      boolean              bHasNext;
+
+      if (lstSegments.isEmpty())
+      {
+         return page;
+      }
+      lstMerged = new ArrayList<>(page.getEntries());
+      for (ArchiveSegment segment : lstSegments)
+      {
+         // One more entry tells if there is next page
+         lstMerged.addAll(segment.getEntries(cursor, iLimit + 1));
+      }
+      Collections.sort(lstMerged, LISTING_ORDER);
+      lstMerged = removeDuplicates(lstMerged);
+      bHasNext = page.hasNext() || (lstMerged.size() > iLimit);
+      if (lstMerged.size() > iLimit)
+      {
+         lstMerged = new ArrayList<>(lstMerged.subList(0, iLimit));
+      }
+
+      return new EntryPage(lstMerged, 
+                           (bHasNext && (!lstMerged.isEmpty()))
+                           ? new EntryPageCursor(
+                                lstMerged.get(lstMerged.size() - 1))
+                           : null);
+   }
+
+   /**
+    * Remove entries with the same id following each other. The same entry can
+    * be both in the persistence store and in a segment if the process was 
+    * interrupted while archiving.
+    *
+    * @param lstEntries - sorted entries, it is modified
+    * @return List - the same list
+    */
+   protected static List<Entry> removeDuplicates(
+      List<Entry> lstEntries
+   )
+   {
+      Iterator<Entry> itEntries = lstEntries.iterator();
+      Entry           previous = null;
+      Entry           entry;
+
+      while (itEntries.hasNext())
+      {
+         entry = itEntries.next();
+         if ((previous != null) && (previous.getId() == entry.getId()))
+         {
+            itEntries.remove();
+         }
+         else
+         {
+            previous = entry;
+         }
+      }
+
+      return lstEntries;
+   }
+}
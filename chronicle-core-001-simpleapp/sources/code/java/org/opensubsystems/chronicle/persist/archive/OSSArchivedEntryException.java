@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.archive;
+
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Exception signaling attempt to modify or delete archived entry. Archived 
+ * entries are stored in immutable segments so they are read-only.
+ *
+ * @author bastafidli
+ */
+public class OSSArchivedEntryException extends OSSException
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Generated serial version id for this class.
+    */
+   private static final long serialVersionUID = 1L;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Id of the archived entry.
+    */
+   protected final long m_lEntryId;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new exception.
+    *
+    * @param lEntryId - id of the archived entry
+    */
+   public OSSArchivedEntryException(
+      long lEntryId
+   )
+   {
+      super("Entry " + lEntryId + " is archived, archived entries are" 
+            + " read-only.");
+      m_lEntryId = lEntryId;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Id of the archived entry.
+    *
+    * @return long
+    */
+   public long getEntryId(
+   )
+   {
+      return m_lEntryId;
+   }
+}
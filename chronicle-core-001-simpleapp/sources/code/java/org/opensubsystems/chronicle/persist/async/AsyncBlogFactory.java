@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.async;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.persist.BlogFactory;
+import org.opensubsystems.chronicle.persist.DelegatingBlogFactory;
+
+/**
+ * Blog factory which can also retrieve blogs in parallel with the calling 
+ * thread. This allows to retrieve the blog together with its entries when 
+ * a page is assembled instead of retrieving them one after another. 
+ *
+ * @author bastafidli
+ */
+public class AsyncBlogFactory extends DelegatingBlogFactory
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Executor running the queries.
+    */
+   protected final QueryExecutor m_executor;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new asynchronous factory.
+    *
+    * @param delegate - factory used to access the persistence store
+    * @param executor - executor running the queries, it should be shared by 
+    *                   all factories accessing the same data source
+    */
+   public AsyncBlogFactory(
+      BlogFactory   delegate,
+      QueryExecutor executor
+   )
+   {
+      super(delegate);
+
+      if (executor == null)
+      {
+         throw new IllegalArgumentException("Query executor cannot be null");
+      }
+      m_executor = executor;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Executor running the queries.
+    *
+    * @return QueryExecutor
+    */
+   public QueryExecutor getExecutor(
+   )
+   {
+      return m_executor;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Get blog identified by specified folder in parallel with the calling 
+    * thread.
+    *
+    * @param  strFolder - folder of the blog to get
+    * @return Future - blog or null if the blog doesn't exist
+    * @see BlogFactory#get(String)
+    */
+   public Future<Blog> getAsync(
+      final String strFolder
+   )
+   {
+      return m_executor.submit(new Callable<Blog>()
+      {
+         @Override
+         public Blog call(
+         ) throws Exception
+         {
+            return m_delegate.get(strFolder);
+         }
+      });
+   }
+
+   /**
+    * Get all blogs in parallel with the calling thread.
+    *
+    * @return Future - list of blogs or null if none exists
+    * @see BlogFactory#getAll()
+    */
+   public Future<List> getAllAsync(
+   )
+   {
+      return m_executor.submit(new Callable<List>()
+      {
+         @Override
+         public List call(
+         ) throws Exception
+         {
+            return m_delegate.getAll();
+         }
+      });
+   }
+}
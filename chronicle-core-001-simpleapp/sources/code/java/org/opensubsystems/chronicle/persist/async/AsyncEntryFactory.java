@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.async;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.DelegatingEntryFactory;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.chronicle.persist.EntryPageCursor;
+
+/**
+ * Entry factory which can also retrieve entries in parallel with the calling 
+ * thread. This allows to retrieve the last entry of a blog and a page of its 
+ * entries at the same time when a page is assembled instead of retrieving 
+ * them one after another. 
+ *
+ * @author bastafidli
+ */
+public class AsyncEntryFactory extends DelegatingEntryFactory
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Executor running the queries.
+    */
+   protected final QueryExecutor m_executor;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new asynchronous factory.
+    *
+    * @param delegate - factory used to access the persistence store
+    * @param executor - executor running the queries, it should be shared by 
+    *                   all factories accessing the same data source
+    */
+   public AsyncEntryFactory(
+      EntryFactory  delegate,
+      QueryExecutor executor
+   )
+   {
+      super(delegate);
+
+      if (executor == null)
+      {
+         throw new IllegalArgumentException("Query executor cannot be null");
+      }
+      m_executor = executor;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Executor running the queries.
+    *
+    * @return QueryExecutor
+    */
+   public QueryExecutor getExecutor(
+   )
+   {
+      return m_executor;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Get all entries from blog in parallel with the calling thread.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @return Future - list of entries sorted from the most recent to the 
+    *                  oldest one or null if none exists
+    * @see EntryFactory#getAll(long)
+    */
+   public Future<List> getAllAsync(
+      final long lBlogId
+   )
+   {
+      return m_executor.submit(new Callable<List>()
+      {
+         @Override
+         public List call(
+         ) throws Exception
+         {
+            return m_delegate.getAll(lBlogId);
+         }
+      });
+   }
+
+   /**
+    * Get last entry added to the specified blog in parallel with the calling 
+    * thread.
+    *
+    * @param  lBlogId - id of the blog to get entry from
+    * @return Future - last added entry or null if no entry could be found
+    * @see EntryFactory#getLast(long)
+    */
+   public Future<Entry> getLastAsync(
+      final long lBlogId
+   )
+   {
+      return m_executor.submit(new Callable<Entry>()
+      {
+         @Override
+         public Entry call(
+         ) throws Exception
+         {
+            return m_delegate.getLast(lBlogId);
+         }
+      });
+   }
+
+   /**
+    * Get single page of entries from blog in parallel with the calling thread.
+    *
+    * @param  lBlogId - id of the blog to get entries from
+    * @param  cursor - cursor returned with the previous page or null to get 
+    *                  the first page
+    * @param  iLimit - maximal number of entries on the page
+    * @return Future - page of entries sorted from the most recent to the 
+    *                  oldest one
+    * @see EntryFactory#getPage(long, EntryPageCursor, int)
+    */
+   public Future<EntryPage> getPageAsync(
+      final long            lBlogId,
+      final EntryPageCursor cursor,
+      final int             iLimit
+   )
+   {
+      return m_executor.submit(new Callable<EntryPage>()
+      {
+         @Override
+         public EntryPage call(
+         ) throws Exception
+         {
+            return m_delegate.getPage(lBlogId, cursor, iLimit);
+         }
+      });
+   }
+}
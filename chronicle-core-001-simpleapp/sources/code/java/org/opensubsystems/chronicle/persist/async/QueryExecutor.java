@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.async;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor of queries run in parallel with the thread requesting them. Single
+ * executor should be shared by all factories accessing the same data source 
+ * since it limits how many queries can run at the same time so that they do 
+ * not exhaust connections of the data source. 
+ * 
+ * Every query is run by its own virtual thread if the JVM supports them and 
+ * the threads wait for a permit of the executor before the query is run, 
+ * otherwise the queries are run by a pool of daemon threads with the same 
+ * size as the limit. Queries submitted while the maximal number of queries is
+ * already running or waiting are rejected rather than queued, since the 
+ * caller is expected to wait for the results anyway and a burst of requests 
+ * accumulating without limit would only keep the waiting callers and their
+ * threads in memory until the data source catches up.
+ *
+ * @author bastafidli
+ */
+public class QueryExecutor
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Default maximal number of queries running at the same time.
+    */
+   public static final int DEFAULT_MAX_CONCURRENT_QUERIES = 10;
+
+   /**
+    * Default maximal number of queries waiting to be run.
+    */
+   public static final int DEFAULT_MAX_PENDING_QUERIES = 100;
+
+   /**
+    * Time after which idle threads of the pool are stopped.
+    */
+   protected static final long IDLE_THREAD_TIMEOUT = 60;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Executor running the queries.
+    */
+   protected final ExecutorService m_executor;
+
+   /**
+    * Permits for queries to run, there is one for each query which can run at 
+    * the same time.
+    */
+   protected final Semaphore m_permits;
+
+   /**
+    * Permits for queries to be submitted, there is one for each query which 
+    * can run or wait to be run at the same time. They are never waited for, 
+    * query is rejected if there is no permit available.
+    */
+   protected final Semaphore m_submitPermits;
+
+   /**
+    * Maximal number of queries running at the same time.
+    */
+   protected final int m_iMaxConcurrentQueries;
+
+   /**
+    * Maximal number of queries waiting to be run.
+    */
+   protected final int m_iMaxPendingQueries;
+
+   /**
+    * Flag signaling if the queries are run using virtual threads.
+    */
+   protected final boolean m_bVirtualThreads;
+
+   // Cached values ////////////////////////////////////////////////////////////
+
+   /**
+    * Logger for this class
+    */
+   private static Logger s_logger = Logger.getLogger(
+                                       QueryExecutor.class.getName());
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new executor with the default limits of queries.
+    */
+   public QueryExecutor(
+   )
+   {
+      this(DEFAULT_MAX_CONCURRENT_QUERIES);
+   }
+
+   /**
+    * Create new executor with the default limit of waiting queries.
+    *
+    * @param iMaxConcurrentQueries - maximal number of queries running at the 
+    *                                same time, it shouldn't be more than the 
+    *                                maximal number of connections of the data 
+    *                                source
+    */
+   public QueryExecutor(
+      int iMaxConcurrentQueries
+   )
+   {
+      this(iMaxConcurrentQueries, DEFAULT_MAX_PENDING_QUERIES);
+   }
+
+   /**
+    * Create new executor.
+    *
+    * @param iMaxConcurrentQueries - maximal number of queries running at the 
+    *                                same time, it shouldn't be more than the 
+    *                                maximal number of connections of the data 
+    *                                source
+    * @param iMaxPendingQueries - maximal number of queries waiting to be run
+    */
+   public QueryExecutor(
+      int iMaxConcurrentQueries,
+      int iMaxPendingQueries
+   )
+   {
+      ExecutorService executor;
+
+      if (iMaxConcurrentQueries <= 0)
+      {
+         throw new IllegalArgumentException(
+                      "Maximal number of concurrent queries has to be positive");
+      }
+      if (iMaxPendingQueries <= 0)
+      {
+         throw new IllegalArgumentException(
+                      "Maximal number of pending queries has to be positive");
+      }
+      m_iMaxConcurrentQueries = iMaxConcurrentQueries;
+      m_iMaxPendingQueries = iMaxPendingQueries;
+      m_permits = new Semaphore(iMaxConcurrentQueries, true);
+      m_submitPermits = new Semaphore(iMaxConcurrentQueries 
+                                      + iMaxPendingQueries);
+
+      executor = createVirtualThreadExecutor();
+      m_bVirtualThreads = (executor != null);
+      if (executor == null)
+      {
+         executor = createThreadPool(iMaxConcurrentQueries);
+      }
+      m_executor = executor;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Maximal number of queries running at the same time.
+    *
+    * @return int
+    */
+   public int getMaxConcurrentQueries(
+   )
+   {
+      return m_iMaxConcurrentQueries;
+   }
+
+   /**
+    * Maximal number of queries waiting to be run.
+    *
+    * @return int
+    */
+   public int getMaxPendingQueries(
+   )
+   {
+      return m_iMaxPendingQueries;
+   }
+
+   /**
+    * Flag signaling if the queries are run using virtual threads.
+    *
+    * @return boolean
+    */
+   public boolean isUsingVirtualThreads(
+   )
+   {
+      return m_bVirtualThreads;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Run the query in parallel with the calling thread. The query waits until
+    * less than the maximal number of queries is running, the calling thread 
+    * never waits.
+    *
+    * @param query - query to run
+    * @return Future - result of the query, any error thrown by the query is 
+    *                  available as the cause of the ExecutionException
+    * @throws RejectedExecutionException - the maximal number of queries is 
+    *         already waiting to be run or the executor was already shut down
+    */
+   public <T> Future<T> submit(
+      final Callable<T> query
+   )
+   {
+      FutureTask<T> task;
+
+      if (!m_submitPermits.tryAcquire())
+      {
+         throw new RejectedExecutionException("Maximal number of " 
+                                              + m_iMaxPendingQueries 
+                                              + " queries is waiting to run");
+      }
+      task = new FutureTask<T>(new Callable<T>()
+      {
+         @Override
+         public T call(
+         ) throws Exception
+         {
+            m_permits.acquire();
+            try
+            {
+               return query.call();
+            }
+            finally
+            {
+               m_permits.release();
+            }
+         }
+      })
+      {
+         @Override
+         protected void done(
+         )
+         {
+            // Called also when the query is cancelled before it was run
+            m_submitPermits.release();
+         }
+      };
+      try
+      {
+         m_executor.execute(task);
+      }
+      catch (RejectedExecutionException reeExc)
+      {
+         m_submitPermits.release();
+         throw reeExc;
+      }
+
+      return task;
+   }
+
+   /**
+    * Stop accepting new queries. The queries already submitted are still run.
+    */
+   public void shutdown(
+   )
+   {
+      m_executor.shutdown();
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Create executor starting new virtual thread for every task. The method is
+    * looked up dynamically since virtual threads are available only in newer
+    * JVMs than the one this code is compiled for.
+    *
+    * @return ExecutorService - executor or null if virtual threads are not 
+    *                           supported
+    */
+   protected static ExecutorService createVirtualThreadExecutor(
+   )
+   {
+      ExecutorService executor = null;
+      Method          method;
+
+      try
+      {
+         method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+         executor = (ExecutorService)method.invoke(null);
+      }
+      catch (NoSuchMethodException nsmeExc)
+      {
+         // Virtual threads are not supported by this JVM
+      }
+      catch (IllegalAccessException | InvocationTargetException exc)
+      {
+         s_logger.log(Level.WARNING, "Cannot create executor using virtual" 
+                      + " threads, pool of threads will be used instead.", exc);
+      }
+
+      return executor;
+   }
+
+   /**
+    * Create pool of daemon threads running the queries. The pool has the same 
+    * number of threads as is the number of queries which can run at the same
+    * time so that no thread is ever blocked waiting for a permit. Its queue 
+    * doesn't have to be bounded since the number of submitted queries is 
+    * limited by the permits to submit them.
+    *
+    * @param iThreads - maximal number of threads in the pool
+    * @return ExecutorService - pool of threads
+    */
+   protected static ExecutorService createThreadPool(
+      int iThreads
+   )
+   {
+      ThreadPoolExecutor pool;
+
+      pool = new ThreadPoolExecutor(iThreads, iThreads, IDLE_THREAD_TIMEOUT, 
+                                    TimeUnit.SECONDS, 
+                                    new LinkedBlockingQueue<Runnable>(), 
+                                    new ThreadFactory()
+      {
+         /**
+          * Number of threads created so far.
+          */
+         private final AtomicInteger m_iThreadCount = new AtomicInteger();
+
+         @Override
+         public Thread newThread(
+            Runnable task
+         )
+         {
+            Thread thread = new Thread(task, "chronicle-query-" 
+                                       + m_iThreadCount.incrementAndGet());
+
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      pool.allowCoreThreadTimeOut(true);
+
+      return pool;
+   }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.cache;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.persist.BlogFactory;
+import org.opensubsystems.chronicle.persist.DelegatingBlogFactory;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Blog factory caching blogs retrieved by their folder. Blogs are looked up by
+ * folder on every request and they change rarely so the cache takes the most 
+ * frequent query from the persistence store. Unknown folders are cached too so
+ * that requests for not existing blogs do not reach the persistence store.
+ * 
+ * The cache is invalidated when blogs are created, saved or deleted using this
+ * factory, modifications made directly in the persistence store become visible
+ * once the cached values expire.
+ * 
+ * Every caller receives its own copy of the cached blog so that a caller 
+ * modifying the blog it has received never changes the blog seen by others.
+ *
+ * @author bastafidli
+ */
+public class CachedBlogFactory extends DelegatingBlogFactory
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Default maximal number of cached blogs.
+    */
+   public static final int DEFAULT_CAPACITY = 1000;
+
+   /**
+    * Default time to live of cached blogs in seconds.
+    */
+   public static final long DEFAULT_TIME_TO_LIVE = 300;
+
+   /**
+    * Default time to live of cached unknown folders in seconds.
+    */
+   public static final long DEFAULT_NEGATIVE_TIME_TO_LIVE = 30;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Cache of blogs by their folders.
+    */
+   protected final ExpiringLruCache<String, Blog> m_cache;
+
+   /**
+    * Folders of the cached blogs by ids of the blogs so that blog can be 
+    * removed from the cache by its id. There is at most one folder for each
+    * blog, folders of blogs evicted from the cache are kept until the blog is
+    * invalidated.
+    */
+   protected final ConcurrentMap<Long, String> m_mpFolders;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new caching factory using default cache settings.
+    *
+    * @param delegate - factory used to access the persistence store
+    */
+   public CachedBlogFactory(
+      BlogFactory delegate
+   )
+   {
+      this(delegate, DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE, 
+           DEFAULT_NEGATIVE_TIME_TO_LIVE, TimeUnit.SECONDS);
+   }
+
+   /**
+    * Create new caching factory.
+    *
+    * @param delegate - factory used to access the persistence store
+    * @param iCapacity - maximal number of cached blogs
+    * @param lTimeToLive - time to live of cached blogs, 0 if they do not expire
+    * @param lNegativeTimeToLive - time to live of cached unknown folders, 0 if 
+    *                              they do not expire
+    * @param unit - unit of the time to live values
+    */
+   public CachedBlogFactory(
+      BlogFactory delegate,
+      int         iCapacity,
+      long        lTimeToLive,
+      long        lNegativeTimeToLive,
+      TimeUnit    unit
+   )
+   {
+      super(delegate);
+
+      m_cache = new ExpiringLruCache<>(iCapacity, lTimeToLive, 
+                                       lNegativeTimeToLive, unit);
+      m_mpFolders = new ConcurrentHashMap<>();
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Cache of blogs by their folders.
+    *
+    * @return ExpiringLruCache
+    */
+   public ExpiringLruCache<String, Blog> getCache(
+   )
+   {
+      return m_cache;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Blog get(
+      String strFolder
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<Blog> cached;
+      Blog                               data;
+      long                               lGeneration;
+
+      if (strFolder == null)
+      {
+         data = m_delegate.get(strFolder);
+      }
+      else
+      {
+         cached = m_cache.lookup(strFolder);
+         if (cached != null)
+         {
+            data = copy(cached.getValue());
+         }
+         else
+         {
+            lGeneration = m_cache.getGeneration();
+            data = m_delegate.get(strFolder);
+            if (data != null)
+            {
+               m_mpFolders.put(data.getId(), strFolder);
+            }
+            m_cache.put(strFolder, copy(data), lGeneration);
+         }
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      DataObject created = m_delegate.create(data);
+
+      cache(created);
+
+      return created;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      int iCreated;
+
+      try
+      {
+         iCreated = m_delegate.create(colDataObject);
+      }
+      finally
+      {
+         // The created blogs are not returned so just forget the folders which
+         // may have been cached as unknown
+         for (DataObject data : colDataObject)
+         {
+            if ((data instanceof Blog) && (((Blog)data).getFolder() != null))
+            {
+               m_cache.remove(((Blog)data).getFolder());
+            }
+         }
+      }
+
+      return iCreated;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> createAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      List<Blog> lstCreated;
+
+      try
+      {
+         lstCreated = m_delegate.createAll(colBlogs, iBatchSize);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         for (Blog data : colBlogs)
+         {
+            if (data.getFolder() != null)
+            {
+               m_cache.remove(data.getFolder());
+            }
+         }
+         throw exc;
+      }
+      for (Blog data : lstCreated)
+      {
+         cache(data);
+      }
+
+      return lstCreated;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> saveAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      List<Blog> lstSaved;
+
+      try
+      {
+         lstSaved = m_delegate.saveAll(colBlogs, iBatchSize);
+      }
+      finally
+      {
+         for (Blog data : colBlogs)
+         {
+            invalidate(data.getId());
+         }
+      }
+      for (Blog data : lstSaved)
+      {
+         cache(data);
+      }
+
+      return lstSaved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      ModifiableDataObject saved;
+
+      try
+      {
+         saved = m_delegate.save(data);
+      }
+      finally
+      {
+         // The folder of the blog may have changed
+         invalidate(data.getId());
+      }
+      cache(saved);
+
+      return saved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      try
+      {
+         m_delegate.delete(lId, lDomainId);
+      }
+      finally
+      {
+         invalidate(lId);
+      }
+   }
+
+   /**
+    * Remove blog with the specified id from the cache.
+    *
+    * @param lId - id of the blog to remove
+    */
+   public void invalidate(
+      long lId
+   )
+   {
+      String strFolder = m_mpFolders.remove(lId);
+
+      if (strFolder != null)
+      {
+         m_cache.remove(strFolder);
+      }
+      else
+      {
+         // The blog may be just being loaded under a folder not known yet
+         m_cache.invalidateLoads();
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Cache blog which was just written to the persistence store.
+    *
+    * @param data - written blog
+    * @throws OSSException - an error has occurred
+    */
+   protected void cache(
+      DataObject data
+   ) throws OSSException
+   {
+      Blog blog;
+
+      if (data instanceof Blog)
+      {
+         blog = (Blog)data;
+         if (blog.getFolder() != null)
+         {
+            m_mpFolders.put(blog.getId(), blog.getFolder());
+            m_cache.update(blog.getFolder(), copy(blog));
+         }
+      }
+   }
+
+   /**
+    * Create copy of blog so that the cached blog is never shared with the 
+    * callers.
+    *
+    * @param data - blog to copy, may be null
+    * @return Blog - copy of the blog or null if the blog was null
+    * @throws OSSException - an error has occurred
+    */
+   protected Blog copy(
+      Blog data
+   ) throws OSSException
+   {
+      Blog copy = null;
+
+      if (data != null)
+      {
+         copy = new Blog(data.getId(), data.getDomainId(), 
+                         copy(data.getCreationTimestamp()), 
+                         copy(data.getModificationTimestamp()), 
+                         data.getFolder(), 
+                         data.getCaption(), data.getComments(), 
+                         data.getIsPreformated());
+      }
+
+      return copy;
+   }
+
+   /**
+    * Create copy of timestamp since timestamps are mutable.
+    *
+    * @param timestamp - timestamp to copy, may be null
+    * @return Timestamp - copy of the timestamp or null if it was null
+    */
+   protected Timestamp copy(
+      Timestamp timestamp
+   )
+   {
+      return (timestamp == null) ? null : (Timestamp)timestamp.clone();
+   }
+}
@@ -0,0 +1,1031 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.cache;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.DelegatingEntryFactory;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Entry factory caching the last entry, the number of entries and the number
+ * of entries in every month of each blog. The last entry is used to display 
+ * headers of blogs and the numbers of entries to display pagers and archives 
+ * and all of them are read much more often than entries change. The caches 
+ * are updated whenever entries are created, saved or deleted using this 
+ * factory so they never return stale data after a post. Cached entry is 
+ * replaced only by a version with the same or more recent modification 
+ * timestamp so that concurrent writes cannot replace newer version of the 
+ * entry with an older one.
+ * 
+ * Every caller receives its own copy of the cached last entry so that a 
+ * caller modifying the entry it has received never changes the entry seen by
+ * others.
+ *
+ * @author bastafidli
+ */
+public class CachedEntryFactory extends DelegatingEntryFactory
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Blog and creation timestamp of a stored entry, which determine the 
+    * numbers of entries the entry is counted in.
+    */
+   protected static final class EntryLocation
+   {
+      /**
+       * Id of the blog the entry is stored in.
+       */
+      protected final long m_lParentId;
+
+      /**
+       * Creation timestamp of the entry.
+       */
+      protected final Timestamp m_creationTimestamp;
+
+      /**
+       * Create location of the stored entry.
+       *
+       * @param data - stored entry
+       */
+      protected EntryLocation(
+         Entry data
+      )
+      {
+         m_lParentId = data.getParentId();
+         m_creationTimestamp = data.getCreationTimestamp();
+      }
+   }
+
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Default maximal number of blogs with cached last entry and number of 
+    * entries.
+    */
+   public static final int DEFAULT_CAPACITY = 1000;
+
+   /**
+    * How many times more entries than blogs have their location remembered.
+    */
+   public static final int LOCATIONS_PER_BLOG = 10;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Cache of the last entries by the ids of their blogs. Null value means the
+    * blog has no entries.
+    */
+   protected final ExpiringLruCache<Long, Entry> m_lastEntries;
+
+   /**
+    * Blogs of the cached last entries by ids of the entries so that entry can
+    * be removed from the cache by its id. Entry is the last entry of at most
+    * one blog, blogs of entries evicted from the cache are kept until the 
+    * entry is invalidated or replaced by more recent one.
+    */
+   protected final ConcurrentMap<Long, Long> m_mpLastBlogs;
+
+   /**
+    * Cache of the numbers of entries by the ids of their blogs. The numbers 
+    * are adjusted when entries are created or deleted instead of being read 
+    * from the persistence store again.
+    */
+   protected final ExpiringLruCache<Long, Integer> m_entryCounts;
+
+   /**
+    * Cache of the numbers of entries in every month by the ids of their blogs.
+    * The cached lists are not modifiable and they are replaced by adjusted 
+    * copies when entries are created or deleted instead of being read from 
+    * the persistence store again.
+    */
+   protected final ExpiringLruCache<Long, List<EntryMonth>> m_monthCounts;
+
+   /**
+    * Cache of the locations of entries by their ids, which were read or 
+    * written using this factory, e.g. read to be edited. It allows to adjust
+    * the numbers of entries when the entry is saved or deleted without 
+    * reading it from the persistence store first.
+    */
+   protected final ExpiringLruCache<Long, EntryLocation> m_locations;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new caching factory using default cache settings. Entries are not
+    * expired since all changes are expected to be made using this factory.
+    *
+    * @param delegate - factory used to access the persistence store
+    */
+   public CachedEntryFactory(
+      EntryFactory delegate
+   )
+   {
+      this(delegate, DEFAULT_CAPACITY, 0, TimeUnit.SECONDS);
+   }
+
+   /**
+    * Create new caching factory.
+    *
+    * @param delegate - factory used to access the persistence store
+    * @param iCapacity - maximal number of blogs with cached last entry and 
+    *                    number of entries
+    * @param lTimeToLive - time to live of cached entries, 0 if they do not 
+    *                      expire
+    * @param unit - unit of the time to live
+    */
+   public CachedEntryFactory(
+      EntryFactory delegate,
+      int          iCapacity,
+      long         lTimeToLive,
+      TimeUnit     unit
+   )
+   {
+      super(delegate);
+
+      m_lastEntries = new ExpiringLruCache<>(iCapacity, lTimeToLive, lTimeToLive, 
+                                             unit);
+      m_mpLastBlogs = new ConcurrentHashMap<>();
+      m_entryCounts = new ExpiringLruCache<>(iCapacity, lTimeToLive, lTimeToLive, 
+                                             unit);
+      m_monthCounts = new ExpiringLruCache<>(iCapacity, lTimeToLive, lTimeToLive, 
+                                             unit);
+      m_locations = new ExpiringLruCache<>(iCapacity * LOCATIONS_PER_BLOG, 
+                                           lTimeToLive, lTimeToLive, unit);
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Cache of the last entries by the ids of their blogs.
+    *
+    * @return ExpiringLruCache
+    */
+   public ExpiringLruCache<Long, Entry> getLastEntries(
+   )
+   {
+      return m_lastEntries;
+   }
+
+   /**
+    * Cache of the numbers of entries by the ids of their blogs.
+    *
+    * @return ExpiringLruCache
+    */
+   public ExpiringLruCache<Long, Integer> getEntryCounts(
+   )
+   {
+      return m_entryCounts;
+   }
+
+   /**
+    * Cache of the numbers of entries in every month by the ids of their blogs.
+    *
+    * @return ExpiringLruCache
+    */
+   public ExpiringLruCache<Long, List<EntryMonth>> getMonthCounts(
+   )
+   {
+      return m_monthCounts;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      DataObject data;
+      long       lGeneration;
+
+      lGeneration = m_locations.getGeneration();
+      data = m_delegate.get(lId, lDomainId);
+      if (data instanceof Entry)
+      {
+         // Remember where the entry is in case it is saved or deleted later
+         m_locations.put(lId, new EntryLocation((Entry)data), lGeneration);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Entry getLast(
+      long lBlogId
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<Entry> cached;
+      Entry                               data;
+      long                                lGeneration;
+
+      cached = m_lastEntries.lookup(lBlogId);
+      if (cached != null)
+      {
+         data = copy(cached.getValue());
+      }
+      else
+      {
+         lGeneration = m_lastEntries.getGeneration();
+         data = m_delegate.getLast(lBlogId);
+         putLast(lBlogId, data, lGeneration);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<Long, Entry> getLast(
+      Collection<Long> colBlogIds
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<Entry> cached;
+      Map<Long, Entry>                    mpData = new HashMap<>();
+      Map<Long, Entry>                    mpLoaded;
+      List<Long>                          lstMissing = new ArrayList<>();
+      Entry                               data;
+      long                                lGeneration;
+
+      for (Long lBlogId : colBlogIds)
+      {
+         cached = m_lastEntries.lookup(lBlogId);
+         if (cached == null)
+         {
+            lstMissing.add(lBlogId);
+         }
+         else if (cached.getValue() != null)
+         {
+            mpData.put(lBlogId, copy(cached.getValue()));
+         }
+      }
+      if (!lstMissing.isEmpty())
+      {
+         // Read all entries which are not cached using a single query
+         lGeneration = m_lastEntries.getGeneration();
+         mpLoaded = m_delegate.getLast(lstMissing);
+         for (Long lBlogId : lstMissing)
+         {
+            data = mpLoaded.get(lBlogId);
+            putLast(lBlogId, data, lGeneration);
+            if (data != null)
+            {
+               mpData.put(lBlogId, data);
+            }
+         }
+      }
+
+      return mpData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getCount(
+      long lBlogId
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<Integer> cached;
+      int                                   iCount;
+      long                                  lGeneration;
+
+      cached = m_entryCounts.lookup(lBlogId);
+      if (cached != null)
+      {
+         iCount = cached.getValue().intValue();
+      }
+      else
+      {
+         lGeneration = m_entryCounts.getGeneration();
+         iCount = m_delegate.getCount(lBlogId);
+         m_entryCounts.put(lBlogId, iCount, lGeneration);
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<EntryMonth> getMonthCounts(
+      long lBlogId
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<List<EntryMonth>> cached;
+      List<EntryMonth>                               lstMonths;
+      long                                           lGeneration;
+
+      cached = m_monthCounts.lookup(lBlogId);
+      if (cached != null)
+      {
+         lstMonths = cached.getValue();
+      }
+      else
+      {
+         lGeneration = m_monthCounts.getGeneration();
+         lstMonths = Collections.unmodifiableList(new ArrayList<>(
+                        m_delegate.getMonthCounts(lBlogId)));
+         m_monthCounts.put(lBlogId, lstMonths, lGeneration);
+      }
+
+      return lstMonths;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<Integer>          count = null;
+      ExpiringLruCache.CachedValue<List<EntryMonth>> months = null;
+      DataObject                                     created;
+
+      if (data instanceof Entry)
+      {
+         count = m_entryCounts.prepareReplace(((Entry)data).getParentId());
+         months = m_monthCounts.prepareReplace(((Entry)data).getParentId());
+      }
+      try
+      {
+         created = m_delegate.create(data);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         // The entry may have been created anyway
+         if (data instanceof Entry)
+         {
+            m_lastEntries.remove(((Entry)data).getParentId());
+            invalidateCounts(((Entry)data).getParentId());
+         }
+         throw exc;
+      }
+      if (created instanceof Entry)
+      {
+         updateLast((Entry)created);
+         m_locations.update(created.getId(), 
+                            new EntryLocation((Entry)created));
+         updateCount(((Entry)created).getParentId(), count, 1);
+         updateMonthCount(((Entry)created).getParentId(), months, 
+                          Collections.singletonList(
+                             ((Entry)created).getCreationTimestamp()), 1);
+      }
+
+      return created;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      try
+      {
+         return m_delegate.create(colDataObject);
+      }
+      finally
+      {
+         // The created entries are not returned so just forget the blogs
+         for (DataObject data : colDataObject)
+         {
+            if (data instanceof Entry)
+            {
+               m_lastEntries.remove(((Entry)data).getParentId());
+               invalidateCounts(((Entry)data).getParentId());
+            }
+         }
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> createAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      Map<Long, ExpiringLruCache.CachedValue<Integer>>          mpCounts;
+      Map<Long, ExpiringLruCache.CachedValue<List<EntryMonth>>> mpMonths;
+      Map<Long, List<Timestamp>>                                mpCreated;
+      List<Entry>                                               lstCreated;
+      List<Timestamp>                                           lstTimestamps;
+
+      mpCounts = new HashMap<>();
+      mpMonths = new HashMap<>();
+      for (Entry data : colEntries)
+      {
+         if (!mpCounts.containsKey(data.getParentId()))
+         {
+            mpCounts.put(data.getParentId(), 
+                         m_entryCounts.prepareReplace(data.getParentId()));
+            mpMonths.put(data.getParentId(), 
+                         m_monthCounts.prepareReplace(data.getParentId()));
+         }
+      }
+      try
+      {
+         lstCreated = m_delegate.createAll(colEntries, iBatchSize);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         for (Entry data : colEntries)
+         {
+            m_lastEntries.remove(data.getParentId());
+            invalidateCounts(data.getParentId());
+         }
+         throw exc;
+      }
+      mpCreated = new HashMap<>();
+      for (Entry data : lstCreated)
+      {
+         updateLast(data);
+         m_locations.update(data.getId(), new EntryLocation(data));
+         lstTimestamps = mpCreated.get(data.getParentId());
+         if (lstTimestamps == null)
+         {
+            lstTimestamps = new ArrayList<>();
+            mpCreated.put(data.getParentId(), lstTimestamps);
+         }
+         lstTimestamps.add(data.getCreationTimestamp());
+      }
+      for (Map.Entry<Long, List<Timestamp>> created : mpCreated.entrySet())
+      {
+         updateCount(created.getKey(), mpCounts.get(created.getKey()), 
+                     created.getValue().size());
+         updateMonthCount(created.getKey(), mpMonths.get(created.getKey()), 
+                          created.getValue(), 1);
+      }
+
+      return lstCreated;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> saveAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      List<Entry> lstSaved;
+
+      try
+      {
+         lstSaved = m_delegate.saveAll(colEntries, iBatchSize);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         for (Entry data : colEntries)
+         {
+            invalidate(data.getId());
+         }
+         throw exc;
+      }
+      finally
+      {
+         // Entries may have been moved between blogs and finding out the 
+         // previous blogs would require to read all of them so just forget 
+         // the counts since bulk saves are rare
+         m_entryCounts.clear();
+         m_monthCounts.clear();
+      }
+      for (Entry data : lstSaved)
+      {
+         updateLast(data);
+         m_locations.update(data.getId(), new EntryLocation(data));
+      }
+
+      return lstSaved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<Integer>          oldCount = null;
+      ExpiringLruCache.CachedValue<Integer>          newCount = null;
+      ExpiringLruCache.CachedValue<List<EntryMonth>> oldMonths = null;
+      ExpiringLruCache.CachedValue<List<EntryMonth>> newMonths = null;
+      ModifiableDataObject                           saved;
+      EntryLocation                                  old;
+      Entry                                          entry;
+
+      // The entry may be moved to a different blog
+      old = getLocation(data.getId(), data.getDomainId());
+      if ((old != null) && (data instanceof Entry) 
+         && (old.m_lParentId != ((Entry)data).getParentId()))
+      {
+         oldCount = m_entryCounts.prepareReplace(old.m_lParentId);
+         newCount = m_entryCounts.prepareReplace(((Entry)data).getParentId());
+         oldMonths = m_monthCounts.prepareReplace(old.m_lParentId);
+         newMonths = m_monthCounts.prepareReplace(
+                        ((Entry)data).getParentId());
+      }
+      try
+      {
+         saved = m_delegate.save(data);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         invalidate(data.getId());
+         // The entry may have been saved anyway, forget only the numbers of 
+         // the blogs it could have been moved between
+         if (data instanceof Entry)
+         {
+            invalidateCounts(((Entry)data).getParentId());
+         }
+         if (old != null)
+         {
+            invalidateCounts(old.m_lParentId);
+         }
+         throw exc;
+      }
+      if (saved instanceof Entry)
+      {
+         entry = (Entry)saved;
+         updateLast(entry);
+         m_locations.update(entry.getId(), new EntryLocation(entry));
+         if (old == null)
+         {
+            // Discard any numbers read while the entry was being saved
+            m_entryCounts.clear();
+            m_monthCounts.clear();
+         }
+         else if (old.m_lParentId != entry.getParentId())
+         {
+            // The creation timestamp is not changed by save
+            updateCount(old.m_lParentId, oldCount, -1);
+            updateCount(entry.getParentId(), newCount, 1);
+            updateMonthCount(old.m_lParentId, oldMonths, 
+                             Collections.singletonList(
+                                old.m_creationTimestamp), -1);
+            updateMonthCount(entry.getParentId(), newMonths, 
+                             Collections.singletonList(
+                                entry.getCreationTimestamp()), 1);
+         }
+      }
+      else
+      {
+         invalidate(data.getId());
+      }
+
+      return saved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int deleteAll(
+      Collection<Long> colIds,
+      long             lDomainId,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      try
+      {
+         return m_delegate.deleteAll(colIds, lDomainId, iBatchSize);
+      }
+      finally
+      {
+         for (Long lId : colIds)
+         {
+            invalidate(lId);
+            m_locations.remove(lId);
+         }
+         // Finding out the blogs of the entries would require to read all of
+         // them so just forget the counts since bulk deletes are rare
+         m_entryCounts.clear();
+         m_monthCounts.clear();
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<Integer>          count = null;
+      ExpiringLruCache.CachedValue<List<EntryMonth>> months = null;
+      EntryLocation                                  old;
+
+      old = getLocation(lId, lDomainId);
+      if (old != null)
+      {
+         count = m_entryCounts.prepareReplace(old.m_lParentId);
+         months = m_monthCounts.prepareReplace(old.m_lParentId);
+      }
+      try
+      {
+         m_delegate.delete(lId, lDomainId);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         // The entry may have been deleted anyway
+         if (old != null)
+         {
+            invalidateCounts(old.m_lParentId);
+         }
+         else
+         {
+            m_entryCounts.clear();
+            m_monthCounts.clear();
+         }
+         throw exc;
+      }
+      finally
+      {
+         invalidate(lId);
+         m_locations.remove(lId);
+      }
+      if (old != null)
+      {
+         updateCount(old.m_lParentId, count, -1);
+         updateMonthCount(old.m_lParentId, months, 
+                          Collections.singletonList(old.m_creationTimestamp), 
+                          -1);
+      }
+      else
+      {
+         // Discard any numbers read while the entry was being deleted
+         m_entryCounts.clear();
+         m_monthCounts.clear();
+      }
+   }
+
+   /**
+    * Remove entry with the specified id from the cache. The last entry of its 
+    * blog will be read from the persistence store again when requested.
+    *
+    * @param lId - id of the entry to remove
+    */
+   public void invalidate(
+      long lId
+   )
+   {
+      Long lBlogId = m_mpLastBlogs.remove(lId);
+
+      if (lBlogId != null)
+      {
+         m_lastEntries.remove(lBlogId);
+      }
+      else
+      {
+         // The entry may be just being loaded as the last entry of its blog
+         m_lastEntries.invalidateLoads();
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Update the cache with entry which was just written to the persistence 
+    * store.
+    *
+    * @param data - written entry
+    * @throws OSSException - an error has occurred
+    */
+   protected void updateLast(
+      Entry data
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<Entry> cached;
+      Entry                               last;
+      Long                                lOldBlogId;
+      boolean                             bUpdate = false;
+
+      synchronized (m_lastEntries)
+      {
+         // The entry may have been moved from a different blog
+         lOldBlogId = m_mpLastBlogs.get(data.getId());
+         if ((lOldBlogId != null) && (lOldBlogId != data.getParentId()))
+         {
+            m_mpLastBlogs.remove(data.getId(), lOldBlogId);
+            m_lastEntries.remove(lOldBlogId);
+         }
+
+         cached = m_lastEntries.lookup(data.getParentId());
+         if (cached != null)
+         {
+            last = cached.getValue();
+            if (last == null)
+            {
+               bUpdate = true;
+            }
+            else if (last.getId() == data.getId())
+            {
+               bUpdate = !isOlder(data, last);
+            }
+            else if (isCreatedAfter(data, last))
+            {
+               bUpdate = true;
+               m_mpLastBlogs.remove(last.getId(), data.getParentId());
+            }
+            if (bUpdate)
+            {
+               m_mpLastBlogs.put(data.getId(), data.getParentId());
+               m_lastEntries.update(data.getParentId(), copy(data));
+            }
+         }
+      }
+   }
+
+   /**
+    * Cache last entry of the blog read from the persistence store unless the
+    * cache was modified since the entry was read.
+    *
+    * @param lBlogId - id of the blog 
+    * @param data - last entry of the blog, null if the blog has no entries
+    * @param lGeneration - generation of the cache before the entry was read
+    * @throws OSSException - an error has occurred
+    */
+   protected void putLast(
+      long  lBlogId,
+      Entry data,
+      long  lGeneration
+   ) throws OSSException
+   {
+      if (data != null)
+      {
+         // Remember the blog before the entry is cached so that invalidation 
+         // of the entry always finds it
+         m_mpLastBlogs.put(data.getId(), lBlogId);
+      }
+      m_lastEntries.put(lBlogId, copy(data), lGeneration);
+   }
+
+   /**
+    * Create copy of entry so that the cached entry is never shared with the 
+    * callers. The comments are loaded if they were not loaded yet.
+    *
+    * @param data - entry to copy, may be null
+    * @return Entry - copy of the entry or null if the entry was null
+    * @throws OSSException - an error has occurred
+    */
+   protected Entry copy(
+      Entry data
+   ) throws OSSException
+   {
+      Entry copy = null;
+
+      if (data != null)
+      {
+         copy = new Entry(data.getId(), data.getDomainId(), 
+                          copy(data.getCreationTimestamp()), 
+                          copy(data.getModificationTimestamp()), 
+                          data.getParentId(), data.getCaption(), 
+                          data.fetchComments(), data.getImageURL(), 
+                          data.getTargetURL(), data.getIsPreformated());
+      }
+
+      return copy;
+   }
+
+   /**
+    * Create copy of timestamp since timestamps are mutable.
+    *
+    * @param timestamp - timestamp to copy, may be null
+    * @return Timestamp - copy of the timestamp or null if it was null
+    */
+   protected Timestamp copy(
+      Timestamp timestamp
+   )
+   {
+      return (timestamp == null) ? null : (Timestamp)timestamp.clone();
+   }
+
+   /**
+    * Adjust cached number of entries of a blog after entries were created or
+    * deleted in the persistence store. The number is adjusted only if it is 
+    * still the number cached before the persistence store was modified, 
+    * otherwise it may already include the change and it is removed instead.
+    *
+    * @param lBlogId - id of the blog 
+    * @param cached - number returned by prepareReplace before the persistence
+    *                 store was modified, null if it was not cached
+    * @param iDelta - number of entries created or negative number of entries 
+    *                 deleted
+    */
+   protected void updateCount(
+      long                                  lBlogId,
+      ExpiringLruCache.CachedValue<Integer> cached,
+      int                                   iDelta
+   )
+   {
+      m_entryCounts.replace(lBlogId, cached, 
+                            (cached == null) 
+                            ? null 
+                            : Math.max(cached.getValue().intValue() + iDelta, 
+                                       0));
+   }
+
+   /**
+    * Adjust cached numbers of entries of a blog in every month after entries
+    * were created or deleted in the persistence store. The cached list is 
+    * replaced by a copy with adjusted number of entries in the months of the
+    * creation timestamps. The numbers are adjusted only if they are still the
+    * numbers cached before the persistence store was modified, otherwise they
+    * may already include the change and they are removed instead.
+    *
+    * @param lBlogId - id of the blog 
+    * @param cached - numbers returned by prepareReplace before the 
+    *                 persistence store was modified, null if they were not
+    *                 cached
+    * @param colCreationTimestamps - creation timestamps of the entries
+    * @param iDelta - 1 if the entries were created, -1 if they were deleted
+    */
+   protected void updateMonthCount(
+      long                                           lBlogId,
+      ExpiringLruCache.CachedValue<List<EntryMonth>> cached,
+      Collection<Timestamp>                          colCreationTimestamps,
+      int                                            iDelta
+   )
+   {
+      List<EntryMonth> lstMonths = null;
+      int              iKey;
+      int              iIndex;
+      int              iCount;
+
+      if ((cached != null) && (!colCreationTimestamps.contains(null)))
+      {
+         lstMonths = new ArrayList<>(cached.getValue());
+         for (Timestamp creationTimestamp : colCreationTimestamps)
+         {
+            iKey = EntryMonth.getKey(creationTimestamp);
+            // Months are sorted from the most recent one
+            iIndex = 0;
+            while ((iIndex < lstMonths.size()) 
+                   && (lstMonths.get(iIndex).getKey() > iKey))
+            {
+               iIndex++;
+            }
+            iCount = iDelta;
+            if ((iIndex < lstMonths.size()) 
+                && (lstMonths.get(iIndex).getKey() == iKey))
+            {
+               iCount += lstMonths.remove(iIndex).getCount();
+            }
+            if (iCount > 0)
+            {
+               lstMonths.add(iIndex, new EntryMonth(iKey, iCount));
+            }
+         }
+         lstMonths = Collections.unmodifiableList(lstMonths);
+      }
+      m_monthCounts.replace(lBlogId, (lstMonths == null) ? null : cached, 
+                            lstMonths);
+   }
+
+   /**
+    * Get location of entry as it is stored in the persistence store, e.g. to 
+    * find out id of the blog it belongs to. The location of entries read or 
+    * written using this factory is remembered, other entries are read only 
+    * if number of entries of any blog is cached since otherwise there is 
+    * nothing to adjust and the numbers being read can be just discarded.
+    *
+    * @param lId - id of the entry
+    * @param lDomainId - id of the domain the entry belongs to
+    * @return EntryLocation - location of the stored entry or null if the 
+    *                         entry doesn't exist or it doesn't matter
+    * @throws OSSException - an error has occurred
+    */
+   protected EntryLocation getLocation(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      ExpiringLruCache.CachedValue<EntryLocation> cached;
+      EntryLocation                               location = null;
+      DataObject                                  data;
+
+      if (lId != DataObject.NEW_ID)
+      {
+         cached = m_locations.lookup(lId);
+         if (cached != null)
+         {
+            location = cached.getValue();
+         }
+         else if ((m_entryCounts.size() > 0) || (m_monthCounts.size() > 0))
+         {
+            data = m_delegate.get(lId, lDomainId);
+            if (data instanceof Entry)
+            {
+               location = new EntryLocation((Entry)data);
+            }
+         }
+      }
+
+      return location;
+   }
+
+   /**
+    * Remove the numbers of entries of a blog from the cache so that they are
+    * read from the persistence store again when requested.
+    *
+    * @param lBlogId - id of the blog
+    */
+   protected void invalidateCounts(
+      long lBlogId
+   )
+   {
+      m_entryCounts.remove(lBlogId);
+      m_monthCounts.remove(lBlogId);
+   }
+
+   /**
+    * Check if the entry version is older than the other version of the same 
+    * entry.
+    *
+    * @param data - entry to check
+    * @param other - other version of the same entry
+    * @return boolean - true if the entry has older modification timestamp 
+    */
+   protected static boolean isOlder(
+      Entry data,
+      Entry other
+   )
+   {
+      return (data.getModificationTimestamp() != null)
+             && (other.getModificationTimestamp() != null)
+             && data.getModificationTimestamp().before(
+                   other.getModificationTimestamp());
+   }
+
+   /**
+    * Check if the entry is more recent than the other entry using the same
+    * order as the persistence store, by creation timestamp and id.
+    *
+    * @param data - entry to check
+    * @param other - other entry
+    * @return boolean - true if the entry was created after the other one 
+    */
+   protected static boolean isCreatedAfter(
+      Entry data,
+      Entry other
+   )
+   {
+      int iCompare = data.getCreationTimestamp().compareTo(
+                        other.getCreationTimestamp());
+
+      return (iCompare > 0) || ((iCompare == 0) && (data.getId() > other.getId()));
+   }
+}
@@ -0,0 +1,643 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache evicting the least recently used values when it is full and
+ * values which are older than the configured time to live. The cache can also 
+ * remember that there is no value for a key (negative caching), such values 
+ * can have shorter time to live.
+ * 
+ * Larger caches are split into stripes by hash of the keys, each with its own
+ * lock and its own share of the capacity, so that concurrent lookups of 
+ * different keys rarely wait for each other. The least recently used value is
+ * then evicted from the stripe which is full rather than from the whole cache.
+ * 
+ * Every invalidation of the cache increases its generation. Value loaded from
+ * the persistence store is put into the cache only if the generation didn't 
+ * change since the load has started so that a value modified concurrently
+ * with the load never becomes cached.
+ *
+ * @param <K> - type of keys
+ * @param <V> - type of cached values
+ * @author bastafidli
+ */
+public class ExpiringLruCache<K, V>
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Value stored in the cache.
+    *
+    * @param <V> - type of the cached value
+    */
+   public static final class CachedValue<V>
+   {
+      /**
+       * Cached value, null if it is known there is no value.
+       */
+      private final V m_value;
+
+      /**
+       * Value of System.nanoTime when this value expires.
+       */
+      private final long m_lExpiration;
+
+      /**
+       * Create new cached value.
+       *
+       * @param value - cached value, null if it is known there is no value
+       * @param lExpiration - value of System.nanoTime when the value expires
+       */
+      protected CachedValue(
+         V    value,
+         long lExpiration
+      )
+      {
+         m_value = value;
+         m_lExpiration = lExpiration;
+      }
+
+      /**
+       * Cached value.
+       *
+       * @return V - cached value, null if it is known there is no value
+       */
+      public V getValue(
+      )
+      {
+         return m_value;
+      }
+   }
+
+   /**
+    * Filter selecting cached values to remove.
+    *
+    * @param <K> - type of keys
+    * @param <V> - type of cached values
+    */
+   public interface Filter<K, V>
+   {
+      /**
+       * Check if the cached value should be removed.
+       *
+       * @param key - key of the value
+       * @param value - cached value, null if it is known there is no value
+       * @return boolean - true if the value should be removed
+       */
+      boolean matches(
+         K key,
+         V value
+      );
+   }
+
+   /**
+    * Part of the cache holding values with keys of the same hash. All access 
+    * to the stripe is synchronized on the stripe itself.
+    *
+    * @param <K> - type of keys
+    * @param <V> - type of cached values
+    */
+   protected static final class Stripe<K, V> 
+      extends LinkedHashMap<K, CachedValue<V>>
+   {
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Maximal number of values in the stripe.
+       */
+      private final int m_iCapacity;
+
+      /**
+       * Number of lookups which found the value in the stripe.
+       */
+      private long m_lHitCount;
+
+      /**
+       * Number of lookups which didn't find the value in the stripe.
+       */
+      private long m_lMissCount;
+
+      /**
+       * Create new stripe with values sorted from the least recently used one.
+       *
+       * @param iCapacity - maximal number of values in the stripe
+       */
+      protected Stripe(
+         int iCapacity
+      )
+      {
+         super(16, 0.75f, true);
+
+         m_iCapacity = iCapacity;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      protected boolean removeEldestEntry(
+         Map.Entry<K, CachedValue<V>> eldest
+      )
+      {
+         return size() > m_iCapacity;
+      }
+   }
+
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Maximal number of stripes the cache is split into.
+    */
+   public static final int MAX_STRIPE_COUNT = 16;
+
+   /**
+    * Minimal capacity of single stripe. Smaller caches are not split so that
+    * they evict exactly the least recently used value.
+    */
+   public static final int MIN_STRIPE_CAPACITY = 64;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Maximal number of values in the cache.
+    */
+   protected final int m_iCapacity;
+
+   /**
+    * Time to live of cached values in nanoseconds, 0 if they do not expire.
+    */
+   protected final long m_lTimeToLive;
+
+   /**
+    * Time to live of knowledge that there is no value for a key in nanoseconds,
+    * 0 if it doesn't expire.
+    */
+   protected final long m_lNegativeTimeToLive;
+
+   /**
+    * Stripes of the cache, number of stripes is a power of 2.
+    */
+   protected final Stripe<K, V>[] m_arrStripes;
+
+   /**
+    * Generation of the cache increased with every invalidation.
+    */
+   protected final AtomicLong m_lGeneration;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new cache.
+    *
+    * @param iCapacity - maximal number of values in the cache
+    * @param lTimeToLive - time to live of cached values, 0 if they do not 
+    *                      expire
+    * @param lNegativeTimeToLive - time to live of knowledge that there is no 
+    *                              value for a key, 0 if it doesn't expire
+    * @param unit - unit of the time to live values
+    */
+   @SuppressWarnings("unchecked")
+   public ExpiringLruCache(
+      int      iCapacity,
+      long     lTimeToLive,
+      long     lNegativeTimeToLive,
+      TimeUnit unit
+   )
+   {
+      int iStripeCount = 1;
+
+      if (iCapacity <= 0)
+      {
+         throw new IllegalArgumentException("Cache capacity has to be positive");
+      }
+      m_iCapacity = iCapacity;
+      m_lTimeToLive = unit.toNanos(lTimeToLive);
+      m_lNegativeTimeToLive = unit.toNanos(lNegativeTimeToLive);
+      m_lGeneration = new AtomicLong();
+
+      while ((iStripeCount < MAX_STRIPE_COUNT) 
+             && (iCapacity / (iStripeCount * 2) >= MIN_STRIPE_CAPACITY))
+      {
+         iStripeCount *= 2;
+      }
+      m_arrStripes = new Stripe[iStripeCount];
+      for (int iIndex = 0; iIndex < iStripeCount; iIndex++)
+      {
+         m_arrStripes[iIndex] = new Stripe<>(
+                                   (iCapacity + iStripeCount - 1) / iStripeCount);
+      }
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Lookup value in the cache.
+    *
+    * @param key - key of the value
+    * @return CachedValue - cached value or null if the cache doesn't know the 
+    *                       value for the key
+    */
+   public CachedValue<V> lookup(
+      K key
+   )
+   {
+      Stripe<K, V>   stripe = getStripe(key);
+      CachedValue<V> value;
+
+      synchronized (stripe)
+      {
+         value = stripe.get(key);
+         if ((value != null) && (value.m_lExpiration != 0)
+            && (System.nanoTime() - value.m_lExpiration >= 0))
+         {
+            stripe.remove(key);
+            value = null;
+         }
+         if (value == null)
+         {
+            stripe.m_lMissCount++;
+         }
+         else
+         {
+            stripe.m_lHitCount++;
+         }
+      }
+
+      return value;
+   }
+
+   /**
+    * Get current generation of the cache. The generation has to be retrieved
+    * before the value is loaded from the persistence store and then passed to
+    * the put method.
+    *
+    * @return long - current generation
+    */
+   public long getGeneration(
+   )
+   {
+      return m_lGeneration.get();
+   }
+
+   /**
+    * Put value into the cache unless the cache was invalidated after the value
+    * was loaded.
+    *
+    * @param key - key of the value
+    * @param value - value to cache, null if there is no value for the key
+    * @param lGeneration - generation of the cache before the value was loaded
+    * @return boolean - true if the value was cached
+    */
+   public boolean put(
+      K    key,
+      V    value,
+      long lGeneration
+   )
+   {
+      Stripe<K, V> stripe = getStripe(key);
+      boolean      bCached = false;
+
+      synchronized (stripe)
+      {
+         // Invalidations increase the generation before they take the lock of
+         // the stripe so the value is either rejected here or removed by them
+         if (lGeneration == m_lGeneration.get())
+         {
+            stripe.put(key, new CachedValue<>(value, getExpiration(value)));
+            bCached = true;
+         }
+      }
+
+      return bCached;
+   }
+
+   /**
+    * Put value into the cache regardless of any pending loads. Use this when
+    * the value is known to be the most recent one, e.g. after it was written
+    * to the persistence store. The generation of the cache is increased so 
+    * that any concurrent load doesn't override the value.
+    *
+    * @param key - key of the value
+    * @param value - value to cache, null if there is no value for the key
+    */
+   public void update(
+      K key,
+      V value
+   )
+   {
+      Stripe<K, V> stripe = getStripe(key);
+
+      m_lGeneration.incrementAndGet();
+      synchronized (stripe)
+      {
+         stripe.put(key, new CachedValue<>(value, getExpiration(value)));
+      }
+   }
+
+   /**
+    * Get cached value which is going to be adjusted by the replace method 
+    * after the value is modified in the persistence store. Has to be called
+    * before the persistence store is modified. The generation of the cache is
+    * increased so that no value loaded before the modification becomes cached.
+    *
+    * @param key - key of the value
+    * @return CachedValue - cached value to pass to the replace method or null
+    *                       if the value is not cached
+    */
+   public CachedValue<V> prepareReplace(
+      K key
+   )
+   {
+      Stripe<K, V>   stripe = getStripe(key);
+      CachedValue<V> value;
+
+      m_lGeneration.incrementAndGet();
+      synchronized (stripe)
+      {
+         value = stripe.get(key);
+         if ((value != null) && (value.m_lExpiration != 0)
+            && (System.nanoTime() - value.m_lExpiration >= 0))
+         {
+            value = null;
+         }
+      }
+
+      return value;
+   }
+
+   /**
+    * Replace value returned by the prepareReplace method by value adjusted to
+    * the modification of the persistence store. If the value was not cached 
+    * or the cached value was changed since then, the cached value may already
+    * reflect the modification and it is removed instead.
+    *
+    * @param key - key of the value
+    * @param expected - value returned by the prepareReplace method
+    * @param value - adjusted value
+    * @return boolean - true if the value was replaced, false if it was removed
+    */
+   public boolean replace(
+      K              key,
+      CachedValue<V> expected,
+      V              value
+   )
+   {
+      Stripe<K, V> stripe = getStripe(key);
+      boolean      bReplaced = false;
+
+      m_lGeneration.incrementAndGet();
+      synchronized (stripe)
+      {
+         if ((expected != null) && (stripe.get(key) == expected))
+         {
+            stripe.put(key, new CachedValue<>(value, getExpiration(value)));
+            bReplaced = true;
+         }
+         else
+         {
+            stripe.remove(key);
+         }
+      }
+
+      return bReplaced;
+   }
+
+   /**
+    * Remove value from the cache.
+    *
+    * @param key - key of the value to remove
+    */
+   public void remove(
+      K key
+   )
+   {
+      Stripe<K, V> stripe = getStripe(key);
+
+      m_lGeneration.incrementAndGet();
+      synchronized (stripe)
+      {
+         stripe.remove(key);
+      }
+   }
+
+   /**
+    * Remove all values matching the filter from the cache. This examines every
+    * cached value so prefer removing values by their keys.
+    *
+    * @param filter - filter selecting values to remove
+    * @return int - number of removed values
+    */
+   public int remove(
+      Filter<K, V> filter
+   )
+   {
+      Iterator<Map.Entry<K, CachedValue<V>>> itrValues;
+      Map.Entry<K, CachedValue<V>>           value;
+      int                                    iRemoved = 0;
+
+      m_lGeneration.incrementAndGet();
+      for (Stripe<K, V> stripe : m_arrStripes)
+      {
+         synchronized (stripe)
+         {
+            for (itrValues = stripe.entrySet().iterator(); itrValues.hasNext();)
+            {
+               value = itrValues.next();
+               if (filter.matches(value.getKey(), value.getValue().m_value))
+               {
+                  itrValues.remove();
+                  iRemoved++;
+               }
+            }
+         }
+      }
+
+      return iRemoved;
+   }
+
+   /**
+    * Increase generation of the cache without removing any value so that no
+    * value being loaded concurrently becomes cached. Use this when the value
+    * was modified in the persistence store but it is known not to be cached.
+    */
+   public void invalidateLoads(
+   )
+   {
+      m_lGeneration.incrementAndGet();
+   }
+
+   /**
+    * Remove all values from the cache.
+    */
+   public void clear(
+   )
+   {
+      m_lGeneration.incrementAndGet();
+      for (Stripe<K, V> stripe : m_arrStripes)
+      {
+         synchronized (stripe)
+         {
+            stripe.clear();
+         }
+      }
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Get number of values in the cache including the expired ones which were 
+    * not removed yet.
+    *
+    * @return int
+    */
+   public int size(
+   )
+   {
+      int iSize = 0;
+
+      for (Stripe<K, V> stripe : m_arrStripes)
+      {
+         synchronized (stripe)
+         {
+            iSize += stripe.size();
+         }
+      }
+
+      return iSize;
+   }
+
+   /**
+    * Maximal number of values in the cache.
+    *
+    * @return int
+    */
+   public int getCapacity(
+   )
+   {
+      return m_iCapacity;
+   }
+
+   /**
+    * Number of stripes the cache is split into.
+    *
+    * @return int
+    */
+   public int getStripeCount(
+   )
+   {
+      return m_arrStripes.length;
+   }
+
+   /**
+    * Number of lookups which found the value in the cache.
+    *
+    * @return long
+    */
+   public long getHitCount(
+   )
+   {
+      long lCount = 0;
+
+      for (Stripe<K, V> stripe : m_arrStripes)
+      {
+         synchronized (stripe)
+         {
+            lCount += stripe.m_lHitCount;
+         }
+      }
+
+      return lCount;
+   }
+
+   /**
+    * Number of lookups which didn't find the value in the cache.
+    *
+    * @return long
+    */
+   public long getMissCount(
+   )
+   {
+      long lCount = 0;
+
+      for (Stripe<K, V> stripe : m_arrStripes)
+      {
+         synchronized (stripe)
+         {
+            lCount += stripe.m_lMissCount;
+         }
+      }
+
+      return lCount;
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Get stripe holding value with the specified key.
+    *
+    * @param key - key of the value
+    * @return Stripe - stripe of the key
+    */
+   protected Stripe<K, V> getStripe(
+      K key
+   )
+   {
+      int iHash = (key == null) ? 0 : key.hashCode();
+
+      // Spread the high bits since only the low ones select the stripe
+      iHash ^= (iHash >>> 16);
+
+      return m_arrStripes[iHash & (m_arrStripes.length - 1)];
+   }
+
+   /**
+    * Compute when the value put into the cache now expires.
+    *
+    * @param value - value put into the cache
+    * @return long - value of System.nanoTime when the value expires or 0 if it
+    *                doesn't expire
+    */
+   protected long getExpiration(
+      V value
+   )
+   {
+      long lTimeToLive = (value == null) ? m_lNegativeTimeToLive : m_lTimeToLive;
+      long lExpiration = 0;
+
+      if (lTimeToLive > 0)
+      {
+         lExpiration = System.nanoTime() + lTimeToLive;
+         if (lExpiration == 0)
+         {
+            // 0 is reserved for values which do not expire
+            lExpiration = 1;
+         }
+      }
+
+      return lExpiration;
+   }
+}
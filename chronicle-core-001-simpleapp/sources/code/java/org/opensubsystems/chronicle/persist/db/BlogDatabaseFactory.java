@@ -0,0 +1,778 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ *
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.opensubsystems.chronicle.persist.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Blog.BlogDataDescriptor.BlogFields;
+import org.opensubsystems.chronicle.data.StringDictionary;
+import org.opensubsystems.chronicle.persist.BlogFactory;
+import org.opensubsystems.chronicle.persist.OptimisticConcurrency;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSConcurentModifyException;
+import org.opensubsystems.core.error.OSSDatabaseAccessException;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * JDBC implementation of the blog factory. Data are always read by position
+ * in the order of BlogFields and multiple blogs are written using batches to
+ * minimize number of round trips to the database.
+ *
+ * @author bastafidli
+ */
+public class BlogDatabaseFactory extends ChronicleDatabaseFactory
+                                 implements BlogFactory
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Query to retrieve blog by its id.
+    */
+   protected static final String SELECT_BY_ID
+      = "select " + ChronicleDatabaseSchema.BLOG_COLUMNS
+        + " from " + ChronicleDatabaseSchema.BLOG_TABLE_NAME
+        + " where ID = ? and DOMAIN_ID = ?";
+
+   /**
+    * Query to retrieve blog by its folder.
+    */
+   protected static final String SELECT_BY_FOLDER
+      = "select " + ChronicleDatabaseSchema.BLOG_COLUMNS
+        + " from " + ChronicleDatabaseSchema.BLOG_TABLE_NAME
+        + " where FOLDER = ?";
+
+   /**
+    * Query to retrieve all blogs.
+    */
+   protected static final String SELECT_ALL
+      = "select " + ChronicleDatabaseSchema.BLOG_COLUMNS
+        + " from " + ChronicleDatabaseSchema.BLOG_TABLE_NAME
+        + " order by CAPTION";
+
+   /**
+    * Query to retrieve blogs modified after the specified time.
+    */
+   protected static final String SELECT_MODIFIED_SINCE
+      = "select " + ChronicleDatabaseSchema.BLOG_COLUMNS
+        + " from " + ChronicleDatabaseSchema.BLOG_TABLE_NAME
+        + " where MODIFICATION_DATE > ? order by MODIFICATION_DATE, ID";
+
+   /**
+    * Statement to insert new blog.
+    */
+   protected static final String INSERT
+      = "insert into " + ChronicleDatabaseSchema.BLOG_TABLE_NAME
+        + " (DOMAIN_ID, CREATION_DATE, MODIFICATION_DATE, FOLDER, CAPTION,"
+        + " COMMENTS, PREFORMATED) values (?, ?, ?, ?, ?, ?, ?)";
+
+   /**
+    * Statement to update existing blog if it wasn't modified since it was 
+    * read.
+    */
+   protected static final String UPDATE
+      = "update " + ChronicleDatabaseSchema.BLOG_TABLE_NAME
+        + " set MODIFICATION_DATE = ?, FOLDER = ?, CAPTION = ?, COMMENTS = ?,"
+        + " PREFORMATED = ? where ID = ? and DOMAIN_ID = ?"
+        + " and MODIFICATION_DATE = ?";
+
+   /**
+    * Statement to delete blog.
+    */
+   protected static final String DELETE
+      = "delete from " + ChronicleDatabaseSchema.BLOG_TABLE_NAME
+        + " where ID = ? and DOMAIN_ID = ?";
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new blog factory accessing the database through the specified
+    * data source.
+    *
+    * @param dataSource - data source providing connections to the database
+    */
+   public BlogDatabaseFactory(
+      DataSource dataSource
+   )
+   {
+      super(dataSource);
+   }
+
+   /**
+    * Create new blog factory accessing the database through the specified
+    * data source.
+    *
+    * @param dataSource - data source providing connections to the database
+    * @param dictionary - dictionary used to share instances of folders of 
+    *                     loaded blogs
+    */
+   public BlogDatabaseFactory(
+      DataSource       dataSource,
+      StringDictionary dictionary
+   )
+   {
+      super(dataSource, dictionary);
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Load blog from the current row of the result set. The columns have to be
+    * in the order of BlogFields.
+    *
+    * @param rsQueryResults - result set positioned at the row to load
+    * @param iInitialIndex - index of the first column to load
+    * @return Blog - loaded blog
+    * @throws OSSException - an error has occurred
+    */
+   public Blog load(
+      ResultSet rsQueryResults,
+      int       iInitialIndex
+   ) throws OSSException
+   {
+      Blog data;
+
+      try
+      {
+         data = new Blog(rsQueryResults.getLong(iInitialIndex),
+                         rsQueryResults.getLong(iInitialIndex + 1),
+                         rsQueryResults.getTimestamp(iInitialIndex + 2),
+                         rsQueryResults.getTimestamp(iInitialIndex + 3),
+                         m_dictionary.canonicalize(
+                            rsQueryResults.getString(iInitialIndex + 4)),
+                         rsQueryResults.getString(iInitialIndex + 5),
+                         rsQueryResults.getString(iInitialIndex + 6),
+                         rsQueryResults.getBoolean(iInitialIndex + 7));
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to load blog.", sqleExc);
+      }
+
+      return data;
+   }
+
+   /**
+    * Load blog from the current row of the result set containing only the 
+    * columns of the specified fields in the order of BlogFields. Fields which 
+    * were not loaded keep their default values.
+    *
+    * @param rsQueryResults - result set positioned at the row to load
+    * @param fields - fields which were selected
+    * @return Blog - loaded blog
+    * @throws OSSException - an error has occurred
+    */
+   public Blog load(
+      ResultSet           rsQueryResults,
+      EnumSet<BlogFields> fields
+   ) throws OSSException
+   {
+      long      lId = DataObject.NEW_ID;
+      long      lDomainId = DataObject.NEW_ID;
+      Timestamp creationTimestamp = null;
+      Timestamp modificationTimestamp = null;
+      String    strFolder = null;
+      String    strCaption = null;
+      String    strComments = null;
+      Boolean   bIsPreformated = null;
+      Blog      data;
+      int       iIndex = 1;
+
+      try
+      {
+         for (BlogFields field : fields)
+         {
+            if (ChronicleDatabaseSchema.hasColumn(field))
+            {
+               switch (field)
+               {
+                  case BLOG_ID:
+                     lId = rsQueryResults.getLong(iIndex);
+                     break;
+                  case BLOG_DOMAIN_ID:
+                     lDomainId = rsQueryResults.getLong(iIndex);
+                     break;
+                  case BLOG_CREATION_DATE:
+                     creationTimestamp = rsQueryResults.getTimestamp(iIndex);
+                     break;
+                  case BLOG_MODIFICATION_DATE:
+                     modificationTimestamp = rsQueryResults.getTimestamp(iIndex);
+                     break;
+                  case BLOG_FOLDER:
+                     strFolder = m_dictionary.canonicalize(
+                                    rsQueryResults.getString(iIndex));
+                     break;
+                  case BLOG_CAPTION:
+                     strCaption = rsQueryResults.getString(iIndex);
+                     break;
+                  case BLOG_COMMENTS:
+                     strComments = rsQueryResults.getString(iIndex);
+                     break;
+                  case BLOG_PREFORMATED:
+                     bIsPreformated = rsQueryResults.getBoolean(iIndex);
+                     break;
+                  default:
+                     throw new IllegalArgumentException("Unknown blog field " 
+                                                        + field);
+               }
+               iIndex++;
+            }
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to load blog.", sqleExc);
+      }
+
+      if (bIsPreformated == null)
+      {
+         data = new Blog(lId, lDomainId, creationTimestamp, 
+                         modificationTimestamp, strFolder, strCaption, 
+                         strComments);
+      }
+      else
+      {
+         data = new Blog(lId, lDomainId, creationTimestamp, 
+                         modificationTimestamp, strFolder, strCaption, 
+                         strComments, bIsPreformated);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      Blog              data = null;
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(SELECT_BY_ID);
+         pstmQuery.setLong(1, lId);
+         pstmQuery.setLong(2, lDomainId);
+         rsQueryResults = pstmQuery.executeQuery();
+         if (rsQueryResults.next())
+         {
+            data = load(rsQueryResults, 1);
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read blog.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Blog get(
+      String strFolder
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      Blog              data = null;
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(SELECT_BY_FOLDER);
+         pstmQuery.setString(1, strFolder);
+         rsQueryResults = pstmQuery.executeQuery();
+         if (rsQueryResults.next())
+         {
+            data = load(rsQueryResults, 1);
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read blog.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+   ) throws OSSException
+   {
+      return queryAll(null);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> getAll(
+      EnumSet<BlogFields> fields
+   ) throws OSSException
+   {
+      if ((fields == null) || (fields.isEmpty()))
+      {
+         throw new IllegalArgumentException("Fields to retrieve have to be"
+                                            + " specified");
+      }
+
+      return queryAll(fields);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> getModifiedSince(
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      List<Blog>        lstData = new ArrayList<>();
+
+      if (modifiedSince == null)
+      {
+         throw new IllegalArgumentException("Modification time cannot be null");
+      }
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(SELECT_MODIFIED_SINCE);
+         pstmQuery.setTimestamp(1, modifiedSince);
+         rsQueryResults = pstmQuery.executeQuery();
+         while (rsQueryResults.next())
+         {
+            lstData.add(load(rsQueryResults, 1));
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read modified blogs.", 
+                                              sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      List<DataObject> lstData = new ArrayList<>(1);
+
+      lstData.add(data);
+      return insert(lstData, DEFAULT_BATCH_SIZE).get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      return insert(colDataObject, DEFAULT_BATCH_SIZE).size();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      List<ModifiableDataObject> lstData = new ArrayList<>(1);
+
+      lstData.add(data);
+      return update(lstData, DEFAULT_BATCH_SIZE).get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> createAll(
+      Collection<Blog> colBlogs,
+      int             iBatchSize
+   ) throws OSSException
+   {
+      return insert(colBlogs, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> saveAll(
+      Collection<Blog> colBlogs,
+      int             iBatchSize
+   ) throws OSSException
+   {
+      return update(colBlogs, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmDelete = null;
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmDelete = cntDBConnection.prepareStatement(DELETE);
+         pstmDelete.setLong(1, lId);
+         pstmDelete.setLong(2, lDomainId);
+         pstmDelete.executeUpdate();
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to delete blog.", sqleExc);
+      }
+      finally
+      {
+         close(null, pstmDelete);
+         returnConnection(cntDBConnection);
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Retrieve all blogs sorted by their caption.
+    *
+    * @param fields - fields to retrieve or null to retrieve all of them
+    * @return List - list of blogs, never null
+    * @throws OSSException - an error has occurred
+    */
+   protected List<Blog> queryAll(
+      EnumSet<BlogFields> fields
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      List<Blog>        lstData = new ArrayList<>();
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         if (fields == null)
+         {
+            pstmQuery = cntDBConnection.prepareStatement(SELECT_ALL);
+         }
+         else
+         {
+            pstmQuery = cntDBConnection.prepareStatement(
+                           "select " 
+                           + ChronicleDatabaseSchema.getBlogColumns(fields)
+                           + " from " + ChronicleDatabaseSchema.BLOG_TABLE_NAME
+                           + " order by CAPTION");
+         }
+         rsQueryResults = pstmQuery.executeQuery();
+         while (rsQueryResults.next())
+         {
+            lstData.add((fields == null) ? load(rsQueryResults, 1) 
+                                         : load(rsQueryResults, fields));
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read blogs.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstData;
+   }
+
+   /**
+    * Insert all blogs in a single transaction reusing the same statement and
+    * sending it to the database in batches.
+    *
+    * @param colDataObject - blogs to insert
+    * @param iBatchSize - number of statements sent to the database at once
+    * @return List - inserted blogs with generated ids and timestamps in the
+    *                same order as they were specified
+    * @throws OSSException - an error has occurred
+    */
+   protected List<Blog> insert(
+      Collection<? extends DataObject> colDataObject,
+      int                              iBatchSize
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmInsert = null;
+      List<Blog>        lstInserted = new ArrayList<>(colDataObject.size());
+      List<Blog>        lstBatch = new ArrayList<>(
+                                      Math.min(iBatchSize, colDataObject.size()));
+      Timestamp         tmstpNow = OptimisticConcurrency.getCurrentTimestamp();
+      Blog              data;
+
+      if (iBatchSize <= 0)
+      {
+         throw new IllegalArgumentException("Batch size has to be positive");
+      }
+      try
+      {
+         cntDBConnection = requestConnection(false);
+         pstmInsert = cntDBConnection.prepareStatement(
+                         INSERT, Statement.RETURN_GENERATED_KEYS);
+         for (DataObject dataObject : colDataObject)
+         {
+            data = (Blog)dataObject;
+            pstmInsert.setLong(1, data.getDomainId());
+            pstmInsert.setTimestamp(2, tmstpNow);
+            pstmInsert.setTimestamp(3, tmstpNow);
+            pstmInsert.setString(4, data.getFolder());
+            pstmInsert.setString(5, data.getCaption());
+            pstmInsert.setString(6, data.getComments());
+            pstmInsert.setBoolean(7, data.getIsPreformated());
+            pstmInsert.addBatch();
+            lstBatch.add(data);
+            if (lstBatch.size() == iBatchSize)
+            {
+               executeInsertBatch(pstmInsert, lstBatch, tmstpNow, lstInserted);
+            }
+         }
+         if (!lstBatch.isEmpty())
+         {
+            executeInsertBatch(pstmInsert, lstBatch, tmstpNow, lstInserted);
+         }
+         commit(cntDBConnection);
+      }
+      catch (SQLException sqleExc)
+      {
+         rollback(cntDBConnection);
+         throw new OSSDatabaseAccessException("Failed to create blog.", sqleExc);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         rollback(cntDBConnection);
+         throw exc;
+      }
+      finally
+      {
+         close(null, pstmInsert);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstInserted;
+   }
+
+   /**
+    * Execute batch of inserts and construct the inserted blogs using the
+    * generated keys.
+    *
+    * @param pstmInsert - statement with the batch to execute
+    * @param lstBatch - blogs in the batch, the list is cleared
+    * @param tmstpNow - creation and modification timestamp of the blogs
+    * @param lstInserted - list where to add the inserted blogs
+    * @throws SQLException - an error has occurred executing the batch
+    * @throws OSSException - an error has occurred
+    */
+   protected void executeInsertBatch(
+      PreparedStatement pstmInsert,
+      List<Blog>        lstBatch,
+      Timestamp         tmstpNow,
+      List<Blog>        lstInserted
+   ) throws SQLException,
+            OSSException
+   {
+      ResultSet rsKeys = null;
+      int       iIndex = 0;
+      Blog      data;
+
+      pstmInsert.executeBatch();
+      try
+      {
+         rsKeys = pstmInsert.getGeneratedKeys();
+         while (rsKeys.next())
+         {
+            data = lstBatch.get(iIndex++);
+            lstInserted.add(new Blog(rsKeys.getLong(1), data.getDomainId(),
+                                     tmstpNow, tmstpNow, data.getFolder(),
+                                     data.getCaption(), data.getComments(),
+                                     data.getIsPreformated()));
+         }
+      }
+      finally
+      {
+         close(rsKeys, null);
+      }
+      if (iIndex != lstBatch.size())
+      {
+         throw new OSSDatabaseAccessException("Database returned " + iIndex
+                      + " generated keys for " + lstBatch.size() + " blogs.");
+      }
+      lstBatch.clear();
+   }
+
+   /**
+    * Update all blogs in a single transaction reusing the same statement and
+    * sending it to the database in batches. If any of the blogs was modified
+    * or deleted since it was read, none of them is updated.
+    *
+    * @param colDataObject - blogs to update with the modification timestamp
+    *                        they were read with
+    * @param iBatchSize - number of statements sent to the database at once
+    * @return List - updated blogs with new modification timestamp in the same
+    *                order as they were specified
+    * @throws OSSConcurentModifyException - some of the blogs were modified or
+    *                                       deleted by someone else
+    * @throws OSSException - an error has occurred
+    */
+   protected List<Blog> update(
+      Collection<? extends ModifiableDataObject> colDataObject,
+      int                                        iBatchSize
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmUpdate = null;
+      List<Blog>        lstUpdated = new ArrayList<>(colDataObject.size());
+      Timestamp         tmstpNow = OptimisticConcurrency.getCurrentTimestamp();
+      Timestamp         modificationTimestamp;
+      int               iBatched = 0;
+      Blog              data;
+
+      if (iBatchSize <= 0)
+      {
+         throw new IllegalArgumentException("Batch size has to be positive");
+      }
+      try
+      {
+         cntDBConnection = requestConnection(false);
+         pstmUpdate = cntDBConnection.prepareStatement(UPDATE);
+         for (ModifiableDataObject dataObject : colDataObject)
+         {
+            data = (Blog)dataObject;
+            if (data.getModificationTimestamp() == null)
+            {
+               throw new IllegalArgumentException(
+                            "Modification timestamp of saved blog cannot be"
+                            + " null");
+            }
+            modificationTimestamp 
+               = OptimisticConcurrency.getModificationTimestamp(
+                    tmstpNow, data.getModificationTimestamp());
+            pstmUpdate.setTimestamp(1, modificationTimestamp);
+            pstmUpdate.setString(2, data.getFolder());
+            pstmUpdate.setString(3, data.getCaption());
+            pstmUpdate.setString(4, data.getComments());
+            pstmUpdate.setBoolean(5, data.getIsPreformated());
+            pstmUpdate.setLong(6, data.getId());
+            pstmUpdate.setLong(7, data.getDomainId());
+            pstmUpdate.setTimestamp(8, data.getModificationTimestamp());
+            pstmUpdate.addBatch();
+            lstUpdated.add(new Blog(data.getId(), data.getDomainId(),
+                                    data.getCreationTimestamp(), 
+                                    modificationTimestamp,
+                                    data.getFolder(), data.getCaption(),
+                                    data.getComments(), 
+                                    data.getIsPreformated()));
+            if (++iBatched == iBatchSize)
+            {
+               executeUpdateBatch(pstmUpdate, lstUpdated, iBatched);
+               iBatched = 0;
+            }
+         }
+         if (iBatched > 0)
+         {
+            executeUpdateBatch(pstmUpdate, lstUpdated, iBatched);
+         }
+         commit(cntDBConnection);
+      }
+      catch (SQLException sqleExc)
+      {
+         rollback(cntDBConnection);
+         throw new OSSDatabaseAccessException("Failed to save blog.", sqleExc);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         rollback(cntDBConnection);
+         throw exc;
+      }
+      finally
+      {
+         close(null, pstmUpdate);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstUpdated;
+   }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ *
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.opensubsystems.chronicle.persist.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.opensubsystems.chronicle.data.StringDictionary;
+import org.opensubsystems.chronicle.persist.OptimisticConcurrency;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSConcurentModifyException;
+import org.opensubsystems.core.error.OSSDatabaseAccessException;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Base class for JDBC factories of the chronicle data. It manages connections
+ * obtained from the data source and the transactions used to modify the data.
+ * The SQL used by the derived factories is constant so that the prepared
+ * statements can be reused by the driver or by the statement pool of the data
+ * source (e.g. poolPreparedStatements in commons-dbcp).
+ *
+ * Data are saved using optimistic concurrency control. The modification 
+ * timestamp read together with the data is used as a version, the data are
+ * updated only if the stored modification timestamp still matches it and
+ * the update sets a new one. No locks are held between reading the data and 
+ * saving them, so editors and background jobs never wait for each other and
+ * a conflicting save fails with OSSConcurentModifyException instead.
+ *
+ * @author bastafidli
+ */
+public abstract class ChronicleDatabaseFactory
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Default number of statements sent to the database in a single batch.
+    */
+   public static final int DEFAULT_BATCH_SIZE = 100;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Data source providing connections to the database.
+    */
+   protected final DataSource m_dataSource;
+
+   /**
+    * Dictionary used to share instances of strings repeated in many loaded
+    * data objects.
+    */
+   protected final StringDictionary m_dictionary;
+
+   // Cached values ////////////////////////////////////////////////////////////
+
+   /**
+    * Logger for this class
+    */
+   private static Logger s_logger = Logger.getLogger(
+                                       ChronicleDatabaseFactory.class.getName());
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new factory accessing the database through the specified data
+    * source.
+    *
+    * @param dataSource - data source providing connections to the database
+    */
+   protected ChronicleDatabaseFactory(
+      DataSource dataSource
+   )
+   {
+      this(dataSource, StringDictionary.getDefaultInstance());
+   }
+
+   /**
+    * Create new factory accessing the database through the specified data
+    * source.
+    *
+    * @param dataSource - data source providing connections to the database
+    * @param dictionary - dictionary used to share instances of strings 
+    *                     repeated in many loaded data objects
+    */
+   protected ChronicleDatabaseFactory(
+      DataSource       dataSource,
+      StringDictionary dictionary
+   )
+   {
+      if (dataSource == null)
+      {
+         throw new IllegalArgumentException("Data source cannot be null");
+      }
+      if (dictionary == null)
+      {
+         throw new IllegalArgumentException("Dictionary cannot be null");
+      }
+      m_dataSource = dataSource;
+      m_dictionary = dictionary;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Data source providing connections to the database.
+    *
+    * @return DataSource
+    */
+   public DataSource getDataSource(
+   )
+   {
+      return m_dataSource;
+   }
+
+   /**
+    * Dictionary used to share instances of strings repeated in many loaded
+    * data objects.
+    *
+    * @return StringDictionary
+    */
+   public StringDictionary getDictionary(
+   )
+   {
+      return m_dictionary;
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Get connection to the database.
+    *
+    * @param bAutoCommit - should the connection commit every statement or will
+    *                      the transaction be committed explicitly
+    * @return Connection - connection to the database, it has to be returned
+    *                      using returnConnection method
+    * @throws OSSException - an error has occurred
+    */
+   protected Connection requestConnection(
+      boolean bAutoCommit
+   ) throws OSSException
+   {
+      Connection cntDBConnection = null;
+
+      try
+      {
+         cntDBConnection = m_dataSource.getConnection();
+         if (cntDBConnection.getAutoCommit() != bAutoCommit)
+         {
+            cntDBConnection.setAutoCommit(bAutoCommit);
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         returnConnection(cntDBConnection);
+         throw new OSSDatabaseAccessException(
+                      "Cannot get connection to the database.", sqleExc);
+      }
+
+      return cntDBConnection;
+   }
+
+   /**
+    * Return connection obtained by requestConnection back to the data source.
+    *
+    * @param cntDBConnection - connection to return, can be null
+    */
+   protected void returnConnection(
+      Connection cntDBConnection
+   )
+   {
+      if (cntDBConnection != null)
+      {
+         try
+         {
+            if (!cntDBConnection.getAutoCommit())
+            {
+               cntDBConnection.setAutoCommit(true);
+            }
+         }
+         catch (SQLException sqleExc)
+         {
+            s_logger.log(Level.WARNING, "Cannot reset autocommit mode.", sqleExc);
+         }
+         finally
+         {
+            try
+            {
+               cntDBConnection.close();
+            }
+            catch (SQLException sqleExc)
+            {
+               s_logger.log(Level.WARNING, "Cannot close connection.", sqleExc);
+            }
+         }
+      }
+   }
+
+   /**
+    * Commit the transaction on the specified connection.
+    *
+    * @param cntDBConnection - connection with the transaction to commit
+    * @throws OSSException - an error has occurred
+    */
+   protected void commit(
+      Connection cntDBConnection
+   ) throws OSSException
+   {
+      try
+      {
+         cntDBConnection.commit();
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Cannot commit transaction.",
+                                              sqleExc);
+      }
+   }
+
+   /**
+    * Rollback the transaction on the specified connection. Any error is just
+    * logged since this is always called when some other error has occurred.
+    *
+    * @param cntDBConnection - connection with the transaction to rollback,
+    *                          can be null
+    */
+   protected void rollback(
+      Connection cntDBConnection
+   )
+   {
+      if (cntDBConnection != null)
+      {
+         try
+         {
+            cntDBConnection.rollback();
+         }
+         catch (SQLException sqleExc)
+         {
+            s_logger.log(Level.WARNING, "Cannot rollback transaction.", sqleExc);
+         }
+      }
+   }
+
+   /**
+    * Close the result set and the statement.
+    *
+    * @param rsResults - result set to close, can be null
+    * @param stmQuery - statement to close, can be null
+    */
+   protected static void close(
+      ResultSet rsResults,
+      Statement stmQuery
+   )
+   {
+      if (rsResults != null)
+      {
+         try
+         {
+            rsResults.close();
+         }
+         catch (SQLException sqleExc)
+         {
+            s_logger.log(Level.WARNING, "Cannot close result set.", sqleExc);
+         }
+      }
+      if (stmQuery != null)
+      {
+         try
+         {
+            stmQuery.close();
+         }
+         catch (SQLException sqleExc)
+         {
+            s_logger.log(Level.WARNING, "Cannot close statement.", sqleExc);
+         }
+      }
+   }
+
+   /**
+    * Execute batch of updates and check that every update has updated a row.
+    * Update doesn't update any row if the data were modified or deleted since
+    * they were read.
+    *
+    * @param pstmUpdate - statement with the batch to execute
+    * @param lstUpdated - updated data, the last iBatched of them are in the 
+    *                     batch in the order in which they were added
+    * @param iBatched - number of updates in the batch
+    * @throws SQLException - an error has occurred executing the batch
+    * @throws OSSConcurentModifyException - some of the data were modified or 
+    *                                       deleted by someone else
+    */
+   protected static void executeUpdateBatch(
+      PreparedStatement                    pstmUpdate,
+      List<? extends ModifiableDataObject> lstUpdated,
+      int                                  iBatched
+   ) throws SQLException,
+            OSSConcurentModifyException
+   {
+      int[]                arrCounts = pstmUpdate.executeBatch();
+      ModifiableDataObject updated;
+
+      for (int iIndex = 0; iIndex < arrCounts.length; iIndex++)
+      {
+         // The driver may not know the number of updated rows
+         if ((arrCounts[iIndex] != Statement.SUCCESS_NO_INFO) 
+            && (arrCounts[iIndex] < 1))
+         {
+            updated = lstUpdated.get(lstUpdated.size() - iBatched + iIndex);
+            throw OptimisticConcurrency.createModifiedException(updated);
+         }
+      }
+   }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ *
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.opensubsystems.chronicle.persist.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import org.opensubsystems.chronicle.data.Blog.BlogDataDescriptor.BlogFields;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
+
+/**
+ * Database schema for blogs and their entries as used by the HSQLDB database.
+ * The columns are always listed in the same order as the fields are declared
+ * in BlogFields and EntryFields so that the data can be loaded efficiently by
+ * position.
+ *
+ * @author bastafidli
+ */
+public final class ChronicleDatabaseSchema
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Name of the table storing blogs.
+    */
+   public static final String BLOG_TABLE_NAME = "BF_BLOG";
+
+   /**
+    * Name of the table storing blog entries.
+    */
+   public static final String ENTRY_TABLE_NAME = "BF_BLOG_ENTRY";
+
+   /**
+    * Maximal length of the blog folder.
+    */
+   public static final int BLOG_FOLDER_MAXLENGTH = 50;
+
+   /**
+    * Maximal length of the blog and entry caption.
+    */
+   public static final int CAPTION_MAXLENGTH = 1024;
+
+   /**
+    * Maximal length of the blog and entry comments.
+    */
+   public static final int COMMENTS_MAXLENGTH = 32768;
+
+   /**
+    * Maximal length of the image and target URL of an entry.
+    */
+   public static final int URL_MAXLENGTH = 1024;
+
+   /**
+    * Blog columns in the order of BlogFields, BLOG_FROM_PERSISTANCE_STORE
+    * doesn't have a column since it is set when the data are loaded.
+    */
+   public static final String BLOG_COLUMNS
+      = "ID, DOMAIN_ID, CREATION_DATE, MODIFICATION_DATE, FOLDER, CAPTION, COMMENTS,"
+        + " PREFORMATED";
+
+   /**
+    * Entry columns in the order of EntryFields, ENTRY_FROM_PERSISTANCE_STORE
+    * doesn't have a column since it is set when the data are loaded and
+    * ENTRY_FOLDER is stored as id of the blog the entry belongs to.
+    */
+   public static final String ENTRY_COLUMNS
+      = "ID, DOMAIN_ID, CREATION_DATE, MODIFICATION_DATE, BLOG_ID, CAPTION, "
+        + "COMMENTS, IMAGEURL, TARGETURL, PREFORMATED";
+
+   /**
+    * Statements creating the schema in the HSQLDB database.
+    */
+   private static final String[] SCHEMA_DDL = {
+      "create table " + BLOG_TABLE_NAME + " ("
+      + " ID BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 1) NOT NULL,"
+      + " DOMAIN_ID BIGINT NOT NULL,"
+      + " CREATION_DATE TIMESTAMP NOT NULL,"
+      + " MODIFICATION_DATE TIMESTAMP NOT NULL,"
+      + " FOLDER VARCHAR(" + BLOG_FOLDER_MAXLENGTH + ") NOT NULL,"
+      + " CAPTION VARCHAR(" + CAPTION_MAXLENGTH + ") NOT NULL,"
+      + " COMMENTS VARCHAR(" + COMMENTS_MAXLENGTH + ") NOT NULL,"
+      + " PREFORMATED BOOLEAN DEFAULT FALSE NOT NULL,"
+      + " CONSTRAINT BF_BLOG_PK PRIMARY KEY (ID),"
+      + " CONSTRAINT BF_BLOG_FLDR_UQ UNIQUE (FOLDER))",
+
+      "create table " + ENTRY_TABLE_NAME + " ("
+      + " ID BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 1) NOT NULL,"
+      + " DOMAIN_ID BIGINT NOT NULL,"
+      + " CREATION_DATE TIMESTAMP NOT NULL,"
+      + " MODIFICATION_DATE TIMESTAMP NOT NULL,"
+      + " BLOG_ID BIGINT NOT NULL,"
+      + " CAPTION VARCHAR(" + CAPTION_MAXLENGTH + ") NOT NULL,"
+      + " COMMENTS VARCHAR(" + COMMENTS_MAXLENGTH + ") NOT NULL,"
+      + " IMAGEURL VARCHAR(" + URL_MAXLENGTH + "),"
+      + " TARGETURL VARCHAR(" + URL_MAXLENGTH + "),"
+      + " PREFORMATED BOOLEAN DEFAULT FALSE NOT NULL,"
+      + " CONSTRAINT BF_BLOGENTR_PK PRIMARY KEY (ID),"
+      + " CONSTRAINT BF_BLOGENTR_FK FOREIGN KEY (BLOG_ID)"
+      + " REFERENCES " + BLOG_TABLE_NAME + " (ID) ON DELETE CASCADE)",
+
+      // Changes of blogs are found by their modification date
+      "create index BF_BLOG_MDDT on " + BLOG_TABLE_NAME
+      + " (MODIFICATION_DATE)",
+
+      // Entries are always listed for a blog from the most recent one
+      "create index BF_BLOGENTR_CRDT on " + ENTRY_TABLE_NAME
+      + " (BLOG_ID, CREATION_DATE, ID)",
+
+      // Changes of entries of a blog are found by their modification date
+      "create index BF_BLOGENTR_MDDT on " + ENTRY_TABLE_NAME
+      + " (BLOG_ID, MODIFICATION_DATE)",
+   };
+
+   /**
+    * Columns storing the blog fields. Fields, which are not stored, don't have
+    * any column.
+    */
+   private static final Map<BlogFields, String> BLOG_FIELD_COLUMNS;
+
+   /**
+    * Columns storing the entry fields. Fields, which are not stored, don't have
+    * any column.
+    */
+   private static final Map<EntryFields, String> ENTRY_FIELD_COLUMNS;
+
+   static
+   {
+      BLOG_FIELD_COLUMNS = new EnumMap<>(BlogFields.class);
+      BLOG_FIELD_COLUMNS.put(BlogFields.BLOG_ID, "ID");
+      BLOG_FIELD_COLUMNS.put(BlogFields.BLOG_DOMAIN_ID, "DOMAIN_ID");
+      BLOG_FIELD_COLUMNS.put(BlogFields.BLOG_CREATION_DATE, "CREATION_DATE");
+      BLOG_FIELD_COLUMNS.put(BlogFields.BLOG_MODIFICATION_DATE, 
+                             "MODIFICATION_DATE");
+      BLOG_FIELD_COLUMNS.put(BlogFields.BLOG_FOLDER, "FOLDER");
+      BLOG_FIELD_COLUMNS.put(BlogFields.BLOG_CAPTION, "CAPTION");
+      BLOG_FIELD_COLUMNS.put(BlogFields.BLOG_COMMENTS, "COMMENTS");
+      BLOG_FIELD_COLUMNS.put(BlogFields.BLOG_PREFORMATED, "PREFORMATED");
+
+      ENTRY_FIELD_COLUMNS = new EnumMap<>(EntryFields.class);
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_ID, "ID");
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_DOMAIN_ID, "DOMAIN_ID");
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_CREATION_DATE, "CREATION_DATE");
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_MODIFICATION_DATE, 
+                              "MODIFICATION_DATE");
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_FOLDER, "BLOG_ID");
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_CAPTION, "CAPTION");
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_COMMENTS, "COMMENTS");
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_IMAGEURL, "IMAGEURL");
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_TARGETURL, "TARGETURL");
+      ENTRY_FIELD_COLUMNS.put(EntryFields.ENTRY_PREFORMATED, "PREFORMATED");
+   }
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Private constructor since this class cannot be instantiated
+    */
+   private ChronicleDatabaseSchema(
+   )
+   {
+      // Do nothing
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Create the database schema for blogs and entries.
+    *
+    * @param cntDBConnection - valid connection to the database
+    * @throws SQLException - an error has occurred creating the schema
+    */
+   public static void create(
+      Connection cntDBConnection
+   ) throws SQLException
+   {
+      Statement stmQuery = null;
+
+      try
+      {
+         stmQuery = cntDBConnection.createStatement();
+         for (String strDDL : SCHEMA_DDL)
+         {
+            stmQuery.execute(strDDL);
+         }
+      }
+      finally
+      {
+         if (stmQuery != null)
+         {
+            stmQuery.close();
+         }
+      }
+   }
+
+   /**
+    * Check if the blog field is stored in its own column.
+    *
+    * @param field - field to check
+    * @return boolean - true if there is a column for the field
+    */
+   public static boolean hasColumn(
+      BlogFields field
+   )
+   {
+      return BLOG_FIELD_COLUMNS.containsKey(field);
+   }
+
+   /**
+    * Check if the entry field is stored in its own column.
+    *
+    * @param field - field to check
+    * @return boolean - true if there is a column for the field
+    */
+   public static boolean hasColumn(
+      EntryFields field
+   )
+   {
+      return ENTRY_FIELD_COLUMNS.containsKey(field);
+   }
+
+   /**
+    * Get columns storing the specified blog fields in the order of BlogFields.
+    * The same set of fields always produces the same list so that the 
+    * statements using it can be reused.
+    *
+    * @param fields - fields to get the columns for
+    * @return String - comma separated list of columns
+    * @throws IllegalArgumentException - none of the fields has a column
+    */
+   public static String getBlogColumns(
+      EnumSet<BlogFields> fields
+   )
+   {
+      StringBuilder sbColumns = new StringBuilder();
+      String        strColumn;
+
+      for (BlogFields field : fields)
+      {
+         strColumn = BLOG_FIELD_COLUMNS.get(field);
+         if (strColumn != null)
+         {
+            if (sbColumns.length() > 0)
+            {
+               sbColumns.append(", ");
+            }
+            sbColumns.append(strColumn);
+         }
+      }
+      if (sbColumns.length() == 0)
+      {
+         throw new IllegalArgumentException("No stored blog field specified");
+      }
+
+      return sbColumns.toString();
+   }
+
+   /**
+    * Get columns storing the specified entry fields in the order of 
+    * EntryFields. The same set of fields always produces the same list so that
+    * the statements using it can be reused.
+    *
+    * @param fields - fields to get the columns for
+    * @return String - comma separated list of columns
+    * @throws IllegalArgumentException - none of the fields has a column
+    */
+   public static String getEntryColumns(
+      EnumSet<EntryFields> fields
+   )
+   {
+      StringBuilder sbColumns = new StringBuilder();
+      String        strColumn;
+
+      for (EntryFields field : fields)
+      {
+         strColumn = ENTRY_FIELD_COLUMNS.get(field);
+         if (strColumn != null)
+         {
+            if (sbColumns.length() > 0)
+            {
+               sbColumns.append(", ");
+            }
+            sbColumns.append(strColumn);
+         }
+      }
+      if (sbColumns.length() == 0)
+      {
+         throw new IllegalArgumentException("No stored entry field specified");
+      }
+
+      return sbColumns.toString();
+   }
+}
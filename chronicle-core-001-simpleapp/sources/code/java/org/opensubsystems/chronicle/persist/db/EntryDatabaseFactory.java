@@ -0,0 +1,1571 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ *
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.opensubsystems.chronicle.persist.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
+import org.opensubsystems.chronicle.data.StringDictionary;
+import org.opensubsystems.chronicle.persist.EntryCommentsLoader;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryHandler;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.chronicle.persist.EntryPageCursor;
+import org.opensubsystems.chronicle.persist.OptimisticConcurrency;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSConcurentModifyException;
+import org.opensubsystems.core.error.OSSDatabaseAccessException;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * JDBC implementation of the entry factory. Data are always read by position
+ * in the order of EntryFields and multiple entries are written using batches
+ * to minimize number of round trips to the database.
+ *
+ * @author bastafidli
+ */
+public class EntryDatabaseFactory extends ChronicleDatabaseFactory
+                                  implements EntryFactory
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Order in which entries of a blog are returned, from the most recent one.
+    */
+   protected static final String ORDER_BY_MOST_RECENT
+      = " order by CREATION_DATE desc, ID desc";
+
+   /**
+    * Condition selecting all entries of a blog.
+    */
+   protected static final String WHERE_BLOG
+      = " where BLOG_ID = ?" + ORDER_BY_MOST_RECENT;
+
+   /**
+    * Condition selecting entries of a blog after the specified position.
+    */
+   protected static final String WHERE_PAGE_BY_BLOG
+      = " where BLOG_ID = ? and (CREATION_DATE < ?"
+        + " or (CREATION_DATE = ? and ID < ?))" + ORDER_BY_MOST_RECENT;
+
+   /**
+    * Query to retrieve entry by its id.
+    */
+   protected static final String SELECT_BY_ID
+      = "select " + ChronicleDatabaseSchema.ENTRY_COLUMNS
+        + " from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+        + " where ID = ? and DOMAIN_ID = ?";
+
+   /**
+    * Query to retrieve all entries of a blog.
+    */
+   protected static final String SELECT_BY_BLOG
+      = "select " + ChronicleDatabaseSchema.ENTRY_COLUMNS
+        + " from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME + WHERE_BLOG;
+
+   /**
+    * Query to retrieve page of entries of a blog after the specified position.
+    */
+   protected static final String SELECT_PAGE_BY_BLOG
+      = "select " + ChronicleDatabaseSchema.ENTRY_COLUMNS
+        + " from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME 
+        + WHERE_PAGE_BY_BLOG;
+
+   /**
+    * Number of blogs for which the last entries are retrieved by a single 
+    * query. The query has always the same number of parameters so that it can
+    * be reused.
+    */
+   public static final int LAST_ENTRIES_BATCH_SIZE = 20;
+
+   /**
+    * Query to retrieve last entries of multiple blogs. The most recent 
+    * creation date of each blog is found using the index on blog id and 
+    * creation date and the entries created at that date are then read using
+    * the same index. Multiple entries of a blog may be created at the same 
+    * time, the one with the highest id is the last one.
+    */
+   protected static final String SELECT_LAST_BY_BLOGS
+      = "select " + ChronicleDatabaseSchema.ENTRY_COLUMNS
+        + " from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME + " E"
+        + " join (select BLOG_ID as LAST_BLOG_ID,"
+        + " max(CREATION_DATE) as LAST_CREATION_DATE"
+        + " from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+        + " where BLOG_ID in (" + getParameters(LAST_ENTRIES_BATCH_SIZE) + ")"
+        + " group by BLOG_ID) L on E.BLOG_ID = L.LAST_BLOG_ID"
+        + " and E.CREATION_DATE = L.LAST_CREATION_DATE";
+
+   /**
+    * Query to count entries of a blog. It is answered using the index on 
+    * BLOG_ID without reading the entries.
+    */
+   protected static final String SELECT_COUNT_BY_BLOG
+      = "select count(*) from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+        + " where BLOG_ID = ?";
+
+   /**
+    * Query to retrieve entries of a blog created within the specified period.
+    * It is answered using the index on BLOG_ID and CREATION_DATE.
+    */
+   protected static final String SELECT_BY_BLOG_AND_PERIOD
+      = "select " + ChronicleDatabaseSchema.ENTRY_COLUMNS
+        + " from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+        + " where BLOG_ID = ? and CREATION_DATE >= ? and CREATION_DATE < ?"
+        + ORDER_BY_MOST_RECENT;
+
+   /**
+    * Query to count entries of a blog created in every month. It is answered
+    * using the index on BLOG_ID and CREATION_DATE without reading the entries.
+    */
+   protected static final String SELECT_MONTH_COUNTS_BY_BLOG
+      = "select extract(YEAR from CREATION_DATE),"
+        + " extract(MONTH from CREATION_DATE), count(*) from "
+        + ChronicleDatabaseSchema.ENTRY_TABLE_NAME + " where BLOG_ID = ?"
+        + " group by extract(YEAR from CREATION_DATE),"
+        + " extract(MONTH from CREATION_DATE) order by 1 desc, 2 desc";
+
+   /**
+    * Query to find the most recent modification of entries of a blog. It is 
+    * answered using the index on BLOG_ID and MODIFICATION_DATE.
+    */
+   protected static final String SELECT_LAST_MODIFIED_BY_BLOG
+      = "select max(MODIFICATION_DATE) from " 
+        + ChronicleDatabaseSchema.ENTRY_TABLE_NAME + " where BLOG_ID = ?";
+
+   /**
+    * Query to retrieve entries of a blog modified after the specified time. 
+    * It is answered using the index on BLOG_ID and MODIFICATION_DATE.
+    */
+   protected static final String SELECT_MODIFIED_SINCE_BY_BLOG
+      = "select " + ChronicleDatabaseSchema.ENTRY_COLUMNS
+        + " from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+        + " where BLOG_ID = ? and MODIFICATION_DATE > ?"
+        + " order by MODIFICATION_DATE, ID";
+
+   /**
+    * Query to retrieve comments of an entry.
+    */
+   protected static final String SELECT_COMMENTS
+      = "select COMMENTS from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+        + " where ID = ? and DOMAIN_ID = ?";
+
+   /**
+    * Statement to insert new entry.
+    */
+   protected static final String INSERT
+      = "insert into " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+        + " (DOMAIN_ID, CREATION_DATE, MODIFICATION_DATE, BLOG_ID, CAPTION,"
+        + " COMMENTS, IMAGEURL, TARGETURL, PREFORMATED)"
+        + " values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+   /**
+    * Statement to update existing entry if it wasn't modified since it was 
+    * read.
+    */
+   protected static final String UPDATE
+      = "update " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+        + " set MODIFICATION_DATE = ?, BLOG_ID = ?, CAPTION = ?, COMMENTS = ?,"
+        + " IMAGEURL = ?, TARGETURL = ?, PREFORMATED = ?"
+        + " where ID = ? and DOMAIN_ID = ? and MODIFICATION_DATE = ?";
+
+   /**
+    * Statement to delete entry.
+    */
+   protected static final String DELETE
+      = "delete from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+        + " where ID = ? and DOMAIN_ID = ?";
+
+   /**
+    * Default number of rows fetched from the database at once when entries are
+    * passed to a handler.
+    */
+   public static final int DEFAULT_FETCH_SIZE = 100;
+
+   /**
+    * Fields retrieved for summaries of entries. Comments are loaded only when
+    * they are requested.
+    */
+   protected static final EnumSet<EntryFields> SUMMARY_FIELDS
+      = EnumSet.complementOf(EnumSet.of(EntryFields.ENTRY_COMMENTS));
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Number of rows fetched from the database at once when entries are passed
+    * to a handler.
+    */
+   protected final int m_iFetchSize;
+
+   /**
+    * Loader of comments of entries retrieved without them.
+    */
+   protected final Entry.CommentsLoader m_commentsLoader;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new entry factory accessing the database through the specified
+    * data source.
+    *
+    * @param dataSource - data source providing connections to the database
+    */
+   public EntryDatabaseFactory(
+      DataSource dataSource
+   )
+   {
+      this(dataSource, DEFAULT_FETCH_SIZE);
+   }
+
+   /**
+    * Create new entry factory accessing the database through the specified
+    * data source.
+    *
+    * @param dataSource - data source providing connections to the database
+    * @param iFetchSize - number of rows fetched from the database at once when
+    *                     entries are passed to a handler
+    */
+   public EntryDatabaseFactory(
+      DataSource dataSource,
+      int        iFetchSize
+   )
+   {
+      this(dataSource, iFetchSize, StringDictionary.getDefaultInstance());
+   }
+
+   /**
+    * Create new entry factory accessing the database through the specified
+    * data source.
+    *
+    * @param dataSource - data source providing connections to the database
+    * @param iFetchSize - number of rows fetched from the database at once when
+    *                     entries are passed to a handler
+    * @param dictionary - dictionary used to share instances of image and 
+    *                     target URLs of loaded entries
+    */
+   public EntryDatabaseFactory(
+      DataSource       dataSource,
+      int              iFetchSize,
+      StringDictionary dictionary
+   )
+   {
+      super(dataSource, dictionary);
+
+      if (iFetchSize <= 0)
+      {
+         throw new IllegalArgumentException("Fetch size has to be positive");
+      }
+      m_iFetchSize = iFetchSize;
+      m_commentsLoader = new EntryCommentsLoader(this);
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Load entry from the current row of the result set. The columns have to be
+    * in the order of EntryFields.
+    *
+    * @param rsQueryResults - result set positioned at the row to load
+    * @param iInitialIndex - index of the first column to load
+    * @return Entry - loaded entry
+    * @throws OSSException - an error has occurred
+    */
+   public Entry load(
+      ResultSet rsQueryResults,
+      int       iInitialIndex
+   ) throws OSSException
+   {
+      Entry data;
+
+      try
+      {
+         data = new Entry(rsQueryResults.getLong(iInitialIndex),
+                          rsQueryResults.getLong(iInitialIndex + 1),
+                          rsQueryResults.getTimestamp(iInitialIndex + 2),
+                          rsQueryResults.getTimestamp(iInitialIndex + 3),
+                          rsQueryResults.getLong(iInitialIndex + 4),
+                          rsQueryResults.getString(iInitialIndex + 5),
+                          rsQueryResults.getString(iInitialIndex + 6),
+                          m_dictionary.canonicalize(
+                             rsQueryResults.getString(iInitialIndex + 7)),
+                          m_dictionary.canonicalize(
+                             rsQueryResults.getString(iInitialIndex + 8)),
+                          rsQueryResults.getBoolean(iInitialIndex + 9));
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to load entry.", sqleExc);
+      }
+
+      return data;
+   }
+
+   /**
+    * Load entry from the current row of the result set containing only the 
+    * columns of the specified fields in the order of EntryFields. Fields which 
+    * were not loaded keep their default values.
+    *
+    * @param rsQueryResults - result set positioned at the row to load
+    * @param fields - fields which were selected
+    * @return Entry - loaded entry
+    * @throws OSSException - an error has occurred
+    */
+   public Entry load(
+      ResultSet            rsQueryResults,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      long      lId = DataObject.NEW_ID;
+      long      lDomainId = DataObject.NEW_ID;
+      Timestamp creationTimestamp = null;
+      Timestamp modificationTimestamp = null;
+      long      lParentId = DataObject.NEW_ID;
+      String    strCaption = null;
+      String    strComments = null;
+      String    strImageURL = null;
+      String    strTargetURL = null;
+      Boolean   bIsPreformated = null;
+      Entry     data;
+      int       iIndex = 1;
+
+      try
+      {
+         for (EntryFields field : fields)
+         {
+            if (ChronicleDatabaseSchema.hasColumn(field))
+            {
+               switch (field)
+               {
+                  case ENTRY_ID:
+                     lId = rsQueryResults.getLong(iIndex);
+                     break;
+                  case ENTRY_DOMAIN_ID:
+                     lDomainId = rsQueryResults.getLong(iIndex);
+                     break;
+                  case ENTRY_CREATION_DATE:
+                     creationTimestamp = rsQueryResults.getTimestamp(iIndex);
+                     break;
+                  case ENTRY_MODIFICATION_DATE:
+                     modificationTimestamp = rsQueryResults.getTimestamp(iIndex);
+                     break;
+                  case ENTRY_FOLDER:
+                     lParentId = rsQueryResults.getLong(iIndex);
+                     break;
+                  case ENTRY_CAPTION:
+                     strCaption = rsQueryResults.getString(iIndex);
+                     break;
+                  case ENTRY_COMMENTS:
+                     strComments = rsQueryResults.getString(iIndex);
+                     break;
+                  case ENTRY_IMAGEURL:
+                     strImageURL = m_dictionary.canonicalize(
+                                    rsQueryResults.getString(iIndex));
+                     break;
+                  case ENTRY_TARGETURL:
+                     strTargetURL = m_dictionary.canonicalize(
+                                    rsQueryResults.getString(iIndex));
+                     break;
+                  case ENTRY_PREFORMATED:
+                     bIsPreformated = rsQueryResults.getBoolean(iIndex);
+                     break;
+                  default:
+                     throw new IllegalArgumentException("Unknown entry field " 
+                                                        + field);
+               }
+               iIndex++;
+            }
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to load entry.", sqleExc);
+      }
+
+      if (bIsPreformated == null)
+      {
+         data = new Entry(lId, lDomainId, creationTimestamp, 
+                          modificationTimestamp, lParentId, strCaption, 
+                          strComments, strImageURL, strTargetURL);
+      }
+      else
+      {
+         data = new Entry(lId, lDomainId, creationTimestamp, 
+                          modificationTimestamp, lParentId, strCaption, 
+                          strComments, strImageURL, strTargetURL, 
+                          bIsPreformated);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      Entry             data = null;
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(SELECT_BY_ID);
+         pstmQuery.setLong(1, lId);
+         pstmQuery.setLong(2, lDomainId);
+         rsQueryResults = pstmQuery.executeQuery();
+         if (rsQueryResults.next())
+         {
+            data = load(rsQueryResults, 1);
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read entry.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+      long lBlogId
+   ) throws OSSException
+   {
+      List<Entry> lstData = query(SELECT_BY_BLOG, lBlogId, 0, null);
+
+      return lstData.isEmpty() ? null : lstData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Entry getLast(
+      long lBlogId
+   ) throws OSSException
+   {
+      List<Entry> lstData = query(SELECT_BY_BLOG, lBlogId, 1, null);
+
+      return lstData.isEmpty() ? null : lstData.get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<Long, Entry> getLast(
+      Collection<Long> colBlogIds
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      Map<Long, Entry>  mpData = new HashMap<>();
+      Iterator<Long>    itrBlogIds;
+      Long              lBlogId = null;
+      Entry             data;
+      Entry             last;
+      int               iIndex;
+
+      if (!colBlogIds.isEmpty())
+      {
+         try
+         {
+            cntDBConnection = requestConnection(true);
+            pstmQuery = cntDBConnection.prepareStatement(SELECT_LAST_BY_BLOGS);
+            itrBlogIds = colBlogIds.iterator();
+            while (itrBlogIds.hasNext())
+            {
+               // The last id is repeated if there is not enough of them
+               for (iIndex = 1; iIndex <= LAST_ENTRIES_BATCH_SIZE; iIndex++)
+               {
+                  if (itrBlogIds.hasNext())
+                  {
+                     lBlogId = itrBlogIds.next();
+                  }
+                  pstmQuery.setLong(iIndex, lBlogId);
+               }
+               rsQueryResults = pstmQuery.executeQuery();
+               while (rsQueryResults.next())
+               {
+                  data = load(rsQueryResults, 1);
+                  last = mpData.get(data.getParentId());
+                  if ((last == null) || (last.getId() < data.getId()))
+                  {
+                     mpData.put(data.getParentId(), data);
+                  }
+               }
+               rsQueryResults.close();
+               rsQueryResults = null;
+            }
+         }
+         catch (SQLException sqleExc)
+         {
+            throw new OSSDatabaseAccessException("Failed to read last entries.", 
+                                                 sqleExc);
+         }
+         finally
+         {
+            close(rsQueryResults, pstmQuery);
+            returnConnection(cntDBConnection);
+         }
+      }
+
+      return mpData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getCount(
+      long lBlogId
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      int               iCount = 0;
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(SELECT_COUNT_BY_BLOG);
+         pstmQuery.setLong(1, lBlogId);
+         rsQueryResults = pstmQuery.executeQuery();
+         if (rsQueryResults.next())
+         {
+            iCount = rsQueryResults.getInt(1);
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to count entries.", 
+                                              sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getByMonth(
+      long lBlogId,
+      int  iYear,
+      int  iMonth
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      List<Entry>       lstData = new ArrayList<>();
+      Timestamp         start = EntryMonth.getStart(iYear, iMonth);
+      Timestamp         end = EntryMonth.getEnd(iYear, iMonth);
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(
+                        SELECT_BY_BLOG_AND_PERIOD);
+         pstmQuery.setLong(1, lBlogId);
+         pstmQuery.setTimestamp(2, start);
+         pstmQuery.setTimestamp(3, end);
+         rsQueryResults = pstmQuery.executeQuery();
+         while (rsQueryResults.next())
+         {
+            lstData.add(load(rsQueryResults, 1));
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException(
+                      "Failed to read entries of month.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<EntryMonth> getMonthCounts(
+      long lBlogId
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      List<EntryMonth>  lstMonths = new ArrayList<>();
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(
+                        SELECT_MONTH_COUNTS_BY_BLOG);
+         pstmQuery.setLong(1, lBlogId);
+         rsQueryResults = pstmQuery.executeQuery();
+         while (rsQueryResults.next())
+         {
+            lstMonths.add(new EntryMonth(rsQueryResults.getInt(1), 
+                                         rsQueryResults.getInt(2),
+                                         rsQueryResults.getInt(3)));
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException(
+                      "Failed to count entries by month.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstMonths;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Timestamp getLastModified(
+      long lBlogId
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      Timestamp         lastModified = null;
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(
+                        SELECT_LAST_MODIFIED_BY_BLOG);
+         pstmQuery.setLong(1, lBlogId);
+         rsQueryResults = pstmQuery.executeQuery();
+         if (rsQueryResults.next())
+         {
+            lastModified = rsQueryResults.getTimestamp(1);
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException(
+                      "Failed to read last modification of entries.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return lastModified;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getModifiedSince(
+      long      lBlogId,
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      List<Entry>       lstData = new ArrayList<>();
+
+      if (modifiedSince == null)
+      {
+         throw new IllegalArgumentException("Modification time cannot be null");
+      }
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(
+                        SELECT_MODIFIED_SINCE_BY_BLOG);
+         pstmQuery.setLong(1, lBlogId);
+         pstmQuery.setTimestamp(2, modifiedSince);
+         rsQueryResults = pstmQuery.executeQuery();
+         while (rsQueryResults.next())
+         {
+            lstData.add(load(rsQueryResults, 1));
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException(
+                      "Failed to read modified entries.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      return queryPage(lBlogId, cursor, iLimit, null);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getAll(
+      long                 lBlogId,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      List<Entry> lstData;
+
+      checkFields(fields);
+      lstData = query(getSelectByBlog(fields), lBlogId, 0, fields);
+
+      return lstData.isEmpty() ? Collections.<Entry>emptyList() : lstData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long                 lBlogId,
+      EntryPageCursor      cursor,
+      int                  iLimit,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      EnumSet<EntryFields> pageFields;
+
+      checkFields(fields);
+      pageFields = EnumSet.copyOf(fields);
+      pageFields.add(EntryFields.ENTRY_ID);
+      pageFields.add(EntryFields.ENTRY_CREATION_DATE);
+
+      return queryPage(lBlogId, cursor, iLimit, pageFields);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getSummaries(
+      long lBlogId
+   ) throws OSSException
+   {
+      List<Entry> lstData;
+
+      lstData = query(getSelectByBlog(SUMMARY_FIELDS), lBlogId, 0, 
+                      SUMMARY_FIELDS);
+      setCommentsLoader(lstData);
+
+      return lstData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getSummaryPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      EntryPage page;
+
+      page = queryPage(lBlogId, cursor, iLimit, SUMMARY_FIELDS);
+      setCommentsLoader(page.getEntries());
+
+      return page;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String getComments(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      String            strComments = null;
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(SELECT_COMMENTS);
+         pstmQuery.setLong(1, lId);
+         pstmQuery.setLong(2, lDomainId);
+         rsQueryResults = pstmQuery.executeQuery();
+         if (rsQueryResults.next())
+         {
+            strComments = rsQueryResults.getString(1);
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read entry comments.", 
+                                              sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return strComments;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int forEach(
+      long         lBlogId,
+      EntryHandler handler
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      int               iCount = 0;
+
+      try
+      {
+         // Some drivers (e.g. PostgreSQL) fetch rows in chunks only when the 
+         // cursor is used within a transaction
+         cntDBConnection = requestConnection(false);
+         pstmQuery = cntDBConnection.prepareStatement(SELECT_BY_BLOG, 
+                                                      ResultSet.TYPE_FORWARD_ONLY, 
+                                                      ResultSet.CONCUR_READ_ONLY);
+         pstmQuery.setFetchSize(m_iFetchSize);
+         pstmQuery.setLong(1, lBlogId);
+         rsQueryResults = pstmQuery.executeQuery();
+         rsQueryResults.setFetchSize(m_iFetchSize);
+         while (rsQueryResults.next())
+         {
+            iCount++;
+            if (!handler.handle(load(rsQueryResults, 1)))
+            {
+               break;
+            }
+         }
+         commit(cntDBConnection);
+      }
+      catch (SQLException sqleExc)
+      {
+         rollback(cntDBConnection);
+         throw new OSSDatabaseAccessException("Failed to read entries.", sqleExc);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         rollback(cntDBConnection);
+         throw exc;
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      List<DataObject> lstData = new ArrayList<>(1);
+
+      lstData.add(data);
+      return insert(lstData, DEFAULT_BATCH_SIZE).get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      return insert(colDataObject, DEFAULT_BATCH_SIZE).size();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      List<ModifiableDataObject> lstData = new ArrayList<>(1);
+
+      lstData.add(data);
+      return update(lstData, DEFAULT_BATCH_SIZE).get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> createAll(
+      Collection<Entry> colEntries,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      return insert(colEntries, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> saveAll(
+      Collection<Entry> colEntries,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      return update(colEntries, iBatchSize);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int deleteAll(
+      Collection<Long> colIds,
+      long             lDomainId,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmDelete = null;
+      int               iBatched = 0;
+      int               iDeleted = 0;
+
+      if (iBatchSize <= 0)
+      {
+         throw new IllegalArgumentException("Batch size has to be positive");
+      }
+      try
+      {
+         cntDBConnection = requestConnection(false);
+         pstmDelete = cntDBConnection.prepareStatement(DELETE);
+         for (Long lId : colIds)
+         {
+            pstmDelete.setLong(1, lId);
+            pstmDelete.setLong(2, lDomainId);
+            pstmDelete.addBatch();
+            if (++iBatched == iBatchSize)
+            {
+               iDeleted += executeDeleteBatch(pstmDelete);
+               iBatched = 0;
+            }
+         }
+         if (iBatched > 0)
+         {
+            iDeleted += executeDeleteBatch(pstmDelete);
+         }
+         commit(cntDBConnection);
+      }
+      catch (SQLException sqleExc)
+      {
+         rollback(cntDBConnection);
+         throw new OSSDatabaseAccessException("Failed to delete entry.", sqleExc);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         rollback(cntDBConnection);
+         throw exc;
+      }
+      finally
+      {
+         close(null, pstmDelete);
+         returnConnection(cntDBConnection);
+      }
+
+      return iDeleted;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmDelete = null;
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmDelete = cntDBConnection.prepareStatement(DELETE);
+         pstmDelete.setLong(1, lId);
+         pstmDelete.setLong(2, lDomainId);
+         pstmDelete.executeUpdate();
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to delete entry.", sqleExc);
+      }
+      finally
+      {
+         close(null, pstmDelete);
+         returnConnection(cntDBConnection);
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Get list of parameters for a query.
+    *
+    * @param iCount - number of parameters
+    * @return String - comma separated list of parameter placeholders
+    */
+   protected static String getParameters(
+      int iCount
+   )
+   {
+      StringBuilder sbParameters = new StringBuilder();
+      int           iIndex;
+
+      for (iIndex = 0; iIndex < iCount; iIndex++)
+      {
+         if (iIndex > 0)
+         {
+            sbParameters.append(", ");
+         }
+         sbParameters.append('?');
+      }
+
+      return sbParameters.toString();
+   }
+
+   /**
+    * Get query retrieving specified fields of all entries of a blog.
+    *
+    * @param fields - fields to retrieve
+    * @return String - query with blog id as its only parameter
+    */
+   protected static String getSelectByBlog(
+      EnumSet<EntryFields> fields
+   )
+   {
+      return "select " + ChronicleDatabaseSchema.getEntryColumns(fields)
+             + " from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME + WHERE_BLOG;
+   }
+
+   /**
+    * Get query retrieving specified fields of entries of a blog after the 
+    * specified position.
+    *
+    * @param fields - fields to retrieve
+    * @return String - query with the same parameters as SELECT_PAGE_BY_BLOG
+    */
+   protected static String getSelectPageByBlog(
+      EnumSet<EntryFields> fields
+   )
+   {
+      return "select " + ChronicleDatabaseSchema.getEntryColumns(fields)
+             + " from " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME 
+             + WHERE_PAGE_BY_BLOG;
+   }
+
+   /**
+    * Check that fields to retrieve were specified.
+    *
+    * @param fields - fields to check
+    */
+   protected static void checkFields(
+      EnumSet<EntryFields> fields
+   )
+   {
+      if ((fields == null) || (fields.isEmpty()))
+      {
+         throw new IllegalArgumentException("Fields to retrieve have to be"
+                                            + " specified");
+      }
+   }
+
+   /**
+    * Make all entries load their comments once they are requested.
+    *
+    * @param lstData - entries retrieved without comments
+    */
+   protected void setCommentsLoader(
+      List<Entry> lstData
+   )
+   {
+      for (Entry data : lstData)
+      {
+         data.setCommentsLoader(m_commentsLoader);
+      }
+   }
+
+   /**
+    * Execute query retrieving single page of entries of a blog.
+    *
+    * @param lBlogId - id of the blog to get entries from
+    * @param cursor - cursor returned with the previous page or null to get 
+    *                 the first page
+    * @param iLimit - maximal number of entries on the page
+    * @param fields - fields to retrieve or null to retrieve all of them
+    * @return EntryPage - page of entries, never null
+    * @throws OSSException - an error has occurred
+    */
+   protected EntryPage queryPage(
+      long                 lBlogId,
+      EntryPageCursor      cursor,
+      int                  iLimit,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      List<Entry>       lstData = new ArrayList<>(iLimit);
+      EntryPageCursor   nextCursor = null;
+
+      if (iLimit <= 0)
+      {
+         throw new IllegalArgumentException("Page limit has to be positive");
+      }
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         if (cursor == null)
+         {
+            pstmQuery = cntDBConnection.prepareStatement(
+                           (fields == null) ? SELECT_BY_BLOG 
+                                            : getSelectByBlog(fields));
+            pstmQuery.setLong(1, lBlogId);
+         }
+         else
+         {
+            pstmQuery = cntDBConnection.prepareStatement(
+                           (fields == null) ? SELECT_PAGE_BY_BLOG 
+                                            : getSelectPageByBlog(fields));
+            pstmQuery.setLong(1, lBlogId);
+            pstmQuery.setTimestamp(2, cursor.getCreationTimestamp());
+            pstmQuery.setTimestamp(3, cursor.getCreationTimestamp());
+            pstmQuery.setLong(4, cursor.getEntryId());
+         }
+         // Read one more entry to find out if there is a next page
+         pstmQuery.setMaxRows(iLimit + 1);
+         rsQueryResults = pstmQuery.executeQuery();
+         while (rsQueryResults.next())
+         {
+            if (lstData.size() == iLimit)
+            {
+               nextCursor = new EntryPageCursor(lstData.get(iLimit - 1));
+               break;
+            }
+            lstData.add((fields == null) ? load(rsQueryResults, 1) 
+                                         : load(rsQueryResults, fields));
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read entries.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return new EntryPage(lstData, nextCursor);
+   }
+
+   /**
+    * Execute query with a single id parameter returning entries.
+    *
+    * @param strQuery - query to execute
+    * @param lParameter - value of the single query parameter
+    * @param iMaxRows - maximal number of entries to return, 0 means no limit
+    * @param fields - fields retrieved by the query or null if it retrieves all
+    *                 of them
+    * @return List - loaded entries, never null
+    * @throws OSSException - an error has occurred
+    */
+   protected List<Entry> query(
+      String               strQuery,
+      long                 lParameter,
+      int                  iMaxRows,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmQuery = null;
+      ResultSet         rsQueryResults = null;
+      List<Entry>       lstData = new ArrayList<>();
+
+      try
+      {
+         cntDBConnection = requestConnection(true);
+         pstmQuery = cntDBConnection.prepareStatement(strQuery);
+         pstmQuery.setLong(1, lParameter);
+         if (iMaxRows > 0)
+         {
+            pstmQuery.setMaxRows(iMaxRows);
+         }
+         rsQueryResults = pstmQuery.executeQuery();
+         while (rsQueryResults.next())
+         {
+            lstData.add((fields == null) ? load(rsQueryResults, 1) 
+                                         : load(rsQueryResults, fields));
+         }
+      }
+      catch (SQLException sqleExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read entries.", sqleExc);
+      }
+      finally
+      {
+         close(rsQueryResults, pstmQuery);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstData;
+   }
+
+   /**
+    * Insert all entries in a single transaction reusing the same statement
+    * and sending it to the database in batches.
+    *
+    * @param colDataObject - entries to insert
+    * @param iBatchSize - number of statements sent to the database at once
+    * @return List - inserted entries with generated ids and timestamps in the
+    *                same order as they were specified
+    * @throws OSSException - an error has occurred
+    */
+   protected List<Entry> insert(
+      Collection<? extends DataObject> colDataObject,
+      int                              iBatchSize
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmInsert = null;
+      List<Entry>       lstInserted = new ArrayList<>(colDataObject.size());
+      List<Entry>       lstBatch = new ArrayList<>(
+                                      Math.min(iBatchSize, colDataObject.size()));
+      Timestamp         tmstpNow = OptimisticConcurrency.getCurrentTimestamp();
+      Entry             data;
+
+      if (iBatchSize <= 0)
+      {
+         throw new IllegalArgumentException("Batch size has to be positive");
+      }
+      try
+      {
+         cntDBConnection = requestConnection(false);
+         pstmInsert = cntDBConnection.prepareStatement(
+                         INSERT, Statement.RETURN_GENERATED_KEYS);
+         for (DataObject dataObject : colDataObject)
+         {
+            data = (Entry)dataObject;
+            pstmInsert.setLong(1, data.getDomainId());
+            pstmInsert.setTimestamp(2, tmstpNow);
+            pstmInsert.setTimestamp(3, tmstpNow);
+            pstmInsert.setLong(4, data.getParentId());
+            pstmInsert.setString(5, data.getCaption());
+            pstmInsert.setString(6, data.getComments());
+            pstmInsert.setString(7, data.getImageURL());
+            pstmInsert.setString(8, data.getTargetURL());
+            pstmInsert.setBoolean(9, data.getIsPreformated());
+            pstmInsert.addBatch();
+            lstBatch.add(data);
+            if (lstBatch.size() == iBatchSize)
+            {
+               executeInsertBatch(pstmInsert, lstBatch, tmstpNow, lstInserted);
+            }
+         }
+         if (!lstBatch.isEmpty())
+         {
+            executeInsertBatch(pstmInsert, lstBatch, tmstpNow, lstInserted);
+         }
+         commit(cntDBConnection);
+      }
+      catch (SQLException sqleExc)
+      {
+         rollback(cntDBConnection);
+         throw new OSSDatabaseAccessException("Failed to create entry.", sqleExc);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         rollback(cntDBConnection);
+         throw exc;
+      }
+      finally
+      {
+         close(null, pstmInsert);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstInserted;
+   }
+
+   /**
+    * Execute batch of inserts and construct the inserted entries using the
+    * generated keys.
+    *
+    * @param pstmInsert - statement with the batch to execute
+    * @param lstBatch - entries in the batch, the list is cleared
+    * @param tmstpNow - creation and modification timestamp of the entries
+    * @param lstInserted - list where to add the inserted entries
+    * @throws SQLException - an error has occurred executing the batch
+    * @throws OSSException - an error has occurred
+    */
+   protected void executeInsertBatch(
+      PreparedStatement pstmInsert,
+      List<Entry>       lstBatch,
+      Timestamp         tmstpNow,
+      List<Entry>       lstInserted
+   ) throws SQLException,
+            OSSException
+   {
+      ResultSet rsKeys = null;
+      int       iIndex = 0;
+      Entry     data;
+
+      pstmInsert.executeBatch();
+      try
+      {
+         rsKeys = pstmInsert.getGeneratedKeys();
+         while (rsKeys.next())
+         {
+            data = lstBatch.get(iIndex++);
+            lstInserted.add(new Entry(rsKeys.getLong(1), data.getDomainId(),
+                                      tmstpNow, tmstpNow, data.getParentId(),
+                                      data.getCaption(), data.getComments(),
+                                      data.getImageURL(), data.getTargetURL(),
+                                      data.getIsPreformated()));
+         }
+      }
+      finally
+      {
+         close(rsKeys, null);
+      }
+      if (iIndex != lstBatch.size())
+      {
+         throw new OSSDatabaseAccessException("Database returned " + iIndex
+                      + " generated keys for " + lstBatch.size() + " entries.");
+      }
+      lstBatch.clear();
+   }
+
+   /**
+    * Execute batch of deletes.
+    *
+    * @param pstmDelete - statement with the batch to execute
+    * @return int - number of deleted entries
+    * @throws SQLException - an error has occurred executing the batch
+    */
+   protected static int executeDeleteBatch(
+      PreparedStatement pstmDelete
+   ) throws SQLException
+   {
+      int iDeleted = 0;
+
+      for (int iCount : pstmDelete.executeBatch())
+      {
+         // The driver may not know the number of deleted rows
+         if (iCount == Statement.SUCCESS_NO_INFO)
+         {
+            iDeleted++;
+         }
+         else if (iCount > 0)
+         {
+            iDeleted += iCount;
+         }
+      }
+
+      return iDeleted;
+   }
+
+   /**
+    * Update all entries in a single transaction reusing the same statement
+    * and sending it to the database in batches. If any of the entries was 
+    * modified or deleted since it was read, none of them is updated.
+    *
+    * @param colDataObject - entries to update with the modification timestamp
+    *                        they were read with
+    * @param iBatchSize - number of statements sent to the database at once
+    * @return List - updated entries with new modification timestamp in the
+    *                same order as they were specified
+    * @throws OSSConcurentModifyException - some of the entries were modified
+    *                                       or deleted by someone else
+    * @throws OSSException - an error has occurred
+    */
+   protected List<Entry> update(
+      Collection<? extends ModifiableDataObject> colDataObject,
+      int                                        iBatchSize
+   ) throws OSSException
+   {
+      Connection        cntDBConnection = null;
+      PreparedStatement pstmUpdate = null;
+      List<Entry>       lstUpdated = new ArrayList<>(colDataObject.size());
+      Timestamp         tmstpNow = OptimisticConcurrency.getCurrentTimestamp();
+      Timestamp         modificationTimestamp;
+      int               iBatched = 0;
+      Entry             data;
+
+      if (iBatchSize <= 0)
+      {
+         throw new IllegalArgumentException("Batch size has to be positive");
+      }
+      try
+      {
+         cntDBConnection = requestConnection(false);
+         pstmUpdate = cntDBConnection.prepareStatement(UPDATE);
+         for (ModifiableDataObject dataObject : colDataObject)
+         {
+            data = (Entry)dataObject;
+            if (data.getModificationTimestamp() == null)
+            {
+               throw new IllegalArgumentException(
+                            "Modification timestamp of saved entry cannot be"
+                            + " null");
+            }
+            modificationTimestamp 
+               = OptimisticConcurrency.getModificationTimestamp(
+                    tmstpNow, data.getModificationTimestamp());
+            pstmUpdate.setTimestamp(1, modificationTimestamp);
+            pstmUpdate.setLong(2, data.getParentId());
+            pstmUpdate.setString(3, data.getCaption());
+            pstmUpdate.setString(4, data.getComments());
+            pstmUpdate.setString(5, data.getImageURL());
+            pstmUpdate.setString(6, data.getTargetURL());
+            pstmUpdate.setBoolean(7, data.getIsPreformated());
+            pstmUpdate.setLong(8, data.getId());
+            pstmUpdate.setLong(9, data.getDomainId());
+            pstmUpdate.setTimestamp(10, data.getModificationTimestamp());
+            pstmUpdate.addBatch();
+            lstUpdated.add(new Entry(data.getId(), data.getDomainId(),
+                                     data.getCreationTimestamp(), 
+                                     modificationTimestamp,
+                                     data.getParentId(), data.getCaption(),
+                                     data.getComments(), data.getImageURL(),
+                                     data.getTargetURL(), 
+                                     data.getIsPreformated()));
+            if (++iBatched == iBatchSize)
+            {
+               executeUpdateBatch(pstmUpdate, lstUpdated, iBatched);
+               iBatched = 0;
+            }
+         }
+         if (iBatched > 0)
+         {
+            executeUpdateBatch(pstmUpdate, lstUpdated, iBatched);
+         }
+         commit(cntDBConnection);
+      }
+      catch (SQLException sqleExc)
+      {
+         rollback(cntDBConnection);
+         throw new OSSDatabaseAccessException("Failed to save entry.", sqleExc);
+      }
+      catch (OSSException | RuntimeException exc)
+      {
+         rollback(cntDBConnection);
+         throw exc;
+      }
+      finally
+      {
+         close(null, pstmUpdate);
+         returnConnection(cntDBConnection);
+      }
+
+      return lstUpdated;
+   }
+}
@@ -0,0 +1,2120 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPageCursor;
+import org.opensubsystems.chronicle.persist.OptimisticConcurrency;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSConcurentModifyException;
+import org.opensubsystems.core.error.OSSDatabaseAccessException;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Embedded persistence store keeping blogs and their entries in a single 
+ * append-only log file. Every change is appended to the end of the file as a 
+ * frame protected by a checksum and the file is forced to the disk before the
+ * change becomes visible, so a change is either completely stored or not at 
+ * all. Frames, which were not completely written when the process was 
+ * interrupted, are detected by the checksum and removed when the log is 
+ * opened again.
+ *
+ * All blogs are kept in memory since there are only few of them. Only index 
+ * of entries is kept in memory, which contains position of the last version
+ * of every entry in the file and the values needed to sort and find entries.
+ * The rest of the entry is read from the file when it is requested. Space 
+ * occupied by the old versions of changed or deleted data is reclaimed by 
+ * compaction, which rewrites the live data into a new file once the old 
+ * versions occupy more than half of the file.
+ *
+ * @author bastafidli
+ */
+public class ChronicleLog
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Location of the last version of an entry in the log file together with 
+    * the values needed to find and sort entries without reading them.
+    */
+   public static final class EntryLocation
+   {
+      /**
+       * Id of the entry.
+       */
+      private final long m_lId;
+
+      /**
+       * Id of the domain the entry belongs to.
+       */
+      private final long m_lDomainId;
+
+      /**
+       * Id of the blog the entry belongs to.
+       */
+      private final long m_lBlogId;
+
+      /**
+       * Creation timestamp of the entry.
+       */
+      private final Timestamp m_creationTimestamp;
+
+      /**
+       * Modification timestamp of the entry.
+       */
+      private final Timestamp m_modificationTimestamp;
+
+      /**
+       * Position of the entry record in the file.
+       */
+      private final long m_lPosition;
+
+      /**
+       * Length of the entry record in the file.
+       */
+      private final int m_iLength;
+
+      /**
+       * Create new location of an entry.
+       *
+       * @param lId - id of the entry
+       * @param lDomainId - id of the domain the entry belongs to
+       * @param lBlogId - id of the blog the entry belongs to
+       * @param creationTimestamp - creation timestamp of the entry
+       * @param modificationTimestamp - modification timestamp of the entry
+       * @param lPosition - position of the entry record in the file
+       * @param iLength - length of the entry record in the file
+       */
+      public EntryLocation(
+         long      lId,
+         long      lDomainId,
+         long      lBlogId,
+         Timestamp creationTimestamp,
+         Timestamp modificationTimestamp,
+         long      lPosition,
+         int       iLength
+      )
+      {
+         m_lId = lId;
+         m_lDomainId = lDomainId;
+         m_lBlogId = lBlogId;
+         m_creationTimestamp = creationTimestamp;
+         m_modificationTimestamp = modificationTimestamp;
+         m_lPosition = lPosition;
+         m_iLength = iLength;
+      }
+
+      /**
+       * Id of the entry.
+       *
+       * @return long
+       */
+      public long getId(
+      )
+      {
+         return m_lId;
+      }
+
+      /**
+       * Id of the domain the entry belongs to.
+       *
+       * @return long
+       */
+      public long getDomainId(
+      )
+      {
+         return m_lDomainId;
+      }
+
+      /**
+       * Id of the blog the entry belongs to.
+       *
+       * @return long
+       */
+      public long getBlogId(
+      )
+      {
+         return m_lBlogId;
+      }
+
+      /**
+       * Creation timestamp of the entry.
+       *
+       * @return Timestamp
+       */
+      public Timestamp getCreationTimestamp(
+      )
+      {
+         return m_creationTimestamp;
+      }
+
+      /**
+       * Modification timestamp of the entry.
+       *
+       * @return Timestamp
+       */
+      public Timestamp getModificationTimestamp(
+      )
+      {
+         return m_modificationTimestamp;
+      }
+
+      /**
+       * Position of the entry record in the file.
+       *
+       * @return long
+       */
+      public long getPosition(
+      )
+      {
+         return m_lPosition;
+      }
+
+      /**
+       * Length of the entry record in the file.
+       *
+       * @return int
+       */
+      public int getLength(
+      )
+      {
+         return m_iLength;
+      }
+   }
+
+   /**
+    * Comparator sorting entry locations from the most recent entry to the 
+    * oldest one, the same way as the entries are listed.
+    */
+   protected static class ListingOrder implements Comparator<EntryLocation>
+   {
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int compare(
+         EntryLocation first,
+         EntryLocation second
+      )
+      {
+         int iResult;
+
+         iResult = second.getCreationTimestamp().compareTo(
+                      first.getCreationTimestamp());
+         if (iResult == 0)
+         {
+            iResult = Long.compare(second.getId(), first.getId());
+         }
+
+         return iResult;
+      }
+   }
+
+   /**
+    * Comparator sorting entry locations from the least recently modified 
+    * entry, the same way as the modified entries are returned.
+    */
+   protected static class ModificationOrder 
+      implements Comparator<EntryLocation>
+   {
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int compare(
+         EntryLocation first,
+         EntryLocation second
+      )
+      {
+         int iResult;
+
+         iResult = first.getModificationTimestamp().compareTo(
+                      second.getModificationTimestamp());
+         if (iResult == 0)
+         {
+            iResult = Long.compare(first.getId(), second.getId());
+         }
+
+         return iResult;
+      }
+   }
+
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Value identifying the log files.
+    */
+   public static final int MAGIC = 0x43484c47;
+
+   /**
+    * Version of the format of the file.
+    */
+   public static final int FORMAT_VERSION = 1;
+
+   /**
+    * Size of the file header containing the magic value and the version.
+    */
+   protected static final int HEADER_SIZE = 8;
+
+   /**
+    * Size of the frame header containing length of the frame data and their
+    * checksum.
+    */
+   protected static final int FRAME_HEADER_SIZE = 8;
+
+   /**
+    * Maximal length of the frame data. Longer frame can be only a result of 
+    * damaged frame header.
+    */
+   protected static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+
+   /**
+    * Type of record storing blog.
+    */
+   protected static final byte BLOG_RECORD = 1;
+
+   /**
+    * Type of record storing id of deleted blog.
+    */
+   protected static final byte BLOG_DELETED_RECORD = 2;
+
+   /**
+    * Type of record storing entry.
+    */
+   protected static final byte ENTRY_RECORD = 3;
+
+   /**
+    * Type of record storing id of deleted entry.
+    */
+   protected static final byte ENTRY_DELETED_RECORD = 4;
+
+   /**
+    * Type of record storing the next ids of blogs and entries, so that ids of
+    * deleted data are not reused after compaction.
+    */
+   protected static final byte SEQUENCE_RECORD = 5;
+
+   /**
+    * Length of the record storing id of deleted data.
+    */
+   protected static final int DELETED_RECORD_LENGTH = 9;
+
+   /**
+    * Minimal size of the file before it is compacted.
+    */
+   protected static final long COMPACT_MIN_SIZE = 1024 * 1024;
+
+   /**
+    * Size of the frames written when the file is compacted.
+    */
+   protected static final int COMPACT_FRAME_SIZE = 1024 * 1024;
+
+   /**
+    * Comparator sorting entries in the order in which they are listed.
+    */
+   protected static final Comparator<EntryLocation> LISTING_ORDER 
+      = new ListingOrder();
+
+   /**
+    * Comparator sorting entries in the order in which the modified entries 
+    * are returned.
+    */
+   protected static final Comparator<EntryLocation> MODIFICATION_ORDER 
+      = new ModificationOrder();
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Log file.
+    */
+   protected final File m_file;
+
+   /**
+    * Lock protecting the index, writes are exclusive and reads are shared.
+    */
+   protected final ReadWriteLock m_lock;
+
+   /**
+    * Channel used to access the log file. It is replaced when the file is 
+    * compacted.
+    */
+   protected FileChannel m_channel;
+
+   /**
+    * Size of the valid part of the log file.
+    */
+   protected long m_lSize;
+
+   /**
+    * Number of bytes of the log file occupied by old versions of the data and
+    * by records of deleted data.
+    */
+   protected long m_lGarbageSize;
+
+   /**
+    * Id of the next created blog.
+    */
+   protected long m_lNextBlogId;
+
+   /**
+    * Id of the next created entry.
+    */
+   protected long m_lNextEntryId;
+
+   /**
+    * All blogs by their ids.
+    */
+   protected final Map<Long, Blog> m_mpBlogs;
+
+   /**
+    * Length of the last record of every blog by id of the blog.
+    */
+   protected final Map<Long, Integer> m_mpBlogLengths;
+
+   /**
+    * Ids of blogs by their folders.
+    */
+   protected final Map<String, Long> m_mpFolders;
+
+   /**
+    * Locations of all entries by their ids.
+    */
+   protected final Map<Long, EntryLocation> m_mpEntries;
+
+   /**
+    * Locations of entries of every blog sorted in the order in which they are
+    * listed by id of the blog.
+    */
+   protected final Map<Long, NavigableSet<EntryLocation>> m_mpBlogEntries;
+
+   /**
+    * Locations of entries of every blog sorted from the least recently 
+    * modified one by id of the blog. The last location holds the most recent
+    * modification time of the blog, so neither the modification time nor the
+    * modified entries have to be searched for.
+    */
+   protected final Map<Long, NavigableSet<EntryLocation>> 
+      m_mpBlogModifications;
+
+   /**
+    * Numbers of entries of every blog created in every month by id of the 
+    * blog. The numbers are sorted by key of the month from the most recent one
+    * and they are adjusted whenever entry is added or removed so they never 
+    * have to be counted.
+    */
+   protected final Map<Long, NavigableMap<Integer, Integer>> m_mpBlogMonths;
+
+   // Cached values ////////////////////////////////////////////////////////////
+
+   /**
+    * Logger for this class
+    */
+   private static Logger s_logger = Logger.getLogger(
+                                       ChronicleLog.class.getName());
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Open the log file and load its index. The file is created if it doesn't
+    * exist and incomplete frame written when the process was interrupted is 
+    * removed from its end.
+    *
+    * @param file - log file
+    * @throws OSSException - the file cannot be opened
+    */
+   public ChronicleLog(
+      File file
+   ) throws OSSException
+   {
+      m_file = file;
+      m_lock = new ReentrantReadWriteLock();
+      m_mpBlogs = new HashMap<>();
+      m_mpBlogLengths = new HashMap<>();
+      m_mpFolders = new HashMap<>();
+      m_mpEntries = new HashMap<>();
+      m_mpBlogEntries = new HashMap<>();
+      m_mpBlogModifications = new HashMap<>();
+      m_mpBlogMonths = new HashMap<>();
+      try
+      {
+         open();
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Cannot open log " + file, 
+                                              ioeExc);
+      }
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Log file.
+    *
+    * @return File
+    */
+   public File getFile(
+   )
+   {
+      return m_file;
+   }
+
+   /**
+    * Size of the valid part of the log file.
+    *
+    * @return long
+    */
+   public long getSize(
+   )
+   {
+      m_lock.readLock().lock();
+      try
+      {
+         return m_lSize;
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Get blog by its id.
+    *
+    * @param lId - id of the blog
+    * @param lDomainId - id of the domain the blog belongs to
+    * @return Blog - the blog or null if it doesn't exist
+    */
+   public Blog getBlog(
+      long lId,
+      long lDomainId
+   )
+   {
+      Blog blog;
+
+      m_lock.readLock().lock();
+      try
+      {
+         blog = m_mpBlogs.get(lId);
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+
+      return ((blog != null) && (blog.getDomainId() == lDomainId)) ? blog 
+                                                                  : null;
+   }
+
+   /**
+    * Get blog by its folder.
+    *
+    * @param strFolder - folder of the blog
+    * @return Blog - the blog or null if it doesn't exist
+    */
+   public Blog getBlog(
+      String strFolder
+   )
+   {
+      Long lId;
+
+      m_lock.readLock().lock();
+      try
+      {
+         lId = m_mpFolders.get(strFolder);
+
+         return (lId == null) ? null : m_mpBlogs.get(lId);
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Get all blogs.
+    *
+    * @return List - blogs in no particular order, never null
+    */
+   public List<Blog> getBlogs(
+   )
+   {
+      m_lock.readLock().lock();
+      try
+      {
+         return new ArrayList<>(m_mpBlogs.values());
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Create blogs at once. Either all blogs are created or none of them.
+    *
+    * @param colDataObject - blogs to create
+    * @return List - created blogs with generated ids and timestamps in the 
+    *                same order as they were specified
+    * @throws OSSException - an error has occurred
+    */
+   public List<Blog> createBlogs(
+      Collection<? extends DataObject> colDataObject
+   ) throws OSSException
+   {
+      List<Blog>            lstCreated = new ArrayList<>(colDataObject.size());
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream      output = new DataOutputStream(buffer);
+      Set<String>           setFolders = new HashSet<>();
+      Timestamp             tmstpNow;
+      Blog                  data;
+      Blog                  created;
+      long                  lId;
+
+      tmstpNow = OptimisticConcurrency.getCurrentTimestamp();
+      m_lock.writeLock().lock();
+      try
+      {
+         lId = m_lNextBlogId;
+         for (DataObject dataObject : colDataObject)
+         {
+            data = (Blog)dataObject;
+            checkFolder(data.getFolder(), DataObject.NEW_ID, setFolders);
+            created = new Blog(lId++, data.getDomainId(), tmstpNow, tmstpNow,
+                               data.getFolder(), data.getCaption(), 
+                               data.getComments(), data.getIsPreformated());
+            writeBlog(output, created);
+            lstCreated.add(created);
+         }
+         write(buffer, "Failed to create blog.");
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to create blog.", ioeExc);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+
+      return lstCreated;
+   }
+
+   /**
+    * Save blogs at once. Either all blogs are saved or none of them. Blogs 
+    * are saved only if they were not modified or deleted since they were read.
+    *
+    * @param colDataObject - blogs to save with the modification timestamp 
+    *                        they were read with
+    * @return List - saved blogs with new modification timestamp in the same 
+    *                order as they were specified
+    * @throws OSSConcurentModifyException - some of the blogs were modified or
+    *                                       deleted by someone else
+    * @throws OSSException - an error has occurred
+    */
+   public List<Blog> saveBlogs(
+      Collection<? extends ModifiableDataObject> colDataObject
+   ) throws OSSException
+   {
+      List<Blog>            lstSaved = new ArrayList<>(colDataObject.size());
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream      output = new DataOutputStream(buffer);
+      Set<String>           setFolders = new HashSet<>();
+      Timestamp             tmstpNow;
+      Blog                  data;
+      Blog                  stored;
+      Blog                  saved;
+
+      tmstpNow = OptimisticConcurrency.getCurrentTimestamp();
+      m_lock.writeLock().lock();
+      try
+      {
+         for (ModifiableDataObject dataObject : colDataObject)
+         {
+            data = (Blog)dataObject;
+            stored = getBlog(data.getId(), data.getDomainId());
+            OptimisticConcurrency.checkModification(
+               data, (stored == null) 
+                     ? null : stored.getModificationTimestamp());
+            checkFolder(data.getFolder(), data.getId(), setFolders);
+            saved = new Blog(data.getId(), data.getDomainId(),
+                             stored.getCreationTimestamp(), 
+                             OptimisticConcurrency.getModificationTimestamp(
+                                tmstpNow, data.getModificationTimestamp()),
+                             data.getFolder(), data.getCaption(),
+                             data.getComments(), data.getIsPreformated());
+            writeBlog(output, saved);
+            lstSaved.add(saved);
+         }
+         write(buffer, "Failed to save blog.");
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to save blog.", ioeExc);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+
+      return lstSaved;
+   }
+
+   /**
+    * Delete blog together with all its entries.
+    *
+    * @param lId - id of the blog
+    * @param lDomainId - id of the domain the blog belongs to
+    * @throws OSSException - an error has occurred
+    */
+   public void deleteBlog(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream      output = new DataOutputStream(buffer);
+
+      m_lock.writeLock().lock();
+      try
+      {
+         if (getBlog(lId, lDomainId) != null)
+         {
+            output.writeByte(BLOG_DELETED_RECORD);
+            output.writeLong(lId);
+            write(buffer, "Failed to delete blog.");
+         }
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to delete blog.", ioeExc);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Get entry by its id.
+    *
+    * @param lId - id of the entry
+    * @param lDomainId - id of the domain the entry belongs to
+    * @param bComments - true if the comments should be read
+    * @return Entry - the entry or null if it doesn't exist
+    * @throws OSSException - an error has occurred
+    */
+   public Entry getEntry(
+      long    lId,
+      long    lDomainId,
+      boolean bComments
+   ) throws OSSException
+   {
+      EntryLocation location;
+
+      m_lock.readLock().lock();
+      try
+      {
+         location = m_mpEntries.get(lId);
+
+         return ((location != null) && (location.getDomainId() == lDomainId))
+                ? read(location, bComments) : null;
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read entry.", ioeExc);
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Get entries of a blog following the cursor.
+    *
+    * @param lBlogId - id of the blog
+    * @param cursor - cursor positioned after the last returned entry or null 
+    *                 to start from the most recent entry
+    * @param iLimit - maximal number of entries to get
+    * @param bComments - true if the comments should be read
+    * @return List - entries sorted from the most recent to the oldest one, 
+    *                never null
+    * @throws OSSException - an error has occurred
+    */
+   public List<Entry> getEntries(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit,
+      boolean         bComments
+   ) throws OSSException
+   {
+      List<Entry>                lstEntries = new ArrayList<>();
+      NavigableSet<EntryLocation> setLocations;
+
+      m_lock.readLock().lock();
+      try
+      {
+         setLocations = m_mpBlogEntries.get(lBlogId);
+         if (setLocations != null)
+         {
+            if (cursor != null)
+            {
+               setLocations = setLocations.tailSet(
+                                 new EntryLocation(cursor.getEntryId(), 0, 
+                                    lBlogId, cursor.getCreationTimestamp(), 
+                                    null, 0, 0), false);
+            }
+            for (EntryLocation location : setLocations)
+            {
+               if (lstEntries.size() >= iLimit)
+               {
+                  break;
+               }
+               lstEntries.add(read(location, bComments));
+            }
+         }
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read entries.", 
+                                              ioeExc);
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * Get number of entries of a blog.
+    *
+    * @param lBlogId - id of the blog
+    * @return int - number of entries
+    */
+   public int getEntryCount(
+      long lBlogId
+   )
+   {
+      NavigableSet<EntryLocation> setLocations;
+
+      m_lock.readLock().lock();
+      try
+      {
+         setLocations = m_mpBlogEntries.get(lBlogId);
+
+         return (setLocations == null) ? 0 : setLocations.size();
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Get entries of a blog created within the specified period.
+    *
+    * @param lBlogId - id of the blog
+    * @param start - entries created at or after this time are returned
+    * @param end - entries created before this time are returned
+    * @param bComments - true if the comments should be read
+    * @return List - entries sorted from the most recent to the oldest one, 
+    *                never null
+    * @throws OSSException - an error has occurred
+    */
+   public List<Entry> getEntries(
+      long      lBlogId,
+      Timestamp start,
+      Timestamp end,
+      boolean   bComments
+   ) throws OSSException
+   {
+      List<Entry>                 lstEntries = new ArrayList<>();
+      NavigableSet<EntryLocation> setLocations;
+
+      m_lock.readLock().lock();
+      try
+      {
+         setLocations = m_mpBlogEntries.get(lBlogId);
+         if (setLocations != null)
+         {
+            // The entry with the lowest id is listed after all entries 
+            // created at the same time
+            setLocations = setLocations.tailSet(
+                              new EntryLocation(Long.MIN_VALUE, 0, lBlogId, 
+                                                end, null, 0, 0), false);
+            for (EntryLocation location : setLocations)
+            {
+               if (location.getCreationTimestamp().before(start))
+               {
+                  break;
+               }
+               lstEntries.add(read(location, bComments));
+            }
+         }
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to read entries.", 
+                                              ioeExc);
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * Get numbers of entries of a blog created in every month.
+    *
+    * @param lBlogId - id of the blog
+    * @return List - months sorted from the most recent one, never null
+    */
+   public List<EntryMonth> getEntryMonthCounts(
+      long lBlogId
+   )
+   {
+      NavigableMap<Integer, Integer> mpMonths;
+      List<EntryMonth>               lstMonths = new ArrayList<>();
+
+      m_lock.readLock().lock();
+      try
+      {
+         mpMonths = m_mpBlogMonths.get(lBlogId);
+         if (mpMonths != null)
+         {
+            for (Map.Entry<Integer, Integer> month : mpMonths.entrySet())
+            {
+               lstMonths.add(new EntryMonth(month.getKey(), 
+                                            month.getValue()));
+            }
+         }
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+
+      return lstMonths;
+   }
+
+   /**
+    * Get the most recent modification time of entries of a blog.
+    *
+    * @param lBlogId - id of the blog
+    * @return Timestamp - modification time or null if the blog has no entries
+    */
+   public Timestamp getEntriesLastModified(
+      long lBlogId
+   )
+   {
+      NavigableSet<EntryLocation> setLocations;
+      Timestamp                   lastModified = null;
+
+      m_lock.readLock().lock();
+      try
+      {
+         setLocations = m_mpBlogModifications.get(lBlogId);
+         if (setLocations != null)
+         {
+            lastModified = setLocations.last().getModificationTimestamp();
+         }
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+
+      return lastModified;
+   }
+
+   /**
+    * Get entries of a blog modified after the specified time.
+    *
+    * @param lBlogId - id of the blog
+    * @param modifiedSince - only entries modified after this time are returned
+    * @return List - entries sorted from the least recently modified one, 
+    *                never null
+    * @throws OSSException - an error has occurred
+    */
+   public List<Entry> getEntriesModifiedSince(
+      long      lBlogId,
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      List<Entry>                 lstEntries = new ArrayList<>();
+      NavigableSet<EntryLocation> setLocations;
+
+      m_lock.readLock().lock();
+      try
+      {
+         setLocations = m_mpBlogModifications.get(lBlogId);
+         if (setLocations != null)
+         {
+            // Location with the highest id modified at the specified time 
+            // precedes all entries modified after that time
+            for (EntryLocation location : setLocations.tailSet(
+                    new EntryLocation(Long.MAX_VALUE, DataObject.NEW_ID, 
+                                      lBlogId, null, modifiedSince, 0, 0), 
+                    false))
+            {
+               lstEntries.add(read(location, true));
+            }
+         }
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException(
+                      "Failed to read modified entries.", ioeExc);
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * Create entries at once. Either all entries are created or none of them.
+    *
+    * @param colDataObject - entries to create
+    * @return List - created entries with generated ids and timestamps in the 
+    *                same order as they were specified
+    * @throws OSSException - an error has occurred
+    */
+   public List<Entry> createEntries(
+      Collection<? extends DataObject> colDataObject
+   ) throws OSSException
+   {
+      List<Entry>           lstCreated = new ArrayList<>(colDataObject.size());
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream      output = new DataOutputStream(buffer);
+      Timestamp             tmstpNow;
+      Entry                 data;
+      Entry                 created;
+      long                  lId;
+
+      tmstpNow = OptimisticConcurrency.getCurrentTimestamp();
+      m_lock.writeLock().lock();
+      try
+      {
+         lId = m_lNextEntryId;
+         for (DataObject dataObject : colDataObject)
+         {
+            data = (Entry)dataObject;
+            checkBlog(data.getParentId());
+            created = new Entry(lId++, data.getDomainId(), tmstpNow, tmstpNow,
+                                data.getParentId(), data.getCaption(), 
+                                data.getComments(), data.getImageURL(), 
+                                data.getTargetURL(), data.getIsPreformated());
+            writeEntry(output, created);
+            lstCreated.add(created);
+         }
+         write(buffer, "Failed to create entry.");
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to create entry.", 
+                                              ioeExc);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+
+      return lstCreated;
+   }
+
+   /**
+    * Save entries at once. Either all entries are saved or none of them. 
+    * Entries are saved only if they were not modified or deleted since they 
+    * were read.
+    *
+    * @param colDataObject - entries to save with the modification timestamp 
+    *                        they were read with
+    * @return List - saved entries with new modification timestamp in the same
+    *                order as they were specified
+    * @throws OSSConcurentModifyException - some of the entries were modified
+    *                                       or deleted by someone else
+    * @throws OSSException - an error has occurred
+    */
+   public List<Entry> saveEntries(
+      Collection<? extends ModifiableDataObject> colDataObject
+   ) throws OSSException
+   {
+      List<Entry>           lstSaved = new ArrayList<>(colDataObject.size());
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream      output = new DataOutputStream(buffer);
+      Timestamp             tmstpNow;
+      EntryLocation         location;
+      Entry                 data;
+      Entry                 saved;
+
+      tmstpNow = OptimisticConcurrency.getCurrentTimestamp();
+      m_lock.writeLock().lock();
+      try
+      {
+         for (ModifiableDataObject dataObject : colDataObject)
+         {
+            data = (Entry)dataObject;
+            location = m_mpEntries.get(data.getId());
+            if ((location != null) 
+               && (location.getDomainId() != data.getDomainId()))
+            {
+               location = null;
+            }
+            OptimisticConcurrency.checkModification(
+               data, (location == null) 
+                     ? null : location.getModificationTimestamp());
+            checkBlog(data.getParentId());
+            // The creation timestamp is not changed by save
+            saved = new Entry(data.getId(), data.getDomainId(),
+                              location.getCreationTimestamp(), 
+                              OptimisticConcurrency.getModificationTimestamp(
+                                 tmstpNow, data.getModificationTimestamp()),
+                              data.getParentId(), data.getCaption(),
+                              data.getComments(), data.getImageURL(),
+                              data.getTargetURL(), data.getIsPreformated());
+            writeEntry(output, saved);
+            lstSaved.add(saved);
+         }
+         write(buffer, "Failed to save entry.");
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to save entry.", ioeExc);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+
+      return lstSaved;
+   }
+
+   /**
+    * Delete entry.
+    *
+    * @param lId - id of the entry
+    * @param lDomainId - id of the domain the entry belongs to
+    * @throws OSSException - an error has occurred
+    */
+   public void deleteEntry(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      deleteEntries(Collections.singletonList(lId), lDomainId);
+   }
+
+   /**
+    * Delete entries at once. Either all entries are deleted or none of them.
+    * Entries which don't exist are skipped.
+    *
+    * @param colIds - ids of the entries
+    * @param lDomainId - id of the domain the entries belong to
+    * @return int - number of deleted entries
+    * @throws OSSException - an error has occurred
+    */
+   public int deleteEntries(
+      Collection<Long> colIds,
+      long             lDomainId
+   ) throws OSSException
+   {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream      output = new DataOutputStream(buffer);
+      Set<Long>             setDeleted = new HashSet<>();
+      EntryLocation         location;
+
+      m_lock.writeLock().lock();
+      try
+      {
+         for (Long lId : colIds)
+         {
+            location = m_mpEntries.get(lId);
+            if ((location != null) && (location.getDomainId() == lDomainId)
+               && (setDeleted.add(lId)))
+            {
+               output.writeByte(ENTRY_DELETED_RECORD);
+               output.writeLong(lId);
+            }
+         }
+         write(buffer, "Failed to delete entry.");
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Failed to delete entry.", 
+                                              ioeExc);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+
+      return setDeleted.size();
+   }
+
+   /**
+    * Rewrite the live data into a new file to reclaim space occupied by old 
+    * versions of the data. The log is compacted automatically once the old 
+    * versions occupy more than half of the file.
+    *
+    * @throws OSSException - an error has occurred
+    */
+   public void compact(
+   ) throws OSSException
+   {
+      m_lock.writeLock().lock();
+      try
+      {
+         rewrite();
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Cannot compact log " + m_file, 
+                                              ioeExc);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Close the log file. The log cannot be used after it was closed.
+    *
+    * @throws OSSException - an error has occurred
+    */
+   public void close(
+   ) throws OSSException
+   {
+      m_lock.writeLock().lock();
+      try
+      {
+         m_channel.close();
+      }
+      catch (IOException ioeExc)
+      {
+         throw new OSSDatabaseAccessException("Cannot close log " + m_file, 
+                                              ioeExc);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Open the log file and load the index from all complete frames. Has to be
+    * called while holding the write lock or from the constructor.
+    *
+    * @throws IOException - an error has occurred
+    */
+   protected void open(
+   ) throws IOException
+   {
+      DataInputStream input;
+      ByteBuffer      header = ByteBuffer.allocate(HEADER_SIZE);
+      CRC32           crc = new CRC32();
+      byte[]          arrData;
+      long            lPosition = HEADER_SIZE;
+      long            lFileSize;
+      int             iLength;
+      int             iChecksum;
+
+      m_mpBlogs.clear();
+      m_mpBlogLengths.clear();
+      m_mpFolders.clear();
+      m_mpEntries.clear();
+      m_mpBlogEntries.clear();
+      m_mpBlogModifications.clear();
+      m_mpBlogMonths.clear();
+      m_lGarbageSize = 0;
+      m_lNextBlogId = 1;
+      m_lNextEntryId = 1;
+
+      m_channel = FileChannel.open(m_file.toPath(), StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ, 
+                                   StandardOpenOption.WRITE);
+      try
+      {
+         lFileSize = m_channel.size();
+         if (lFileSize < HEADER_SIZE)
+         {
+            // New file or file interrupted while writing the header
+            header.putInt(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.flip();
+            writeFully(m_channel, header, 0);
+            m_channel.truncate(HEADER_SIZE);
+            m_channel.force(true);
+            lFileSize = HEADER_SIZE;
+         }
+         else
+         {
+            readFully(m_channel, header, 0);
+            if ((header.getInt(0) != MAGIC) 
+               || (header.getInt(4) != FORMAT_VERSION))
+            {
+               throw new IOException(m_file + " is not supported log file");
+            }
+         }
+
+         // Channels.newInputStream is not closed since it would close the 
+         // channel
+         m_channel.position(HEADER_SIZE);
+         input = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(m_channel), COMPACT_FRAME_SIZE));
+         while (lPosition + FRAME_HEADER_SIZE <= lFileSize)
+         {
+            iLength = input.readInt();
+            iChecksum = input.readInt();
+            if ((iLength <= 0) || (iLength > MAX_FRAME_SIZE) 
+               || (lPosition + FRAME_HEADER_SIZE + iLength > lFileSize))
+            {
+               break;
+            }
+            arrData = new byte[iLength];
+            input.readFully(arrData);
+            crc.reset();
+            crc.update(arrData);
+            if ((int)crc.getValue() != iChecksum)
+            {
+               break;
+            }
+            apply(ByteBuffer.wrap(arrData), lPosition + FRAME_HEADER_SIZE);
+            lPosition += FRAME_HEADER_SIZE + iLength;
+         }
+         if (lPosition < lFileSize)
+         {
+            s_logger.log(Level.WARNING, "Removing {0} bytes of incomplete data"
+                         + " from the end of log {1}", 
+                         new Object[] {lFileSize - lPosition, m_file});
+            m_channel.truncate(lPosition);
+            m_channel.force(true);
+         }
+         m_lSize = lPosition;
+      }
+      catch (IOException | RuntimeException exc)
+      {
+         m_channel.close();
+         throw exc;
+      }
+   }
+
+   /**
+    * Write data of single frame at the end of the log file and apply them to
+    * the index. The log is compacted if it contains too many old versions of 
+    * the data. Has to be called while holding the write lock.
+    *
+    * @param buffer - data of the frame, nothing is written if it is empty
+    * @param strMessage - message of exception thrown if the data cannot be 
+    *                     written
+    * @throws IOException - an error has occurred
+    * @throws OSSException - the data cannot be written, the log is unchanged
+    */
+   protected void write(
+      ByteArrayOutputStream buffer,
+      String                strMessage
+   ) throws IOException,
+            OSSException
+   {
+      byte[] arrData = buffer.toByteArray();
+
+      if (arrData.length > 0)
+      {
+         if (arrData.length > MAX_FRAME_SIZE)
+         {
+            throw new OSSDatabaseAccessException(strMessage 
+                         + " Too much data written at once.");
+         }
+         try
+         {
+            writeFrame(m_channel, m_lSize, arrData, arrData.length);
+            m_channel.force(false);
+         }
+         catch (IOException ioeExc)
+         {
+            try
+            {
+               m_channel.truncate(m_lSize);
+            }
+            catch (IOException ioeExc2)
+            {
+               s_logger.log(Level.WARNING, "Cannot remove incomplete data.", 
+                            ioeExc2);
+            }
+            throw ioeExc;
+         }
+         apply(ByteBuffer.wrap(arrData), m_lSize + FRAME_HEADER_SIZE);
+         m_lSize += FRAME_HEADER_SIZE + arrData.length;
+         if ((m_lSize > COMPACT_MIN_SIZE) && (m_lGarbageSize * 2 > m_lSize))
+         {
+            try
+            {
+               rewrite();
+            }
+            catch (IOException ioeExc)
+            {
+               // The data were written so the compaction is retried later
+               s_logger.log(Level.WARNING, "Cannot compact log " + m_file, 
+                            ioeExc);
+            }
+         }
+      }
+   }
+
+   /**
+    * Apply records of single frame to the index.
+    *
+    * @param data - data of the frame
+    * @param lPosition - position of the frame data in the file
+    * @throws IOException - the frame contains unknown record
+    */
+   protected void apply(
+      ByteBuffer data,
+      long       lPosition
+   ) throws IOException
+   {
+      NavigableSet<EntryLocation> setLocations;
+      EntryLocation               location;
+      Integer                     iLength;
+      Blog                        blog;
+      Blog                        previous;
+      int                         iStart;
+      byte                        bType;
+
+      while (data.hasRemaining())
+      {
+         iStart = data.position();
+         bType = data.get();
+         switch (bType)
+         {
+            case BLOG_RECORD:
+            {
+               blog = readBlog(data);
+               previous = m_mpBlogs.put(blog.getId(), blog);
+               iLength = m_mpBlogLengths.put(blog.getId(), 
+                                             data.position() - iStart);
+               if (previous != null)
+               {
+                  m_lGarbageSize += iLength;
+                  m_mpFolders.remove(previous.getFolder());
+               }
+               m_mpFolders.put(blog.getFolder(), blog.getId());
+               m_lNextBlogId = Math.max(m_lNextBlogId, blog.getId() + 1);
+               break;
+            }
+            case BLOG_DELETED_RECORD:
+            {
+               blog = m_mpBlogs.remove(data.getLong());
+               m_lGarbageSize += DELETED_RECORD_LENGTH;
+               if (blog != null)
+               {
+                  m_lGarbageSize += m_mpBlogLengths.remove(blog.getId());
+                  m_mpFolders.remove(blog.getFolder());
+                  // Entries are deleted together with their blog
+                  setLocations = m_mpBlogEntries.remove(blog.getId());
+                  m_mpBlogModifications.remove(blog.getId());
+                  m_mpBlogMonths.remove(blog.getId());
+                  if (setLocations != null)
+                  {
+                     for (EntryLocation deleted : setLocations)
+                     {
+                        m_mpEntries.remove(deleted.getId());
+                        m_lGarbageSize += deleted.getLength();
+                     }
+                  }
+               }
+               break;
+            }
+            case ENTRY_RECORD:
+            {
+               location = readEntryLocation(data, lPosition + iStart);
+               removeEntry(location.getId());
+               m_mpEntries.put(location.getId(), location);
+               setLocations = m_mpBlogEntries.get(location.getBlogId());
+               if (setLocations == null)
+               {
+                  setLocations = new TreeSet<>(LISTING_ORDER);
+                  m_mpBlogEntries.put(location.getBlogId(), setLocations);
+               }
+               setLocations.add(location);
+               setLocations = m_mpBlogModifications.get(location.getBlogId());
+               if (setLocations == null)
+               {
+                  setLocations = new TreeSet<>(MODIFICATION_ORDER);
+                  m_mpBlogModifications.put(location.getBlogId(), 
+                                            setLocations);
+               }
+               setLocations.add(location);
+               updateMonthCount(location, 1);
+               m_lNextEntryId = Math.max(m_lNextEntryId, location.getId() + 1);
+               break;
+            }
+            case ENTRY_DELETED_RECORD:
+            {
+               removeEntry(data.getLong());
+               m_lGarbageSize += DELETED_RECORD_LENGTH;
+               break;
+            }
+            case SEQUENCE_RECORD:
+            {
+               m_lNextBlogId = Math.max(m_lNextBlogId, data.getLong());
+               m_lNextEntryId = Math.max(m_lNextEntryId, data.getLong());
+               break;
+            }
+            default:
+            {
+               throw new IOException("Unknown record type " + bType 
+                                     + " at position " 
+                                     + (lPosition + iStart) + " of log " 
+                                     + m_file);
+            }
+         }
+      }
+   }
+
+   /**
+    * Remove entry from the index and count its record as garbage.
+    *
+    * @param lId - id of the entry
+    */
+   protected void removeEntry(
+      long lId
+   )
+   {
+      EntryLocation               location = m_mpEntries.remove(lId);
+      NavigableSet<EntryLocation> setLocations;
+
+      if (location != null)
+      {
+         m_lGarbageSize += location.getLength();
+         setLocations = m_mpBlogEntries.get(location.getBlogId());
+         setLocations.remove(location);
+         if (setLocations.isEmpty())
+         {
+            m_mpBlogEntries.remove(location.getBlogId());
+         }
+         setLocations = m_mpBlogModifications.get(location.getBlogId());
+         setLocations.remove(location);
+         if (setLocations.isEmpty())
+         {
+            m_mpBlogModifications.remove(location.getBlogId());
+         }
+         updateMonthCount(location, -1);
+      }
+   }
+
+   /**
+    * Adjust number of entries of the blog created in the month of the entry.
+    *
+    * @param location - location of the entry added or removed from the index
+    * @param iDelta - 1 if the entry was added, -1 if it was removed
+    */
+   protected void updateMonthCount(
+      EntryLocation location,
+      int           iDelta
+   )
+   {
+      NavigableMap<Integer, Integer> mpMonths;
+      Integer                        iKey;
+      Integer                        iCount;
+
+      mpMonths = m_mpBlogMonths.get(location.getBlogId());
+      if (mpMonths == null)
+      {
+         mpMonths = new TreeMap<>(Collections.reverseOrder());
+         m_mpBlogMonths.put(location.getBlogId(), mpMonths);
+      }
+      iKey = EntryMonth.getKey(location.getCreationTimestamp());
+      iCount = mpMonths.get(iKey);
+      iCount = (iCount == null) ? iDelta : iCount + iDelta;
+      if (iCount > 0)
+      {
+         mpMonths.put(iKey, iCount);
+      }
+      else
+      {
+         mpMonths.remove(iKey);
+         if (mpMonths.isEmpty())
+         {
+            m_mpBlogMonths.remove(location.getBlogId());
+         }
+      }
+   }
+
+   /**
+    * Write the live data into a new file and replace the log file with it. 
+    * The current file stays open until the new file replaces it so the log 
+    * can be still used if the file cannot be replaced. Has to be called while
+    * holding the write lock.
+    *
+    * @throws IOException - an error has occurred, the log is unchanged
+    * @throws OSSException - the file was replaced but it cannot be opened, 
+    *                        the log cannot be used anymore
+    */
+   protected void rewrite(
+   ) throws IOException,
+            OSSException
+   {
+      FileChannel           previous = m_channel;
+      File                  compacted;
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+                                        COMPACT_FRAME_SIZE);
+      DataOutputStream      output = new DataOutputStream(buffer);
+      ByteBuffer            data;
+      long                  lPosition = HEADER_SIZE;
+
+      compacted = File.createTempFile("compact", ".tmp", 
+                                      m_file.getAbsoluteFile().getParentFile());
+      try
+      {
+         try (FileChannel channel = FileChannel.open(compacted.toPath(), 
+                                       StandardOpenOption.WRITE))
+         {
+            data = ByteBuffer.allocate(HEADER_SIZE);
+            data.putInt(MAGIC);
+            data.putInt(FORMAT_VERSION);
+            data.flip();
+            writeFully(channel, data, 0);
+
+            output.writeByte(SEQUENCE_RECORD);
+            output.writeLong(m_lNextBlogId);
+            output.writeLong(m_lNextEntryId);
+            for (Blog blog : m_mpBlogs.values())
+            {
+               writeBlog(output, blog);
+            }
+            for (EntryLocation location : m_mpEntries.values())
+            {
+               if (buffer.size() >= COMPACT_FRAME_SIZE)
+               {
+                  lPosition += writeFrame(channel, lPosition, 
+                                          buffer.toByteArray(), buffer.size());
+                  buffer.reset();
+               }
+               // Records are copied without decoding them
+               data = ByteBuffer.allocate(location.getLength());
+               readFully(m_channel, data, location.getPosition());
+               output.write(data.array());
+            }
+            writeFrame(channel, lPosition, buffer.toByteArray(), buffer.size());
+            channel.force(true);
+         }
+
+         try
+         {
+            Files.move(compacted.toPath(), m_file.toPath(), 
+                       StandardCopyOption.ATOMIC_MOVE);
+         }
+         catch (AtomicMoveNotSupportedException amnsExc)
+         {
+            Files.move(compacted.toPath(), m_file.toPath(), 
+                       StandardCopyOption.REPLACE_EXISTING);
+         }
+
+         // The index is loaded again since the positions have changed
+         try
+         {
+            open();
+         }
+         catch (IOException | RuntimeException exc)
+         {
+            throw new OSSDatabaseAccessException("Log " + m_file 
+                         + " was compacted but it cannot be opened again.", 
+                         exc);
+         }
+         finally
+         {
+            try
+            {
+               previous.close();
+            }
+            catch (IOException ioeExc)
+            {
+               s_logger.log(Level.WARNING, "Cannot close replaced log.", 
+                            ioeExc);
+            }
+         }
+      }
+      finally
+      {
+         Files.deleteIfExists(compacted.toPath());
+      }
+   }
+
+   /**
+    * Check that folder of created or saved blog is specified and that it 
+    * isn't used by other blog.
+    *
+    * @param strFolder - folder of the blog
+    * @param lId - id of the saved blog or NEW_ID for created blog
+    * @param setFolders - folders of the blogs written at the same time
+    * @throws OSSException - the folder is not valid
+    */
+   protected void checkFolder(
+      String      strFolder,
+      long        lId,
+      Set<String> setFolders
+   ) throws OSSException
+   {
+      Long lExistingId;
+
+      if (strFolder == null)
+      {
+         throw new OSSDatabaseAccessException("Folder of blog cannot be null.");
+      }
+      lExistingId = m_mpFolders.get(strFolder);
+      if (((lExistingId != null) && (lExistingId != lId)) 
+         || (!setFolders.add(strFolder)))
+      {
+         throw new OSSDatabaseAccessException("Blog with folder " + strFolder
+                                              + " already exists.");
+      }
+   }
+
+   /**
+    * Check that blog of created or saved entry exists.
+    *
+    * @param lBlogId - id of the blog
+    * @throws OSSException - the blog doesn't exist
+    */
+   protected void checkBlog(
+      long lBlogId
+   ) throws OSSException
+   {
+      if (!m_mpBlogs.containsKey(lBlogId))
+      {
+         throw new OSSDatabaseAccessException("Blog " + lBlogId 
+                                              + " doesn't exist.");
+      }
+   }
+
+   /**
+    * Read entry from the log file.
+    *
+    * @param location - location of the entry
+    * @param bComments - true if the comments should be read
+    * @return Entry - the entry
+    * @throws IOException - an error has occurred
+    */
+   protected Entry read(
+      EntryLocation location,
+      boolean       bComments
+   ) throws IOException
+   {
+      ByteBuffer data = ByteBuffer.allocate(location.getLength());
+
+      readFully(m_channel, data, location.getPosition());
+      data.flip();
+      // Skip the record type
+      data.get();
+      try
+      {
+         return new Entry(data.getLong(), data.getLong(), readTimestamp(data),
+                          readTimestamp(data), data.getLong(), 
+                          readString(data), 
+                          // Comments are stored as the last value
+                          readEntryComments(data, bComments), 
+                          readString(data), readString(data), 
+                          data.get() != 0);
+      }
+      catch (OSSException ossExc)
+      {
+         throw new IOException("Cannot read entry " + location.getId(), 
+                               ossExc);
+      }
+   }
+
+   /**
+    * Skip the values of the entry record stored before the comments and read
+    * the comments. The buffer is positioned back at the image URL.
+    *
+    * @param data - buffer positioned at the image URL
+    * @param bComments - true if the comments should be read
+    * @return String - the comments or null if they shouldn't be read
+    */
+   protected static String readEntryComments(
+      ByteBuffer data,
+      boolean    bComments
+   )
+   {
+      int    iPosition = data.position();
+      String strComments = null;
+
+      if (bComments)
+      {
+         // Skip image URL, target URL and the preformated flag
+         skipString(data);
+         skipString(data);
+         data.get();
+         strComments = readString(data);
+         data.position(iPosition);
+      }
+
+      return strComments;
+   }
+
+   /**
+    * Read location of entry from the entry record.
+    *
+    * @param data - buffer positioned after the record type
+    * @param lPosition - position of the record in the file
+    * @return EntryLocation - location of the entry
+    */
+   protected static EntryLocation readEntryLocation(
+      ByteBuffer data,
+      long       lPosition
+   )
+   {
+      int       iStart = data.position() - 1;
+      long      lId = data.getLong();
+      long      lDomainId = data.getLong();
+      Timestamp creationTimestamp = readTimestamp(data);
+      Timestamp modificationTimestamp = readTimestamp(data);
+      long      lBlogId = data.getLong();
+
+      // Caption, image URL, target URL, preformated flag and comments
+      skipString(data);
+      skipString(data);
+      skipString(data);
+      data.get();
+      skipString(data);
+
+      return new EntryLocation(lId, lDomainId, lBlogId, creationTimestamp, 
+                               modificationTimestamp, lPosition, 
+                               data.position() - iStart);
+   }
+
+   /**
+    * Read blog from the blog record.
+    *
+    * @param data - buffer positioned after the record type
+    * @return Blog - the blog
+    * @throws IOException - an error has occurred
+    */
+   protected static Blog readBlog(
+      ByteBuffer data
+   ) throws IOException
+   {
+      try
+      {
+         return new Blog(data.getLong(), data.getLong(), readTimestamp(data),
+                         readTimestamp(data), readString(data), 
+                         readString(data), readString(data), data.get() != 0);
+      }
+      catch (OSSException ossExc)
+      {
+         throw new IOException("Cannot read blog", ossExc);
+      }
+   }
+
+   /**
+    * Write blog record.
+    *
+    * @param output - stream to write to
+    * @param blog - blog to write
+    * @throws IOException - an error has occurred
+    */
+   protected static void writeBlog(
+      DataOutputStream output,
+      Blog             blog
+   ) throws IOException
+   {
+      output.writeByte(BLOG_RECORD);
+      output.writeLong(blog.getId());
+      output.writeLong(blog.getDomainId());
+      writeTimestamp(output, blog.getCreationTimestamp());
+      writeTimestamp(output, blog.getModificationTimestamp());
+      writeString(output, blog.getFolder());
+      writeString(output, blog.getCaption());
+      writeString(output, blog.getComments());
+      output.writeByte(blog.getIsPreformated() ? 1 : 0);
+   }
+
+   /**
+    * Write entry record. The comments are written as the last value so that
+    * the entry can be read without them.
+    *
+    * @param output - stream to write to
+    * @param entry - entry to write
+    * @throws IOException - an error has occurred
+    */
+   protected static void writeEntry(
+      DataOutputStream output,
+      Entry            entry
+   ) throws IOException
+   {
+      output.writeByte(ENTRY_RECORD);
+      output.writeLong(entry.getId());
+      output.writeLong(entry.getDomainId());
+      writeTimestamp(output, entry.getCreationTimestamp());
+      writeTimestamp(output, entry.getModificationTimestamp());
+      output.writeLong(entry.getParentId());
+      writeString(output, entry.getCaption());
+      writeString(output, entry.getImageURL());
+      writeString(output, entry.getTargetURL());
+      output.writeByte(entry.getIsPreformated() ? 1 : 0);
+      writeString(output, entry.getComments());
+   }
+
+   /**
+    * Write frame containing the specified data.
+    *
+    * @param channel - channel to write to
+    * @param lPosition - position where to write the frame
+    * @param arrData - data of the frame
+    * @param iLength - length of the data
+    * @return int - number of written bytes
+    * @throws IOException - an error has occurred
+    */
+   protected static int writeFrame(
+      FileChannel channel,
+      long        lPosition,
+      byte[]      arrData,
+      int         iLength
+   ) throws IOException
+   {
+      ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + iLength);
+      CRC32      crc = new CRC32();
+
+      if (iLength == 0)
+      {
+         return 0;
+      }
+      crc.update(arrData, 0, iLength);
+      frame.putInt(iLength);
+      frame.putInt((int)crc.getValue());
+      frame.put(arrData, 0, iLength);
+      frame.flip();
+      writeFully(channel, frame, lPosition);
+
+      return frame.limit();
+   }
+
+   /**
+    * Write whole buffer to the channel at the specified position.
+    *
+    * @param channel - channel to write to
+    * @param data - data to write
+    * @param lPosition - position where to write the data
+    * @throws IOException - an error has occurred
+    */
+   protected static void writeFully(
+      FileChannel channel,
+      ByteBuffer  data,
+      long        lPosition
+   ) throws IOException
+   {
+      while (data.hasRemaining())
+      {
+         lPosition += channel.write(data, lPosition);
+      }
+   }
+
+   /**
+    * Fill the buffer with data read from the channel at the specified 
+    * position. Positional reads don't change position of the channel so they
+    * can be done by multiple threads at the same time.
+    *
+    * @param channel - channel to read from
+    * @param data - buffer to fill
+    * @param lPosition - position where to read the data
+    * @throws IOException - an error has occurred
+    */
+   protected static void readFully(
+      FileChannel channel,
+      ByteBuffer  data,
+      long        lPosition
+   ) throws IOException
+   {
+      int iRead;
+
+      while (data.hasRemaining())
+      {
+         iRead = channel.read(data, lPosition);
+         if (iRead < 0)
+         {
+            throw new EOFException("Unexpected end of log file");
+         }
+         lPosition += iRead;
+      }
+   }
+
+   /**
+    * Write timestamp including its nanoseconds.
+    *
+    * @param output - stream to write to
+    * @param timestamp - timestamp to write, can be null
+    * @throws IOException - an error has occurred
+    */
+   protected static void writeTimestamp(
+      DataOutputStream output,
+      Timestamp        timestamp
+   ) throws IOException
+   {
+      if (timestamp == null)
+      {
+         output.writeByte(0);
+      }
+      else
+      {
+         output.writeByte(1);
+         output.writeLong(timestamp.getTime());
+         output.writeInt(timestamp.getNanos());
+      }
+   }
+
+   /**
+    * Read timestamp written by writeTimestamp.
+    *
+    * @param data - buffer to read from
+    * @return Timestamp - read timestamp, can be null
+    */
+   protected static Timestamp readTimestamp(
+      ByteBuffer data
+   )
+   {
+      Timestamp timestamp = null;
+
+      if (data.get() != 0)
+      {
+         timestamp = new Timestamp(data.getLong());
+         timestamp.setNanos(data.getInt());
+      }
+
+      return timestamp;
+   }
+
+   /**
+    * Write string prefixed by length of its UTF-8 encoding.
+    *
+    * @param output - stream to write to
+    * @param strValue - string to write, can be null
+    * @throws IOException - an error has occurred
+    */
+   protected static void writeString(
+      DataOutputStream output,
+      String           strValue
+   ) throws IOException
+   {
+      byte[] arrBytes;
+
+      if (strValue == null)
+      {
+         output.writeInt(-1);
+      }
+      else
+      {
+         arrBytes = strValue.getBytes(StandardCharsets.UTF_8);
+         output.writeInt(arrBytes.length);
+         output.write(arrBytes);
+      }
+   }
+
+   /**
+    * Read string written by writeString.
+    *
+    * @param data - buffer to read from
+    * @return String - read string, can be null
+    */
+   protected static String readString(
+      ByteBuffer data
+   )
+   {
+      int    iLength = data.getInt();
+      String strValue = null;
+
+      if (iLength >= 0)
+      {
+         strValue = new String(data.array(), data.arrayOffset() 
+                               + data.position(), iLength, 
+                               StandardCharsets.UTF_8);
+         data.position(data.position() + iLength);
+      }
+
+      return strValue;
+   }
+
+   /**
+    * Skip string written by writeString.
+    *
+    * @param data - buffer to read from
+    */
+   protected static void skipString(
+      ByteBuffer data
+   )
+   {
+      int iLength = data.getInt();
+
+      if (iLength > 0)
+      {
+         data.position(data.position() + iLength);
+      }
+   }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.log;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Blog.BlogDataDescriptor.BlogFields;
+import org.opensubsystems.chronicle.persist.BlogFactory;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Blog factory storing blogs in an embedded append-only log instead of a 
+ * database. All blogs are kept in memory so they are never read from the 
+ * log file. 
+ *
+ * @author bastafidli
+ */
+public class LogBlogFactory implements BlogFactory
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Comparator sorting blogs by their caption.
+    */
+   protected static class CaptionOrder implements Comparator<Blog>
+   {
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int compare(
+         Blog first,
+         Blog second
+      )
+      {
+         return first.getCaption().compareTo(second.getCaption());
+      }
+   }
+
+   /**
+    * Comparator sorting blogs from the least recently modified one.
+    */
+   protected static class ModificationOrder implements Comparator<Blog>
+   {
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int compare(
+         Blog first,
+         Blog second
+      )
+      {
+         int iResult;
+
+         iResult = first.getModificationTimestamp().compareTo(
+                      second.getModificationTimestamp());
+         if (iResult == 0)
+         {
+            iResult = Long.compare(first.getId(), second.getId());
+         }
+
+         return iResult;
+      }
+   }
+
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Comparator sorting blogs by their caption.
+    */
+   protected static final Comparator<Blog> CAPTION_ORDER = new CaptionOrder();
+
+   /**
+    * Comparator sorting blogs from the least recently modified one.
+    */
+   protected static final Comparator<Blog> MODIFICATION_ORDER 
+      = new ModificationOrder();
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Log storing the blogs.
+    */
+   protected final ChronicleLog m_log;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new factory storing blogs in the specified log.
+    *
+    * @param log - log storing the blogs
+    */
+   public LogBlogFactory(
+      ChronicleLog log
+   )
+   {
+      if (log == null)
+      {
+         throw new IllegalArgumentException("Log cannot be null");
+      }
+      m_log = log;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Log storing the blogs.
+    *
+    * @return ChronicleLog
+    */
+   public ChronicleLog getLog(
+   )
+   {
+      return m_log;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      return m_log.getBlog(lId, lDomainId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Blog get(
+      String strFolder
+   ) throws OSSException
+   {
+      return m_log.getBlog(strFolder);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+   ) throws OSSException
+   {
+      List<Blog> lstBlogs = m_log.getBlogs();
+
+      Collections.sort(lstBlogs, CAPTION_ORDER);
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * All fields are always retrieved since the blogs are kept in memory.
+    */
+   @Override
+   public List<Blog> getAll(
+      EnumSet<BlogFields> fields
+   ) throws OSSException
+   {
+      if ((fields == null) || (fields.isEmpty()))
+      {
+         throw new IllegalArgumentException("Fields to retrieve have to be"
+                                            + " specified");
+      }
+
+      return getAll();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> getModifiedSince(
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      List<Blog> lstBlogs = new ArrayList<>();
+
+      if (modifiedSince == null)
+      {
+         throw new IllegalArgumentException("Modification time cannot be null");
+      }
+      for (Blog blog : m_log.getBlogs())
+      {
+         if (blog.getModificationTimestamp().after(modifiedSince))
+         {
+            lstBlogs.add(blog);
+         }
+      }
+      Collections.sort(lstBlogs, MODIFICATION_ORDER);
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      return m_log.createBlogs(Collections.singletonList(data)).get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      return m_log.createBlogs(colDataObject).size();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      return m_log.saveBlogs(Collections.singletonList(data)).get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * All blogs are written to the log at once so the batch size is only 
+    * validated.
+    */
+   @Override
+   public List<Blog> createAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      checkBatchSize(iBatchSize);
+      return m_log.createBlogs(colBlogs);
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * All blogs are written to the log at once so the batch size is only 
+    * validated.
+    */
+   @Override
+   public List<Blog> saveAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      checkBatchSize(iBatchSize);
+      return m_log.saveBlogs(colBlogs);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      m_log.deleteBlog(lId, lDomainId);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Check that the batch size is valid.
+    *
+    * @param iBatchSize - batch size to check
+    */
+   protected static void checkBatchSize(
+      int iBatchSize
+   )
+   {
+      if (iBatchSize <= 0)
+      {
+         throw new IllegalArgumentException("Batch size has to be positive");
+      }
+   }
+}
@@ -0,0 +1,532 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.log;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
+import org.opensubsystems.chronicle.persist.EntryCommentsLoader;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryHandler;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.chronicle.persist.EntryPageCursor;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Entry factory storing entries in an embedded append-only log instead of a 
+ * database. Only the index of entries is kept in memory, the entries are read
+ * from the log file when they are requested.
+ *
+ * @author bastafidli
+ */
+public class LogEntryFactory implements EntryFactory
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Number of entries read from the log at once when they are passed to 
+    * handler.
+    */
+   protected static final int FOR_EACH_PAGE_SIZE = 100;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Log storing the entries.
+    */
+   protected final ChronicleLog m_log;
+
+   /**
+    * Loader of comments of entries retrieved without them.
+    */
+   protected final Entry.CommentsLoader m_commentsLoader;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new factory storing entries in the specified log.
+    *
+    * @param log - log storing the entries
+    */
+   public LogEntryFactory(
+      ChronicleLog log
+   )
+   {
+      if (log == null)
+      {
+         throw new IllegalArgumentException("Log cannot be null");
+      }
+      m_log = log;
+      m_commentsLoader = new EntryCommentsLoader(this);
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Log storing the entries.
+    *
+    * @return ChronicleLog
+    */
+   public ChronicleLog getLog(
+   )
+   {
+      return m_log;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      return m_log.getEntry(lId, lDomainId, true);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+      long lBlogId
+   ) throws OSSException
+   {
+      List<Entry> lstData = m_log.getEntries(lBlogId, null, Integer.MAX_VALUE, 
+                                             true);
+
+      return lstData.isEmpty() ? null : lstData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Entry getLast(
+      long lBlogId
+   ) throws OSSException
+   {
+      List<Entry> lstData = m_log.getEntries(lBlogId, null, 1, true);
+
+      return lstData.isEmpty() ? null : lstData.get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<Long, Entry> getLast(
+      Collection<Long> colBlogIds
+   ) throws OSSException
+   {
+      Map<Long, Entry> mpData = new HashMap<>();
+      Entry            data;
+
+      for (Long lBlogId : colBlogIds)
+      {
+         data = getLast(lBlogId);
+         if (data != null)
+         {
+            mpData.put(lBlogId, data);
+         }
+      }
+
+      return mpData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getCount(
+      long lBlogId
+   ) throws OSSException
+   {
+      return m_log.getEntryCount(lBlogId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getByMonth(
+      long lBlogId,
+      int  iYear,
+      int  iMonth
+   ) throws OSSException
+   {
+      return m_log.getEntries(lBlogId, EntryMonth.getStart(iYear, iMonth), 
+                              EntryMonth.getEnd(iYear, iMonth), true);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<EntryMonth> getMonthCounts(
+      long lBlogId
+   ) throws OSSException
+   {
+      return m_log.getEntryMonthCounts(lBlogId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Timestamp getLastModified(
+      long lBlogId
+   ) throws OSSException
+   {
+      return m_log.getEntriesLastModified(lBlogId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getModifiedSince(
+      long      lBlogId,
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      if (modifiedSince == null)
+      {
+         throw new IllegalArgumentException("Modification time cannot be null");
+      }
+
+      return m_log.getEntriesModifiedSince(lBlogId, modifiedSince);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      return getPage(lBlogId, cursor, iLimit, true);
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * All fields are always retrieved except of comments, which are loaded 
+    * once they are requested if they were not specified.
+    */
+   @Override
+   public List<Entry> getAll(
+      long                 lBlogId,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      List<Entry> lstData;
+
+      checkFields(fields);
+      lstData = m_log.getEntries(lBlogId, null, Integer.MAX_VALUE, 
+                                 fields.contains(EntryFields.ENTRY_COMMENTS));
+      if (!fields.contains(EntryFields.ENTRY_COMMENTS))
+      {
+         setCommentsLoader(lstData);
+      }
+
+      return lstData.isEmpty() ? Collections.<Entry>emptyList() : lstData;
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * All fields are always retrieved except of comments, which are loaded 
+    * once they are requested if they were not specified.
+    */
+   @Override
+   public EntryPage getPage(
+      long                 lBlogId,
+      EntryPageCursor      cursor,
+      int                  iLimit,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      checkFields(fields);
+      return getPage(lBlogId, cursor, iLimit, 
+                     fields.contains(EntryFields.ENTRY_COMMENTS));
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getSummaries(
+      long lBlogId
+   ) throws OSSException
+   {
+      List<Entry> lstData;
+
+      lstData = m_log.getEntries(lBlogId, null, Integer.MAX_VALUE, false);
+      setCommentsLoader(lstData);
+
+      return lstData;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getSummaryPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      return getPage(lBlogId, cursor, iLimit, false);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String getComments(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Entry data = m_log.getEntry(lId, lDomainId, true);
+
+      return (data == null) ? null : data.getComments();
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * Entries are read from the log in pages so that the handler can modify 
+    * the entries while they are being processed.
+    */
+   @Override
+   public int forEach(
+      long         lBlogId,
+      EntryHandler handler
+   ) throws OSSException
+   {
+      EntryPageCursor cursor = null;
+      List<Entry>     lstData;
+      int             iCount = 0;
+
+      do
+      {
+         lstData = m_log.getEntries(lBlogId, cursor, FOR_EACH_PAGE_SIZE, true);
+         for (Entry data : lstData)
+         {
+            iCount++;
+            if (!handler.handle(data))
+            {
+               return iCount;
+            }
+            cursor = new EntryPageCursor(data);
+         }
+      }
+      while (lstData.size() == FOR_EACH_PAGE_SIZE);
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      return m_log.createEntries(Collections.singletonList(data)).get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      return m_log.createEntries(colDataObject).size();
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * All entries are written to the log at once so the batch size is only 
+    * validated.
+    */
+   @Override
+   public List<Entry> createAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      LogBlogFactory.checkBatchSize(iBatchSize);
+      return m_log.createEntries(colEntries);
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * All entries are written to the log at once so the batch size is only 
+    * validated.
+    */
+   @Override
+   public List<Entry> saveAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      LogBlogFactory.checkBatchSize(iBatchSize);
+      return m_log.saveEntries(colEntries);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      return m_log.saveEntries(Collections.singletonList(data)).get(0);
+   }
+
+   /**
+    * {@inheritDoc}
+    * 
+    * All entries are deleted from the log at once so the batch size is only 
+    * validated.
+    */
+   @Override
+   public int deleteAll(
+      Collection<Long> colIds,
+      long             lDomainId,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      LogBlogFactory.checkBatchSize(iBatchSize);
+      return m_log.deleteEntries(colIds, lDomainId);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      m_log.deleteEntry(lId, lDomainId);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Read single page of entries of a blog.
+    *
+    * @param lBlogId - id of the blog to get entries from
+    * @param cursor - cursor returned with the previous page or null to get 
+    *                 the first page
+    * @param iLimit - maximal number of entries on the page
+    * @param bComments - true if the comments should be read, otherwise they
+    *                    are loaded once they are requested
+    * @return EntryPage - page of entries, never null
+    * @throws OSSException - an error has occurred
+    */
+   protected EntryPage getPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit,
+      boolean         bComments
+   ) throws OSSException
+   {
+      List<Entry>     lstData;
+      EntryPageCursor nextCursor = null;
+
+      if (iLimit <= 0)
+      {
+         throw new IllegalArgumentException("Page limit has to be positive");
+      }
+      // One more entry tells if there is next page
+      lstData = m_log.getEntries(lBlogId, cursor, iLimit + 1, bComments);
+      if (lstData.size() > iLimit)
+      {
+         lstData.remove(iLimit);
+         nextCursor = new EntryPageCursor(lstData.get(iLimit - 1));
+      }
+      if (!bComments)
+      {
+         setCommentsLoader(lstData);
+      }
+
+      return new EntryPage(lstData, nextCursor);
+   }
+
+   /**
+    * Make all entries load their comments once they are requested.
+    *
+    * @param lstData - entries retrieved without comments
+    */
+   protected void setCommentsLoader(
+      List<Entry> lstData
+   )
+   {
+      for (Entry data : lstData)
+      {
+         data.setCommentsLoader(m_commentsLoader);
+      }
+   }
+
+   /**
+    * Check that the fields to retrieve are specified.
+    *
+    * @param fields - fields to check
+    */
+   protected static void checkFields(
+      EnumSet<EntryFields> fields
+   )
+   {
+      if ((fields == null) || (fields.isEmpty()))
+      {
+         throw new IllegalArgumentException("Fields to retrieve have to be"
+                                            + " specified");
+      }
+   }
+}
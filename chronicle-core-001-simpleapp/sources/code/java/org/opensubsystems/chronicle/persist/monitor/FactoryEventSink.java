@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+/**
+ * Receiver of events describing individual calls of factory operations. The 
+ * events are used to correlate the calls with other activity of the JVM so
+ * the sink has to be cheap when it doesn't record events, which is the usual
+ * case.
+ *
+ * @author bastafidli
+ */
+public interface FactoryEventSink
+{
+   /**
+    * Start event for the call of an operation, which is about to be made.
+    *
+    * @return Object - event to pass to commit once the call is finished or 
+    *                  null if the events are not recorded right now and the 
+    *                  commit shouldn't be called
+    */
+   Object begin(
+   );
+
+   /**
+    * Record event for the finished call of an operation.
+    *
+    * @param event - event returned by begin
+    * @param strOperation - name of the called operation 
+    * @param lBlogId - id of the blog the operation has accessed or 
+    *                  DataObject.NEW_ID if it is not known 
+    * @param strFolder - folder of the blog the operation has accessed or null 
+    *                    if it is not known 
+    * @param iRows - number of data objects returned or processed by the call
+    * @param bSuccess - true if the call has succeeded, false if it has thrown
+    *                   an exception
+    */
+   void commit(
+      Object  event,
+      String  strOperation,
+      long    lBlogId,
+      String  strFolder,
+      int     iRows,
+      boolean bSuccess
+   );
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.opensubsystems.core.error.OSSException;
+import org.opensubsystems.core.error.OSSInternalErrorException;
+
+/**
+ * Statistics of calls of all operations of single factory. The statistics can
+ * be registered with the platform MBean server so that they can be watched
+ * using any JMX console.
+ *
+ * @author bastafidli
+ */
+public class FactoryStatistics implements FactoryStatisticsMXBean
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Domain of the names under which the statistics are registered with the 
+    * MBean server.
+    */
+   public static final String JMX_DOMAIN = "org.opensubsystems.chronicle";
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Statistics of the operations keyed by name of the operation.
+    */
+   protected final ConcurrentMap<String, OperationStatistics> m_mpOperations;
+
+   /**
+    * Name under which the statistics are registered with the MBean server, 
+    * null if they are not registered.
+    */
+   protected ObjectName m_objectName;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new empty statistics.
+    */
+   public FactoryStatistics(
+   )
+   {
+      m_mpOperations = new ConcurrentHashMap<>();
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Name under which the statistics are registered with the MBean server.
+    *
+    * @return ObjectName - null if they are not registered
+    */
+   public synchronized ObjectName getObjectName(
+   )
+   {
+      return m_objectName;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Get statistics of the specified operation, create them if they don't 
+    * exist yet.
+    *
+    * @param strName - name of the operation
+    * @return OperationStatistics - statistics of the operation
+    */
+   public OperationStatistics getOperation(
+      String strName
+   )
+   {
+      OperationStatistics statistics;
+      OperationStatistics existing;
+
+      statistics = m_mpOperations.get(strName);
+      if (statistics == null)
+      {
+         statistics = new OperationStatistics(strName);
+         existing = m_mpOperations.putIfAbsent(strName, statistics);
+         if (existing != null)
+         {
+            statistics = existing;
+         }
+      }
+
+      return statistics;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<String, OperationSnapshot> getOperations(
+   )
+   {
+      Map<String, OperationSnapshot> mpSnapshots = new TreeMap<>();
+
+      for (OperationStatistics statistics : m_mpOperations.values())
+      {
+         if (statistics.getCalls() > 0)
+         {
+            mpSnapshots.put(statistics.getName(), 
+                            new OperationSnapshot(statistics));
+         }
+      }
+
+      return mpSnapshots;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getCalls(
+   )
+   {
+      long lCalls = 0;
+
+      for (OperationStatistics statistics : m_mpOperations.values())
+      {
+         lCalls += statistics.getCalls();
+      }
+
+      return lCalls;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getErrors(
+   )
+   {
+      long lErrors = 0;
+
+      for (OperationStatistics statistics : m_mpOperations.values())
+      {
+         lErrors += statistics.getErrors();
+      }
+
+      return lErrors;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void reset(
+   )
+   {
+      for (OperationStatistics statistics : m_mpOperations.values())
+      {
+         statistics.reset();
+      }
+   }
+
+   /**
+    * Register the statistics with the platform MBean server.
+    *
+    * @param strName - name distinguishing the statistics from statistics of
+    *                  other factories, e.g. BlogFactory
+    * @throws OSSException - an error has occurred
+    */
+   public synchronized void register(
+      String strName
+   ) throws OSSException
+   {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName  objectName;
+
+      if (m_objectName != null)
+      {
+         throw new IllegalStateException("Statistics are already registered as "
+                                         + m_objectName);
+      }
+      try
+      {
+         objectName = new ObjectName(JMX_DOMAIN 
+                                     + ":type=FactoryStatistics,name="
+                                     + ObjectName.quote(strName));
+         server.registerMBean(this, objectName);
+      }
+      catch (JMException jmExc)
+      {
+         throw new OSSInternalErrorException(
+                      "Failed to register factory statistics " + strName, 
+                      jmExc);
+      }
+      m_objectName = objectName;
+   }
+
+   /**
+    * Unregister the statistics from the platform MBean server. Nothing happens
+    * if they are not registered.
+    *
+    * @throws OSSException - an error has occurred
+    */
+   public synchronized void unregister(
+   ) throws OSSException
+   {
+      if (m_objectName != null)
+      {
+         try
+         {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                                                          m_objectName);
+         }
+         catch (JMException jmExc)
+         {
+            throw new OSSInternalErrorException(
+                         "Failed to unregister factory statistics " 
+                         + m_objectName, jmExc);
+         }
+         finally
+         {
+            m_objectName = null;
+         }
+      }
+   }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.util.Map;
+
+/**
+ * Management interface exposing statistics of calls of a factory through JMX.
+ *
+ * @author bastafidli
+ */
+public interface FactoryStatisticsMXBean
+{
+   /**
+    * Get snapshot of statistics of all operations called so far.
+    *
+    * @return Map - snapshots of statistics keyed by name of the operation
+    */
+   Map<String, OperationSnapshot> getOperations(
+   );
+
+   /**
+    * Get total number of calls of all operations.
+    *
+    * @return long
+    */
+   long getCalls(
+   );
+
+   /**
+    * Get total number of calls of all operations which have failed.
+    *
+    * @return long
+    */
+   long getErrors(
+   );
+
+   /**
+    * Reset statistics of all operations.
+    */
+   void reset(
+   );
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sink recording the factory events as Java Flight Recorder events so that 
+ * the calls of the factories can be correlated with garbage collection, lock 
+ * contention and other activity of the JVM in a single recording. 
+ * 
+ * The flight recorder API is available only since Java 11 while this module 
+ * has to run also on older JVMs, therefore the event type is defined 
+ * dynamically and accessed using reflection. On JVMs without the flight 
+ * recorder no events are recorded. The sink tracks if there is any running
+ * recording so when nothing is recorded, each call costs only a read of a 
+ * volatile flag. Events are created only if their type is enabled in the 
+ * running recording and their fields are set only if the event passes the 
+ * threshold of the recording, so that fast calls cost as little as possible.
+ *
+ * @author bastafidli
+ */
+public final class FlightRecorderEventSink implements FactoryEventSink
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Listener of the flight recorder updating the flag signaling if there is
+    * any running recording. It is implemented as a dynamic proxy since the 
+    * listener interface may not be available.
+    */
+   private final class RecordingListener implements InvocationHandler
+   {
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public Object invoke(
+         Object   proxy,
+         Method   method,
+         Object[] arrArgs
+      ) throws Throwable
+      {
+         Object result = null;
+
+         switch (method.getName())
+         {
+            case "recorderInitialized":
+            case "recordingStateChanged":
+               // Never let the failure propagate to the flight recorder
+               try
+               {
+                  m_bRecording = isAnyRecordingRunning();
+               }
+               catch (ReflectiveOperationException | RuntimeException exc)
+               {
+                  s_logger.log(Level.WARNING, "Cannot check state of flight"
+                               + " recordings.", exc);
+               }
+               break;
+            case "hashCode":
+               result = System.identityHashCode(proxy);
+               break;
+            case "equals":
+               result = (proxy == arrArgs[0]);
+               break;
+            case "toString":
+               result = RecordingListener.class.getName();
+               break;
+            default:
+               break;
+         }
+
+         return result;
+      }
+   }
+
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Name of the event type recorded for calls of the factories.
+    */
+   public static final String EVENT_NAME 
+                                 = "org.opensubsystems.chronicle.FactoryCall";
+
+   /**
+    * Index of the field of the event storing the name of the operation.
+    */
+   protected static final int FIELD_OPERATION = 0;
+
+   /**
+    * Index of the field of the event storing the id of the blog.
+    */
+   protected static final int FIELD_BLOG_ID = 1;
+
+   /**
+    * Index of the field of the event storing the folder of the blog.
+    */
+   protected static final int FIELD_FOLDER = 2;
+
+   /**
+    * Index of the field of the event storing the number of data objects.
+    */
+   protected static final int FIELD_ROWS = 3;
+
+   /**
+    * Index of the field of the event storing if the call has succeeded.
+    */
+   protected static final int FIELD_SUCCESS = 4;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory creating the events, null if the flight recorder is not 
+    * available.
+    */
+   private Object m_eventFactory;
+
+   /**
+    * Type of the events created by the event factory.
+    */
+   private Object m_eventType;
+
+   /**
+    * Method checking if the event type is enabled in any running recording.
+    */
+   private Method m_isEnabled;
+
+   /**
+    * Method creating new event using the event factory.
+    */
+   private Method m_newEvent;
+
+   /**
+    * Method starting the timing of an event.
+    */
+   private Method m_begin;
+
+   /**
+    * Method ending the timing of an event.
+    */
+   private Method m_end;
+
+   /**
+    * Method checking if an ended event should be written to the recordings, 
+    * e.g. if it has exceeded the threshold.
+    */
+   private Method m_shouldCommit;
+
+   /**
+    * Method setting field of an event.
+    */
+   private Method m_set;
+
+   /**
+    * Method writing an event to the recordings.
+    */
+   private Method m_commit;
+
+   /**
+    * Flag signaling if there is any running recording. Events are created only
+    * when it is set.
+    */
+   private volatile boolean m_bRecording;
+
+   // Cached values ////////////////////////////////////////////////////////////
+
+   /**
+    * Logger for this class
+    */
+   private static Logger s_logger = Logger.getLogger(
+                                       FlightRecorderEventSink.class.getName());
+
+   /**
+    * The only instance of this class.
+    */
+   private static final FlightRecorderEventSink s_instance 
+                                       = new FlightRecorderEventSink();
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Private constructor since there is only one instance of this class.
+    */
+   private FlightRecorderEventSink(
+   )
+   {
+      try
+      {
+         initialize();
+      }
+      catch (ReflectiveOperationException | RuntimeException exc)
+      {
+         s_logger.log(Level.FINE, "Java Flight Recorder is not available,"
+                      + " factory events will not be recorded.", exc);
+         m_eventFactory = null;
+         m_eventType = null;
+         m_bRecording = false;
+      }
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Get the only instance of this class.
+    *
+    * @return FlightRecorderEventSink
+    */
+   public static FlightRecorderEventSink getInstance(
+   )
+   {
+      return s_instance;
+   }
+
+   /**
+    * Check if the flight recorder is available in this JVM.
+    *
+    * @return boolean - true if the events can be recorded
+    */
+   public boolean isAvailable(
+   )
+   {
+      return m_eventFactory != null;
+   }
+
+   /**
+    * Check if there is any running recording, which would receive the events.
+    *
+    * @return boolean - true if the events are recorded right now
+    */
+   public boolean isRecording(
+   )
+   {
+      return m_bRecording;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Object begin(
+   )
+   {
+      Object event = null;
+
+      if (m_bRecording)
+      {
+         try
+         {
+            if ((Boolean)m_isEnabled.invoke(m_eventType))
+            {
+               event = m_newEvent.invoke(m_eventFactory);
+               m_begin.invoke(event);
+            }
+         }
+         catch (IllegalAccessException | InvocationTargetException exc)
+         {
+            s_logger.log(Level.FINE, "Cannot create factory event.", exc);
+            event = null;
+         }
+      }
+
+      return event;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void commit(
+      Object  event,
+      String  strOperation,
+      long    lBlogId,
+      String  strFolder,
+      int     iRows,
+      boolean bSuccess
+   )
+   {
+      try
+      {
+         m_end.invoke(event);
+         if ((Boolean)m_shouldCommit.invoke(event))
+         {
+            m_set.invoke(event, FIELD_OPERATION, strOperation);
+            m_set.invoke(event, FIELD_BLOG_ID, lBlogId);
+            m_set.invoke(event, FIELD_FOLDER, strFolder);
+            m_set.invoke(event, FIELD_ROWS, iRows);
+            m_set.invoke(event, FIELD_SUCCESS, bSuccess);
+            m_commit.invoke(event);
+         }
+      }
+      catch (IllegalAccessException | InvocationTargetException exc)
+      {
+         s_logger.log(Level.FINE, "Cannot record factory event.", exc);
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Define the event type and start tracking state of the recordings.
+    *
+    * @throws ReflectiveOperationException - the flight recorder is not
+    *                                        available
+    */
+   private void initialize(
+   ) throws ReflectiveOperationException
+   {
+      Class<?>     clsEventFactory = Class.forName("jdk.jfr.EventFactory");
+      Class<?>     clsEvent = Class.forName("jdk.jfr.Event");
+      Class<?>     clsEventType = Class.forName("jdk.jfr.EventType");
+      Class<?>     clsRecorder = Class.forName("jdk.jfr.FlightRecorder");
+      Class<?>     clsListener = Class.forName(
+                                    "jdk.jfr.FlightRecorderListener");
+      List<Object> lstAnnotations = new ArrayList<>();
+      List<Object> lstFields = new ArrayList<>();
+      Object       listener;
+
+      lstAnnotations.add(createAnnotation("Name", EVENT_NAME));
+      lstAnnotations.add(createAnnotation("Label", "Chronicle Factory Call"));
+      lstAnnotations.add(createAnnotation("Description", 
+                            "Call of an operation of blog or entry factory"));
+      lstAnnotations.add(createAnnotation("Category", 
+                            new String[] {"OpenSubsystems", "Chronicle"}));
+
+      // The order has to match the FIELD_XXX constants
+      lstFields.add(createField(String.class, "operation", "Operation"));
+      lstFields.add(createField(long.class, "blogId", "Blog Id"));
+      lstFields.add(createField(String.class, "folder", "Folder"));
+      lstFields.add(createField(int.class, "rows", "Rows"));
+      lstFields.add(createField(boolean.class, "success", "Success"));
+
+      m_eventFactory = clsEventFactory.getMethod("create", List.class, 
+                          List.class).invoke(null, lstAnnotations, lstFields);
+      m_eventType = clsEventFactory.getMethod("getEventType").invoke(
+                       m_eventFactory);
+      m_isEnabled = clsEventType.getMethod("isEnabled");
+      m_newEvent = clsEventFactory.getMethod("newEvent");
+      m_begin = clsEvent.getMethod("begin");
+      m_end = clsEvent.getMethod("end");
+      m_shouldCommit = clsEvent.getMethod("shouldCommit");
+      m_set = clsEvent.getMethod("set", int.class, Object.class);
+      m_commit = clsEvent.getMethod("commit");
+
+      listener = Proxy.newProxyInstance(clsListener.getClassLoader(), 
+                    new Class<?>[] {clsListener}, new RecordingListener());
+      clsRecorder.getMethod("addListener", clsListener).invoke(null, listener);
+      m_bRecording = isAnyRecordingRunning();
+   }
+
+   /**
+    * Check if there is any running recording.
+    *
+    * @return boolean - true if there is a running recording
+    * @throws ReflectiveOperationException - an error has occurred
+    */
+   private static boolean isAnyRecordingRunning(
+   ) throws ReflectiveOperationException
+   {
+      Class<?> clsRecorder = Class.forName("jdk.jfr.FlightRecorder");
+      Class<?> clsRecording = Class.forName("jdk.jfr.Recording");
+      Method   getState = clsRecording.getMethod("getState");
+      Object   recorder;
+      boolean  bRunning = false;
+
+      // Don't initialize the flight recorder if nobody has used it yet
+      if ((Boolean)clsRecorder.getMethod("isInitialized").invoke(null))
+      {
+         recorder = clsRecorder.getMethod("getFlightRecorder").invoke(null);
+         for (Object recording : (List<?>)clsRecorder.getMethod(
+                                    "getRecordings").invoke(recorder))
+         {
+            if ("RUNNING".equals(getState.invoke(recording).toString()))
+            {
+               bRunning = true;
+               break;
+            }
+         }
+      }
+
+      return bRunning;
+   }
+
+   /**
+    * Create description of an annotation of the event type.
+    *
+    * @param strAnnotation - simple name of the annotation from package jdk.jfr
+    * @param value - value of the annotation
+    * @return Object - annotation element
+    * @throws ReflectiveOperationException - an error has occurred
+    */
+   private static Object createAnnotation(
+      String strAnnotation,
+      Object value
+   ) throws ReflectiveOperationException
+   {
+      return Class.forName("jdk.jfr.AnnotationElement").getConstructor(
+                Class.class, Object.class).newInstance(
+                   Class.forName("jdk.jfr." + strAnnotation), value);
+   }
+
+   /**
+    * Create description of a field of the event type.
+    *
+    * @param clsType - type of the field
+    * @param strName - name of the field
+    * @param strLabel - label of the field displayed to users
+    * @return Object - value descriptor
+    * @throws ReflectiveOperationException - an error has occurred
+    */
+   private static Object createField(
+      Class<?> clsType,
+      String   strName,
+      String   strLabel
+   ) throws ReflectiveOperationException
+   {
+      return Class.forName("jdk.jfr.ValueDescriptor").getConstructor(
+                Class.class, String.class, List.class).newInstance(
+                   clsType, strName, 
+                   Collections.singletonList(createAnnotation("Label", 
+                                                              strLabel)));
+   }
+}
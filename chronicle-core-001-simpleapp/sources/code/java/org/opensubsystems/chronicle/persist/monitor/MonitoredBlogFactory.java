@@ -0,0 +1,479 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Blog.BlogDataDescriptor.BlogFields;
+import org.opensubsystems.chronicle.persist.BlogFactory;
+import org.opensubsystems.chronicle.persist.DelegatingBlogFactory;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * BlogFactory decorator recording how long each call of the underlying factory
+ * takes, how many calls have failed and how many blogs they have returned or
+ * processed. The statistics can be registered with the platform MBean server 
+ * so that the slow operations can be found using any JMX console while the 
+ * application is running.
+ *
+ * @author bastafidli
+ */
+public class MonitoredBlogFactory extends DelegatingBlogFactory
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Statistics of all operations of this factory.
+    */
+   protected final FactoryStatistics m_statistics;
+
+   /**
+    * Statistics of calls of get by id.
+    */
+   protected final OperationStatistics m_get;
+
+   /**
+    * Statistics of calls of get by folder.
+    */
+   protected final OperationStatistics m_getByFolder;
+
+   /**
+    * Statistics of calls of getAll.
+    */
+   protected final OperationStatistics m_getAll;
+
+   /**
+    * Statistics of calls of getAll limited to some fields.
+    */
+   protected final OperationStatistics m_getAllFields;
+
+   /**
+    * Statistics of calls of getModifiedSince.
+    */
+   protected final OperationStatistics m_getModifiedSince;
+
+   /**
+    * Statistics of calls of create of single blog.
+    */
+   protected final OperationStatistics m_create;
+
+   /**
+    * Statistics of calls of create of collection of blogs.
+    */
+   protected final OperationStatistics m_createCollection;
+
+   /**
+    * Statistics of calls of createAll.
+    */
+   protected final OperationStatistics m_createAll;
+
+   /**
+    * Statistics of calls of saveAll.
+    */
+   protected final OperationStatistics m_saveAll;
+
+   /**
+    * Statistics of calls of save.
+    */
+   protected final OperationStatistics m_save;
+
+   /**
+    * Statistics of calls of delete.
+    */
+   protected final OperationStatistics m_delete;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create factory recording statistics of calls of the specified factory.
+    *
+    * @param delegate - factory all calls are passed to
+    */
+   public MonitoredBlogFactory(
+      BlogFactory delegate
+   )
+   {
+      this(delegate, new FactoryStatistics());
+   }
+
+   /**
+    * Create factory recording statistics of calls of the specified factory.
+    *
+    * @param delegate - factory all calls are passed to
+    * @param statistics - statistics to record the calls into
+    */
+   public MonitoredBlogFactory(
+      BlogFactory       delegate,
+      FactoryStatistics statistics
+   )
+   {
+      super(delegate);
+
+      if (statistics == null)
+      {
+         throw new IllegalArgumentException("Statistics cannot be null");
+      }
+      m_statistics = statistics;
+      m_get = statistics.getOperation("get");
+      m_getByFolder = statistics.getOperation("getByFolder");
+      m_getAll = statistics.getOperation("getAll");
+      m_getAllFields = statistics.getOperation("getAllFields");
+      m_getModifiedSince = statistics.getOperation("getModifiedSince");
+      m_create = statistics.getOperation("create");
+      m_createCollection = statistics.getOperation("createCollection");
+      m_createAll = statistics.getOperation("createAll");
+      m_saveAll = statistics.getOperation("saveAll");
+      m_save = statistics.getOperation("save");
+      m_delete = statistics.getOperation("delete");
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Statistics of all operations of this factory.
+    *
+    * @return FactoryStatistics
+    */
+   public FactoryStatistics getStatistics(
+   )
+   {
+      return m_statistics;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      long       lStart = System.nanoTime();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      DataObject data;
+
+      try
+      {
+         data = m_delegate.get(lId, lDomainId);
+         iRows = (data == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_get.record(lStart, bSuccess, iRows);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Blog get(
+      String strFolder
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      Blog    blog;
+
+      try
+      {
+         blog = m_delegate.get(strFolder);
+         iRows = (blog == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getByFolder.record(lStart, bSuccess, iRows);
+      }
+
+      return blog;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      List    lstBlogs;
+
+      try
+      {
+         lstBlogs = m_delegate.getAll();
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getAll.record(lStart, bSuccess, iRows);
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> getAll(
+      EnumSet<BlogFields> fields
+   ) throws OSSException
+   {
+      long       lStart = System.nanoTime();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      List<Blog> lstBlogs;
+
+      try
+      {
+         lstBlogs = m_delegate.getAll(fields);
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getAllFields.record(lStart, bSuccess, iRows);
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> getModifiedSince(
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      long       lStart = System.nanoTime();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      List<Blog> lstBlogs;
+
+      try
+      {
+         lstBlogs = m_delegate.getModifiedSince(modifiedSince);
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getModifiedSince.record(lStart, bSuccess, iRows);
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      long       lStart = System.nanoTime();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      DataObject created;
+
+      try
+      {
+         created = m_delegate.create(data);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_create.record(lStart, bSuccess, iRows);
+      }
+
+      return created;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      int     iCount;
+
+      try
+      {
+         iCount = m_delegate.create(colDataObject);
+         iRows = iCount;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_createCollection.record(lStart, bSuccess, iRows);
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> createAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      long       lStart = System.nanoTime();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      List<Blog> lstBlogs;
+
+      try
+      {
+         lstBlogs = m_delegate.createAll(colBlogs, iBatchSize);
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_createAll.record(lStart, bSuccess, iRows);
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> saveAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      long       lStart = System.nanoTime();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      List<Blog> lstBlogs;
+
+      try
+      {
+         lstBlogs = m_delegate.saveAll(colBlogs, iBatchSize);
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_saveAll.record(lStart, bSuccess, iRows);
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      long                 lStart = System.nanoTime();
+      boolean              bSuccess = false;
+      int                  iRows = 0;
+      ModifiableDataObject saved;
+
+      try
+      {
+         saved = m_delegate.save(data);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_save.record(lStart, bSuccess, iRows);
+      }
+
+      return saved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+
+      try
+      {
+         m_delegate.delete(lId, lDomainId);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_delete.record(lStart, bSuccess, iRows);
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Get number of data objects in the collection.
+    *
+    * @param colData - collection to get the size of, can be null
+    * @return int - number of data objects
+    */
+   protected static int getSize(
+      Collection<?> colData
+   )
+   {
+      return (colData == null) ? 0 : colData.size();
+   }
+}
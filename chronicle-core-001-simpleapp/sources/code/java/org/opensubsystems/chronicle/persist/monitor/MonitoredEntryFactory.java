@@ -0,0 +1,901 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
+import org.opensubsystems.chronicle.persist.DelegatingEntryFactory;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryHandler;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.chronicle.persist.EntryPageCursor;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * EntryFactory decorator recording how long each call of the underlying factory
+ * takes, how many calls have failed and how many entries they have returned or
+ * processed. The statistics can be registered with the platform MBean server 
+ * so that the slow operations can be found using any JMX console while the 
+ * application is running.
+ *
+ * @author bastafidli
+ */
+public class MonitoredEntryFactory extends DelegatingEntryFactory
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Statistics of all operations of this factory.
+    */
+   protected final FactoryStatistics m_statistics;
+
+   /**
+    * Statistics of calls of get of single entry.
+    */
+   protected final OperationStatistics m_get;
+
+   /**
+    * Statistics of calls of getAll of all entries of a blog.
+    */
+   protected final OperationStatistics m_getAll;
+
+   /**
+    * Statistics of calls of getLast of single blog.
+    */
+   protected final OperationStatistics m_getLast;
+
+   /**
+    * Statistics of calls of getLast of many blogs.
+    */
+   protected final OperationStatistics m_getLastOfBlogs;
+
+   /**
+    * Statistics of calls of getCount.
+    */
+   protected final OperationStatistics m_getCount;
+
+   /**
+    * Statistics of calls of getByMonth.
+    */
+   protected final OperationStatistics m_getByMonth;
+
+   /**
+    * Statistics of calls of getMonthCounts.
+    */
+   protected final OperationStatistics m_getMonthCounts;
+
+   /**
+    * Statistics of calls of getLastModified.
+    */
+   protected final OperationStatistics m_getLastModified;
+
+   /**
+    * Statistics of calls of getModifiedSince.
+    */
+   protected final OperationStatistics m_getModifiedSince;
+
+   /**
+    * Statistics of calls of getPage.
+    */
+   protected final OperationStatistics m_getPage;
+
+   /**
+    * Statistics of calls of getAll limited to some fields.
+    */
+   protected final OperationStatistics m_getAllFields;
+
+   /**
+    * Statistics of calls of getPage limited to some fields.
+    */
+   protected final OperationStatistics m_getPageFields;
+
+   /**
+    * Statistics of calls of getSummaries.
+    */
+   protected final OperationStatistics m_getSummaries;
+
+   /**
+    * Statistics of calls of getSummaryPage.
+    */
+   protected final OperationStatistics m_getSummaryPage;
+
+   /**
+    * Statistics of calls of getComments.
+    */
+   protected final OperationStatistics m_getComments;
+
+   /**
+    * Statistics of calls of forEach.
+    */
+   protected final OperationStatistics m_forEach;
+
+   /**
+    * Statistics of calls of create of single entry.
+    */
+   protected final OperationStatistics m_create;
+
+   /**
+    * Statistics of calls of create of collection of entries.
+    */
+   protected final OperationStatistics m_createCollection;
+
+   /**
+    * Statistics of calls of createAll.
+    */
+   protected final OperationStatistics m_createAll;
+
+   /**
+    * Statistics of calls of saveAll.
+    */
+   protected final OperationStatistics m_saveAll;
+
+   /**
+    * Statistics of calls of save.
+    */
+   protected final OperationStatistics m_save;
+
+   /**
+    * Statistics of calls of deleteAll.
+    */
+   protected final OperationStatistics m_deleteAll;
+
+   /**
+    * Statistics of calls of delete.
+    */
+   protected final OperationStatistics m_delete;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create factory recording statistics of calls of the specified factory.
+    *
+    * @param delegate - factory all calls are passed to
+    */
+   public MonitoredEntryFactory(
+      EntryFactory delegate
+   )
+   {
+      this(delegate, new FactoryStatistics());
+   }
+
+   /**
+    * Create factory recording statistics of calls of the specified factory.
+    *
+    * @param delegate - factory all calls are passed to
+    * @param statistics - statistics to record the calls into
+    */
+   public MonitoredEntryFactory(
+      EntryFactory      delegate,
+      FactoryStatistics statistics
+   )
+   {
+      super(delegate);
+
+      if (statistics == null)
+      {
+         throw new IllegalArgumentException("Statistics cannot be null");
+      }
+      m_statistics = statistics;
+      m_get = statistics.getOperation("get");
+      m_getAll = statistics.getOperation("getAll");
+      m_getLast = statistics.getOperation("getLast");
+      m_getLastOfBlogs = statistics.getOperation("getLastOfBlogs");
+      m_getCount = statistics.getOperation("getCount");
+      m_getByMonth = statistics.getOperation("getByMonth");
+      m_getMonthCounts = statistics.getOperation("getMonthCounts");
+      m_getLastModified = statistics.getOperation("getLastModified");
+      m_getModifiedSince = statistics.getOperation("getModifiedSince");
+      m_getPage = statistics.getOperation("getPage");
+      m_getAllFields = statistics.getOperation("getAllFields");
+      m_getPageFields = statistics.getOperation("getPageFields");
+      m_getSummaries = statistics.getOperation("getSummaries");
+      m_getSummaryPage = statistics.getOperation("getSummaryPage");
+      m_getComments = statistics.getOperation("getComments");
+      m_forEach = statistics.getOperation("forEach");
+      m_create = statistics.getOperation("create");
+      m_createCollection = statistics.getOperation("createCollection");
+      m_createAll = statistics.getOperation("createAll");
+      m_saveAll = statistics.getOperation("saveAll");
+      m_save = statistics.getOperation("save");
+      m_deleteAll = statistics.getOperation("deleteAll");
+      m_delete = statistics.getOperation("delete");
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Statistics of all operations of this factory.
+    *
+    * @return FactoryStatistics
+    */
+   public FactoryStatistics getStatistics(
+   )
+   {
+      return m_statistics;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      long       lStart = System.nanoTime();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      DataObject data;
+
+      try
+      {
+         data = m_delegate.get(lId, lDomainId);
+         iRows = (data == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_get.record(lStart, bSuccess, iRows);
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+      long lBlogId
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      List    lstEntries;
+
+      try
+      {
+         lstEntries = m_delegate.getAll(lBlogId);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getAll.record(lStart, bSuccess, iRows);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Entry getLast(
+      long lBlogId
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      Entry   entry;
+
+      try
+      {
+         entry = m_delegate.getLast(lBlogId);
+         iRows = (entry == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getLast.record(lStart, bSuccess, iRows);
+      }
+
+      return entry;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<Long, Entry> getLast(
+      Collection<Long> colBlogIds
+   ) throws OSSException
+   {
+      long             lStart = System.nanoTime();
+      boolean          bSuccess = false;
+      int              iRows = 0;
+      Map<Long, Entry> mpEntries;
+
+      try
+      {
+         mpEntries = m_delegate.getLast(colBlogIds);
+         iRows = (mpEntries == null) ? 0 : mpEntries.size();
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getLastOfBlogs.record(lStart, bSuccess, iRows);
+      }
+
+      return mpEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getCount(
+      long lBlogId
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iCount;
+
+      try
+      {
+         iCount = m_delegate.getCount(lBlogId);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getCount.record(lStart, bSuccess, 0);
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getByMonth(
+      long lBlogId,
+      int  iYear,
+      int  iMonth
+   ) throws OSSException
+   {
+      long        lStart = System.nanoTime();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries;
+
+      try
+      {
+         lstEntries = m_delegate.getByMonth(lBlogId, iYear, iMonth);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getByMonth.record(lStart, bSuccess, iRows);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<EntryMonth> getMonthCounts(
+      long lBlogId
+   ) throws OSSException
+   {
+      long             lStart = System.nanoTime();
+      boolean          bSuccess = false;
+      List<EntryMonth> lstMonths;
+
+      try
+      {
+         lstMonths = m_delegate.getMonthCounts(lBlogId);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getMonthCounts.record(lStart, bSuccess, 0);
+      }
+
+      return lstMonths;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Timestamp getLastModified(
+      long lBlogId
+   ) throws OSSException
+   {
+      long      lStart = System.nanoTime();
+      boolean   bSuccess = false;
+      Timestamp lastModified;
+
+      try
+      {
+         lastModified = m_delegate.getLastModified(lBlogId);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getLastModified.record(lStart, bSuccess, 0);
+      }
+
+      return lastModified;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getModifiedSince(
+      long      lBlogId,
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      long        lStart = System.nanoTime();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries;
+
+      try
+      {
+         lstEntries = m_delegate.getModifiedSince(lBlogId, modifiedSince);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getModifiedSince.record(lStart, bSuccess, iRows);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      long      lStart = System.nanoTime();
+      boolean   bSuccess = false;
+      int       iRows = 0;
+      EntryPage page;
+
+      try
+      {
+         page = m_delegate.getPage(lBlogId, cursor, iLimit);
+         iRows = getSize(page);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getPage.record(lStart, bSuccess, iRows);
+      }
+
+      return page;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getAll(
+      long                 lBlogId,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      long        lStart = System.nanoTime();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries;
+
+      try
+      {
+         lstEntries = m_delegate.getAll(lBlogId, fields);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getAllFields.record(lStart, bSuccess, iRows);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long                 lBlogId,
+      EntryPageCursor      cursor,
+      int                  iLimit,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      long      lStart = System.nanoTime();
+      boolean   bSuccess = false;
+      int       iRows = 0;
+      EntryPage page;
+
+      try
+      {
+         page = m_delegate.getPage(lBlogId, cursor, iLimit, fields);
+         iRows = getSize(page);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getPageFields.record(lStart, bSuccess, iRows);
+      }
+
+      return page;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getSummaries(
+      long lBlogId
+   ) throws OSSException
+   {
+      long        lStart = System.nanoTime();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries;
+
+      try
+      {
+         lstEntries = m_delegate.getSummaries(lBlogId);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getSummaries.record(lStart, bSuccess, iRows);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getSummaryPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      long      lStart = System.nanoTime();
+      boolean   bSuccess = false;
+      int       iRows = 0;
+      EntryPage page;
+
+      try
+      {
+         page = m_delegate.getSummaryPage(lBlogId, cursor, iLimit);
+         iRows = getSize(page);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getSummaryPage.record(lStart, bSuccess, iRows);
+      }
+
+      return page;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String getComments(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      String  strComments;
+
+      try
+      {
+         strComments = m_delegate.getComments(lId, lDomainId);
+         iRows = (strComments == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_getComments.record(lStart, bSuccess, iRows);
+      }
+
+      return strComments;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int forEach(
+      long         lBlogId,
+      EntryHandler handler
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      int     iCount;
+
+      try
+      {
+         iCount = m_delegate.forEach(lBlogId, handler);
+         iRows = iCount;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_forEach.record(lStart, bSuccess, iRows);
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      long       lStart = System.nanoTime();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      DataObject created;
+
+      try
+      {
+         created = m_delegate.create(data);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_create.record(lStart, bSuccess, iRows);
+      }
+
+      return created;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      int     iCount;
+
+      try
+      {
+         iCount = m_delegate.create(colDataObject);
+         iRows = iCount;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_createCollection.record(lStart, bSuccess, iRows);
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> createAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      long        lStart = System.nanoTime();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries;
+
+      try
+      {
+         lstEntries = m_delegate.createAll(colEntries, iBatchSize);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_createAll.record(lStart, bSuccess, iRows);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> saveAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      long        lStart = System.nanoTime();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries;
+
+      try
+      {
+         lstEntries = m_delegate.saveAll(colEntries, iBatchSize);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_saveAll.record(lStart, bSuccess, iRows);
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      long                 lStart = System.nanoTime();
+      boolean              bSuccess = false;
+      int                  iRows = 0;
+      ModifiableDataObject saved;
+
+      try
+      {
+         saved = m_delegate.save(data);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_save.record(lStart, bSuccess, iRows);
+      }
+
+      return saved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int deleteAll(
+      Collection<Long> colIds,
+      long             lDomainId,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+
+      try
+      {
+         iRows = m_delegate.deleteAll(colIds, lDomainId, iBatchSize);
+         bSuccess = true;
+      }
+      finally
+      {
+         m_deleteAll.record(lStart, bSuccess, iRows);
+      }
+
+      return iRows;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      long    lStart = System.nanoTime();
+      boolean bSuccess = false;
+      int     iRows = 0;
+
+      try
+      {
+         m_delegate.delete(lId, lDomainId);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         m_delete.record(lStart, bSuccess, iRows);
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Get number of data objects in the collection.
+    *
+    * @param colData - collection to get the size of, can be null
+    * @return int - number of data objects
+    */
+   protected static int getSize(
+      Collection<?> colData
+   )
+   {
+      return (colData == null) ? 0 : colData.size();
+   }
+
+   /**
+    * Get number of entries on the page.
+    *
+    * @param page - page to get the size of, can be null
+    * @return int - number of entries
+    */
+   protected static int getSize(
+      EntryPage page
+   )
+   {
+      return (page == null) ? 0 : getSize(page.getEntries());
+   }
+}
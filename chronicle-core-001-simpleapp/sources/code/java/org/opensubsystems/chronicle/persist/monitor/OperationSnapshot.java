@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Immutable snapshot of statistics of single factory operation as exposed 
+ * through JMX. All durations are in microseconds.
+ *
+ * @author bastafidli
+ */
+public class OperationSnapshot
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Name of the operation.
+    */
+   protected final String m_strName;
+
+   /**
+    * Number of calls of the operation including the failed ones.
+    */
+   protected final long m_lCalls;
+
+   /**
+    * Number of calls of the operation which have failed.
+    */
+   protected final long m_lErrors;
+
+   /**
+    * Number of data objects returned or processed by the operation.
+    */
+   protected final long m_lRows;
+
+   /**
+    * Median duration of a call.
+    */
+   protected final long m_lMedianTime;
+
+   /**
+    * Duration within which 99% of calls have completed.
+    */
+   protected final long m_l99thPercentileTime;
+
+   /**
+    * Longest duration of a call.
+    */
+   protected final long m_lMaxTime;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create snapshot of the current statistics of an operation.
+    *
+    * @param statistics - statistics to create snapshot of
+    */
+   public OperationSnapshot(
+      OperationStatistics statistics
+   )
+   {
+      this(statistics.getName(), statistics.getCalls(), statistics.getErrors(),
+           statistics.getRows(), statistics.getPercentile(50),
+           statistics.getPercentile(99), statistics.getMaxTime());
+   }
+
+   /**
+    * Create new snapshot.
+    *
+    * @param strName - name of the operation
+    * @param lCalls - number of calls of the operation
+    * @param lErrors - number of calls which have failed
+    * @param lRows - number of data objects returned or processed
+    * @param lMedianTime - median duration of a call
+    * @param l99thPercentileTime - duration within which 99% of calls have
+    *                              completed
+    * @param lMaxTime - longest duration of a call
+    */
+   @ConstructorProperties({"name", "calls", "errors", "rows", "medianTime",
+                           "percentile99Time", "maxTime"})
+   public OperationSnapshot(
+      String strName,
+      long   lCalls,
+      long   lErrors,
+      long   lRows,
+      long   lMedianTime,
+      long   l99thPercentileTime,
+      long   lMaxTime
+   )
+   {
+      m_strName = strName;
+      m_lCalls = lCalls;
+      m_lErrors = lErrors;
+      m_lRows = lRows;
+      m_lMedianTime = lMedianTime;
+      m_l99thPercentileTime = l99thPercentileTime;
+      m_lMaxTime = lMaxTime;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Name of the operation.
+    *
+    * @return String
+    */
+   public String getName(
+   )
+   {
+      return m_strName;
+   }
+
+   /**
+    * Number of calls of the operation including the failed ones.
+    *
+    * @return long
+    */
+   public long getCalls(
+   )
+   {
+      return m_lCalls;
+   }
+
+   /**
+    * Number of calls of the operation which have failed.
+    *
+    * @return long
+    */
+   public long getErrors(
+   )
+   {
+      return m_lErrors;
+   }
+
+   /**
+    * Number of data objects returned or processed by the operation.
+    *
+    * @return long
+    */
+   public long getRows(
+   )
+   {
+      return m_lRows;
+   }
+
+   /**
+    * Median duration of a call in microseconds.
+    *
+    * @return long
+    */
+   public long getMedianTime(
+   )
+   {
+      return m_lMedianTime;
+   }
+
+   /**
+    * Duration in microseconds within which 99% of calls have completed.
+    *
+    * @return long
+    */
+   public long getPercentile99Time(
+   )
+   {
+      return m_l99thPercentileTime;
+   }
+
+   /**
+    * Longest duration of a call in microseconds.
+    *
+    * @return long
+    */
+   public long getMaxTime(
+   )
+   {
+      return m_lMaxTime;
+   }
+}
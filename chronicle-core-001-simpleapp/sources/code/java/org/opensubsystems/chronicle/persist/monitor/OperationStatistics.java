@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ *
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statistics of calls of single factory operation. The statistics are recorded
+ * without any locking so that they can be updated by many threads at the same
+ * time with negligible overhead.
+ *
+ * Durations of the calls are counted in a histogram with logarithmic buckets.
+ * Every power of two microseconds is split into 4 buckets so the percentiles
+ * computed from the histogram are precise within 25%. The maximal duration is
+ * tracked exactly.
+ *
+ * @author bastafidli
+ */
+public class OperationStatistics
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Number of bits of the duration used to select bucket within single power
+    * of two.
+    */
+   protected static final int SUB_BUCKET_BITS = 2;
+
+   /**
+    * Number of buckets within single power of two.
+    */
+   protected static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+   /**
+    * Highest power of two of durations in microseconds counted in their own
+    * buckets, longer durations are counted in the last bucket. 2^40
+    * microseconds is more than 12 days.
+    */
+   protected static final int MAX_EXPONENT = 40;
+
+   /**
+    * Number of buckets of the histogram.
+    */
+   protected static final int BUCKET_COUNT
+                                 = (MAX_EXPONENT - SUB_BUCKET_BITS + 2)
+                                   * SUB_BUCKET_COUNT;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Name of the operation.
+    */
+   protected final String m_strName;
+
+   /**
+    * Number of calls of the operation including the failed ones.
+    */
+   protected final AtomicLong m_lCalls;
+
+   /**
+    * Number of calls of the operation which have failed.
+    */
+   protected final AtomicLong m_lErrors;
+
+   /**
+    * Number of data objects returned or processed by the operation.
+    */
+   protected final AtomicLong m_lRows;
+
+   /**
+    * Total duration of all calls in microseconds.
+    */
+   protected final AtomicLong m_lTotalTime;
+
+   /**
+    * Longest duration of a call in microseconds.
+    */
+   protected final AtomicLong m_lMaxTime;
+
+   /**
+    * Number of calls with duration within each bucket.
+    */
+   protected final AtomicLongArray m_arrBuckets;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new statistics for an operation.
+    *
+    * @param strName - name of the operation
+    */
+   public OperationStatistics(
+      String strName
+   )
+   {
+      m_strName = strName;
+      m_lCalls = new AtomicLong();
+      m_lErrors = new AtomicLong();
+      m_lRows = new AtomicLong();
+      m_lTotalTime = new AtomicLong();
+      m_lMaxTime = new AtomicLong();
+      m_arrBuckets = new AtomicLongArray(BUCKET_COUNT);
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Name of the operation.
+    *
+    * @return String
+    */
+   public String getName(
+   )
+   {
+      return m_strName;
+   }
+
+   /**
+    * Number of calls of the operation including the failed ones.
+    *
+    * @return long
+    */
+   public long getCalls(
+   )
+   {
+      return m_lCalls.get();
+   }
+
+   /**
+    * Number of calls of the operation which have failed.
+    *
+    * @return long
+    */
+   public long getErrors(
+   )
+   {
+      return m_lErrors.get();
+   }
+
+   /**
+    * Number of data objects returned or processed by the operation.
+    *
+    * @return long
+    */
+   public long getRows(
+   )
+   {
+      return m_lRows.get();
+   }
+
+   /**
+    * Total duration of all calls in microseconds.
+    *
+    * @return long
+    */
+   public long getTotalTime(
+   )
+   {
+      return m_lTotalTime.get();
+   }
+
+   /**
+    * Longest duration of a call in microseconds.
+    *
+    * @return long
+    */
+   public long getMaxTime(
+   )
+   {
+      return m_lMaxTime.get();
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Record single call of the operation.
+    *
+    * @param lStartTime - value of System.nanoTime() when the call has started
+    * @param bSuccess - true if the call has succeeded, false if it has thrown
+    *                   an exception
+    * @param iRows - number of data objects returned or processed by the call
+    */
+   public void record(
+      long    lStartTime,
+      boolean bSuccess,
+      int     iRows
+   )
+   {
+      long lDuration = (System.nanoTime() - lStartTime) / 1000;
+      long lMax;
+
+      if (lDuration < 0)
+      {
+         lDuration = 0;
+      }
+      m_lCalls.incrementAndGet();
+      if (!bSuccess)
+      {
+         m_lErrors.incrementAndGet();
+      }
+      if (iRows > 0)
+      {
+         m_lRows.addAndGet(iRows);
+      }
+      m_lTotalTime.addAndGet(lDuration);
+      m_arrBuckets.incrementAndGet(getBucket(lDuration));
+      lMax = m_lMaxTime.get();
+      while ((lDuration > lMax) && (!m_lMaxTime.compareAndSet(lMax, lDuration)))
+      {
+         lMax = m_lMaxTime.get();
+      }
+   }
+
+   /**
+    * Get duration within which the specified portion of the calls has
+    * completed.
+    *
+    * @param dPercentile - percentile to get, e.g. 50 for median
+    * @return long - duration in microseconds, 0 if there were no calls
+    */
+   public long getPercentile(
+      double dPercentile
+   )
+   {
+      long[] arrCounts = new long[BUCKET_COUNT];
+      long   lTotal = 0;
+      long   lThreshold;
+      long   lCount = 0;
+      int    iBucket;
+
+      if ((dPercentile < 0) || (dPercentile > 100))
+      {
+         throw new IllegalArgumentException(
+                      "Percentile has to be between 0 and 100");
+      }
+
+      // Copy the counts first since they can change while we are computing
+      for (iBucket = 0; iBucket < BUCKET_COUNT; iBucket++)
+      {
+         arrCounts[iBucket] = m_arrBuckets.get(iBucket);
+         lTotal += arrCounts[iBucket];
+      }
+      if (lTotal == 0)
+      {
+         return 0;
+      }
+      lThreshold = Math.max(1, (long)Math.ceil(lTotal * dPercentile / 100));
+      for (iBucket = 0; iBucket < BUCKET_COUNT; iBucket++)
+      {
+         lCount += arrCounts[iBucket];
+         if (lCount >= lThreshold)
+         {
+            break;
+         }
+      }
+
+      return Math.min(getBucketLimit(iBucket), getMaxTime());
+   }
+
+   /**
+    * Reset all statistics.
+    */
+   public void reset(
+   )
+   {
+      m_lCalls.set(0);
+      m_lErrors.set(0);
+      m_lRows.set(0);
+      m_lTotalTime.set(0);
+      m_lMaxTime.set(0);
+      for (int iBucket = 0; iBucket < BUCKET_COUNT; iBucket++)
+      {
+         m_arrBuckets.set(iBucket, 0);
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Get bucket counting the specified duration.
+    *
+    * @param lDuration - duration in microseconds, not negative
+    * @return int - index of the bucket
+    */
+   protected static int getBucket(
+      long lDuration
+   )
+   {
+      int iExponent;
+      int iBucket;
+
+      if (lDuration < SUB_BUCKET_COUNT)
+      {
+         iBucket = (int)lDuration;
+      }
+      else
+      {
+         iExponent = 63 - Long.numberOfLeadingZeros(lDuration);
+         iBucket = (iExponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT
+                   + (int)((lDuration >> (iExponent - SUB_BUCKET_BITS))
+                           & (SUB_BUCKET_COUNT - 1));
+         if (iBucket >= BUCKET_COUNT)
+         {
+            iBucket = BUCKET_COUNT - 1;
+         }
+      }
+
+      return iBucket;
+   }
+
+   /**
+    * Get the longest duration counted in the specified bucket.
+    *
+    * @param iBucket - index of the bucket
+    * @return long - duration in microseconds
+    */
+   protected static long getBucketLimit(
+      int iBucket
+   )
+   {
+      int iShift;
+
+      if (iBucket < SUB_BUCKET_COUNT)
+      {
+         return iBucket;
+      }
+      if (iBucket == BUCKET_COUNT - 1)
+      {
+         return Long.MAX_VALUE;
+      }
+      iShift = iBucket / SUB_BUCKET_COUNT - 1;
+
+      return ((long)(SUB_BUCKET_COUNT + iBucket % SUB_BUCKET_COUNT + 1)
+              << iShift) - 1;
+   }
+}
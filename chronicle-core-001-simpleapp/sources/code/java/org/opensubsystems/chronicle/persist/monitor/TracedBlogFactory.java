@@ -0,0 +1,542 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Blog.BlogDataDescriptor.BlogFields;
+import org.opensubsystems.chronicle.persist.BlogFactory;
+import org.opensubsystems.chronicle.persist.DelegatingBlogFactory;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * BlogFactory decorator reporting every call of the underlying factory as an 
+ * event to a sink, by default to the Java Flight Recorder. The event carries
+ * duration of the call, name of the operation, blog accessed by the call if
+ * it is known and number of data objects returned or processed. The events 
+ * allow to correlate slow pages with garbage collection, lock contention and 
+ * JDBC activity recorded at the same time.
+ *
+ * @author bastafidli
+ */
+public class TracedBlogFactory extends DelegatingBlogFactory
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Sink receiving the events.
+    */
+   protected final FactoryEventSink m_events;
+
+   /**
+    * Folders of blogs seen by the calls recorded as events by their ids. It
+    * allows to include the folder in events of the entry factory which know 
+    * only id of the blog. The folders are remembered only while the events 
+    * are recorded so the map doesn't cost anything otherwise.
+    */
+   protected final ConcurrentMap<Long, String> m_mpFolders;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create factory reporting calls of the specified factory to the Java 
+    * Flight Recorder.
+    *
+    * @param delegate - factory all calls are passed to
+    */
+   public TracedBlogFactory(
+      BlogFactory delegate
+   )
+   {
+      this(delegate, FlightRecorderEventSink.getInstance());
+   }
+
+   /**
+    * Create factory reporting calls of the specified factory to the specified
+    * sink.
+    *
+    * @param delegate - factory all calls are passed to
+    * @param events - sink receiving the events
+    */
+   public TracedBlogFactory(
+      BlogFactory      delegate,
+      FactoryEventSink events
+   )
+   {
+      super(delegate);
+
+      if (events == null)
+      {
+         throw new IllegalArgumentException("Event sink cannot be null");
+      }
+      m_events = events;
+      m_mpFolders = new ConcurrentHashMap<>();
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Sink receiving the events.
+    *
+    * @return FactoryEventSink
+    */
+   public FactoryEventSink getEvents(
+   )
+   {
+      return m_events;
+   }
+
+   /**
+    * Get folder of the blog seen by a call of this factory while the events 
+    * were recorded.
+    *
+    * @param lBlogId - id of the blog
+    * @return String - folder of the blog or null if it is not known
+    */
+   public String getFolder(
+      long lBlogId
+   )
+   {
+      return m_mpFolders.get(lBlogId);
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Object     event = m_events.begin();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      DataObject data = null;
+
+      try
+      {
+         data = m_delegate.get(lId, lDomainId);
+         iRows = (data == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            m_events.commit(event, "BlogFactory.get", lId, 
+                            rememberFolder(lId, getFolder(data)), iRows, 
+                            bSuccess);
+         }
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Blog get(
+      String strFolder
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      Blog    blog = null;
+
+      try
+      {
+         blog = m_delegate.get(strFolder);
+         iRows = (blog == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            rememberFolder(getBlogId(blog), strFolder);
+            m_events.commit(event, "BlogFactory.getByFolder", getBlogId(blog),
+                            strFolder, iRows, bSuccess);
+         }
+      }
+
+      return blog;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      List    lstBlogs = null;
+
+      try
+      {
+         lstBlogs = m_delegate.getAll();
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            m_events.commit(event, "BlogFactory.getAll", DataObject.NEW_ID,
+                            null, iRows, bSuccess);
+         }
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> getAll(
+      EnumSet<BlogFields> fields
+   ) throws OSSException
+   {
+      Object     event = m_events.begin();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      List<Blog> lstBlogs = null;
+
+      try
+      {
+         lstBlogs = m_delegate.getAll(fields);
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            m_events.commit(event, "BlogFactory.getAllFields",
+                            DataObject.NEW_ID, null, iRows, bSuccess);
+         }
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> getModifiedSince(
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      Object     event = m_events.begin();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      List<Blog> lstBlogs = null;
+
+      try
+      {
+         lstBlogs = m_delegate.getModifiedSince(modifiedSince);
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            m_events.commit(event, "BlogFactory.getModifiedSince",
+                            DataObject.NEW_ID, null, iRows, bSuccess);
+         }
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      Object     event = m_events.begin();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      DataObject created = null;
+
+      try
+      {
+         created = m_delegate.create(data);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            m_events.commit(event, "BlogFactory.create", getBlogId(created),
+                            rememberFolder(getBlogId(created), getFolder(data)),
+                            iRows, bSuccess);
+         }
+      }
+
+      return created;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      int     iCount = 0;
+
+      try
+      {
+         iCount = m_delegate.create(colDataObject);
+         iRows = iCount;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            m_events.commit(event, "BlogFactory.createCollection",
+                            DataObject.NEW_ID, null, iRows, bSuccess);
+         }
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> createAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      Object     event = m_events.begin();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      List<Blog> lstBlogs = null;
+
+      try
+      {
+         lstBlogs = m_delegate.createAll(colBlogs, iBatchSize);
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            m_events.commit(event, "BlogFactory.createAll", DataObject.NEW_ID,
+                            null, iRows, bSuccess);
+         }
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Blog> saveAll(
+      Collection<Blog> colBlogs,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      Object     event = m_events.begin();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      List<Blog> lstBlogs = null;
+
+      try
+      {
+         lstBlogs = m_delegate.saveAll(colBlogs, iBatchSize);
+         iRows = getSize(lstBlogs);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            m_events.commit(event, "BlogFactory.saveAll", DataObject.NEW_ID,
+                            null, iRows, bSuccess);
+         }
+      }
+
+      return lstBlogs;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      Object               event = m_events.begin();
+      boolean              bSuccess = false;
+      int                  iRows = 0;
+      ModifiableDataObject saved = null;
+
+      try
+      {
+         saved = m_delegate.save(data);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            if (bSuccess)
+            {
+               rememberFolder(getBlogId(data), getFolder(data));
+            }
+            m_events.commit(event, "BlogFactory.save", getBlogId(data),
+                            getFolder(data), iRows, bSuccess);
+         }
+      }
+
+      return saved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+
+      try
+      {
+         m_delegate.delete(lId, lDomainId);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (bSuccess)
+         {
+            m_mpFolders.remove(lId);
+         }
+         if (event != null)
+         {
+            m_events.commit(event, "BlogFactory.delete", lId, null, iRows,
+                            bSuccess);
+         }
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Remember folder of the blog so that it can be included in events of the
+    * entry factory.
+    *
+    * @param lBlogId - id of the blog or DataObject.NEW_ID if it is not known
+    * @param strFolder - folder of the blog or null if it is not known
+    * @return String - the specified folder
+    */
+   protected String rememberFolder(
+      long   lBlogId,
+      String strFolder
+   )
+   {
+      if ((lBlogId != DataObject.NEW_ID) && (strFolder != null))
+      {
+         m_mpFolders.put(lBlogId, strFolder);
+      }
+      return strFolder;
+   }
+
+   /**
+    * Get id of the blog.
+    *
+    * @param data - blog, can be null
+    * @return long - id of the blog or DataObject.NEW_ID if it is not known
+    */
+   protected static long getBlogId(
+      DataObject data
+   )
+   {
+      return (data == null) ? DataObject.NEW_ID : data.getId();
+   }
+
+   /**
+    * Get folder of the blog.
+    *
+    * @param data - blog, can be null
+    * @return String - folder of the blog or null if it is not known
+    */
+   protected static String getFolder(
+      DataObject data
+   )
+   {
+      return (data instanceof Blog) ? ((Blog)data).getFolder() : null;
+   }
+
+   /**
+    * Get number of data objects in the collection.
+    *
+    * @param colData - collection to get the size of, can be null
+    * @return int - number of data objects
+    */
+   protected static int getSize(
+      Collection<?> colData
+   )
+   {
+      return (colData == null) ? 0 : colData.size();
+   }
+}
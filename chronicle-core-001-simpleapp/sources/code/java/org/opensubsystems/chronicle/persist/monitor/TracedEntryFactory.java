@@ -0,0 +1,918 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
+import org.opensubsystems.chronicle.persist.DelegatingEntryFactory;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryHandler;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.chronicle.persist.EntryPageCursor;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * EntryFactory decorator reporting every call of the underlying factory as an 
+ * event to a sink, by default to the Java Flight Recorder. The event carries
+ * duration of the call, name of the operation, blog accessed by the call if
+ * it is known and number of data objects returned or processed. The events 
+ * allow to correlate slow pages with garbage collection, lock contention and 
+ * JDBC activity recorded at the same time.
+ *
+ * @author bastafidli
+ */
+public class TracedEntryFactory extends DelegatingEntryFactory
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Sink receiving the events.
+    */
+   protected final FactoryEventSink m_events;
+
+   /**
+    * Factory reporting calls of blogs, which knows folders of the blogs, can 
+    * be null.
+    */
+   protected final TracedBlogFactory m_blogs;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create factory reporting calls of the specified factory to the Java 
+    * Flight Recorder.
+    *
+    * @param delegate - factory all calls are passed to
+    */
+   public TracedEntryFactory(
+      EntryFactory delegate
+   )
+   {
+      this(delegate, FlightRecorderEventSink.getInstance());
+   }
+
+   /**
+    * Create factory reporting calls of the specified factory to the specified
+    * sink.
+    *
+    * @param delegate - factory all calls are passed to
+    * @param events - sink receiving the events
+    */
+   public TracedEntryFactory(
+      EntryFactory     delegate,
+      FactoryEventSink events
+   )
+   {
+      this(delegate, events, null);
+   }
+
+   /**
+    * Create factory reporting calls of the specified factory to the specified
+    * sink. Events include folders of the blogs seen by the specified blog 
+    * factory.
+    *
+    * @param delegate - factory all calls are passed to
+    * @param events - sink receiving the events
+    * @param blogs - factory reporting calls of blogs to the same sink, can be 
+    *                null if folders of blogs shouldn't be reported
+    */
+   public TracedEntryFactory(
+      EntryFactory      delegate,
+      FactoryEventSink  events,
+      TracedBlogFactory blogs
+   )
+   {
+      super(delegate);
+
+      if (events == null)
+      {
+         throw new IllegalArgumentException("Event sink cannot be null");
+      }
+      m_events = events;
+      m_blogs = blogs;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Sink receiving the events.
+    *
+    * @return FactoryEventSink
+    */
+   public FactoryEventSink getEvents(
+   )
+   {
+      return m_events;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject get(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Object     event = m_events.begin();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      DataObject data = null;
+
+      try
+      {
+         data = m_delegate.get(lId, lDomainId);
+         iRows = (data == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.get", getBlogId(data), iRows, bSuccess);
+         }
+      }
+
+      return data;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List getAll(
+      long lBlogId
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      List    lstEntries = null;
+
+      try
+      {
+         lstEntries = m_delegate.getAll(lBlogId);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getAll", lBlogId, iRows, bSuccess);
+         }
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Entry getLast(
+      long lBlogId
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      Entry   entry = null;
+
+      try
+      {
+         entry = m_delegate.getLast(lBlogId);
+         iRows = (entry == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getLast", lBlogId, iRows, bSuccess);
+         }
+      }
+
+      return entry;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<Long, Entry> getLast(
+      Collection<Long> colBlogIds
+   ) throws OSSException
+   {
+      Object           event = m_events.begin();
+      boolean          bSuccess = false;
+      int              iRows = 0;
+      Map<Long, Entry> mpEntries = null;
+
+      try
+      {
+         mpEntries = m_delegate.getLast(colBlogIds);
+         iRows = (mpEntries == null) ? 0 : mpEntries.size();
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getLastOfBlogs", DataObject.NEW_ID,
+                   iRows, bSuccess);
+         }
+      }
+
+      return mpEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getCount(
+      long lBlogId
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iCount = 0;
+
+      try
+      {
+         iCount = m_delegate.getCount(lBlogId);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getCount", lBlogId, 0, bSuccess);
+         }
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getByMonth(
+      long lBlogId,
+      int  iYear,
+      int  iMonth
+   ) throws OSSException
+   {
+      Object      event = m_events.begin();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries = null;
+
+      try
+      {
+         lstEntries = m_delegate.getByMonth(lBlogId, iYear, iMonth);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getByMonth", lBlogId, iRows, bSuccess);
+         }
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<EntryMonth> getMonthCounts(
+      long lBlogId
+   ) throws OSSException
+   {
+      Object           event = m_events.begin();
+      boolean          bSuccess = false;
+      List<EntryMonth> lstMonths = null;
+
+      try
+      {
+         lstMonths = m_delegate.getMonthCounts(lBlogId);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getMonthCounts", lBlogId, 0, bSuccess);
+         }
+      }
+
+      return lstMonths;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Timestamp getLastModified(
+      long lBlogId
+   ) throws OSSException
+   {
+      Object    event = m_events.begin();
+      boolean   bSuccess = false;
+      Timestamp lastModified = null;
+
+      try
+      {
+         lastModified = m_delegate.getLastModified(lBlogId);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getLastModified", lBlogId, 0, bSuccess);
+         }
+      }
+
+      return lastModified;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getModifiedSince(
+      long      lBlogId,
+      Timestamp modifiedSince
+   ) throws OSSException
+   {
+      Object      event = m_events.begin();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries = null;
+
+      try
+      {
+         lstEntries = m_delegate.getModifiedSince(lBlogId, modifiedSince);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getModifiedSince", lBlogId, iRows,
+                   bSuccess);
+         }
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      Object    event = m_events.begin();
+      boolean   bSuccess = false;
+      int       iRows = 0;
+      EntryPage page = null;
+
+      try
+      {
+         page = m_delegate.getPage(lBlogId, cursor, iLimit);
+         iRows = getSize(page);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getPage", lBlogId, iRows, bSuccess);
+         }
+      }
+
+      return page;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getAll(
+      long                 lBlogId,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      Object      event = m_events.begin();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries = null;
+
+      try
+      {
+         lstEntries = m_delegate.getAll(lBlogId, fields);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getAllFields", lBlogId, iRows,
+                   bSuccess);
+         }
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getPage(
+      long                 lBlogId,
+      EntryPageCursor      cursor,
+      int                  iLimit,
+      EnumSet<EntryFields> fields
+   ) throws OSSException
+   {
+      Object    event = m_events.begin();
+      boolean   bSuccess = false;
+      int       iRows = 0;
+      EntryPage page = null;
+
+      try
+      {
+         page = m_delegate.getPage(lBlogId, cursor, iLimit, fields);
+         iRows = getSize(page);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getPageFields", lBlogId, iRows,
+                   bSuccess);
+         }
+      }
+
+      return page;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> getSummaries(
+      long lBlogId
+   ) throws OSSException
+   {
+      Object      event = m_events.begin();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries = null;
+
+      try
+      {
+         lstEntries = m_delegate.getSummaries(lBlogId);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getSummaries", lBlogId, iRows,
+                   bSuccess);
+         }
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public EntryPage getSummaryPage(
+      long            lBlogId,
+      EntryPageCursor cursor,
+      int             iLimit
+   ) throws OSSException
+   {
+      Object    event = m_events.begin();
+      boolean   bSuccess = false;
+      int       iRows = 0;
+      EntryPage page = null;
+
+      try
+      {
+         page = m_delegate.getSummaryPage(lBlogId, cursor, iLimit);
+         iRows = getSize(page);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getSummaryPage", lBlogId, iRows,
+                   bSuccess);
+         }
+      }
+
+      return page;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String getComments(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      String  strComments = null;
+
+      try
+      {
+         strComments = m_delegate.getComments(lId, lDomainId);
+         iRows = (strComments == null) ? 0 : 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.getComments", DataObject.NEW_ID, iRows,
+                   bSuccess);
+         }
+      }
+
+      return strComments;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int forEach(
+      long         lBlogId,
+      EntryHandler handler
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      int     iCount = 0;
+
+      try
+      {
+         iCount = m_delegate.forEach(lBlogId, handler);
+         iRows = iCount;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.forEach", lBlogId, iRows, bSuccess);
+         }
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      Object     event = m_events.begin();
+      boolean    bSuccess = false;
+      int        iRows = 0;
+      DataObject created = null;
+
+      try
+      {
+         created = m_delegate.create(data);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.create", getBlogId(data), iRows,
+                   bSuccess);
+         }
+      }
+
+      return created;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+      int     iCount = 0;
+
+      try
+      {
+         iCount = m_delegate.create(colDataObject);
+         iRows = iCount;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.createCollection", DataObject.NEW_ID,
+                   iRows, bSuccess);
+         }
+      }
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> createAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      Object      event = m_events.begin();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries = null;
+
+      try
+      {
+         lstEntries = m_delegate.createAll(colEntries, iBatchSize);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.createAll", DataObject.NEW_ID, iRows,
+                   bSuccess);
+         }
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> saveAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      Object      event = m_events.begin();
+      boolean     bSuccess = false;
+      int         iRows = 0;
+      List<Entry> lstEntries = null;
+
+      try
+      {
+         lstEntries = m_delegate.saveAll(colEntries, iBatchSize);
+         iRows = getSize(lstEntries);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.saveAll", DataObject.NEW_ID, iRows,
+                   bSuccess);
+         }
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      Object               event = m_events.begin();
+      boolean              bSuccess = false;
+      int                  iRows = 0;
+      ModifiableDataObject saved = null;
+
+      try
+      {
+         saved = m_delegate.save(data);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.save", getBlogId(data), iRows,
+                   bSuccess);
+         }
+      }
+
+      return saved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int deleteAll(
+      Collection<Long> colIds,
+      long             lDomainId,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+
+      try
+      {
+         iRows = m_delegate.deleteAll(colIds, lDomainId, iBatchSize);
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.deleteAll", DataObject.NEW_ID, iRows, 
+                   bSuccess);
+         }
+      }
+
+      return iRows;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      Object  event = m_events.begin();
+      boolean bSuccess = false;
+      int     iRows = 0;
+
+      try
+      {
+         m_delegate.delete(lId, lDomainId);
+         iRows = 1;
+         bSuccess = true;
+      }
+      finally
+      {
+         if (event != null)
+         {
+            commit(event, "EntryFactory.delete", DataObject.NEW_ID, iRows,
+                   bSuccess);
+         }
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Record event for the finished call of an operation including folder of 
+    * the accessed blog if it is known.
+    *
+    * @param event - event returned by begin
+    * @param strOperation - name of the called operation 
+    * @param lBlogId - id of the blog the operation has accessed or 
+    *                  DataObject.NEW_ID if it is not known 
+    * @param iRows - number of data objects returned or processed by the call
+    * @param bSuccess - true if the call has succeeded
+    */
+   protected void commit(
+      Object  event,
+      String  strOperation,
+      long    lBlogId,
+      int     iRows,
+      boolean bSuccess
+   )
+   {
+      String strFolder = null;
+
+      if ((m_blogs != null) && (lBlogId != DataObject.NEW_ID))
+      {
+         strFolder = m_blogs.getFolder(lBlogId);
+      }
+      m_events.commit(event, strOperation, lBlogId, strFolder, iRows, 
+                      bSuccess);
+   }
+
+   /**
+    * Get id of the blog the entry belongs to.
+    *
+    * @param data - entry, can be null
+    * @return long - id of the blog or DataObject.NEW_ID if it is not known
+    */
+   protected static long getBlogId(
+      DataObject data
+   )
+   {
+      return (data instanceof Entry) ? ((Entry)data).getParentId() 
+                                     : DataObject.NEW_ID;
+   }
+
+   /**
+    * Get number of data objects in the collection.
+    *
+    * @param colData - collection to get the size of, can be null
+    * @return int - number of data objects
+    */
+   protected static int getSize(
+      Collection<?> colData
+   )
+   {
+      return (colData == null) ? 0 : colData.size();
+   }
+
+   /**
+    * Get number of entries on the page.
+    *
+    * @param page - page to get the size of, can be null
+    * @return int - number of entries
+    */
+   protected static int getSize(
+      EntryPage page
+   )
+   {
+      return (page == null) ? 0 : getSize(page.getEntries());
+   }
+}
@@ -0,0 +1,834 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * In-process inverted index of caption and comments of entries. Every blog 
+ * has its own posting lists so that searching a blog never touches entries of
+ * other blogs. Posting lists are kept as arrays of entry ids sorted in 
+ * ascending order with the frequency of the term in each entry, new entries 
+ * have usually the highest id so they are just appended.
+ * 
+ * Results are ranked using BM25 with terms from caption counted several times.
+ * The index can be updated concurrently with searching, it can be saved to a
+ * stream and loaded back so that it doesn't have to be built from the 
+ * persistence store every time the application starts.
+ *
+ * @author bastafidli
+ */
+public class EntryIndex
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Terms of a single indexed entry.
+    */
+   protected static class Document
+   {
+      /**
+       * Id of the blog the entry belongs to.
+       */
+      protected final long m_lBlogId;
+
+      /**
+       * Distinct terms of the entry.
+       */
+      protected final String[] m_arrTerms;
+
+      /**
+       * Frequencies of the terms in the entry.
+       */
+      protected final int[] m_arrFrequencies;
+
+      /**
+       * Number of all terms of the entry.
+       */
+      protected final int m_iLength;
+
+      /**
+       * Create new document.
+       *
+       * @param lBlogId - id of the blog the entry belongs to
+       * @param arrTerms - distinct terms of the entry
+       * @param arrFrequencies - frequencies of the terms in the entry
+       */
+      protected Document(
+         long     lBlogId,
+         String[] arrTerms,
+         int[]    arrFrequencies
+      )
+      {
+         int iLength = 0;
+
+         m_lBlogId = lBlogId;
+         m_arrTerms = arrTerms;
+         m_arrFrequencies = arrFrequencies;
+         for (int iFrequency : arrFrequencies)
+         {
+            iLength += iFrequency;
+         }
+         m_iLength = iLength;
+      }
+   }
+
+   /**
+    * Entries containing a term sorted by their ids.
+    */
+   protected static class PostingList
+   {
+      /**
+       * Term of the posting list shared by all documents containing it.
+       */
+      protected final String m_strTerm;
+
+      /**
+       * Ids of entries containing the term in ascending order.
+       */
+      protected long[] m_arrIds = new long[4];
+
+      /**
+       * Frequencies of the term in the entries.
+       */
+      protected int[] m_arrFrequencies = new int[4];
+
+      /**
+       * Number of entries in the posting list.
+       */
+      protected int m_iSize;
+
+      /**
+       * Create new empty posting list.
+       *
+       * @param strTerm - term of the posting list
+       */
+      protected PostingList(
+         String strTerm
+      )
+      {
+         m_strTerm = strTerm;
+      }
+
+      /**
+       * Add entry to the posting list.
+       *
+       * @param lId - id of the entry
+       * @param iFrequency - frequency of the term in the entry
+       */
+      protected void add(
+         long lId,
+         int  iFrequency
+      )
+      {
+         int iPosition;
+
+         if ((m_iSize == 0) || (m_arrIds[m_iSize - 1] < lId))
+         {
+            iPosition = m_iSize;
+         }
+         else
+         {
+            iPosition = Arrays.binarySearch(m_arrIds, 0, m_iSize, lId);
+            if (iPosition >= 0)
+            {
+               m_arrFrequencies[iPosition] = iFrequency;
+               return;
+            }
+            iPosition = -iPosition - 1;
+         }
+         if (m_iSize == m_arrIds.length)
+         {
+            m_arrIds = Arrays.copyOf(m_arrIds, m_iSize * 2);
+            m_arrFrequencies = Arrays.copyOf(m_arrFrequencies, m_iSize * 2);
+         }
+         System.arraycopy(m_arrIds, iPosition, m_arrIds, iPosition + 1, 
+                          m_iSize - iPosition);
+         System.arraycopy(m_arrFrequencies, iPosition, m_arrFrequencies, 
+                          iPosition + 1, m_iSize - iPosition);
+         m_arrIds[iPosition] = lId;
+         m_arrFrequencies[iPosition] = iFrequency;
+         m_iSize++;
+      }
+
+      /**
+       * Remove entry from the posting list.
+       *
+       * @param lId - id of the entry
+       */
+      protected void remove(
+         long lId
+      )
+      {
+         int iPosition = Arrays.binarySearch(m_arrIds, 0, m_iSize, lId);
+
+         if (iPosition >= 0)
+         {
+            System.arraycopy(m_arrIds, iPosition + 1, m_arrIds, iPosition, 
+                             m_iSize - iPosition - 1);
+            System.arraycopy(m_arrFrequencies, iPosition + 1, m_arrFrequencies, 
+                             iPosition, m_iSize - iPosition - 1);
+            m_iSize--;
+         }
+      }
+   }
+
+   /**
+    * Posting lists of entries of a single blog.
+    */
+   protected static class BlogIndex
+   {
+      /**
+       * Posting lists by their terms.
+       */
+      protected final Map<String, PostingList> m_postings = new HashMap<>();
+
+      /**
+       * Ids of entries of the blog in the index.
+       */
+      protected final Set<Long> m_setDocumentIds = new HashSet<>();
+
+      /**
+       * Number of all terms of all entries of the blog in the index.
+       */
+      protected long m_lTotalLength;
+   }
+
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * How many times is each term from caption counted compared to the terms 
+    * from comments.
+    */
+   public static final int CAPTION_WEIGHT = 3;
+
+   /**
+    * Minimal length of an indexed term.
+    */
+   public static final int MIN_TERM_LENGTH = 2;
+
+   /**
+    * Version of the format in which the index is saved.
+    */
+   protected static final int FORMAT_VERSION = 1;
+
+   /**
+    * BM25 parameter controlling how quickly the score saturates with growing
+    * frequency of a term.
+    */
+   protected static final double BM25_K1 = 1.2;
+
+   /**
+    * BM25 parameter controlling how much is the score normalized by the 
+    * length of the entry.
+    */
+   protected static final double BM25_B = 0.75;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Lock protecting the index, searches can run concurrently.
+    */
+   protected final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+
+   /**
+    * Indexed entries by their ids.
+    */
+   protected Map<Long, Document> m_documents = new HashMap<>();
+
+   /**
+    * Indexes of blogs by their ids.
+    */
+   protected Map<Long, BlogIndex> m_blogs = new HashMap<>();
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Add entry to the index or replace its previous version.
+    *
+    * @param data - entry to add, it has to be already stored in the 
+    *               persistence store
+    * @throws OSSException - an error has occurred loading comments of the 
+    *                        entry
+    */
+   public void add(
+      Entry data
+   ) throws OSSException
+   {
+      Map<String, Integer> mpTerms;
+
+      mpTerms = getTerms(data.getCaption(), data.fetchComments());
+      m_lock.writeLock().lock();
+      try
+      {
+         addDocument(data.getId(), data.getParentId(), mpTerms);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Add entries to the index or replace their previous versions.
+    *
+    * @param colEntries - entries to add
+    * @throws OSSException - an error has occurred loading comments of the 
+    *                        entries
+    */
+   public void addAll(
+      Collection<Entry> colEntries
+   ) throws OSSException
+   {
+      for (Entry data : colEntries)
+      {
+         add(data);
+      }
+   }
+
+   /**
+    * Remove entry from the index.
+    *
+    * @param lId - id of the entry to remove
+    * @return boolean - true if the entry was indexed
+    */
+   public boolean remove(
+      long lId
+   )
+   {
+      m_lock.writeLock().lock();
+      try
+      {
+         return removeDocument(lId);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Remove all entries of a blog from the index, e.g. when the blog is 
+    * deleted.
+    *
+    * @param lBlogId - id of the blog
+    */
+   public void removeBlog(
+      long lBlogId
+   )
+   {
+      m_lock.writeLock().lock();
+      try
+      {
+         removeBlogDocuments(lBlogId);
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Replace all entries of a blog with entries of the same blog from another
+    * index, e.g. index built from the persistence store while this one was 
+    * being searched. Searches see either all old or all new entries of the 
+    * blog, never a partially built index.
+    *
+    * @param lBlogId - id of the blog
+    * @param source - index to take the entries of the blog from, it cannot be
+    *                 used anymore since it shares its data with this index
+    */
+   public void replaceBlog(
+      long       lBlogId,
+      EntryIndex source
+   )
+   {
+      BlogIndex blog = source.m_blogs.get(lBlogId);
+
+      m_lock.writeLock().lock();
+      try
+      {
+         removeBlogDocuments(lBlogId);
+         if (blog != null)
+         {
+            for (Long lId : blog.m_setDocumentIds)
+            {
+               // The entry may have been moved from another blog
+               removeDocument(lId);
+               m_documents.put(lId, source.m_documents.get(lId));
+            }
+            m_blogs.put(lBlogId, blog);
+         }
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Remove all entries from the index.
+    */
+   public void clear(
+   )
+   {
+      m_lock.writeLock().lock();
+      try
+      {
+         m_documents.clear();
+         m_blogs.clear();
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Find entries of a blog containing any of the terms of the query.
+    *
+    * @param lBlogId - id of the blog to search
+    * @param strQuery - query containing terms to search for
+    * @param iMaxResults - maximal number of returned entries
+    * @return List - ids of the found entries ordered from the most relevant 
+    *                one, never null
+    */
+   public List<Long> search(
+      long   lBlogId,
+      String strQuery,
+      int    iMaxResults
+   )
+   {
+      Map<Long, double[]>                      mpScores = new HashMap<>();
+      PriorityQueue<Map.Entry<Long, double[]>> pqBest;
+      List<Long>                               lstResults;
+      BlogIndex                                blog;
+      PostingList                              posting;
+      int                                      iDocumentCount;
+      double                                   dAverageLength;
+      double                                   dIdf;
+      double                                   dFrequency;
+      double[]                                 arrScore;
+
+      if (iMaxResults <= 0)
+      {
+         throw new IllegalArgumentException("Maximal number of results has to"
+                                            + " be positive");
+      }
+      m_lock.readLock().lock();
+      try
+      {
+         blog = m_blogs.get(lBlogId);
+         if ((blog == null) || (strQuery == null))
+         {
+            return Collections.emptyList();
+         }
+         iDocumentCount = blog.m_setDocumentIds.size();
+         dAverageLength = (double)blog.m_lTotalLength / iDocumentCount;
+         for (String strTerm : getTerms(strQuery, null).keySet())
+         {
+            posting = blog.m_postings.get(strTerm);
+            if (posting != null)
+            {
+               dIdf = Math.log(1 + (iDocumentCount - posting.m_iSize + 0.5)
+                                   / (posting.m_iSize + 0.5));
+               for (int iIndex = 0; iIndex < posting.m_iSize; iIndex++)
+               {
+                  dFrequency = posting.m_arrFrequencies[iIndex];
+                  arrScore = mpScores.get(posting.m_arrIds[iIndex]);
+                  if (arrScore == null)
+                  {
+                     arrScore = new double[1];
+                     mpScores.put(posting.m_arrIds[iIndex], arrScore);
+                  }
+                  arrScore[0] += dIdf * dFrequency * (BM25_K1 + 1) 
+                                 / (dFrequency + BM25_K1 * (1 - BM25_B + BM25_B 
+                                    * m_documents.get(
+                                         posting.m_arrIds[iIndex]).m_iLength 
+                                    / dAverageLength));
+               }
+            }
+         }
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+
+      // Keep only the best results, the worst one is at the head of the queue
+      pqBest = new PriorityQueue<>(Math.min(iMaxResults, mpScores.size()) + 1,
+                                   new Comparator<Map.Entry<Long, double[]>>()
+      {
+         @Override
+         public int compare(
+            Map.Entry<Long, double[]> first,
+            Map.Entry<Long, double[]> second
+         )
+         {
+            int iCompare = Double.compare(first.getValue()[0], 
+                                          second.getValue()[0]);
+
+            // Prefer more recent entries with the same score
+            return (iCompare != 0) ? iCompare 
+                                   : first.getKey().compareTo(second.getKey());
+         }
+      });
+      for (Map.Entry<Long, double[]> score : mpScores.entrySet())
+      {
+         pqBest.add(score);
+         if (pqBest.size() > iMaxResults)
+         {
+            pqBest.poll();
+         }
+      }
+      lstResults = new ArrayList<>(pqBest.size());
+      while (!pqBest.isEmpty())
+      {
+         lstResults.add(pqBest.poll().getKey());
+      }
+      Collections.reverse(lstResults);
+
+      return lstResults;
+   }
+
+   /**
+    * Check if the entry is indexed.
+    *
+    * @param lId - id of the entry
+    * @return boolean - true if the entry is indexed
+    */
+   public boolean contains(
+      long lId
+   )
+   {
+      m_lock.readLock().lock();
+      try
+      {
+         return m_documents.containsKey(lId);
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Get number of indexed entries.
+    *
+    * @return int - number of indexed entries
+    */
+   public int size(
+   )
+   {
+      m_lock.readLock().lock();
+      try
+      {
+         return m_documents.size();
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Save the index to the stream so that it can be loaded later without 
+    * reading all entries from the persistence store.
+    *
+    * @param out - stream to save the index to, it is not closed
+    * @throws IOException - an error has occurred
+    */
+   public void save(
+      OutputStream out
+   ) throws IOException
+   {
+      DataOutputStream dataOut = new DataOutputStream(out);
+      Document         document;
+
+      m_lock.readLock().lock();
+      try
+      {
+         dataOut.writeInt(FORMAT_VERSION);
+         dataOut.writeInt(m_documents.size());
+         for (Map.Entry<Long, Document> entry : m_documents.entrySet())
+         {
+            document = entry.getValue();
+            dataOut.writeLong(entry.getKey());
+            dataOut.writeLong(document.m_lBlogId);
+            dataOut.writeInt(document.m_arrTerms.length);
+            for (int iIndex = 0; iIndex < document.m_arrTerms.length; iIndex++)
+            {
+               dataOut.writeUTF(document.m_arrTerms[iIndex]);
+               dataOut.writeInt(document.m_arrFrequencies[iIndex]);
+            }
+         }
+      }
+      finally
+      {
+         m_lock.readLock().unlock();
+      }
+      dataOut.flush();
+   }
+
+   /**
+    * Replace content of the index with index previously saved to the stream.
+    *
+    * @param in - stream to load the index from, it is not closed
+    * @throws IOException - an error has occurred, the index is not changed
+    */
+   public void load(
+      InputStream in
+   ) throws IOException
+   {
+      DataInputStream      dataIn = new DataInputStream(in);
+      EntryIndex           loaded = new EntryIndex();
+      Map<String, Integer> mpTerms;
+      int                  iVersion;
+      int                  iDocumentCount;
+      int                  iTermCount;
+      long                 lId;
+      long                 lBlogId;
+
+      iVersion = dataIn.readInt();
+      if (iVersion != FORMAT_VERSION)
+      {
+         throw new IOException("Unsupported version of saved index " + iVersion);
+      }
+      iDocumentCount = dataIn.readInt();
+      for (int iDocument = 0; iDocument < iDocumentCount; iDocument++)
+      {
+         lId = dataIn.readLong();
+         lBlogId = dataIn.readLong();
+         iTermCount = dataIn.readInt();
+         mpTerms = new LinkedHashMap<>(iTermCount * 2);
+         for (int iTerm = 0; iTerm < iTermCount; iTerm++)
+         {
+            mpTerms.put(dataIn.readUTF(), dataIn.readInt());
+         }
+         loaded.addDocument(lId, lBlogId, mpTerms);
+      }
+
+      m_lock.writeLock().lock();
+      try
+      {
+         m_documents = loaded.m_documents;
+         m_blogs = loaded.m_blogs;
+      }
+      finally
+      {
+         m_lock.writeLock().unlock();
+      }
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Split the text into lower case terms consisting of letters and digits.
+    *
+    * @param strCaption - caption of the entry, its terms are counted 
+    *                     CAPTION_WEIGHT times, can be null
+    * @param strComments - comments of the entry, can be null
+    * @return Map - frequencies of the terms
+    */
+   protected static Map<String, Integer> getTerms(
+      String strCaption,
+      String strComments
+   )
+   {
+      Map<String, Integer> mpTerms = new LinkedHashMap<>();
+
+      addTerms(strCaption, CAPTION_WEIGHT, mpTerms);
+      addTerms(strComments, 1, mpTerms);
+
+      return mpTerms;
+   }
+
+   /**
+    * Add terms of the text to the frequencies of terms.
+    *
+    * @param strText - text to split into terms, can be null
+    * @param iWeight - how many times is each term counted
+    * @param mpTerms - frequencies of the terms to update
+    */
+   protected static void addTerms(
+      String               strText,
+      int                  iWeight,
+      Map<String, Integer> mpTerms
+   )
+   {
+      String  strTerm;
+      Integer iFrequency;
+      int     iStart = -1;
+
+      if (strText != null)
+      {
+         for (int iIndex = 0; iIndex <= strText.length(); iIndex++)
+         {
+            if ((iIndex < strText.length()) 
+               && (Character.isLetterOrDigit(strText.charAt(iIndex))))
+            {
+               if (iStart == -1)
+               {
+                  iStart = iIndex;
+               }
+            }
+            else if (iStart != -1)
+            {
+               if (iIndex - iStart >= MIN_TERM_LENGTH)
+               {
+                  strTerm = strText.substring(iStart, iIndex).toLowerCase(
+                                                                 Locale.ROOT);
+                  iFrequency = mpTerms.get(strTerm);
+                  mpTerms.put(strTerm, (iFrequency == null) 
+                                       ? iWeight : iFrequency + iWeight);
+               }
+               iStart = -1;
+            }
+         }
+      }
+   }
+
+   /**
+    * Add document to the index replacing its previous version. The caller has
+    * to hold the write lock.
+    *
+    * @param lId - id of the entry
+    * @param lBlogId - id of the blog the entry belongs to
+    * @param mpTerms - frequencies of the terms of the entry
+    */
+   protected void addDocument(
+      long                 lId,
+      long                 lBlogId,
+      Map<String, Integer> mpTerms
+   )
+   {
+      BlogIndex   blog;
+      PostingList posting;
+      Document    document;
+      String[]    arrTerms = new String[mpTerms.size()];
+      int[]       arrFrequencies = new int[mpTerms.size()];
+      int         iIndex = 0;
+
+      removeDocument(lId);
+      blog = m_blogs.get(lBlogId);
+      if (blog == null)
+      {
+         blog = new BlogIndex();
+         m_blogs.put(lBlogId, blog);
+      }
+      for (Map.Entry<String, Integer> term : mpTerms.entrySet())
+      {
+         posting = blog.m_postings.get(term.getKey());
+         if (posting == null)
+         {
+            posting = new PostingList(term.getKey());
+            blog.m_postings.put(posting.m_strTerm, posting);
+         }
+         posting.add(lId, term.getValue());
+         // Share the term with the posting list instead of keeping a copy
+         arrTerms[iIndex] = posting.m_strTerm;
+         arrFrequencies[iIndex++] = term.getValue();
+      }
+      document = new Document(lBlogId, arrTerms, arrFrequencies);
+      m_documents.put(lId, document);
+      blog.m_setDocumentIds.add(lId);
+      blog.m_lTotalLength += document.m_iLength;
+   }
+
+   /**
+    * Remove all documents of a blog from the index. The caller has to hold 
+    * the write lock.
+    *
+    * @param lBlogId - id of the blog
+    */
+   protected void removeBlogDocuments(
+      long lBlogId
+   )
+   {
+      BlogIndex blog = m_blogs.remove(lBlogId);
+
+      if (blog != null)
+      {
+         for (Long lId : blog.m_setDocumentIds)
+         {
+            m_documents.remove(lId);
+         }
+      }
+   }
+
+   /**
+    * Remove document from the index. The caller has to hold the write lock.
+    *
+    * @param lId - id of the entry
+    * @return boolean - true if the entry was indexed
+    */
+   protected boolean removeDocument(
+      long lId
+   )
+   {
+      Document    document = m_documents.remove(lId);
+      BlogIndex   blog;
+      PostingList posting;
+
+      if (document != null)
+      {
+         blog = m_blogs.get(document.m_lBlogId);
+         for (String strTerm : document.m_arrTerms)
+         {
+            posting = blog.m_postings.get(strTerm);
+            posting.remove(lId);
+            if (posting.m_iSize == 0)
+            {
+               blog.m_postings.remove(strTerm);
+            }
+         }
+         blog.m_setDocumentIds.remove(lId);
+         blog.m_lTotalLength -= document.m_iLength;
+         if (blog.m_setDocumentIds.isEmpty())
+         {
+            m_blogs.remove(document.m_lBlogId);
+         }
+      }
+
+      return document != null;
+   }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.search;
+
+import org.opensubsystems.chronicle.persist.BlogFactory;
+import org.opensubsystems.chronicle.persist.DelegatingBlogFactory;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Blog factory removing entries of deleted blogs from full-text index of 
+ * entries. The entries of a blog are deleted together with the blog in the 
+ * persistence store without being passed through the entry factory, so this 
+ * factory has to share the index with IndexingEntryFactory to keep it up to 
+ * date.
+ *
+ * @author bastafidli
+ */
+public class IndexingBlogFactory extends DelegatingBlogFactory
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Index of entries.
+    */
+   protected final EntryIndex m_index;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new indexing factory.
+    *
+    * @param delegate - factory used to access the persistence store
+    * @param index - index of entries to keep up to date
+    */
+   public IndexingBlogFactory(
+      BlogFactory delegate,
+      EntryIndex  index
+   )
+   {
+      super(delegate);
+
+      if (index == null)
+      {
+         throw new IllegalArgumentException("Index cannot be null");
+      }
+      m_index = index;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Index of entries.
+    *
+    * @return EntryIndex
+    */
+   public EntryIndex getIndex(
+   )
+   {
+      return m_index;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      m_delegate.delete(lId, lDomainId);
+      m_index.removeBlog(lId);
+   }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2003 - 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.DelegatingEntryFactory;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryHandler;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.data.ModifiableDataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Entry factory keeping full-text index of entries up to date. The index is 
+ * updated whenever entries are created, saved or deleted using this factory.
+ * Entries of blogs which already exist can be added to the index using the 
+ * index method, which reads them one by one from the persistence store.
+ * Entries of deleted blogs are removed from the index by IndexingBlogFactory
+ * sharing the same index.
+ *
+ * @author bastafidli
+ */
+public class IndexingEntryFactory extends DelegatingEntryFactory
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Number of entries sent to the persistence store at once when entries are
+    * created using the create method.
+    */
+   public static final int CREATE_BATCH_SIZE = 100;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Index of entries.
+    */
+   protected final EntryIndex m_index;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Create new indexing factory.
+    *
+    * @param delegate - factory used to access the persistence store
+    * @param index - index of entries to keep up to date
+    */
+   public IndexingEntryFactory(
+      EntryFactory delegate,
+      EntryIndex   index
+   )
+   {
+      super(delegate);
+
+      if (index == null)
+      {
+         throw new IllegalArgumentException("Index cannot be null");
+      }
+      m_index = index;
+   }
+
+   // Accessors ////////////////////////////////////////////////////////////////
+
+   /**
+    * Index of entries.
+    *
+    * @return EntryIndex
+    */
+   public EntryIndex getIndex(
+   )
+   {
+      return m_index;
+   }
+
+   // Logic ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Find entries of a blog containing any of the terms of the query.
+    *
+    * @param lBlogId - id of the blog to search
+    * @param strQuery - query containing terms to search for
+    * @param iMaxResults - maximal number of returned entries
+    * @return List - ids of the found entries ordered from the most relevant 
+    *                one, never null
+    * @see EntryIndex#search
+    */
+   public List<Long> search(
+      long   lBlogId,
+      String strQuery,
+      int    iMaxResults
+   )
+   {
+      return m_index.search(lBlogId, strQuery, iMaxResults);
+   }
+
+   /**
+    * Replace all entries of a blog in the index with entries read from the 
+    * persistence store. The entries are indexed separately and the index of 
+    * the blog is replaced once all of them were read so that searches never
+    * see the blog partially indexed. Changes made using this factory while 
+    * the blog is being read may be lost, so this should be used only to 
+    * build the index, e.g. when the application starts.
+    *
+    * @param lBlogId - id of the blog to index
+    * @return int - number of indexed entries
+    * @throws OSSException - an error has occurred, the index is not changed
+    */
+   public int index(
+      long lBlogId
+   ) throws OSSException
+   {
+      final EntryIndex rebuilt = new EntryIndex();
+      int              iCount;
+
+      iCount = m_delegate.forEach(lBlogId, new EntryHandler()
+      {
+         @Override
+         public boolean handle(
+            Entry data
+         ) throws OSSException
+         {
+            rebuilt.add(data);
+            return true;
+         }
+      });
+      m_index.replaceBlog(lBlogId, rebuilt);
+
+      return iCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public DataObject create(
+      DataObject data
+   ) throws OSSException
+   {
+      DataObject created = m_delegate.create(data);
+
+      if (created instanceof Entry)
+      {
+         m_index.add((Entry)created);
+      }
+
+      return created;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int create(
+      Collection<DataObject> colDataObject
+   ) throws OSSException
+   {
+      List<Entry> lstEntries = new ArrayList<>(colDataObject.size());
+      int         iCreated = 0;
+
+      for (DataObject data : colDataObject)
+      {
+         lstEntries.add((Entry)data);
+      }
+      // Create the entries using createAll so that the created entries with 
+      // their generated ids are known and can be indexed
+      if (!lstEntries.isEmpty())
+      {
+         iCreated = createAll(lstEntries, CREATE_BATCH_SIZE).size();
+      }
+
+      return iCreated;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> createAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      List<Entry> lstCreated = m_delegate.createAll(colEntries, iBatchSize);
+
+      m_index.addAll(lstCreated);
+
+      return lstCreated;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ModifiableDataObject save(
+      ModifiableDataObject data
+   ) throws OSSException
+   {
+      ModifiableDataObject saved = m_delegate.save(data);
+
+      if (saved instanceof Entry)
+      {
+         m_index.add((Entry)saved);
+      }
+
+      return saved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Entry> saveAll(
+      Collection<Entry> colEntries,
+      int               iBatchSize
+   ) throws OSSException
+   {
+      List<Entry> lstSaved = m_delegate.saveAll(colEntries, iBatchSize);
+
+      m_index.addAll(lstSaved);
+
+      return lstSaved;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int deleteAll(
+      Collection<Long> colIds,
+      long             lDomainId,
+      int              iBatchSize
+   ) throws OSSException
+   {
+      int iDeleted = m_delegate.deleteAll(colIds, lDomainId, iBatchSize);
+
+      for (Long lId : colIds)
+      {
+         m_index.remove(lId);
+      }
+
+      return iDeleted;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void delete(
+      long lId,
+      long lDomainId
+   ) throws OSSException
+   {
+      m_delegate.delete(lId, lDomainId);
+      m_index.remove(lId);
+   }
+}
@@ -24,6 +24,19 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 import org.opensubsystems.chronicle.data.BlogTest;
 import org.opensubsystems.chronicle.data.EntryTest;
+import org.opensubsystems.chronicle.data.StringDictionaryTest;
+import org.opensubsystems.chronicle.export.StaticSiteExporterTest;
+import org.opensubsystems.chronicle.feed.FeedWriterTest;
+import org.opensubsystems.chronicle.persist.archive.ArchivingEntryFactoryTest;
+import org.opensubsystems.chronicle.persist.async.AsyncEntryFactoryTest;
+import org.opensubsystems.chronicle.persist.cache.CachedBlogFactoryTest;
+import org.opensubsystems.chronicle.persist.cache.CachedEntryFactoryTest;
+import org.opensubsystems.chronicle.persist.db.BlogDatabaseFactoryTest;
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactoryTest;
+import org.opensubsystems.chronicle.persist.log.ChronicleLogTest;
+import org.opensubsystems.chronicle.persist.monitor.MonitoredEntryFactoryTest;
+import org.opensubsystems.chronicle.persist.monitor.TracedEntryFactoryTest;
+import org.opensubsystems.chronicle.persist.search.IndexingEntryFactoryTest;
 import org.opensubsystems.core.persist.jdbc.test.DatabaseTestSetup;
 import org.opensubsystems.core.persist.jdbc.test.DatabaseTestSuite;
 import org.opensubsystems.core.util.test.Tests;
@@ -88,5 +101,18 @@ public final class ChronicleTests extends Tests
    {
       suite.addTestSuite(BlogTest.class);
       suite.addTestSuite(EntryTest.class);
+      suite.addTestSuite(StringDictionaryTest.class);
+      suite.addTestSuite(BlogDatabaseFactoryTest.class);
+      suite.addTestSuite(EntryDatabaseFactoryTest.class);
+      suite.addTestSuite(CachedBlogFactoryTest.class);
+      suite.addTestSuite(CachedEntryFactoryTest.class);
+      suite.addTestSuite(IndexingEntryFactoryTest.class);
+      suite.addTestSuite(AsyncEntryFactoryTest.class);
+      suite.addTestSuite(FeedWriterTest.class);
+      suite.addTestSuite(MonitoredEntryFactoryTest.class);
+      suite.addTestSuite(TracedEntryFactoryTest.class);
+      suite.addTestSuite(StaticSiteExporterTest.class);
+      suite.addTestSuite(ArchivingEntryFactoryTest.class);
+      suite.addTestSuite(ChronicleLogTest.class);
    }   
 }
@@ -19,10 +19,15 @@
 
 package org.opensubsystems.chronicle.data;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.sql.Timestamp;
 import java.util.Date;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import org.opensubsystems.core.data.DataObject;
 import org.opensubsystems.core.data.ModifiableDataObject;
 import org.opensubsystems.core.data.ModifiableDataObjectTest;
 import org.opensubsystems.core.error.OSSException;
@@ -124,6 +129,34 @@ public class BlogTest extends ModifiableDataObjectTest
                             strField1, strField2, strField3);
    }
 
+   /**
+    * Serialize the data object and deserialize it back.
+    *
+    * @param data - data object to serialize
+    * @return Object - deserialized data object
+    * @throws Exception - an error has occurred
+    */
+   protected Object serializeAndDeserialize(
+      Object data
+   ) throws Exception
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream    out = new ObjectOutputStream(bytes);
+      ObjectInputStream     in;
+
+      out.writeObject(data);
+      out.close();
+      in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+      try
+      {
+         return in.readObject();
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
    // Tests ////////////////////////////////////////////////////////////////////
 
    /**
@@ -223,4 +256,49 @@ public class BlogTest extends ModifiableDataObjectTest
 		assertTrue("Is preformatted flag doesn't match", data5.getIsPreformated());
 		assertTrue("Is preformatted flag doesn't match", data6.getIsPreformated());
    }
+
+   /**
+    * Test that blog is serialized and deserialized without losing any data 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testSerialization(
+   ) throws Exception
+   {
+      Timestamp now = Timestamp.valueOf("2016-01-02 03:04:05.123456789");
+      Timestamp later = new Timestamp(now.getTime() + 1000);
+      Blog      data1 = new Blog(1, 11, now, later, "1value1", "1value2", 
+                                 "1value3\n", true);
+      Blog      data2 = new Blog(DataObject.NEW_ID, 22, null, null, "2value1", 
+                                 "", "\u017elu\u0165ou\u010dk\u00fd k\u016f\u0148");
+      Blog      data3 = new Blog(3, 33, now, now, "3value1", null, null, false);
+      Blog      copy;
+
+      copy = (Blog)serializeAndDeserialize(data1);
+      assertEquals("Blog id doesn't match", 1, copy.getId());
+      assertEquals("Blog domain id doesn't match", 11, copy.getDomainId());
+      assertEquals("Blog creation timestamp doesn't match", now, 
+                   copy.getCreationTimestamp());
+      assertEquals("Blog modification timestamp doesn't match", later, 
+                   copy.getModificationTimestamp());
+      assertTrue("Deserialized blog is not the same", data1.isSame(copy));
+      assertTrue("Blog preformatted flag doesn't match", 
+                 copy.getIsPreformated());
+
+      copy = (Blog)serializeAndDeserialize(data2);
+      assertEquals("Blog id doesn't match", DataObject.NEW_ID, copy.getId());
+      assertNull("Blog creation timestamp should be null", 
+                 copy.getCreationTimestamp());
+      assertNull("Blog modification timestamp should be null", 
+                 copy.getModificationTimestamp());
+      assertTrue("Deserialized blog is not the same", data2.isSame(copy));
+      assertEquals("Blog comments don't match", data2.getComments(), 
+                   copy.getComments());
+
+      copy = (Blog)serializeAndDeserialize(data3);
+      assertNull("Blog caption should be null", copy.getCaption());
+      assertNull("Blog comments should be null", copy.getComments());
+      assertFalse("Blog preformatted flag doesn't match", 
+                  copy.getIsPreformated());
+   }
 }
@@ -19,16 +19,24 @@
 
 package org.opensubsystems.chronicle.data;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.sql.Timestamp;
 import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import org.opensubsystems.core.data.DataObject;
 import org.opensubsystems.core.data.ModifiableDataObject;
 import org.opensubsystems.core.data.ModifiableDataObjectTest;
 import org.opensubsystems.core.error.OSSException;
+import org.opensubsystems.core.error.OSSInternalErrorException;
 
 /**
  * Tests for Entry class.
@@ -135,6 +143,34 @@ public class EntryTest extends ModifiableDataObjectTest
                              strField2 + strField3);
    }
 
+   /**
+    * Serialize the data object and deserialize it back.
+    *
+    * @param data - data object to serialize
+    * @return Object - deserialized data object
+    * @throws Exception - an error has occurred
+    */
+   protected Object serializeAndDeserialize(
+      Object data
+   ) throws Exception
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream    out = new ObjectOutputStream(bytes);
+      ObjectInputStream     in;
+
+      out.writeObject(data);
+      out.close();
+      in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+      try
+      {
+         return in.readObject();
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
    // Tests ////////////////////////////////////////////////////////////////////
 
    /**
@@ -321,4 +357,214 @@ public class EntryTest extends ModifiableDataObjectTest
 		assertTrue("Is preformatted flag doesn't match", data5.getIsPreformated());
 		assertTrue("Is preformatted flag doesn't match", data6.getIsPreformated());
    }
+
+   /**
+    * Test that the stored preformatted flag is used instead of examining the
+    * comments 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetIsPreformatedStored(
+   ) throws Exception
+   {
+      Timestamp now = new Timestamp((new Date()).getTime());
+      Entry     data1 = new Entry(1, 11, now, now, 1111, "1value1", "1value2", 
+                                  "1value3", "1value4", true);
+      Entry     data2 = new Entry(2, 22, now, now, 2222, "2value1", "2value2\n", 
+                                  "2value3", "2value4", false);
+
+      assertTrue("Stored preformatted flag was not used", 
+                 data1.getIsPreformated());
+      assertFalse("Stored preformatted flag was not used", 
+                  data2.getIsPreformated());
+   }
+
+   /**
+    * Test that entry is serialized and deserialized without losing any data 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testSerialization(
+   ) throws Exception
+   {
+      Timestamp now = Timestamp.valueOf("2016-01-02 03:04:05.123456789");
+      Timestamp later = new Timestamp(now.getTime() + 1000);
+      Entry     data1 = new Entry(1, 11, now, later, 1111, "1value1", 
+                                  "1value2\n", "1value3", "1value4", true);
+      Entry     data2 = new Entry(DataObject.NEW_ID, 22, null, null, 
+                                  DataObject.NEW_ID, "", 
+                                  "\u017elu\u0165ou\u010dk\u00fd k\u016f\u0148", 
+                                  null, null);
+      Entry     data3 = new Entry(3, 33, now, now, 3333, "3value1", null, 
+                                  "3value3", "3value4");
+      Entry     copy;
+
+      copy = (Entry)serializeAndDeserialize(data1);
+      assertEquals("Entry id doesn't match", 1, copy.getId());
+      assertEquals("Entry domain id doesn't match", 11, copy.getDomainId());
+      assertEquals("Entry creation timestamp doesn't match", now, 
+                   copy.getCreationTimestamp());
+      assertEquals("Entry modification timestamp doesn't match", later, 
+                   copy.getModificationTimestamp());
+      assertTrue("Deserialized entry is not the same", data1.isSame(copy));
+      assertTrue("Entry preformatted flag doesn't match", 
+                 copy.getIsPreformated());
+
+      copy = (Entry)serializeAndDeserialize(data2);
+      assertEquals("Entry id doesn't match", DataObject.NEW_ID, copy.getId());
+      assertNull("Entry creation timestamp should be null", 
+                 copy.getCreationTimestamp());
+      assertNull("Entry image URL should be null", copy.getImageURL());
+      assertNull("Entry target URL should be null", copy.getTargetURL());
+      assertTrue("Deserialized entry is not the same", data2.isSame(copy));
+
+      // Comments which were not loaded yet have to be serialized as well
+      data3.setCommentsLoader(new Entry.CommentsLoader()
+      {
+         @Override
+         public String loadComments(
+            Entry entry
+         )
+         {
+            return "3value2";
+         }
+      });
+      copy = (Entry)serializeAndDeserialize(data3);
+      assertTrue("Deserialized entry should have comments", 
+                 copy.isCommentsLoaded());
+      assertEquals("Entry comments don't match", "3value2", copy.getComments());
+      assertEquals("Entry parent id doesn't match", 3333, copy.getParentId());
+   }
+
+   /**
+    * Test that comments are loaded only once by a single thread even when 
+    * many threads request them and that failed load can be retried
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testLazyComments(
+   ) throws Exception
+   {
+      Timestamp            now = Timestamp.valueOf("2016-01-02 03:04:05.0");
+      final Entry          data = new Entry(1, 11, now, now, 1111, "value1", 
+                                            null, "value3", "value4");
+      final AtomicInteger  iLoadCount = new AtomicInteger();
+      final CountDownLatch loading = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final String[]       arrComments = new String[2];
+      Thread[]             arrThreads = new Thread[2];
+
+      data.setCommentsLoader(new Entry.CommentsLoader()
+      {
+         @Override
+         public String loadComments(
+            Entry entry
+         ) throws OSSException
+         {
+            if (iLoadCount.incrementAndGet() == 1)
+            {
+               throw new OSSInternalErrorException("Load failed");
+            }
+            loading.countDown();
+            try
+            {
+               release.await();
+            }
+            catch (InterruptedException ieExc)
+            {
+               throw new OSSInternalErrorException(ieExc);
+            }
+            return "value2";
+         }
+      });
+
+      try
+      {
+         data.fetchComments();
+         fail("Failure to load comments was not reported");
+      }
+      catch (OSSException ossExc)
+      {
+         // Expected
+      }
+      assertFalse("Comments should not be loaded", data.isCommentsLoaded());
+
+      for (int iIndex = 0; iIndex < arrThreads.length; iIndex++)
+      {
+         final int iThread = iIndex;
+
+         arrThreads[iIndex] = new Thread()
+         {
+            @Override
+            public void run(
+            )
+            {
+               arrComments[iThread] = data.getComments();
+            }
+         };
+         arrThreads[iIndex].start();
+         if (iIndex == 0)
+         {
+            loading.await();
+         }
+      }
+      // The other thread waits for the load without holding lock of the entry
+      synchronized (data)
+      {
+         assertFalse("Comments should not be loaded", data.isCommentsLoaded());
+      }
+      release.countDown();
+      for (Thread thread : arrThreads)
+      {
+         thread.join();
+      }
+      assertEquals("Comments were loaded more than once", 2, iLoadCount.get());
+      assertEquals("Entry comments don't match", "value2", arrComments[0]);
+      assertEquals("Entry comments don't match", "value2", arrComments[1]);
+      assertTrue("Comments should be loaded", data.isCommentsLoaded());
+   }
+
+   /**
+    * Test that entries are compared by content of their comments even when 
+    * the comments were not loaded yet
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testIsSameLazyComments(
+   ) throws Exception
+   {
+      Timestamp now = Timestamp.valueOf("2016-01-02 03:04:05.0");
+      Entry     data = new Entry(1, 11, now, now, 1111, "value1", null, 
+                                 "value3", "value4");
+      Entry     other = new Entry(1, 11, now, now, 1111, "value1", null, 
+                                  "value3", "value4");
+
+      data.setCommentsLoader(new Entry.CommentsLoader()
+      {
+         @Override
+         public String loadComments(
+            Entry entry
+         )
+         {
+            return "value2";
+         }
+      });
+      other.setCommentsLoader(new Entry.CommentsLoader()
+      {
+         @Override
+         public String loadComments(
+            Entry entry
+         )
+         {
+            return "other value2";
+         }
+      });
+      assertFalse("Entries with different comments should not be the same", 
+                  data.isSame(other));
+      assertTrue("Entries with the same comments should be the same", 
+                 data.isSame(new Entry(2, 11, now, 
+                                       new Timestamp(now.getTime() + 1000), 
+                                       1111, "value1", "value2", "value3", 
+                                       "value4")));
+   }
 }
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactory;
+
+/**
+ * Tests for StringDictionary class.
+ * 
+ * @author bastafidli
+ */
+public class StringDictionaryTest extends TestCase
+{
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for StringDictionaryTest.
+    * 
+    * @param strName - name of the test
+    */
+   public StringDictionaryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * Create data source, which cannot be used to connect to any database. 
+    *
+    * @return DataSource - data source failing every call
+    */
+   protected static DataSource createDataSource(
+   )
+   {
+      return (DataSource)Proxy.newProxyInstance(
+                StringDictionaryTest.class.getClassLoader(), 
+                new Class<?>[] {DataSource.class}, 
+                new InvocationHandler()
+                {
+                   @Override
+                   public Object invoke(
+                      Object   proxy,
+                      Method   method,
+                      Object[] arrArgs
+                   ) throws Throwable
+                   {
+                      throw new UnsupportedOperationException(
+                                   method.getName());
+                   }
+                });
+   }
+
+   /**
+    * Create result set returning the specified rows of entry columns. Every 
+    * call returns a new instance of the string as a JDBC driver would do.
+    *
+    * @param lstRows - values of the columns of every row in the order of 
+    *                  EntryFields
+    * @return ResultSet - result set positioned before the first row
+    */
+   protected static ResultSet createResultSet(
+      final List<Object[]> lstRows
+   )
+   {
+      return (ResultSet)Proxy.newProxyInstance(
+                StringDictionaryTest.class.getClassLoader(), 
+                new Class<?>[] {ResultSet.class}, 
+                new InvocationHandler()
+                {
+                   private int m_iRow = -1;
+
+                   @Override
+                   public Object invoke(
+                      Object   proxy,
+                      Method   method,
+                      Object[] arrArgs
+                   ) throws Throwable
+                   {
+                      Object value = null;
+
+                      if ("next".equals(method.getName()))
+                      {
+                         m_iRow++;
+                         value = m_iRow < lstRows.size();
+                      }
+                      else if (method.getName().startsWith("get"))
+                      {
+                         value = lstRows.get(m_iRow)[(Integer)arrArgs[0] - 1];
+                         if (value instanceof String)
+                         {
+                            value = new String((String)value);
+                         }
+                      }
+                      return value;
+                   }
+                });
+   }
+
+   /**
+    * Load entries from the rows using factory with the specified dictionary 
+    * and count distinct instances of their image and target URLs, which 
+    * determines how many copies of the URLs stay in the heap.
+    *
+    * @param lstRows - values of the columns of every row
+    * @param dictionary - dictionary used by the factory
+    * @return int - number of distinct instances of the URLs
+    * @throws Exception - an error has occurred
+    */
+   protected static int countLoadedURLInstances(
+      List<Object[]>   lstRows,
+      StringDictionary dictionary
+   ) throws Exception
+   {
+      Set<String>          setInstances;
+      EntryDatabaseFactory factory;
+      ResultSet            rsQueryResults;
+      Entry                entry;
+
+      setInstances = Collections.newSetFromMap(
+                        new IdentityHashMap<String, Boolean>());
+      factory = new EntryDatabaseFactory(createDataSource(), 1, dictionary);
+      rsQueryResults = createResultSet(lstRows);
+      while (rsQueryResults.next())
+      {
+         entry = factory.load(rsQueryResults, 1);
+         setInstances.add(entry.getImageURL());
+         setInstances.add(entry.getTargetURL());
+      }
+
+      return setInstances.size();
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that equal strings are replaced with single instance
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testCanonicalize(
+   ) throws Exception
+   {
+      StringDictionary dictionary = new StringDictionary(16, 10);
+      String           strFirst = new String("folder");
+      String           strSecond = new String("folder");
+      String           strLong = new String("very long folder");
+
+      assertEquals("Capacity should be rounded to power of two", 16, 
+                   new StringDictionary(10, 10).getCapacity());
+      assertNull("Null should be kept", dictionary.canonicalize(null));
+      assertSame("First string should be remembered", strFirst, 
+                 dictionary.canonicalize(strFirst));
+      assertSame("Equal string should be replaced", strFirst, 
+                 dictionary.canonicalize(strSecond));
+      assertSame("Long string should not be remembered", strLong, 
+                 dictionary.canonicalize(strLong));
+      assertNotSame("Long string should not be replaced", strLong, 
+                    dictionary.canonicalize(new String(strLong)));
+
+      dictionary.clear();
+      assertSame("Cleared dictionary should not replace strings", strSecond, 
+                 dictionary.canonicalize(strSecond));
+   }
+
+   /**
+    * Test that equal URLs loaded from different rows are returned as the same
+    * instance
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testLoadedEntriesShareStrings(
+   ) throws Exception
+   {
+      List<Object[]>       lstRows = new ArrayList<>();
+      List<Entry>          lstEntries = new ArrayList<>();
+      EntryDatabaseFactory factory;
+      ResultSet            rsQueryResults;
+
+      for (long lId = 1; lId <= 3; lId++)
+      {
+         lstRows.add(new Object[] {lId, 1L, null, null, 1L, "caption", 
+                                   "comments", 
+                                   "http://images.example.com/blog/1.png",
+                                   "http://www.example.com/", false});
+      }
+      factory = new EntryDatabaseFactory(createDataSource(), 1, 
+                                         new StringDictionary());
+      rsQueryResults = createResultSet(lstRows);
+      while (rsQueryResults.next())
+      {
+         lstEntries.add(factory.load(rsQueryResults, 1));
+      }
+
+      assertEquals("Not all rows were loaded", 3, lstEntries.size());
+      for (Entry entry : lstEntries)
+      {
+         assertEquals("Image URL was not loaded", 
+                      "http://images.example.com/blog/1.png", 
+                      entry.getImageURL());
+         assertSame("Image URL of every row should be the same instance", 
+                    lstEntries.get(0).getImageURL(), entry.getImageURL());
+         assertSame("Target URL of every row should be the same instance", 
+                    lstEntries.get(0).getTargetURL(), entry.getTargetURL());
+      }
+   }
+
+   /**
+    * Test that the dictionary evicts strings when it sees more strings than 
+    * its capacity
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testBounded(
+   ) throws Exception
+   {
+      StringDictionary dictionary = new StringDictionary(8, 100);
+      String           strFirst = "value0";
+      String           strLast = strFirst;
+
+      dictionary.canonicalize(strFirst);
+      for (int iIndex = 1; iIndex < 1000; iIndex++)
+      {
+         strLast = "value" + iIndex;
+         assertSame("New string should be remembered", strLast, 
+                    dictionary.canonicalize(strLast));
+      }
+      assertEquals("Capacity cannot grow", 8, dictionary.getCapacity());
+      assertSame("The most recent string should be kept", strLast, 
+                 dictionary.canonicalize(new String(strLast)));
+      assertNotSame("The first string should be evicted by the following ones", 
+                    strFirst, dictionary.canonicalize(new String(strFirst)));
+   }
+
+   /**
+    * Test that loading a batch of entries keeps only one instance of every 
+    * distinct URL instead of one for every row
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testLoadedBatchFootprint(
+   ) throws Exception
+   {
+      List<Object[]> lstRows = new ArrayList<>();
+
+      for (long lId = 1; lId <= 1000; lId++)
+      {
+         lstRows.add(new Object[] {lId, 1L, null, null, 1L, "caption", 
+                                   "comments", 
+                                   "http://images.example.com/blog/" 
+                                   + (lId % 5) + ".png",
+                                   "http://www.example.com/" + (lId % 3), 
+                                   false});
+      }
+
+      // Dictionary which doesn't keep any string shows the footprint without
+      // the dictionary
+      assertEquals("Every row should have its own copy without dictionary", 
+                   2000, countLoadedURLInstances(lstRows, 
+                                                 new StringDictionary(1, 0)));
+      assertEquals("Only distinct URLs should be kept with dictionary", 
+                   5 + 3, countLoadedURLInstances(lstRows, 
+                                                  new StringDictionary()));
+   }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase;
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactory;
+import org.opensubsystems.core.data.DataObject;
+
+/**
+ * Tests for StaticSiteExporter class.
+ * 
+ * @author bastafidli
+ */
+public class StaticSiteExporterTest extends ChronicleDatabaseTestCase
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory used to create entries.
+    */
+   protected EntryDatabaseFactory m_entryFactory;
+
+   /**
+    * Directory the blogs are exported to.
+    */
+   protected File m_directory;
+
+   /**
+    * Exporter being tested.
+    */
+   protected StaticSiteExporter m_exporter;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for StaticSiteExporterTest.
+    * 
+    * @param strName - name of the test
+    */
+   public StaticSiteExporterTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_entryFactory = new EntryDatabaseFactory(m_dataSource);
+      m_directory = Files.createTempDirectory("chronicle").toFile();
+      m_exporter = new StaticSiteExporter(m_blogFactory, m_entryFactory, 
+                                          m_directory, 2);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void tearDown(
+   ) throws Exception
+   {
+      delete(m_directory);
+      super.tearDown();
+   }
+
+   /**
+    * Delete file or directory including its content.
+    *
+    * @param file - file to delete
+    */
+   protected static void delete(
+      File file
+   )
+   {
+      File[] arrFiles = file.listFiles();
+
+      if (arrFiles != null)
+      {
+         for (File child : arrFiles)
+         {
+            delete(child);
+         }
+      }
+      file.delete();
+   }
+
+   /**
+    * Read exported page.
+    *
+    * @param blog - blog the page belongs to
+    * @param strName - name of the page
+    * @return String - content of the page
+    * @throws Exception - an error has occurred
+    */
+   protected String readPage(
+      Blog   blog,
+      String strName
+   ) throws Exception
+   {
+      return new String(Files.readAllBytes(
+                           new File(m_exporter.getBlogDirectory(blog), 
+                                    strName).toPath()), 
+                        StandardCharsets.UTF_8);
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that all pages are written by the first export and only changed 
+    * pages by the following ones
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testIncrementalExport(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstEntries = createTestEntries(m_entryFactory, blog, 3);
+      File        directory = m_exporter.getBlogDirectory(blog);
+      Entry       entry;
+
+      // 3 entries and 2 index pages
+      assertEquals("Not all pages were written", 5, m_exporter.export());
+      assertTrue("Entry was not escaped", 
+                 readPage(blog, lstEntries.get(0).getId() + ".html").contains(
+                    "comments &lt;0&gt;"));
+      assertTrue("Newest entry should be on the first index page", 
+                 readPage(blog, "index.html").contains("caption 2"));
+      assertTrue("Oldest entry should be on the second index page", 
+                 readPage(blog, "index-2.html").contains("caption 0"));
+      assertEquals("Unchanged blog should not be exported", 0, 
+                   m_exporter.export());
+
+      Thread.sleep(10);
+      entry = lstEntries.get(1);
+      m_entryFactory.save(new Entry(entry.getId(), TEST_DOMAIN_ID, 
+                                    entry.getCreationTimestamp(), 
+                                    entry.getModificationTimestamp(), 
+                                    blog.getId(), "changed caption", 
+                                    entry.getComments(), null, null));
+      assertEquals("Only the changed entry and its index should be written", 
+                   2, m_exporter.export(blog));
+      assertTrue("Changed entry was not written", 
+                 readPage(blog, entry.getId() + ".html").contains(
+                    "changed caption"));
+      assertTrue("Index listing the changed entry was not written", 
+                 readPage(blog, "index.html").contains("changed caption"));
+
+      m_entryFactory.delete(lstEntries.get(0).getId(), TEST_DOMAIN_ID);
+      assertEquals("Only the index should be written", 1, 
+                   m_exporter.export(blog));
+      assertFalse("Page of deleted entry was not removed", 
+                  new File(directory, lstEntries.get(0).getId() 
+                           + ".html").exists());
+      assertFalse("Index page which is not needed was not removed", 
+                  new File(directory, "index-2.html").exists());
+      assertTrue("Page of existing entry was removed", 
+                 new File(directory, lstEntries.get(2).getId() 
+                          + ".html").exists());
+
+      Thread.sleep(10);
+      m_blogFactory.save(new Blog(blog.getId(), TEST_DOMAIN_ID, 
+                                  blog.getCreationTimestamp(), 
+                                  blog.getModificationTimestamp(), 
+                                  blog.getFolder(), "Changed blog", 
+                                  blog.getComments()));
+      assertEquals("All pages should be written when the blog changes", 3, 
+                   m_exporter.export());
+      assertTrue("Changed blog was not written", 
+                 readPage(blog, lstEntries.get(2).getId() + ".html").contains(
+                    "Changed blog"));
+
+      for (File file : directory.listFiles())
+      {
+         assertFalse("Temporary file was left behind", 
+                     file.getName().endsWith(".tmp"));
+      }
+   }
+
+   /**
+    * Test that blogs with folders pointing outside of the root directory are
+    * not exported
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testInvalidFolder(
+   ) throws Exception
+   {
+      for (String strFolder : new String[] {"../x", "..", "a/b", "a\\b", ""})
+      {
+         try
+         {
+            m_exporter.getBlogDirectory(new Blog(DataObject.NEW_ID, 
+                                                 TEST_DOMAIN_ID, null, null, 
+                                                 strFolder, "caption", 
+                                                 "comments"));
+            fail("Folder " + strFolder + " should be rejected");
+         }
+         catch (IOException exc)
+         {
+            // This is expected
+         }
+      }
+      assertFalse("Nothing should be written outside of the root directory", 
+                  new File(m_directory.getParentFile(), "x").exists());
+   }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.feed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase;
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactory;
+import org.w3c.dom.Document;
+
+/**
+ * Tests for FeedWriter and FeedVersion classes.
+ * 
+ * @author bastafidli
+ */
+public class FeedWriterTest extends ChronicleDatabaseTestCase
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory used to create entries.
+    */
+   protected EntryDatabaseFactory m_entryFactory;
+
+   /**
+    * Writer being tested.
+    */
+   protected FeedWriter m_feedWriter;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for FeedWriterTest.
+    * 
+    * @param strName - name of the test
+    */
+   public FeedWriterTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_entryFactory = new EntryDatabaseFactory(m_dataSource);
+      m_feedWriter = new FeedWriter(m_entryFactory, "http://localhost/blogs", 
+                                    2);
+   }
+
+   /**
+    * Write feed and parse it back.
+    *
+    * @param blog - blog to write feed for
+    * @param format - format of the feed
+    * @return Document - parsed feed
+    * @throws Exception - an error has occurred
+    */
+   protected Document writeAndParse(
+      Blog       blog,
+      FeedFormat format
+   ) throws Exception
+   {
+      ByteArrayOutputStream  out = new ByteArrayOutputStream();
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+
+      m_feedWriter.write(blog, format, out);
+      factory.setNamespaceAware(true);
+      return factory.newDocumentBuilder().parse(
+                new ByteArrayInputStream(out.toByteArray()));
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that RSS feed contains the most recent entries 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testWriteRss(
+   ) throws Exception
+   {
+      Blog     blog = createTestBlog("folder1");
+      Document feed;
+
+      createTestEntry(m_entryFactory, blog, "first");
+      createTestEntry(m_entryFactory, blog, "second");
+      createTestEntry(m_entryFactory, blog, "third");
+
+      feed = writeAndParse(blog, FeedFormat.RSS);
+      assertEquals("Root element doesn't match", "rss", 
+                   feed.getDocumentElement().getTagName());
+      assertEquals("Number of items is not limited", 2, 
+                   feed.getElementsByTagName("item").getLength());
+      assertEquals("Items are not sorted from the most recent one", "third",
+                   feed.getElementsByTagName("item").item(0)
+                       .getFirstChild().getTextContent());
+      assertEquals("Channel link doesn't match", 
+                   "http://localhost/blogs/folder1/", 
+                   feed.getElementsByTagName("link").item(0).getTextContent());
+   }
+
+   /**
+    * Test that Atom feed contains the most recent entries 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testWriteAtom(
+   ) throws Exception
+   {
+      Blog     blog = createTestBlog("folder1");
+      Entry    data = createTestEntry(m_entryFactory, blog, "first");
+      Document feed;
+
+      feed = writeAndParse(blog, FeedFormat.ATOM);
+      assertEquals("Root element doesn't match", FeedWriter.ATOM_NAMESPACE, 
+                   feed.getDocumentElement().getNamespaceURI());
+      assertEquals("Number of entries doesn't match", 1, 
+                   feed.getElementsByTagNameNS(FeedWriter.ATOM_NAMESPACE, 
+                                               "entry").getLength());
+      assertEquals("Content doesn't match", data.getComments(), 
+                   feed.getElementsByTagNameNS(FeedWriter.ATOM_NAMESPACE, 
+                                               "content").item(0)
+                       .getTextContent());
+   }
+
+   /**
+    * Test that the version of the feed changes whenever the entries change
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetVersion(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      Entry       data;
+      FeedVersion empty;
+      FeedVersion created;
+      FeedVersion saved;
+      FeedVersion deleted;
+
+      empty = m_feedWriter.getVersion(blog, FeedFormat.RSS);
+      data = createTestEntry(m_entryFactory, blog, "first");
+      created = m_feedWriter.getVersion(blog, FeedFormat.RSS);
+      assertFalse("Version didn't change after create", 
+                  created.getETag().equals(empty.getETag()));
+      assertEquals("Version changed without modification", created.getETag(), 
+                   m_feedWriter.getVersion(blog, FeedFormat.RSS).getETag());
+      assertFalse("Formats should have different versions", 
+                  created.getETag().equals(
+                     m_feedWriter.getVersion(blog, FeedFormat.ATOM).getETag()));
+
+      Thread.sleep(10);
+      m_entryFactory.save(new Entry(data.getId(), TEST_DOMAIN_ID, 
+                                    data.getCreationTimestamp(), 
+                                    data.getModificationTimestamp(), 
+                                    blog.getId(), "modified", "comments", 
+                                    null, null));
+      saved = m_feedWriter.getVersion(blog, FeedFormat.RSS);
+      assertFalse("Version didn't change after save", 
+                  saved.getETag().equals(created.getETag()));
+
+      m_entryFactory.delete(data.getId(), TEST_DOMAIN_ID);
+      deleted = m_feedWriter.getVersion(blog, FeedFormat.RSS);
+      assertFalse("Version didn't change after delete", 
+                  deleted.getETag().equals(saved.getETag()));
+   }
+
+   /**
+    * Test evaluation of the conditional requests
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testIsNotModified(
+   ) throws Exception
+   {
+      FeedVersion version = new FeedVersion("\"1-a\"", 10500);
+
+      assertEquals("Last modification should be truncated to seconds", 10000, 
+                   version.getLastModified());
+      assertFalse("Unconditional request should not match", 
+                  version.isNotModified(null, -1));
+      assertTrue("Entity tag should match", 
+                 version.isNotModified("\"0-b\", W/\"1-a\"", -1));
+      assertTrue("Any entity tag should match", 
+                 version.isNotModified("*", -1));
+      assertFalse("Different entity tag should not match", 
+                  version.isNotModified("\"0-b\"", 20000));
+      assertTrue("Modification date should match", 
+                 version.isNotModified(null, 10000));
+      assertFalse("Older modification date should not match", 
+                  version.isNotModified(null, 9000));
+   }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.archive;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.EntryHandler;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase;
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactory;
+import org.opensubsystems.core.error.OSSDatabaseAccessException;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Tests for ArchivingEntryFactory class.
+ * 
+ * @author bastafidli
+ */
+public class ArchivingEntryFactoryTest extends ChronicleDatabaseTestCase
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Creation timestamp of the first created entry.
+    */
+   protected static final Timestamp FIRST_CREATED 
+      = Timestamp.valueOf("2016-01-02 03:04:05");
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory accessing the database.
+    */
+   protected EntryDatabaseFactory m_databaseFactory;
+
+   /**
+    * Directory containing the archive segments.
+    */
+   protected File m_directory;
+
+   /**
+    * Factory being tested.
+    */
+   protected ArchivingEntryFactory m_entryFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for ArchivingEntryFactoryTest.
+    * 
+    * @param strName - name of the test
+    */
+   public ArchivingEntryFactoryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_databaseFactory = new EntryDatabaseFactory(m_dataSource);
+      m_directory = Files.createTempDirectory("chronicle").toFile();
+      m_entryFactory = new ArchivingEntryFactory(m_databaseFactory, 
+                                                 m_directory);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void tearDown(
+   ) throws Exception
+   {
+      File[] arrFiles = m_directory.listFiles();
+
+      if (arrFiles != null)
+      {
+         for (File file : arrFiles)
+         {
+            file.delete();
+         }
+      }
+      m_directory.delete();
+      super.tearDown();
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that archived entries are removed from the database and they are 
+    * still listed together with the remaining entries
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testArchive(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstEntries = createTestEntries(m_entryFactory, blog, 5, 
+                                                 FIRST_CREATED);
+      EntryPage   page;
+      Entry       archived;
+
+      assertEquals("Entries older than the fourth one should be archived", 3, 
+                   m_entryFactory.archive(blog.getId(), 
+                      lstEntries.get(3).getCreationTimestamp()));
+      assertEquals("Archived entries should be deleted from database", 2, 
+                   m_databaseFactory.getCount(blog.getId()));
+      assertEquals("Archived entries should be counted", 5, 
+                   m_entryFactory.getCount(blog.getId()));
+      assertEquals("Single segment should be created", 1, 
+                   m_entryFactory.getSegments(blog.getId()).size());
+
+      page = m_entryFactory.getPage(blog.getId(), null, 2);
+      assertEquals("Incorrect first entry", lstEntries.get(4).getId(), 
+                   page.getEntries().get(0).getId());
+      assertEquals("Incorrect second entry", lstEntries.get(3).getId(), 
+                   page.getEntries().get(1).getId());
+      assertTrue("Archived entries should follow", page.hasNext());
+      page = m_entryFactory.getPage(blog.getId(), page.getNextCursor(), 2);
+      assertEquals("Archived entry should follow the database ones", 
+                   lstEntries.get(2).getId(), 
+                   page.getEntries().get(0).getId());
+      assertEquals("Incorrect fourth entry", lstEntries.get(1).getId(), 
+                   page.getEntries().get(1).getId());
+      page = m_entryFactory.getPage(blog.getId(), page.getNextCursor(), 2);
+      assertEquals("Only the oldest entry should remain", 1, 
+                   page.getEntries().size());
+      assertFalse("There should be no more entries", page.hasNext());
+
+      archived = page.getEntries().get(0);
+      assertEquals("Caption was not archived", "caption 0", 
+                   archived.getCaption());
+      assertEquals("Comments were not archived", "comments <0>", 
+                   archived.getComments());
+      assertEquals("Image URL was not archived", "image0.png", 
+                   archived.getImageURL());
+      assertEquals("Target URL was not archived", "http://target/0", 
+                   archived.getTargetURL());
+      assertEquals("Creation timestamp was not archived", 
+                   lstEntries.get(0).getCreationTimestamp(), 
+                   archived.getCreationTimestamp());
+      assertEquals("Archived entry should be found by id", "caption 0", 
+                   ((Entry)m_entryFactory.get(lstEntries.get(0).getId(), 
+                                              TEST_DOMAIN_ID)).getCaption());
+      assertEquals("All entries should be listed", 5, 
+                   m_entryFactory.getAll(blog.getId()).size());
+      assertEquals("The last entry should come from database", 
+                   lstEntries.get(4).getId(), 
+                   m_entryFactory.getLast(blog.getId()).getId());
+      assertEquals("Nothing more should be archived", 0, 
+                   m_entryFactory.archive(blog.getId(), 
+                      lstEntries.get(3).getCreationTimestamp()));
+   }
+
+   /**
+    * Test that entries are passed to handler in the correct order and that 
+    * the segments are opened again by new factory
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testForEachAndReopen(
+   ) throws Exception
+   {
+      Blog              blog = createTestBlog("folder1");
+      List<Entry>       lstEntries = createTestEntries(m_entryFactory, blog, 6, 
+                                                       FIRST_CREATED);
+      final List<Entry> lstHandled = new ArrayList<>();
+
+      m_entryFactory.archive(blog.getId(), 
+                             lstEntries.get(2).getCreationTimestamp());
+      m_entryFactory.archive(blog.getId(), 
+                             lstEntries.get(4).getCreationTimestamp());
+      assertEquals("Each archive call should create segment", 2, 
+                   m_entryFactory.getSegments(blog.getId()).size());
+
+      m_entryFactory = new ArchivingEntryFactory(m_databaseFactory, 
+                                                 m_directory);
+      assertEquals("Segments were not opened", 2, 
+                   m_entryFactory.getSegments(blog.getId()).size());
+      assertEquals("Incorrect number of passed entries", 6, 
+                   m_entryFactory.forEach(blog.getId(), new EntryHandler()
+                   {
+                      @Override
+                      public boolean handle(
+                         Entry entry
+                      ) throws OSSException
+                      {
+                         lstHandled.add(entry);
+                         return true;
+                      }
+                   }));
+      for (int iIndex = 0; iIndex < lstEntries.size(); iIndex++)
+      {
+         assertEquals("Entries are not in correct order", 
+                      lstEntries.get(lstEntries.size() - 1 - iIndex).getId(), 
+                      lstHandled.get(iIndex).getId());
+      }
+   }
+
+   /**
+    * Test that archived entries cannot be modified or deleted while the 
+    * entries in the database still can
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testArchivedEntriesReadOnly(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstEntries = createTestEntries(m_entryFactory, blog, 3, 
+                                                 FIRST_CREATED);
+      Entry       archived;
+
+      m_entryFactory.archive(blog.getId(), 
+                             lstEntries.get(2).getCreationTimestamp());
+      archived = (Entry)m_entryFactory.get(lstEntries.get(0).getId(), 
+                                           TEST_DOMAIN_ID);
+      archived = new Entry(archived.getId(), archived.getDomainId(), 
+                           archived.getCreationTimestamp(), 
+                           archived.getModificationTimestamp(), 
+                           archived.getParentId(), "modified caption", 
+                           archived.getComments(), archived.getImageURL(), 
+                           archived.getTargetURL());
+      try
+      {
+         m_entryFactory.save(archived);
+         fail("Archived entry should not be saved");
+      }
+      catch (OSSArchivedEntryException exc)
+      {
+         assertEquals("Incorrect entry reported", archived.getId(), 
+                      exc.getEntryId());
+      }
+      try
+      {
+         m_entryFactory.delete(lstEntries.get(1).getId(), TEST_DOMAIN_ID);
+         fail("Archived entry should not be deleted");
+      }
+      catch (OSSArchivedEntryException exc)
+      {
+         assertEquals("Incorrect entry reported", lstEntries.get(1).getId(), 
+                      exc.getEntryId());
+      }
+      assertEquals("Archived entry should not change", "caption 0", 
+                   ((Entry)m_entryFactory.get(lstEntries.get(0).getId(), 
+                                              TEST_DOMAIN_ID)).getCaption());
+      assertEquals("No entry should be deleted", 3, 
+                   m_entryFactory.getCount(blog.getId()));
+
+      m_entryFactory.delete(lstEntries.get(2).getId(), TEST_DOMAIN_ID);
+      assertEquals("Entry in database should be deleted", 2, 
+                   m_entryFactory.getCount(blog.getId()));
+   }
+
+   /**
+    * Test that entries archived by interrupted archive call are listed and 
+    * counted once and that they are deleted by the next call
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testInterruptedArchive(
+   ) throws Exception
+   {
+      Blog            blog = createTestBlog("folder1");
+      List<Entry>     lstEntries = createTestEntries(m_entryFactory, blog, 5, 
+                                                     FIRST_CREATED);
+      final boolean[] arrFail = {true};
+      int             iTotal;
+
+      m_databaseFactory = new EntryDatabaseFactory(m_dataSource)
+      {
+         @Override
+         public int deleteAll(
+            Collection<Long> colIds,
+            long             lDomainId,
+            int              iBatchSize
+         ) throws OSSException
+         {
+            if (arrFail[0])
+            {
+               throw new OSSDatabaseAccessException("Simulated failure");
+            }
+            return super.deleteAll(colIds, lDomainId, iBatchSize);
+         }
+      };
+      m_entryFactory = new ArchivingEntryFactory(m_databaseFactory, 
+                                                 m_directory);
+      try
+      {
+         m_entryFactory.archive(blog.getId(), 
+                                lstEntries.get(3).getCreationTimestamp());
+         fail("Archive should fail");
+      }
+      catch (OSSDatabaseAccessException exc)
+      {
+         // Expected
+      }
+
+      for (int iAttempt = 0; iAttempt < 2; iAttempt++)
+      {
+         assertEquals("Entries should stay in database", 5, 
+                      m_databaseFactory.getCount(blog.getId()));
+         assertEquals("Segment should be written", 1, 
+                      m_entryFactory.getSegments(blog.getId()).size());
+         assertEquals("Entries should be counted once", 5, 
+                      m_entryFactory.getCount(blog.getId()));
+         iTotal = 0;
+         for (EntryMonth month : m_entryFactory.getMonthCounts(blog.getId()))
+         {
+            iTotal += month.getCount();
+         }
+         assertEquals("Entries should be counted once in months", 5, iTotal);
+         assertEquals("Entries should be listed once", 5, 
+                      m_entryFactory.getAll(blog.getId()).size());
+         // The factory opening the segments has to find them as well
+         m_entryFactory = new ArchivingEntryFactory(m_databaseFactory, 
+                                                    m_directory);
+      }
+
+      arrFail[0] = false;
+      assertEquals("Entries should be archived again", 3, 
+                   m_entryFactory.archive(blog.getId(), 
+                      lstEntries.get(3).getCreationTimestamp()));
+      assertEquals("Archived entries should be deleted from database", 2, 
+                   m_databaseFactory.getCount(blog.getId()));
+      assertEquals("Archived entries should be counted", 5, 
+                   m_entryFactory.getCount(blog.getId()));
+      assertEquals("No new segment should be created", 1, 
+                   m_entryFactory.getSegments(blog.getId()).size());
+   }
+}
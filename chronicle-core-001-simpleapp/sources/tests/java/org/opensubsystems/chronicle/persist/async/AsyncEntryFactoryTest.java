@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase;
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactory;
+
+/**
+ * Tests for AsyncBlogFactory, AsyncEntryFactory and QueryExecutor classes.
+ * 
+ * @author bastafidli
+ */
+public class AsyncEntryFactoryTest extends ChronicleDatabaseTestCase
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Executor shared by the tested factories.
+    */
+   protected QueryExecutor m_executor;
+
+   /**
+    * Blog factory being tested.
+    */
+   protected AsyncBlogFactory m_asyncBlogFactory;
+
+   /**
+    * Entry factory being tested.
+    */
+   protected AsyncEntryFactory m_asyncEntryFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for AsyncEntryFactoryTest.
+    * 
+    * @param strName - name of the test
+    */
+   public AsyncEntryFactoryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_executor = new QueryExecutor(2);
+      m_asyncBlogFactory = new AsyncBlogFactory(m_blogFactory, m_executor);
+      m_asyncEntryFactory = new AsyncEntryFactory(
+                                   new EntryDatabaseFactory(m_dataSource), 
+                                   m_executor);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void tearDown(
+   ) throws Exception
+   {
+      m_executor.shutdown();
+      super.tearDown();
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that the blog and its entries are retrieved in parallel 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetAsync(
+   ) throws Exception
+   {
+      Blog              blog = createTestBlog("folder1");
+      Entry             last;
+      Future<Blog>      futureBlog;
+      Future<Entry>     futureLast;
+      Future<EntryPage> futurePage;
+      Future<List>      futureEntries;
+
+      createTestEntry(m_asyncEntryFactory, blog, "first");
+      last = createTestEntry(m_asyncEntryFactory, blog, "second");
+
+      futureBlog = m_asyncBlogFactory.getAsync("folder1");
+      futureLast = m_asyncEntryFactory.getLastAsync(blog.getId());
+      futurePage = m_asyncEntryFactory.getPageAsync(blog.getId(), null, 1);
+      futureEntries = m_asyncEntryFactory.getAllAsync(blog.getId());
+
+      assertEquals("Blog doesn't match", blog.getId(), 
+                   futureBlog.get().getId());
+      assertEquals("Last entry doesn't match", last.getId(), 
+                   futureLast.get().getId());
+      assertEquals("Page doesn't match", last.getId(), 
+                   futurePage.get().getEntries().get(0).getId());
+      assertEquals("Not all entries were read", 2, futureEntries.get().size());
+      assertEquals("Not all blogs were read", 1, 
+                   m_asyncBlogFactory.getAllAsync().get().size());
+      assertNull("Unknown blog should not be found", 
+                 m_asyncBlogFactory.getAsync("unknown").get());
+   }
+
+   /**
+    * Test that errors of the queries are reported by the futures 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testError(
+   ) throws Exception
+   {
+      Future<EntryPage> futurePage;
+
+      futurePage = m_asyncEntryFactory.getPageAsync(1, null, -1);
+      try
+      {
+         futurePage.get();
+         fail("Invalid limit should be reported");
+      }
+      catch (ExecutionException eeExc)
+      {
+         assertNotNull("Cause of the error should be available", 
+                       eeExc.getCause());
+      }
+   }
+
+   /**
+    * Test that no more than the maximal number of queries runs at once 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testConcurrencyLimit(
+   ) throws Exception
+   {
+      final AtomicInteger   running = new AtomicInteger();
+      final AtomicInteger   maxRunning = new AtomicInteger();
+      List<Future<Integer>> lstFutures = new ArrayList<>();
+      int                   iIndex;
+
+      for (iIndex = 0; iIndex < 10; iIndex++)
+      {
+         lstFutures.add(m_executor.submit(new Callable<Integer>()
+         {
+            @Override
+            public Integer call(
+            ) throws Exception
+            {
+               int iRunning = running.incrementAndGet();
+               int iMax;
+
+               do
+               {
+                  iMax = maxRunning.get();
+               }
+               while ((iRunning > iMax) 
+                      && (!maxRunning.compareAndSet(iMax, iRunning)));
+               Thread.sleep(10);
+               running.decrementAndGet();
+               return iRunning;
+            }
+         }));
+      }
+      for (Future<Integer> future : lstFutures)
+      {
+         future.get();
+      }
+      assertTrue("Too many queries were running at once", 
+                 maxRunning.get() <= m_executor.getMaxConcurrentQueries());
+   }
+
+   /**
+    * Test that queries are rejected once the maximal number of them is 
+    * waiting to be run 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testPendingLimit(
+   ) throws Exception
+   {
+      QueryExecutor        executor = new QueryExecutor(1, 1);
+      final CountDownLatch release = new CountDownLatch(1);
+      Callable<Integer>    query;
+      Future<Integer>      running;
+      Future<Integer>      pending;
+
+      query = new Callable<Integer>()
+      {
+         @Override
+         public Integer call(
+         ) throws Exception
+         {
+            release.await();
+            return 1;
+         }
+      };
+      try
+      {
+         running = executor.submit(query);
+         pending = executor.submit(query);
+         try
+         {
+            executor.submit(query);
+            fail("Query should be rejected when the queue is full");
+         }
+         catch (RejectedExecutionException reeExc)
+         {
+            // Expected
+         }
+         release.countDown();
+         assertEquals("Running query should finish", Integer.valueOf(1), 
+                      running.get());
+         assertEquals("Pending query should finish", Integer.valueOf(1), 
+                      pending.get());
+      }
+      finally
+      {
+         release.countDown();
+         executor.shutdown();
+      }
+   }
+
+   /**
+    * Test that query cancelled before it was run doesn't count as waiting
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testCancelledQueryNotPending(
+   ) throws Exception
+   {
+      QueryExecutor        executor = new QueryExecutor(1, 1);
+      final CountDownLatch release = new CountDownLatch(1);
+      Callable<Integer>    query;
+      Future<Integer>      running;
+      Future<Integer>      pending;
+
+      query = new Callable<Integer>()
+      {
+         @Override
+         public Integer call(
+         ) throws Exception
+         {
+            release.await();
+            return 1;
+         }
+      };
+      try
+      {
+         running = executor.submit(query);
+         executor.submit(query).cancel(false);
+         pending = executor.submit(query);
+         release.countDown();
+         assertEquals("Running query should finish", Integer.valueOf(1), 
+                      running.get());
+         assertEquals("Pending query should finish", Integer.valueOf(1), 
+                      pending.get());
+      }
+      finally
+      {
+         release.countDown();
+         executor.shutdown();
+      }
+   }
+}
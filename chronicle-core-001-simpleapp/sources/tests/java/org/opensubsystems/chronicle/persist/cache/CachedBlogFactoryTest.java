@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.persist.BlogFactory;
+import org.opensubsystems.chronicle.persist.DelegatingBlogFactory;
+import org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Tests for CachedBlogFactory class.
+ * 
+ * @author bastafidli
+ */
+public class CachedBlogFactoryTest extends ChronicleDatabaseTestCase
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Factory counting how many times was the blog read by folder.
+    */
+   protected static class CountingBlogFactory extends DelegatingBlogFactory
+   {
+      /**
+       * Number of calls of get by folder.
+       */
+      protected int m_iGetCount;
+
+      /**
+       * Constructor for CountingBlogFactory.
+       * 
+       * @param delegate - factory to pass the calls to
+       */
+      public CountingBlogFactory(
+         BlogFactory delegate
+      )
+      {
+         super(delegate);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public Blog get(
+         String strFolder
+      ) throws OSSException
+      {
+         m_iGetCount++;
+         return super.get(strFolder);
+      }
+   }
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory accessing the database counting the calls.
+    */
+   protected CountingBlogFactory m_countingFactory;
+
+   /**
+    * Factory being tested.
+    */
+   protected CachedBlogFactory m_cachedFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for CachedBlogFactoryTest.
+	 * 
+    * @param strName - name of the test
+    */
+   public CachedBlogFactoryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_countingFactory = new CountingBlogFactory(m_blogFactory);
+      m_cachedFactory = new CachedBlogFactory(m_countingFactory, 2, 0, 0, 
+                                              TimeUnit.SECONDS);
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that blogs and unknown folders are cached
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetIsCached(
+   ) throws Exception
+   {
+      Blog data = createTestBlog("folder1");
+
+      assertEquals("Blog doesn't match", data.getId(), 
+                   m_cachedFactory.get("folder1").getId());
+      assertEquals("Blog doesn't match", data.getId(), 
+                   m_cachedFactory.get("folder1").getId());
+      assertEquals("Blog was not cached", 1, m_countingFactory.m_iGetCount);
+
+      assertNull("Unknown folder should not be found", 
+                 m_cachedFactory.get("unknown"));
+      assertNull("Unknown folder should not be found", 
+                 m_cachedFactory.get("unknown"));
+      assertEquals("Unknown folder was not cached", 2, 
+                   m_countingFactory.m_iGetCount);
+
+      // Capacity of the cache is 2 so the least recently used folder is evicted
+      m_cachedFactory.get("folder1");
+      m_cachedFactory.get("another");
+      m_cachedFactory.get("unknown");
+      assertEquals("Least recently used folder was not evicted", 4, 
+                   m_countingFactory.m_iGetCount);
+   }
+
+   /**
+    * Test that the cache is invalidated by create, save and delete
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testInvalidation(
+   ) throws Exception
+   {
+      Blog data;
+      Blog saved;
+
+      assertNull("Unknown folder should not be found", 
+                 m_cachedFactory.get("folder1"));
+      data = (Blog)m_cachedFactory.create(new Blog(DataObject.NEW_ID, 
+                                                   TEST_DOMAIN_ID, null, null, 
+                                                   "folder1", "caption", 
+                                                   "comments"));
+      assertEquals("Created blog was not cached", data.getId(), 
+                   m_cachedFactory.get("folder1").getId());
+
+      saved = (Blog)m_cachedFactory.save(new Blog(data.getId(), TEST_DOMAIN_ID, 
+                                                  data.getCreationTimestamp(), 
+                                                  data.getModificationTimestamp(), 
+                                                  "folder2", "caption", 
+                                                  "comments"));
+      assertNull("Old folder was not invalidated", m_cachedFactory.get("folder1"));
+      assertEquals("Saved blog was not cached", saved.getId(), 
+                   m_cachedFactory.get("folder2").getId());
+
+      m_cachedFactory.delete(data.getId(), TEST_DOMAIN_ID);
+      assertNull("Deleted blog was not invalidated", 
+                 m_cachedFactory.get("folder2"));
+   }
+
+   /**
+    * Test that every caller receives its own copy of the cached blog
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetReturnsCopies(
+   ) throws Exception
+   {
+      Blog data = createTestBlog("folder1");
+      Blog first;
+      Blog second;
+
+      first = m_cachedFactory.get("folder1");
+      second = m_cachedFactory.get("folder1");
+      assertEquals("Blog was not cached", 1, m_countingFactory.m_iGetCount);
+      assertNotSame("Cached blog should not be shared", first, second);
+      assertTrue("Copy of blog doesn't match", second.isSame(data));
+      assertEquals("Copy of blog doesn't match", data.getModificationTimestamp(),
+                   second.getModificationTimestamp());
+
+      first.getModificationTimestamp().setTime(0);
+      assertEquals("Cached blog was modified by caller", 
+                   data.getModificationTimestamp(), 
+                   m_cachedFactory.get("folder1").getModificationTimestamp());
+   }
+}
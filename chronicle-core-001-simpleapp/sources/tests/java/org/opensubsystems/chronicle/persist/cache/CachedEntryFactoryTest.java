@@ -0,0 +1,540 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.cache;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.DelegatingEntryFactory;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase;
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactory;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Tests for CachedEntryFactory class.
+ * 
+ * @author bastafidli
+ */
+public class CachedEntryFactoryTest extends ChronicleDatabaseTestCase
+{
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Factory counting how many times were entries, the last entry and the 
+    * numbers of entries read.
+    */
+   protected static class CountingEntryFactory extends DelegatingEntryFactory
+   {
+      /**
+       * Number of calls of get by id.
+       */
+      protected int m_iGetCount;
+
+      /**
+       * Number of calls of getLast.
+       */
+      protected int m_iGetLastCount;
+
+      /**
+       * Number of calls of getCount.
+       */
+      protected int m_iGetCountCount;
+
+      /**
+       * Number of calls of getMonthCounts.
+       */
+      protected int m_iGetMonthCountsCount;
+
+      /**
+       * Constructor for CountingEntryFactory.
+       * 
+       * @param delegate - factory to pass the calls to
+       */
+      public CountingEntryFactory(
+         EntryFactory delegate
+      )
+      {
+         super(delegate);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public DataObject get(
+         long lId,
+         long lDomainId
+      ) throws OSSException
+      {
+         m_iGetCount++;
+         return super.get(lId, lDomainId);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public Entry getLast(
+         long lBlogId
+      ) throws OSSException
+      {
+         m_iGetLastCount++;
+         return super.getLast(lBlogId);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int getCount(
+         long lBlogId
+      ) throws OSSException
+      {
+         m_iGetCountCount++;
+         return super.getCount(lBlogId);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public List<EntryMonth> getMonthCounts(
+         long lBlogId
+      ) throws OSSException
+      {
+         m_iGetMonthCountsCount++;
+         return super.getMonthCounts(lBlogId);
+      }
+   }
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory accessing the database counting the calls.
+    */
+   protected CountingEntryFactory m_countingFactory;
+
+   /**
+    * Factory being tested.
+    */
+   protected CachedEntryFactory m_cachedFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for CachedEntryFactoryTest.
+	 * 
+    * @param strName - name of the test
+    */
+   public CachedEntryFactoryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_countingFactory = new CountingEntryFactory(
+                                 new EntryDatabaseFactory(m_dataSource));
+      m_cachedFactory = new CachedEntryFactory(m_countingFactory);
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that the last entry is cached and updated by writes
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetLast(
+   ) throws Exception
+   {
+      Blog  blog = createTestBlog("folder1");
+      Entry first;
+      Entry second;
+      Entry saved;
+
+      assertNull("Blog should not have any entry", 
+                 m_cachedFactory.getLast(blog.getId()));
+      assertNull("Blog should not have any entry", 
+                 m_cachedFactory.getLast(blog.getId()));
+      assertEquals("Missing last entry was not cached", 1, 
+                   m_countingFactory.m_iGetLastCount);
+
+      first = createTestEntry(m_cachedFactory, blog, "first");
+      assertEquals("Created entry was not cached", first.getId(), 
+                   m_cachedFactory.getLast(blog.getId()).getId());
+      second = createTestEntry(m_cachedFactory, blog, "second");
+      assertEquals("Created entry was not cached", second.getId(), 
+                   m_cachedFactory.getLast(blog.getId()).getId());
+
+      saved = (Entry)m_cachedFactory.save(new Entry(second.getId(), 
+                                             TEST_DOMAIN_ID, 
+                                             second.getCreationTimestamp(), 
+                                             second.getModificationTimestamp(), 
+                                             blog.getId(), "modified", 
+                                             "comments", null, null));
+      assertEquals("Saved entry was not cached", "modified", 
+                   m_cachedFactory.getLast(blog.getId()).getCaption());
+      assertEquals("Last entry was read instead of cached", 1, 
+                   m_countingFactory.m_iGetLastCount);
+
+      m_cachedFactory.delete(saved.getId(), TEST_DOMAIN_ID);
+      assertEquals("Deleted entry was not invalidated", first.getId(), 
+                   m_cachedFactory.getLast(blog.getId()).getId());
+      assertEquals("Last entry was not read after delete", 2, 
+                   m_countingFactory.m_iGetLastCount);
+   }
+
+   /**
+    * Test that every caller receives its own copy of the cached last entry
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetLastReturnsCopies(
+   ) throws Exception
+   {
+      Blog  blog = createTestBlog("folder1");
+      Entry data = createTestEntry(m_cachedFactory, blog, "first");
+      Entry first;
+      Entry second;
+
+      first = m_cachedFactory.getLast(blog.getId());
+      second = m_cachedFactory.getLast(Arrays.asList(blog.getId())).get(
+                  blog.getId());
+      assertEquals("Last entry was read instead of cached", 0, 
+                   m_countingFactory.m_iGetLastCount);
+      assertNotSame("Cached entry should not be shared", data, first);
+      assertNotSame("Cached entry should not be shared", first, second);
+      assertTrue("Copy of entry doesn't match", second.isSame(data));
+
+      first.setParentId(DataObject.NEW_ID);
+      first.getCreationTimestamp().setTime(0);
+      assertEquals("Cached entry was modified by caller", blog.getId(), 
+                   m_cachedFactory.getLast(blog.getId()).getParentId());
+      second = m_cachedFactory.getLast(blog.getId());
+      assertEquals("Cached entry was modified by caller", 
+                   data.getCreationTimestamp(), second.getCreationTimestamp());
+   }
+
+   /**
+    * Test that the number of entries is cached and updated by writes
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetCount(
+   ) throws Exception
+   {
+      Blog  blog1 = createTestBlog("folder1");
+      Blog  blog2 = createTestBlog("folder2");
+      Entry first;
+
+      assertEquals("Blog should not have any entry", 0, 
+                   m_cachedFactory.getCount(blog1.getId()));
+      assertEquals("Blog should not have any entry", 0, 
+                   m_cachedFactory.getCount(blog2.getId()));
+
+      first = createTestEntry(m_cachedFactory, blog1, "first");
+      createTestEntry(m_cachedFactory, blog1, "second");
+      assertEquals("Created entries were not counted", 2, 
+                   m_cachedFactory.getCount(blog1.getId()));
+
+      // Move the entry to the other blog
+      m_cachedFactory.save(new Entry(first.getId(), TEST_DOMAIN_ID, 
+                                     first.getCreationTimestamp(), 
+                                     first.getModificationTimestamp(), 
+                                     blog2.getId(), "moved", "comments", 
+                                     null, null));
+      assertEquals("Moved entry was not counted", 1, 
+                   m_cachedFactory.getCount(blog1.getId()));
+      assertEquals("Moved entry was not counted", 1, 
+                   m_cachedFactory.getCount(blog2.getId()));
+
+      m_cachedFactory.delete(first.getId(), TEST_DOMAIN_ID);
+      assertEquals("Deleted entry was counted", 0, 
+                   m_cachedFactory.getCount(blog2.getId()));
+      assertEquals("Number of entries was read instead of cached", 2, 
+                   m_countingFactory.m_iGetCountCount);
+      assertEquals("Cached number doesn't match the database", 
+                   m_countingFactory.getCount(blog1.getId()), 
+                   m_cachedFactory.getCount(blog1.getId()));
+   }
+
+   /**
+    * Test that the numbers of entries in every month are cached and updated 
+    * by writes
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetMonthCounts(
+   ) throws Exception
+   {
+      Blog  blog1 = createTestBlog("folder1");
+      Blog  blog2 = createTestBlog("folder2");
+      Entry first;
+
+      assertTrue("Blog should not have any entry", 
+                 m_cachedFactory.getMonthCounts(blog1.getId()).isEmpty());
+      assertTrue("Blog should not have any entry", 
+                 m_cachedFactory.getMonthCounts(blog2.getId()).isEmpty());
+
+      first = createTestEntry(m_cachedFactory, blog1, "first");
+      assertEquals("Created entry was not counted", 
+                   Arrays.asList(new EntryMonth(
+                      EntryMonth.getKey(first.getCreationTimestamp()), 1)), 
+                   m_cachedFactory.getMonthCounts(blog1.getId()));
+
+      // Move the entry to the other blog
+      m_cachedFactory.save(new Entry(first.getId(), TEST_DOMAIN_ID, 
+                                     first.getCreationTimestamp(), 
+                                     first.getModificationTimestamp(), 
+                                     blog2.getId(), "moved", "comments", 
+                                     null, null));
+      assertTrue("Moved entry was counted", 
+                 m_cachedFactory.getMonthCounts(blog1.getId()).isEmpty());
+      assertEquals("Moved entry was not counted", 
+                   Arrays.asList(new EntryMonth(
+                      EntryMonth.getKey(first.getCreationTimestamp()), 1)), 
+                   m_cachedFactory.getMonthCounts(blog2.getId()));
+
+      m_cachedFactory.delete(first.getId(), TEST_DOMAIN_ID);
+      assertTrue("Deleted entry was counted", 
+                 m_cachedFactory.getMonthCounts(blog2.getId()).isEmpty());
+      assertEquals("Numbers of entries were read instead of cached", 2, 
+                   m_countingFactory.m_iGetMonthCountsCount);
+      assertEquals("Cached numbers don't match the database", 
+                   m_countingFactory.getMonthCounts(blog1.getId()), 
+                   m_cachedFactory.getMonthCounts(blog1.getId()));
+   }
+
+   /**
+    * Test that the last entries of multiple blogs are cached 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetLastOfBlogs(
+   ) throws Exception
+   {
+      Blog             blog1 = createTestBlog("folder1");
+      Blog             blog2 = createTestBlog("folder2");
+      Blog             blog3 = createTestBlog("folder3");
+      Entry            last1;
+      Entry            last2;
+      Map<Long, Entry> mpLast;
+
+      createTestEntry(m_cachedFactory, blog1, "first");
+      last1 = createTestEntry(m_cachedFactory, blog1, "second");
+      last2 = createTestEntry(m_cachedFactory, blog2, "first");
+      // Cache just one of the blogs
+      m_cachedFactory.getLast(blog2.getId());
+      assertEquals("Last entry was not read", 1, 
+                   m_countingFactory.m_iGetLastCount);
+
+      mpLast = m_cachedFactory.getLast(Arrays.asList(blog1.getId(), 
+                                                     blog2.getId(), 
+                                                     blog3.getId()));
+      assertEquals("Last entry doesn't match", last1.getId(), 
+                   mpLast.get(blog1.getId()).getId());
+      assertEquals("Last entry doesn't match", last2.getId(), 
+                   mpLast.get(blog2.getId()).getId());
+      assertFalse("Blog without entries should not be included", 
+                  mpLast.containsKey(blog3.getId()));
+
+      assertEquals("Last entry was not cached", last1.getId(), 
+                   m_cachedFactory.getLast(blog1.getId()).getId());
+      assertNull("Missing last entry was not cached", 
+                 m_cachedFactory.getLast(blog3.getId()));
+      assertEquals("Last entry was read instead of cached", 1, 
+                   m_countingFactory.m_iGetLastCount);
+   }
+
+   /**
+    * Test that saved entry is not read again to adjust the numbers of entries
+    * and that failed save forgets only the numbers of its blog
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testSaveWithoutRead(
+   ) throws Exception
+   {
+      Blog  blog1 = createTestBlog("folder1");
+      Blog  blog2 = createTestBlog("folder2");
+      Entry first = createTestEntry(m_cachedFactory, blog1, "first");
+      Entry moved;
+
+      assertEquals("Created entry was not counted", 1, 
+                   m_cachedFactory.getCount(blog1.getId()));
+      assertEquals("Blog should not have any entry", 0, 
+                   m_cachedFactory.getCount(blog2.getId()));
+
+      moved = (Entry)m_cachedFactory.save(new Entry(first.getId(), 
+                                             TEST_DOMAIN_ID, 
+                                             first.getCreationTimestamp(), 
+                                             first.getModificationTimestamp(), 
+                                             blog2.getId(), "moved", 
+                                             "comments", null, null));
+      assertEquals("Saved entry should not be read", 0, 
+                   m_countingFactory.m_iGetCount);
+      assertEquals("Moved entry was not counted", 0, 
+                   m_cachedFactory.getCount(blog1.getId()));
+      assertEquals("Moved entry was not counted", 1, 
+                   m_cachedFactory.getCount(blog2.getId()));
+
+      try
+      {
+         // Save the version which was already replaced
+         m_cachedFactory.save(new Entry(first.getId(), TEST_DOMAIN_ID, 
+                                        first.getCreationTimestamp(), 
+                                        first.getModificationTimestamp(), 
+                                        blog2.getId(), "stale", "comments", 
+                                        null, null));
+         fail("Save of modified entry should fail");
+      }
+      catch (OSSException ossExc)
+      {
+         // Expected
+      }
+      assertNotNull("Numbers of unrelated blogs should be kept", 
+                    m_cachedFactory.getEntryCounts().lookup(blog1.getId()));
+      assertEquals("Number of entries doesn't match", 1, 
+                   m_cachedFactory.getCount(blog2.getId()));
+      assertEquals("Number of entries doesn't match", 
+                   m_countingFactory.getCount(moved.getParentId()), 
+                   m_cachedFactory.getCount(blog2.getId()));
+   }
+
+   /**
+    * Test that the number of entries read after the entry was written but 
+    * before the cache was adjusted doesn't count the entry twice
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testCountReadDuringWrite(
+   ) throws Exception
+   {
+      final Blog blog = createTestBlog("folder1");
+      Entry      first;
+
+      m_cachedFactory = new CachedEntryFactory(
+                           new DelegatingEntryFactory(m_countingFactory)
+      {
+         @Override
+         public DataObject create(
+            DataObject data
+         ) throws OSSException
+         {
+            DataObject created = super.create(data);
+
+            // Concurrent reader sees the entry before the cache is adjusted
+            m_cachedFactory.getCount(blog.getId());
+            return created;
+         }
+
+         @Override
+         public void delete(
+            long lId,
+            long lDomainId
+         ) throws OSSException
+         {
+            super.delete(lId, lDomainId);
+            m_cachedFactory.getCount(blog.getId());
+         }
+      });
+
+      first = createTestEntry(m_cachedFactory, blog, "first");
+      assertEquals("Entry read during create was counted twice", 1, 
+                   m_cachedFactory.getCount(blog.getId()));
+      createTestEntry(m_cachedFactory, blog, "second");
+      assertEquals("Entry created with cached number was not counted", 2, 
+                   m_cachedFactory.getCount(blog.getId()));
+      m_cachedFactory.getEntryCounts().clear();
+      m_cachedFactory.delete(first.getId(), TEST_DOMAIN_ID);
+      assertEquals("Entry read during delete was subtracted twice", 1, 
+                   m_cachedFactory.getCount(blog.getId()));
+   }
+
+   /**
+    * Test that the numbers of entries in every month read after the entry was 
+    * written but before the cache was adjusted don't count the entry twice
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testMonthCountReadDuringWrite(
+   ) throws Exception
+   {
+      final Blog blog = createTestBlog("folder1");
+      Entry      first;
+
+      m_cachedFactory = new CachedEntryFactory(
+                           new DelegatingEntryFactory(m_countingFactory)
+      {
+         @Override
+         public DataObject create(
+            DataObject data
+         ) throws OSSException
+         {
+            DataObject created = super.create(data);
+
+            // Concurrent reader sees the entry before the cache is adjusted
+            m_cachedFactory.getMonthCounts(blog.getId());
+            return created;
+         }
+
+         @Override
+         public void delete(
+            long lId,
+            long lDomainId
+         ) throws OSSException
+         {
+            super.delete(lId, lDomainId);
+            m_cachedFactory.getMonthCounts(blog.getId());
+         }
+      });
+
+      first = createTestEntry(m_cachedFactory, blog, "first");
+      assertEquals("Entry read during create was counted twice", 
+                   m_countingFactory.getMonthCounts(blog.getId()), 
+                   m_cachedFactory.getMonthCounts(blog.getId()));
+      createTestEntry(m_cachedFactory, blog, "second");
+      assertEquals("Entry created with cached numbers was not counted", 
+                   m_countingFactory.getMonthCounts(blog.getId()), 
+                   m_cachedFactory.getMonthCounts(blog.getId()));
+      m_cachedFactory.getMonthCounts().clear();
+      m_cachedFactory.delete(first.getId(), TEST_DOMAIN_ID);
+      assertEquals("Entry read during delete was subtracted twice", 
+                   m_countingFactory.getMonthCounts(blog.getId()), 
+                   m_cachedFactory.getMonthCounts(blog.getId()));
+   }
+}
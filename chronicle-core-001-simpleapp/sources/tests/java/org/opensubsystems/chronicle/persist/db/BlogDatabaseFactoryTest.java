@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.db;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Blog.BlogDataDescriptor.BlogFields;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.error.OSSConcurentModifyException;
+
+/**
+ * Tests for BlogDatabaseFactory class.
+ * 
+ * @author bastafidli
+ */
+public class BlogDatabaseFactoryTest extends ChronicleDatabaseTestCase
+{
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for BlogDatabaseFactoryTest.
+	 * 
+    * @param strName - name of the test
+    */
+   public BlogDatabaseFactoryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test create and get methods 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testCreateAndGet(
+   ) throws Exception
+   {
+      Blog data = createTestBlog("folder1");
+      Blog read;
+
+      assertTrue("Id was not generated", data.getId() != DataObject.NEW_ID);
+      assertNotNull("Creation timestamp was not set", 
+                    data.getCreationTimestamp());
+
+      read = (Blog)m_blogFactory.get(data.getId(), TEST_DOMAIN_ID);
+      assertNotNull("Blog was not found by id", read);
+      assertTrue("Blog read by id doesn't match", data.isSame(read));
+
+      read = m_blogFactory.get("folder1");
+      assertNotNull("Blog was not found by folder", read);
+      assertEquals("Blog read by folder doesn't match", data.getId(), 
+                   read.getId());
+      assertNull("Unknown folder should not be found", 
+                 m_blogFactory.get("folder2"));
+   }
+
+   /**
+    * Test batched create and save methods 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testBatchCreateAndSave(
+   ) throws Exception
+   {
+      List<DataObject> lstBlogs = new ArrayList<>();
+      List<Blog>       lstModified = new ArrayList<>();
+      List<Blog>       lstRead;
+      int              iIndex;
+
+      for (iIndex = 0; iIndex < ChronicleDatabaseFactory.DEFAULT_BATCH_SIZE + 5; 
+           iIndex++)
+      {
+         lstBlogs.add(new Blog(DataObject.NEW_ID, TEST_DOMAIN_ID, null, null, 
+                               "folder" + iIndex, "caption" + iIndex, "comments"));
+      }
+      assertEquals("Not all blogs were created", lstBlogs.size(), 
+                   m_blogFactory.create(lstBlogs));
+      lstRead = m_blogFactory.getAll();
+      assertEquals("Not all blogs were read", lstBlogs.size(), lstRead.size());
+
+      for (Blog data : lstRead)
+      {
+         lstModified.add(new Blog(data.getId(), data.getDomainId(), 
+                                  data.getCreationTimestamp(), 
+                                  data.getModificationTimestamp(), 
+                                  data.getFolder(), data.getCaption(), 
+                                  "modified"));
+      }
+      assertEquals("Not all blogs were saved", lstModified.size(), 
+                   m_blogFactory.saveAll(lstModified, 10).size());
+      for (Object data : m_blogFactory.getAll())
+      {
+         assertEquals("Blog was not saved", "modified", 
+                      ((Blog)data).getComments());
+      }
+
+      m_blogFactory.delete(lstRead.get(0).getId(), TEST_DOMAIN_ID);
+      assertEquals("Blog was not deleted", lstRead.size() - 1, 
+                   m_blogFactory.getAll().size());
+   }
+
+   /**
+    * Test that only the specified fields of blogs are retrieved 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetAllFields(
+   ) throws Exception
+   {
+      Blog       data = createTestBlog("folder1");
+      List<Blog> lstRead;
+      Blog       read;
+
+      lstRead = m_blogFactory.getAll(EnumSet.of(BlogFields.BLOG_ID, 
+                                                BlogFields.BLOG_FOLDER));
+      assertEquals("Blog was not read", 1, lstRead.size());
+      read = lstRead.get(0);
+      assertEquals("Id was not retrieved", data.getId(), read.getId());
+      assertEquals("Folder was not retrieved", "folder1", read.getFolder());
+      assertNull("Caption should not be retrieved", read.getCaption());
+      assertNull("Comments should not be retrieved", read.getComments());
+      assertNull("Creation timestamp should not be retrieved", 
+                 read.getCreationTimestamp());
+
+      try
+      {
+         m_blogFactory.getAll(
+            EnumSet.of(BlogFields.BLOG_FROM_PERSISTANCE_STORE));
+         fail("Fields without columns should not be accepted");
+      }
+      catch (IllegalArgumentException iaeExc)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * Test that only blogs modified after the specified time are retrieved 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetModifiedSince(
+   ) throws Exception
+   {
+      Blog       data1 = createTestBlog("folder1");
+      Blog       data2 = createTestBlog("folder2");
+      Blog       saved;
+      List<Blog> lstModified;
+
+      lstModified = m_blogFactory.getModifiedSince(new Timestamp(0));
+      assertEquals("All blogs should be modified", 2, lstModified.size());
+      assertEquals("Blogs are not sorted by modification", data1.getId(), 
+                   lstModified.get(0).getId());
+      assertTrue("No blog should be modified", m_blogFactory.getModifiedSince(
+                    data2.getModificationTimestamp()).isEmpty());
+
+      Thread.sleep(10);
+      saved = (Blog)m_blogFactory.save(new Blog(data1.getId(), TEST_DOMAIN_ID, 
+                                          data1.getCreationTimestamp(), 
+                                          data1.getModificationTimestamp(), 
+                                          data1.getFolder(), "modified", 
+                                          data1.getComments()));
+      lstModified = m_blogFactory.getModifiedSince(
+                       data2.getModificationTimestamp());
+      assertEquals("Only saved blog should be modified", 1, 
+                   lstModified.size());
+      assertEquals("Saved blog doesn't match", saved.getId(), 
+                   lstModified.get(0).getId());
+      assertEquals("Saved blog doesn't match", "modified", 
+                   lstModified.get(0).getCaption());
+   }
+
+   /**
+    * Test that blog modified since it was read is not saved 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testConcurrentSave(
+   ) throws Exception
+   {
+      Blog data = createTestBlog("folder1");
+
+      m_blogFactory.save(new Blog(data.getId(), TEST_DOMAIN_ID, 
+                                  data.getCreationTimestamp(), 
+                                  data.getModificationTimestamp(), 
+                                  data.getFolder(), "first editor", 
+                                  data.getComments()));
+      try
+      {
+         m_blogFactory.save(new Blog(data.getId(), TEST_DOMAIN_ID, 
+                                     data.getCreationTimestamp(), 
+                                     data.getModificationTimestamp(), 
+                                     data.getFolder(), "second editor", 
+                                     data.getComments()));
+         fail("Blog modified since it was read should not be saved");
+      }
+      catch (OSSConcurentModifyException ocmeExc)
+      {
+         // Expected
+      }
+      assertEquals("Blog saved by the first editor was overwritten", 
+                   "first editor", m_blogFactory.get("folder1").getCaption());
+   }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.EntryFactory;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Base class for tests of the JDBC factories. Each test runs against its own
+ * in memory HSQLDB database with freshly created schema.
+ * 
+ * @author bastafidli
+ */
+public abstract class ChronicleDatabaseTestCase extends TestCase
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Domain id used for all test data.
+    */
+   protected static final long TEST_DOMAIN_ID = 1;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Counter used to generate unique name of the database for each test.
+    */
+   private static final AtomicInteger s_iDatabaseCounter = new AtomicInteger();
+
+   /**
+    * Data source for the database used by the current test.
+    */
+   protected BasicDataSource m_dataSource;
+
+   /**
+    * Factory to create blogs for the entries.
+    */
+   protected BlogDatabaseFactory m_blogFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for ChronicleDatabaseTestCase.
+	 * 
+    * @param strName - name of the test
+    */
+   public ChronicleDatabaseTestCase(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      Connection cntDBConnection;
+
+      super.setUp();
+      m_dataSource = new BasicDataSource();
+      m_dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+      m_dataSource.setUrl("jdbc:hsqldb:mem:chronicle" 
+                          + s_iDatabaseCounter.incrementAndGet());
+      m_dataSource.setUsername("sa");
+      m_dataSource.setPassword("");
+      m_dataSource.setPoolPreparedStatements(true);
+      cntDBConnection = m_dataSource.getConnection();
+      try
+      {
+         ChronicleDatabaseSchema.create(cntDBConnection);
+      }
+      finally
+      {
+         cntDBConnection.close();
+      }
+      m_blogFactory = new BlogDatabaseFactory(m_dataSource);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void tearDown(
+   ) throws Exception
+   {
+      Connection cntDBConnection = m_dataSource.getConnection();
+      try
+      {
+         cntDBConnection.createStatement().execute("shutdown");
+      }
+      finally
+      {
+         cntDBConnection.close();
+      }
+      m_dataSource.close();
+      super.tearDown();
+   }
+
+   /**
+    * Create blog in the database.
+    *
+    * @param strFolder - folder of the blog
+    * @return Blog - created blog
+	 * @throws OSSException - an error has occurred
+    */
+   protected Blog createTestBlog(
+      String strFolder
+   ) throws OSSException
+   {
+      return (Blog)m_blogFactory.create(new Blog(DataObject.NEW_ID, TEST_DOMAIN_ID,
+                                                 null, null, strFolder, 
+                                                 "Caption of " + strFolder, 
+                                                 "Comments of " + strFolder));
+   }
+
+   /**
+    * Create entry with comments derived from its caption, which contain 
+    * characters that have to be escaped in markup.
+    *
+    * @param factory - factory used to create the entry
+    * @param blog - blog to create the entry in
+    * @param strCaption - caption of the entry
+    * @return Entry - created entry
+    * @throws OSSException - an error has occurred
+    */
+   protected Entry createTestEntry(
+      EntryFactory factory,
+      Blog         blog,
+      String       strCaption
+   ) throws OSSException
+   {
+      return createTestEntry(factory, blog, strCaption, 
+                             "Text of " + strCaption + " with <markup> & more");
+   }
+
+   /**
+    * Create entry with the specified caption and comments.
+    *
+    * @param factory - factory used to create the entry
+    * @param blog - blog to create the entry in
+    * @param strCaption - caption of the entry
+    * @param strComments - comments of the entry
+    * @return Entry - created entry
+    * @throws OSSException - an error has occurred
+    */
+   protected Entry createTestEntry(
+      EntryFactory factory,
+      Blog         blog,
+      String       strCaption,
+      String       strComments
+   ) throws OSSException
+   {
+      return (Entry)factory.create(new Entry(DataObject.NEW_ID, TEST_DOMAIN_ID,
+                                             null, null, blog.getId(), 
+                                             strCaption, strComments, null, 
+                                             null));
+   }
+
+   /**
+    * Create entries in the blog one by one, each with different caption, 
+    * comments containing characters which have to be escaped in markup, image
+    * URL and target URL. It can be used also by tests of factories which do 
+    * not use the database.
+    *
+    * @param factory - factory used to create the entries
+    * @param blog - blog to create the entries in
+    * @param iCount - number of entries to create
+    * @return List - created entries from the oldest to the most recent one
+    * @throws OSSException - an error has occurred
+    */
+   public static List<Entry> createTestEntries(
+      EntryFactory factory,
+      Blog         blog,
+      int          iCount
+   ) throws OSSException
+   {
+      List<Entry> lstEntries = new ArrayList<>(iCount);
+
+      for (int iIndex = 0; iIndex < iCount; iIndex++)
+      {
+         lstEntries.add((Entry)factory.create(
+                           new Entry(DataObject.NEW_ID, TEST_DOMAIN_ID, null, 
+                                     null, blog.getId(), "caption " + iIndex, 
+                                     "comments <" + iIndex + ">", 
+                                     "image" + iIndex + ".png", 
+                                     "http://target/" + iIndex)));
+      }
+
+      return lstEntries;
+   }
+
+   /**
+    * Create entries in the blog with explicit creation timestamps, each one 
+    * minute later than the previous one, so that tests depending on the order
+    * in which the entries were created don't depend on the clock.
+    *
+    * @param factory - factory used to create the entries, it has to store 
+    *                  them in the database of the test
+    * @param blog - blog to create the entries in
+    * @param iCount - number of entries to create
+    * @param first - creation timestamp of the first entry
+    * @return List - created entries from the oldest to the most recent one
+    * @throws Exception - an error has occurred
+    */
+   protected List<Entry> createTestEntries(
+      EntryFactory factory,
+      Blog         blog,
+      int          iCount,
+      Timestamp    first
+   ) throws Exception
+   {
+      List<Entry>       lstEntries = new ArrayList<>(iCount);
+      Connection        cntDBConnection;
+      PreparedStatement pstmUpdate;
+      Timestamp         creationTimestamp;
+
+      cntDBConnection = m_dataSource.getConnection();
+      try
+      {
+         pstmUpdate = cntDBConnection.prepareStatement(
+                         "update " + ChronicleDatabaseSchema.ENTRY_TABLE_NAME
+                         + " set CREATION_DATE = ? where ID = ?");
+         for (Entry data : createTestEntries(factory, blog, iCount))
+         {
+            creationTimestamp = new Timestamp(first.getTime() 
+                                              + lstEntries.size() * 60000L);
+            pstmUpdate.setTimestamp(1, creationTimestamp);
+            pstmUpdate.setLong(2, data.getId());
+            pstmUpdate.executeUpdate();
+            lstEntries.add(new Entry(data.getId(), data.getDomainId(), 
+                                     creationTimestamp, 
+                                     data.getModificationTimestamp(), 
+                                     data.getParentId(), data.getCaption(), 
+                                     data.getComments(), data.getImageURL(), 
+                                     data.getTargetURL()));
+         }
+      }
+      finally
+      {
+         cntDBConnection.close();
+      }
+
+      return lstEntries;
+   }
+}
@@ -0,0 +1,740 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.db;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.data.Entry.EntryDataDescriptor.EntryFields;
+import org.opensubsystems.chronicle.persist.EntryHandler;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.error.OSSConcurentModifyException;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Tests for EntryDatabaseFactory class.
+ * 
+ * @author bastafidli
+ */
+public class EntryDatabaseFactoryTest extends ChronicleDatabaseTestCase
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory being tested.
+    */
+   protected EntryDatabaseFactory m_entryFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for EntryDatabaseFactoryTest.
+	 * 
+    * @param strName - name of the test
+    */
+   public EntryDatabaseFactoryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_entryFactory = new EntryDatabaseFactory(m_dataSource);
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test create, get, save and delete methods 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testCreateSaveDelete(
+   ) throws Exception
+   {
+      Blog  blog = createTestBlog("folder1");
+      Entry data = createTestEntries(m_entryFactory, blog, 1).get(0);
+      Entry read;
+
+      assertTrue("Id was not generated", data.getId() != DataObject.NEW_ID);
+      read = (Entry)m_entryFactory.get(data.getId(), TEST_DOMAIN_ID);
+      assertNotNull("Entry was not found by id", read);
+      assertTrue("Entry read by id doesn't match", data.isSame(read));
+
+      m_entryFactory.save(new Entry(data.getId(), data.getDomainId(), 
+                                    data.getCreationTimestamp(), 
+                                    data.getModificationTimestamp(), 
+                                    data.getParentId(), "modified", 
+                                    data.getComments(), data.getImageURL(), 
+                                    data.getTargetURL()));
+      read = (Entry)m_entryFactory.get(data.getId(), TEST_DOMAIN_ID);
+      assertEquals("Entry was not saved", "modified", read.getCaption());
+
+      m_entryFactory.delete(data.getId(), TEST_DOMAIN_ID);
+      assertNull("Entry was not deleted", 
+                 m_entryFactory.get(data.getId(), TEST_DOMAIN_ID));
+   }
+
+   /**
+    * Test getAll and getLast methods 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetAllAndLast(
+   ) throws Exception
+   {
+      Blog        blog1 = createTestBlog("folder1");
+      Blog        blog2 = createTestBlog("folder2");
+      List<Entry> lstCreated = createTestEntries(m_entryFactory, blog1, 5);
+      List        lstRead;
+
+      assertNull("Blog without entries should not return any", 
+                 m_entryFactory.getAll(blog2.getId()));
+      assertNull("Blog without entries should not have last entry", 
+                 m_entryFactory.getLast(blog2.getId()));
+
+      lstRead = m_entryFactory.getAll(blog1.getId());
+      assertEquals("Not all entries were read", 5, lstRead.size());
+      assertEquals("Entries are not sorted from the most recent one", 
+                   lstCreated.get(4).getId(), ((Entry)lstRead.get(0)).getId());
+      assertEquals("Last entry doesn't match", lstCreated.get(4).getId(),
+                   m_entryFactory.getLast(blog1.getId()).getId());
+   }
+
+   /**
+    * Test getPage method 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetPage(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstCreated = createTestEntries(m_entryFactory, blog, 7);
+      EntryPage   page;
+      int         iExpected = lstCreated.size() - 1;
+
+      page = m_entryFactory.getPage(blog.getId(), null, 3);
+      for (int iPage = 0; iPage < 3; iPage++)
+      {
+         for (Entry data : page.getEntries())
+         {
+            assertEquals("Entries are not paged in order", 
+                         lstCreated.get(iExpected--).getId(), data.getId());
+         }
+         if (iPage < 2)
+         {
+            assertTrue("There should be next page", page.hasNext());
+            page = m_entryFactory.getPage(blog.getId(), page.getNextCursor(), 3);
+         }
+      }
+      assertEquals("Last page should contain remaining entry", 1, 
+                   page.getEntries().size());
+      assertFalse("Last page should not have next page", page.hasNext());
+      assertEquals("Not all entries were paged", -1, iExpected);
+   }
+
+   /**
+    * Test forEach method 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testForEach(
+   ) throws Exception
+   {
+      Blog              blog = createTestBlog("folder1");
+      final List<Entry> lstCreated = createTestEntries(m_entryFactory, blog, 5);
+      final List<Entry> lstHandled = new ArrayList<>();
+      int               iCount;
+
+      iCount = m_entryFactory.forEach(blog.getId(), new EntryHandler()
+      {
+         @Override
+         public boolean handle(
+            Entry entry
+         ) throws OSSException
+         {
+            lstHandled.add(entry);
+            return true;
+         }
+      });
+      assertEquals("Not all entries were handled", 5, iCount);
+      assertEquals("Entries are not handled in order", 
+                   lstCreated.get(4).getId(), lstHandled.get(0).getId());
+
+      iCount = m_entryFactory.forEach(blog.getId(), new EntryHandler()
+      {
+         @Override
+         public boolean handle(
+            Entry entry
+         ) throws OSSException
+         {
+            return entry.getId() != lstCreated.get(3).getId();
+         }
+      });
+      assertEquals("Handler didn't stop the processing", 2, iCount);
+   }
+
+   /**
+    * Test createAll and saveAll methods 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testCreateAllAndSaveAll(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstEntries = new ArrayList<>();
+      List<Entry> lstCreated;
+      List<Entry> lstSaved;
+      int         iIndex;
+
+      for (iIndex = 0; iIndex < 10; iIndex++)
+      {
+         lstEntries.add(new Entry(DataObject.NEW_ID, TEST_DOMAIN_ID, null, null, 
+                                  blog.getId(), "caption" + iIndex, "comments", 
+                                  null, null));
+      }
+      lstCreated = m_entryFactory.createAll(lstEntries, 3);
+      assertEquals("Not all entries were created", 10, lstCreated.size());
+      for (iIndex = 0; iIndex < 10; iIndex++)
+      {
+         assertTrue("Id was not generated", 
+                    lstCreated.get(iIndex).getId() != DataObject.NEW_ID);
+         assertNotNull("Creation timestamp was not set", 
+                       lstCreated.get(iIndex).getCreationTimestamp());
+         assertEquals("Entries are not returned in order", "caption" + iIndex, 
+                      lstCreated.get(iIndex).getCaption());
+      }
+      assertEquals("Not all entries were read", 10, 
+                   m_entryFactory.getAll(blog.getId()).size());
+
+      lstSaved = m_entryFactory.saveAll(lstCreated, 4);
+      assertEquals("Not all entries were saved", 10, lstSaved.size());
+      assertEquals("Saved entry doesn't match", lstCreated.get(9).getId(), 
+                   lstSaved.get(9).getId());
+   }
+
+   /**
+    * Test that summaries of entries are loaded without comments and that the 
+    * comments are loaded when requested.
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetSummaries(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstCreated = createTestEntries(m_entryFactory, blog, 3);
+      List<Entry> lstSummaries;
+      EntryPage   page;
+      Entry       summary;
+
+      lstSummaries = m_entryFactory.getSummaries(blog.getId());
+      assertEquals("Not all summaries were loaded", 3, lstSummaries.size());
+      summary = lstSummaries.get(0);
+      assertEquals("Summaries are not in order", lstCreated.get(2).getId(), 
+                   summary.getId());
+      assertEquals("Caption should be loaded", "caption 2", 
+                   summary.getCaption());
+      assertFalse("Comments should not be loaded", summary.isCommentsLoaded());
+      assertEquals("Comments were not loaded on demand", "comments <2>", 
+                   summary.getComments());
+      assertTrue("Comments should be loaded", summary.isCommentsLoaded());
+      assertTrue("Summary should be the same as the entry", 
+                 summary.isSame(lstCreated.get(2)));
+
+      page = m_entryFactory.getSummaryPage(blog.getId(), null, 2);
+      assertEquals("Page should contain two summaries", 2, 
+                   page.getEntries().size());
+      assertTrue("There should be next page", page.hasNext());
+      summary = page.getEntries().get(1);
+      assertFalse("Comments should not be loaded", summary.isCommentsLoaded());
+      assertEquals("Comments were not fetched", "comments <1>", 
+                   summary.fetchComments());
+
+      assertTrue("Blog without entries should return no summaries", 
+                 m_entryFactory.getSummaries(
+                    createTestBlog("folder2").getId()).isEmpty());
+   }
+
+   /**
+    * Test that only the specified fields of entries are retrieved 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetAllFields(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstCreated = createTestEntries(m_entryFactory, blog, 5);
+      List<Entry> lstRead;
+      EntryPage   page;
+      Entry       read;
+
+      lstRead = m_entryFactory.getAll(blog.getId(), 
+                                      EnumSet.of(EntryFields.ENTRY_ID, 
+                                                 EntryFields.ENTRY_CAPTION));
+      assertEquals("Not all entries were read", 5, lstRead.size());
+      read = lstRead.get(0);
+      assertEquals("Entries are not in order", lstCreated.get(4).getId(), 
+                   read.getId());
+      assertEquals("Caption was not retrieved", "caption 4", read.getCaption());
+      assertNull("Comments should not be retrieved", read.getComments());
+      assertNull("Image URL should not be retrieved", read.getImageURL());
+      assertEquals("Parent should not be retrieved", DataObject.NEW_ID, 
+                   read.getParentId());
+
+      page = m_entryFactory.getPage(blog.getId(), null, 2, 
+                                    EnumSet.of(EntryFields.ENTRY_TARGETURL));
+      assertTrue("There should be next page", page.hasNext());
+      read = page.getEntries().get(1);
+      assertEquals("Id should be retrieved for paging", 
+                   lstCreated.get(3).getId(), read.getId());
+      assertNotNull("Creation timestamp should be retrieved for paging", 
+                    read.getCreationTimestamp());
+      assertEquals("Target URL was not retrieved", "http://target/3", 
+                   read.getTargetURL());
+      assertNull("Caption should not be retrieved", read.getCaption());
+      page = m_entryFactory.getPage(blog.getId(), page.getNextCursor(), 2, 
+                                    EnumSet.of(EntryFields.ENTRY_TARGETURL));
+      assertEquals("Next page was not retrieved", lstCreated.get(2).getId(), 
+                   page.getEntries().get(0).getId());
+
+      assertTrue("Blog without entries should not return any", 
+                 m_entryFactory.getAll(createTestBlog("folder2").getId(),
+                                       EnumSet.of(EntryFields.ENTRY_ID))
+                               .isEmpty());
+   }
+
+   /**
+    * Test that the preformatted flag is stored and retrieved without comments 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testPreformatedFlag(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstSummaries;
+      Entry       data;
+
+      data = (Entry)m_entryFactory.create(
+                       new Entry(DataObject.NEW_ID, TEST_DOMAIN_ID, null, null, 
+                                 blog.getId(), "caption", "first\nsecond", 
+                                 null, null));
+      assertTrue("Flag was not determined", data.getIsPreformated());
+
+      lstSummaries = m_entryFactory.getSummaries(blog.getId());
+      assertTrue("Flag was not stored", lstSummaries.get(0).getIsPreformated());
+      assertFalse("Flag should be retrieved without comments", 
+                  lstSummaries.get(0).isCommentsLoaded());
+
+      data = m_entryFactory.saveAll(Collections.singletonList(
+                new Entry(data.getId(), data.getDomainId(), 
+                          data.getCreationTimestamp(), 
+                          data.getModificationTimestamp(), data.getParentId(), 
+                          data.getCaption(), "single line", null, null)), 
+                1).get(0);
+      assertFalse("Flag was not updated", data.getIsPreformated());
+      assertFalse("Flag was not updated", 
+                  m_entryFactory.getLast(blog.getId()).getIsPreformated());
+   }
+
+   /**
+    * Test getCount method 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetCount(
+   ) throws Exception
+   {
+      Blog        blog1 = createTestBlog("folder1");
+      Blog        blog2 = createTestBlog("folder2");
+      List<Entry> lstCreated = createTestEntries(m_entryFactory, blog1, 3);
+
+      assertEquals("Number of entries doesn't match", 3, 
+                   m_entryFactory.getCount(blog1.getId()));
+      assertEquals("Blog without entries should not have any", 0, 
+                   m_entryFactory.getCount(blog2.getId()));
+
+      m_entryFactory.delete(lstCreated.get(0).getId(), TEST_DOMAIN_ID);
+      assertEquals("Deleted entry was counted", 2, 
+                   m_entryFactory.getCount(blog1.getId()));
+   }
+
+   /**
+    * Test getByMonth method 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetByMonth(
+   ) throws Exception
+   {
+      Blog        blog1 = createTestBlog("folder1");
+      Blog        blog2 = createTestBlog("folder2");
+      List<Entry> lstCreated = createTestEntries(m_entryFactory, blog1, 3);
+      Calendar    calendar = Calendar.getInstance();
+      List<Entry> lstEntries;
+      int         iYear;
+      int         iMonth;
+
+      createTestEntries(m_entryFactory, blog2, 1);
+      calendar.setTime(lstCreated.get(0).getCreationTimestamp());
+      iYear = calendar.get(Calendar.YEAR);
+      iMonth = calendar.get(Calendar.MONTH) + 1;
+      // The entries may have been created just at the end of the month
+      lstEntries = new ArrayList<>(m_entryFactory.getByMonth(blog1.getId(), 
+                                                             iYear, iMonth));
+      if (iMonth == EntryMonth.MONTHS_PER_YEAR)
+      {
+         lstEntries.addAll(0, m_entryFactory.getByMonth(blog1.getId(), 
+                                                        iYear + 1, 1));
+      }
+      else
+      {
+         lstEntries.addAll(0, m_entryFactory.getByMonth(blog1.getId(), 
+                                                        iYear, iMonth + 1));
+      }
+      assertEquals("Entries of other blogs should not be returned", 3, 
+                   lstEntries.size());
+      assertEquals("Entries are not sorted from the most recent one", 
+                   lstCreated.get(2).getId(), lstEntries.get(0).getId());
+      assertEquals("Entries are not sorted from the most recent one", 
+                   lstCreated.get(0).getId(), lstEntries.get(2).getId());
+
+      assertTrue("Entries should not be returned for other months", 
+                 m_entryFactory.getByMonth(blog1.getId(), iYear - 1, 
+                                           iMonth).isEmpty());
+   }
+
+   /**
+    * Test getMonthCounts method 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetMonthCounts(
+   ) throws Exception
+   {
+      Blog             blog1 = createTestBlog("folder1");
+      Blog             blog2 = createTestBlog("folder2");
+      List<Entry>      lstCreated;
+      List<EntryMonth> lstMonths;
+      int              iCount = 0;
+
+      assertTrue("Blog without entries should not have any month", 
+                 m_entryFactory.getMonthCounts(blog1.getId()).isEmpty());
+      lstCreated = createTestEntries(m_entryFactory, blog1, 3);
+      createTestEntries(m_entryFactory, blog2, 1);
+
+      lstMonths = m_entryFactory.getMonthCounts(blog1.getId());
+      for (EntryMonth month : lstMonths)
+      {
+         iCount += month.getCount();
+      }
+      assertEquals("Entries of other blogs should not be counted", 3, iCount);
+      assertEquals("Month of the most recent entry doesn't match", 
+                   EntryMonth.getKey(lstCreated.get(2).getCreationTimestamp()), 
+                   lstMonths.get(0).getKey());
+      assertEquals("Month of the oldest entry doesn't match", 
+                   EntryMonth.getKey(lstCreated.get(0).getCreationTimestamp()), 
+                   lstMonths.get(lstMonths.size() - 1).getKey());
+   }
+
+   /**
+    * Test getLast method retrieving last entries of multiple blogs 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetLastOfBlogs(
+   ) throws Exception
+   {
+      List<Long>       lstBlogIds = new ArrayList<>();
+      Map<Long, Entry> mpLast;
+      Blog             blog;
+      List<Entry>      lstCreated;
+      int              iIndex;
+
+      // Use more blogs than fit into single query
+      for (iIndex = 0; iIndex <= EntryDatabaseFactory.LAST_ENTRIES_BATCH_SIZE; 
+           iIndex++)
+      {
+         blog = createTestBlog("folder" + iIndex);
+         lstBlogIds.add(blog.getId());
+         if (iIndex % 2 == 0)
+         {
+            lstCreated = createTestEntries(m_entryFactory, blog, 2);
+            assertEquals("Last entry doesn't match", lstCreated.get(1).getId(),
+                         m_entryFactory.getLast(blog.getId()).getId());
+         }
+      }
+
+      mpLast = m_entryFactory.getLast(lstBlogIds);
+      assertEquals("Blogs without entries should not be included", 
+                   EntryDatabaseFactory.LAST_ENTRIES_BATCH_SIZE / 2 + 1, 
+                   mpLast.size());
+      for (Long lBlogId : lstBlogIds)
+      {
+         if (mpLast.containsKey(lBlogId))
+         {
+            assertEquals("Last entry doesn't match", 
+                         m_entryFactory.getLast(lBlogId).getId(), 
+                         mpLast.get(lBlogId).getId());
+         }
+         else
+         {
+            assertNull("Last entry was not retrieved", 
+                       m_entryFactory.getLast(lBlogId));
+         }
+      }
+      assertTrue("No entries should be returned for no blogs", 
+                 m_entryFactory.getLast(Collections.<Long>emptyList()).isEmpty());
+   }
+
+   /**
+    * Test getLast method retrieving last entries of multiple blogs when more
+    * entries of a blog were created at the same time
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetLastOfBlogsSameTimestamp(
+   ) throws Exception
+   {
+      List<Long>       lstBlogIds = new ArrayList<>();
+      List<Entry>      lstEntries;
+      List<Entry>      lstCreated;
+      Map<Long, Entry> mpLast;
+      Blog             blog;
+      int              iIndex;
+
+      for (iIndex = 0; iIndex < 2; iIndex++)
+      {
+         blog = createTestBlog("folder" + iIndex);
+         lstBlogIds.add(blog.getId());
+         lstEntries = new ArrayList<>();
+         for (int iEntry = 0; iEntry < 3; iEntry++)
+         {
+            lstEntries.add(new Entry(DataObject.NEW_ID, TEST_DOMAIN_ID, null, 
+                                     null, blog.getId(), "caption" + iEntry, 
+                                     "comments", null, null));
+         }
+         // Entries created by single call have the same creation timestamp
+         lstCreated = m_entryFactory.createAll(lstEntries, 3);
+         assertEquals("Entries should have the same creation timestamp", 
+                      lstCreated.get(0).getCreationTimestamp(), 
+                      lstCreated.get(2).getCreationTimestamp());
+      }
+
+      mpLast = m_entryFactory.getLast(lstBlogIds);
+      assertEquals("Single entry should be returned for every blog", 2, 
+                   mpLast.size());
+      for (Long lBlogId : lstBlogIds)
+      {
+         assertEquals("Last entry doesn't match", 
+                      m_entryFactory.getLast(lBlogId).getId(), 
+                      mpLast.get(lBlogId).getId());
+      }
+   }
+
+   /**
+    * Test getLastModified method 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetLastModified(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstCreated;
+      Entry       saved;
+
+      assertNull("Blog without entries should not have modification", 
+                 m_entryFactory.getLastModified(blog.getId()));
+      lstCreated = createTestEntries(m_entryFactory, blog, 2);
+      assertEquals("Last modification doesn't match", 
+                   lstCreated.get(1).getModificationTimestamp(), 
+                   m_entryFactory.getLastModified(blog.getId()));
+
+      Thread.sleep(10);
+      saved = m_entryFactory.saveAll(lstCreated.subList(0, 1), 1).get(0);
+      assertEquals("Last modification doesn't match", 
+                   saved.getModificationTimestamp(), 
+                   m_entryFactory.getLastModified(blog.getId()));
+   }
+
+   /**
+    * Test that only entries modified after the specified time are retrieved 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testGetModifiedSince(
+   ) throws Exception
+   {
+      Blog        blog1 = createTestBlog("folder1");
+      Blog        blog2 = createTestBlog("folder2");
+      List<Entry> lstCreated = createTestEntries(m_entryFactory, blog1, 3);
+      Timestamp   lastModified;
+      List<Entry> lstModified;
+      Entry       saved;
+
+      createTestEntries(m_entryFactory, blog2, 1);
+      lstModified = m_entryFactory.getModifiedSince(blog1.getId(), 
+                                                    new Timestamp(0));
+      assertEquals("Entries of other blogs should not be returned", 3, 
+                   lstModified.size());
+      assertEquals("Entries are not sorted by modification", 
+                   lstCreated.get(0).getId(), lstModified.get(0).getId());
+
+      lastModified = m_entryFactory.getLastModified(blog1.getId());
+      assertTrue("No entry should be modified", 
+                 m_entryFactory.getModifiedSince(blog1.getId(), 
+                                                 lastModified).isEmpty());
+
+      Thread.sleep(10);
+      saved = m_entryFactory.saveAll(lstCreated.subList(1, 2), 1).get(0);
+      lstModified = m_entryFactory.getModifiedSince(blog1.getId(), 
+                                                    lastModified);
+      assertEquals("Only saved entry should be modified", 1, 
+                   lstModified.size());
+      assertEquals("Saved entry doesn't match", saved.getId(), 
+                   lstModified.get(0).getId());
+   }
+
+   /**
+    * Test that equal URLs of loaded entries share single instance 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testSharedURLs(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstEntries;
+      int         iIndex;
+
+      for (iIndex = 0; iIndex < 3; iIndex++)
+      {
+         m_entryFactory.create(new Entry(DataObject.NEW_ID, TEST_DOMAIN_ID, 
+                                         null, null, blog.getId(), 
+                                         "caption" + iIndex, "comments", 
+                                         "http://localhost/image.png", 
+                                         "http://localhost/"));
+      }
+
+      lstEntries = m_entryFactory.getAll(blog.getId());
+      assertSame("Image URLs should be shared", 
+                 lstEntries.get(0).getImageURL(), 
+                 lstEntries.get(2).getImageURL());
+      assertSame("Target URLs should be shared", 
+                 lstEntries.get(0).getTargetURL(), 
+                 lstEntries.get(2).getTargetURL());
+
+      lstEntries = m_entryFactory.getSummaries(blog.getId());
+      assertSame("Image URLs of summaries should be shared", 
+                 lstEntries.get(0).getImageURL(), 
+                 lstEntries.get(1).getImageURL());
+   }
+
+   /**
+    * Test that entry modified or deleted since it was read is not saved 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testConcurrentSave(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstCreated = createTestEntries(m_entryFactory, blog, 2);
+      Entry       data = lstCreated.get(0);
+      Entry       saved;
+
+      saved = (Entry)m_entryFactory.save(
+                        new Entry(data.getId(), data.getDomainId(), 
+                                  data.getCreationTimestamp(), 
+                                  data.getModificationTimestamp(), 
+                                  blog.getId(), "first editor", 
+                                  data.getComments(), null, null));
+      assertTrue("Modification timestamp was not changed", 
+                 saved.getModificationTimestamp().after(
+                    data.getModificationTimestamp()));
+      try
+      {
+         m_entryFactory.save(new Entry(data.getId(), data.getDomainId(), 
+                                       data.getCreationTimestamp(), 
+                                       data.getModificationTimestamp(), 
+                                       blog.getId(), "second editor", 
+                                       data.getComments(), null, null));
+         fail("Entry modified since it was read should not be saved");
+      }
+      catch (OSSConcurentModifyException ocmeExc)
+      {
+         // Expected
+      }
+      assertEquals("Entry saved by the first editor was overwritten", 
+                   "first editor", 
+                   ((Entry)m_entryFactory.get(data.getId(), 
+                                              TEST_DOMAIN_ID)).getCaption());
+
+      // Either all or none of the entries are saved
+      try
+      {
+         m_entryFactory.saveAll(lstCreated, 10);
+         fail("Entry modified since it was read should not be saved");
+      }
+      catch (OSSConcurentModifyException ocmeExc)
+      {
+         // Expected
+      }
+      assertEquals("Entries were saved although one of them has changed", 
+                   lstCreated.get(1).getModificationTimestamp(), 
+                   m_entryFactory.getLast(blog.getId())
+                      .getModificationTimestamp());
+
+      m_entryFactory.delete(data.getId(), TEST_DOMAIN_ID);
+      try
+      {
+         m_entryFactory.save(saved);
+         fail("Deleted entry should not be saved");
+      }
+      catch (OSSConcurentModifyException ocmeExc)
+      {
+         // Expected
+      }
+   }
+}
@@ -0,0 +1,495 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase.createTestEntries;
+
+import junit.framework.TestCase;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.EntryMonth;
+import org.opensubsystems.chronicle.persist.EntryPage;
+import org.opensubsystems.core.data.DataObject;
+import org.opensubsystems.core.error.OSSConcurentModifyException;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Tests for ChronicleLog class and the factories using it.
+ * 
+ * @author bastafidli
+ */
+public class ChronicleLogTest extends TestCase
+{
+   // Constants ////////////////////////////////////////////////////////////////
+
+   /**
+    * Id of the domain used by the tests.
+    */
+   protected static final long TEST_DOMAIN_ID = 1;
+
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Directory containing the log file.
+    */
+   protected File m_directory;
+
+   /**
+    * Log file.
+    */
+   protected File m_file;
+
+   /**
+    * Log being tested.
+    */
+   protected ChronicleLog m_log;
+
+   /**
+    * Factory storing blogs in the log.
+    */
+   protected LogBlogFactory m_blogFactory;
+
+   /**
+    * Factory storing entries in the log.
+    */
+   protected LogEntryFactory m_entryFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for ChronicleLogTest.
+    * 
+    * @param strName - name of the test
+    */
+   public ChronicleLogTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_directory = Files.createTempDirectory("chronicle").toFile();
+      m_file = new File(m_directory, "chronicle.log");
+      reopen();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void tearDown(
+   ) throws Exception
+   {
+      File[] arrFiles;
+
+      m_log.close();
+      arrFiles = m_directory.listFiles();
+      if (arrFiles != null)
+      {
+         for (File file : arrFiles)
+         {
+            file.delete();
+         }
+      }
+      m_directory.delete();
+      super.tearDown();
+   }
+
+   /**
+    * Close the log and open it again as it would be after restart.
+    *
+    * @throws OSSException - an error has occurred
+    */
+   protected void reopen(
+   ) throws OSSException
+   {
+      if (m_log != null)
+      {
+         m_log.close();
+      }
+      m_log = new ChronicleLog(m_file);
+      m_blogFactory = new LogBlogFactory(m_log);
+      m_entryFactory = new LogEntryFactory(m_log);
+   }
+
+   /**
+    * Create blog with the specified folder.
+    *
+    * @param strFolder - folder of the blog
+    * @return Blog - created blog
+    * @throws OSSException - an error has occurred
+    */
+   protected Blog createTestBlog(
+      String strFolder
+   ) throws OSSException
+   {
+      return (Blog)m_blogFactory.create(
+                      new Blog(DataObject.NEW_ID, TEST_DOMAIN_ID, null, null, 
+                               strFolder, "caption " + strFolder, 
+                               "comments " + strFolder));
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that the data are available after the log is opened again
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testReopen(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstEntries = createTestEntries(m_entryFactory, blog, 5);
+      EntryPage   page;
+      Entry       entry;
+
+      reopen();
+      assertEquals("Blog should be found by folder", blog.getId(), 
+                   m_blogFactory.get("folder1").getId());
+      assertEquals("All entries should be loaded", 5, 
+                   m_entryFactory.getCount(blog.getId()));
+      page = m_entryFactory.getPage(blog.getId(), null, 3);
+      assertEquals("Incorrect number of entries on page", 3, 
+                   page.getEntries().size());
+      assertEquals("The most recent entry should be first", 
+                   lstEntries.get(4).getId(), 
+                   page.getEntries().get(0).getId());
+      page = m_entryFactory.getSummaryPage(blog.getId(), page.getNextCursor(), 
+                                           3);
+      assertEquals("Incorrect number of entries on last page", 2, 
+                   page.getEntries().size());
+      assertFalse("There should be no more entries", page.hasNext());
+      entry = page.getEntries().get(1);
+      assertFalse("Summary should be read without comments", 
+                  entry.isCommentsLoaded());
+      assertEquals("Comments should be loaded on request", "comments <0>", 
+                   entry.getComments());
+      assertEquals("Target URL was not stored", "http://target/0", 
+                   entry.getTargetURL());
+      assertEquals("Creation timestamp was not stored", 
+                   lstEntries.get(0).getCreationTimestamp(), 
+                   entry.getCreationTimestamp());
+
+      try
+      {
+         createTestBlog("folder1");
+         fail("Blog with the same folder should not be created");
+      }
+      catch (OSSException ossExc)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * Test that incomplete frame at the end of the log is removed and the log
+    * can be used afterwards
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testRecovery(
+   ) throws Exception
+   {
+      Blog blog = createTestBlog("folder1");
+      long lSize;
+
+      createTestEntries(m_entryFactory, blog, 3);
+      lSize = m_log.getSize();
+      m_log.close();
+      m_log = null;
+
+      // Frame header announcing more data than were written
+      try (FileOutputStream output = new FileOutputStream(m_file, true))
+      {
+         output.write(new byte[] {0, 0, 1, 0, 1, 2, 3, 4, 5, 6, 7});
+      }
+      catch (IOException ioeExc)
+      {
+         fail("Cannot damage log file");
+      }
+
+      reopen();
+      assertEquals("Incomplete frame should be removed", lSize, 
+                   m_log.getSize());
+      assertEquals("Incomplete frame should be truncated", lSize, 
+                   m_file.length());
+      assertEquals("Complete frames should be kept", 3, 
+                   m_entryFactory.getCount(blog.getId()));
+      createTestEntries(m_entryFactory, blog, 1);
+      reopen();
+      assertEquals("Log should be usable after recovery", 4, 
+                   m_entryFactory.getCount(blog.getId()));
+   }
+
+   /**
+    * Test that compaction removes old versions of the data and keeps ids of 
+    * deleted data unused
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testCompact(
+   ) throws Exception
+   {
+      Blog        blog1 = createTestBlog("folder1");
+      Blog        blog2 = createTestBlog("folder2");
+      List<Entry> lstEntries = createTestEntries(m_entryFactory, blog1, 3);
+      Entry       entry = lstEntries.get(1);
+      Entry       last = createTestEntries(m_entryFactory, blog2, 1).get(0);
+      long        lSize;
+
+      for (int iIndex = 0; iIndex < 20; iIndex++)
+      {
+         entry = (Entry)m_entryFactory.save(
+                           new Entry(entry.getId(), TEST_DOMAIN_ID, 
+                                     entry.getCreationTimestamp(), 
+                                     entry.getModificationTimestamp(), 
+                                     blog1.getId(), "changed " + iIndex, 
+                                     "comments", null, null));
+      }
+      m_blogFactory.delete(blog2.getId(), TEST_DOMAIN_ID);
+      assertNull("Entries should be deleted with their blog", 
+                 m_entryFactory.get(last.getId(), TEST_DOMAIN_ID));
+      lSize = m_log.getSize();
+
+      m_log.compact();
+      assertTrue("Compaction should reduce size of the log", 
+                 m_log.getSize() < lSize);
+      reopen();
+      assertEquals("Entries should be kept", 3, 
+                   m_entryFactory.getCount(blog1.getId()));
+      assertEquals("The last version should be kept", "changed 19", 
+                   ((Entry)m_entryFactory.get(entry.getId(), 
+                                              TEST_DOMAIN_ID)).getCaption());
+      assertNull("Deleted blog should stay deleted", 
+                 m_blogFactory.get("folder2"));
+      assertTrue("Id of deleted entry should not be reused", 
+                 createTestEntries(m_entryFactory, blog1, 1).get(0).getId() 
+                 > last.getId());
+   }
+
+   /**
+    * Test that the modified entries and the most recent modification time 
+    * follow changes of the entries and that they are the same after the log
+    * is compacted
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testModifiedSince(
+   ) throws Exception
+   {
+      Blog        blog = createTestBlog("folder1");
+      List<Entry> lstEntries = createTestEntries(m_entryFactory, blog, 3);
+      Entry       created = lstEntries.get(2);
+      Entry       entry = lstEntries.get(0);
+      List<Entry> lstModified;
+
+      createTestEntries(m_entryFactory, createTestBlog("folder2"), 1);
+      assertEquals("Last modification should be the last created entry", 
+                   created.getModificationTimestamp(), 
+                   m_entryFactory.getLastModified(blog.getId()));
+      Thread.sleep(10);
+      entry = (Entry)m_entryFactory.save(
+                        new Entry(entry.getId(), TEST_DOMAIN_ID, 
+                                  entry.getCreationTimestamp(), 
+                                  entry.getModificationTimestamp(), 
+                                  blog.getId(), "changed", "comments", null, 
+                                  null));
+      assertEquals("Last modification should follow the save", 
+                   entry.getModificationTimestamp(), 
+                   m_entryFactory.getLastModified(blog.getId()));
+      lstModified = m_entryFactory.getModifiedSince(
+                       blog.getId(), created.getModificationTimestamp());
+      assertEquals("Only the saved entry should be modified", 1, 
+                   lstModified.size());
+      assertEquals("Incorrect modified entry", entry.getId(), 
+                   lstModified.get(0).getId());
+
+      m_log.compact();
+      assertEquals("Log should be usable after compaction", "changed", 
+                   ((Entry)m_entryFactory.get(entry.getId(), 
+                                              TEST_DOMAIN_ID)).getCaption());
+      assertEquals("Modified entries should be kept by compaction", 1, 
+                   m_entryFactory.getModifiedSince(blog.getId(), 
+                      created.getModificationTimestamp()).size());
+
+      m_entryFactory.delete(entry.getId(), TEST_DOMAIN_ID);
+      assertEquals("Last modification should not include deleted entry", 
+                   created.getModificationTimestamp(), 
+                   m_entryFactory.getLastModified(blog.getId()));
+      assertTrue("Deleted entry should not be returned", 
+                 m_entryFactory.getModifiedSince(blog.getId(), 
+                    created.getModificationTimestamp()).isEmpty());
+      m_entryFactory.delete(lstEntries.get(1).getId(), TEST_DOMAIN_ID);
+      m_entryFactory.delete(created.getId(), TEST_DOMAIN_ID);
+      assertNull("Blog without entries has no modification", 
+                 m_entryFactory.getLastModified(blog.getId()));
+   }
+
+   /**
+    * Test that entries are found by month and counted in every month
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testMonths(
+   ) throws Exception
+   {
+      Blog             blog = createTestBlog("folder1");
+      List<Entry>      lstEntries = createTestEntries(m_entryFactory, blog, 3);
+      Entry            last = lstEntries.get(2);
+      Calendar         calendar = Calendar.getInstance();
+      List<EntryMonth> lstMonths;
+      List<Entry>      lstMonth;
+      int              iCount = 0;
+
+      createTestEntries(m_entryFactory, createTestBlog("folder2"), 1);
+      calendar.setTime(last.getCreationTimestamp());
+      lstMonth = m_entryFactory.getByMonth(blog.getId(), 
+                                           calendar.get(Calendar.YEAR), 
+                                           calendar.get(Calendar.MONTH) + 1);
+      assertEquals("Most recent entry of the month doesn't match", 
+                   last.getId(), lstMonth.get(0).getId());
+      assertTrue("Entries of other blogs should not be returned", 
+                 lstMonth.size() <= 3);
+      assertTrue("Entries should not be returned for other months", 
+                 m_entryFactory.getByMonth(blog.getId(), 
+                                           calendar.get(Calendar.YEAR) - 1,
+                                           1).isEmpty());
+
+      m_entryFactory.delete(lstEntries.get(1).getId(), TEST_DOMAIN_ID);
+      reopen();
+      lstMonths = m_entryFactory.getMonthCounts(blog.getId());
+      assertEquals("Month of the most recent entry doesn't match", 
+                   EntryMonth.getKey(last.getCreationTimestamp()), 
+                   lstMonths.get(0).getKey());
+      for (EntryMonth month : lstMonths)
+      {
+         iCount += month.getCount();
+      }
+      assertEquals("Deleted entry was counted", 2, iCount);
+   }
+
+   /**
+    * Test that data modified since they were read are not saved
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testConcurrentSave(
+   ) throws Exception
+   {
+      Blog  blog = createTestBlog("folder1");
+      Entry data = createTestEntries(m_entryFactory, blog, 1).get(0);
+      Entry saved;
+
+      // Save it immediately, within the same millisecond as it was created
+      saved = (Entry)m_entryFactory.save(
+                        new Entry(data.getId(), TEST_DOMAIN_ID, 
+                                  data.getCreationTimestamp(), 
+                                  data.getModificationTimestamp(), 
+                                  blog.getId(), "first editor", "comments", 
+                                  null, null));
+      assertFalse("Modification timestamp was not changed", 
+                  saved.getModificationTimestamp().equals(
+                     data.getModificationTimestamp()));
+      try
+      {
+         m_entryFactory.save(new Entry(data.getId(), TEST_DOMAIN_ID, 
+                                       data.getCreationTimestamp(), 
+                                       data.getModificationTimestamp(), 
+                                       blog.getId(), "second editor", 
+                                       "comments", null, null));
+         fail("Entry modified since it was read should not be saved");
+      }
+      catch (OSSConcurentModifyException ocmeExc)
+      {
+         // Expected
+      }
+      reopen();
+      assertEquals("Entry saved by the first editor was overwritten", 
+                   "first editor", 
+                   ((Entry)m_entryFactory.get(data.getId(), 
+                                              TEST_DOMAIN_ID)).getCaption());
+
+      m_blogFactory.save(new Blog(blog.getId(), TEST_DOMAIN_ID, 
+                                  blog.getCreationTimestamp(), 
+                                  blog.getModificationTimestamp(), 
+                                  blog.getFolder(), "first editor", 
+                                  blog.getComments()));
+      try
+      {
+         m_blogFactory.save(new Blog(blog.getId(), TEST_DOMAIN_ID, 
+                                     blog.getCreationTimestamp(), 
+                                     blog.getModificationTimestamp(), 
+                                     blog.getFolder(), "second editor", 
+                                     blog.getComments()));
+         fail("Blog modified since it was read should not be saved");
+      }
+      catch (OSSConcurentModifyException ocmeExc)
+      {
+         // Expected
+      }
+      assertEquals("Blog saved by the first editor was overwritten", 
+                   "first editor", m_blogFactory.get("folder1").getCaption());
+   }
+
+   /**
+    * Test that saving blog doesn't change the time when it was created.
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testSaveBlogKeepsCreation(
+   ) throws Exception
+   {
+      Blog blog = createTestBlog("folder1");
+      Blog saved;
+
+      saved = (Blog)m_blogFactory.save(
+                       new Blog(blog.getId(), TEST_DOMAIN_ID, 
+                                new Timestamp(0), 
+                                blog.getModificationTimestamp(), 
+                                blog.getFolder(), "changed", 
+                                blog.getComments()));
+      assertEquals("Creation timestamp of saved blog should not change", 
+                   blog.getCreationTimestamp(), saved.getCreationTimestamp());
+      reopen();
+      assertEquals("Creation timestamp of stored blog should not change", 
+                   blog.getCreationTimestamp(), 
+                   m_blogFactory.get("folder1").getCreationTimestamp());
+   }
+}
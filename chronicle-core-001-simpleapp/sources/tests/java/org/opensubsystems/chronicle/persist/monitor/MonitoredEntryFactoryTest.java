@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase;
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactory;
+import org.opensubsystems.core.error.OSSException;
+
+/**
+ * Tests for MonitoredBlogFactory, MonitoredEntryFactory and the statistics
+ * they record.
+ * 
+ * @author bastafidli
+ */
+public class MonitoredEntryFactoryTest extends ChronicleDatabaseTestCase
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Blog factory being tested.
+    */
+   protected MonitoredBlogFactory m_monitoredBlogFactory;
+
+   /**
+    * Entry factory being tested.
+    */
+   protected MonitoredEntryFactory m_monitoredEntryFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for MonitoredEntryFactoryTest.
+    * 
+    * @param strName - name of the test
+    */
+   public MonitoredEntryFactoryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_monitoredBlogFactory = new MonitoredBlogFactory(m_blogFactory);
+      m_monitoredEntryFactory = new MonitoredEntryFactory(
+                                       new EntryDatabaseFactory(m_dataSource));
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that calls, errors and returned rows are counted for each operation
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testStatistics(
+   ) throws Exception
+   {
+      Blog                           blog = createTestBlog("folder1");
+      FactoryStatistics              statistics;
+      Map<String, OperationSnapshot> mpOperations;
+      OperationSnapshot              snapshot;
+
+      createTestEntry(m_monitoredEntryFactory, blog, "first");
+      createTestEntry(m_monitoredEntryFactory, blog, "second");
+      m_monitoredEntryFactory.getAll(blog.getId());
+      m_monitoredEntryFactory.getAll(blog.getId());
+      m_monitoredEntryFactory.getLast(blog.getId());
+      try
+      {
+         m_monitoredEntryFactory.getPage(blog.getId(), null, -1);
+         fail("Invalid limit should be reported");
+      }
+      catch (IllegalArgumentException | OSSException exc)
+      {
+         // This is expected
+      }
+
+      statistics = m_monitoredEntryFactory.getStatistics();
+      mpOperations = statistics.getOperations();
+      assertEquals("Only called operations should be listed", 4, 
+                   mpOperations.size());
+
+      snapshot = mpOperations.get("getAll");
+      assertEquals("Calls were not counted", 2, snapshot.getCalls());
+      assertEquals("Rows were not counted", 4, snapshot.getRows());
+      assertEquals("There should be no error", 0, snapshot.getErrors());
+      assertTrue("Percentiles are not ordered", 
+                 snapshot.getMedianTime() <= snapshot.getPercentile99Time());
+      assertTrue("Percentile cannot exceed maximum", 
+                 snapshot.getPercentile99Time() <= snapshot.getMaxTime());
+
+      assertEquals("Created entries were not counted", 2, 
+                   mpOperations.get("create").getRows());
+      assertEquals("Last entry was not counted", 1, 
+                   mpOperations.get("getLast").getRows());
+      assertEquals("Error was not counted", 1, 
+                   mpOperations.get("getPage").getErrors());
+      assertEquals("Total calls don't match", 6, statistics.getCalls());
+      assertEquals("Total errors don't match", 1, statistics.getErrors());
+
+      statistics.reset();
+      assertTrue("Statistics were not reset", 
+                 statistics.getOperations().isEmpty());
+
+      m_monitoredBlogFactory.get("folder1");
+      m_monitoredBlogFactory.get("unknown");
+      snapshot = m_monitoredBlogFactory.getStatistics().getOperations().get(
+                                                                "getByFolder");
+      assertEquals("Calls were not counted", 2, snapshot.getCalls());
+      assertEquals("Only found blog should be counted", 1, snapshot.getRows());
+   }
+
+   /**
+    * Test that the percentiles are computed from the recorded durations
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testPercentiles(
+   ) throws Exception
+   {
+      OperationStatistics statistics = new OperationStatistics("test");
+      int                 iIndex;
+
+      assertEquals("Empty statistics should have no percentile", 0, 
+                   statistics.getPercentile(50));
+
+      // 98 fast calls taking about 100 microseconds and 2 slow ones taking
+      // about 1 second, the start is moved to the past to simulate the 
+      // duration
+      for (iIndex = 0; iIndex < 98; iIndex++)
+      {
+         statistics.record(System.nanoTime() - 100000L, true, 1);
+      }
+      statistics.record(System.nanoTime() - 1000000000L, true, 1);
+      statistics.record(System.nanoTime() - 1000000000L, false, 0);
+
+      assertEquals("Calls were not counted", 100, statistics.getCalls());
+      assertEquals("Errors were not counted", 1, statistics.getErrors());
+      assertEquals("Rows were not counted", 99, statistics.getRows());
+      assertTrue("Median should be close to 100 microseconds", 
+                 (statistics.getPercentile(50) >= 100)
+                 && (statistics.getPercentile(50) < 1000000));
+      assertTrue("99th percentile should be close to 1 second", 
+                 statistics.getPercentile(99) >= 1000000);
+      assertTrue("Maximum should be at least 1 second", 
+                 statistics.getMaxTime() >= 1000000);
+      assertTrue("Percentile cannot exceed maximum", 
+                 statistics.getPercentile(100) <= statistics.getMaxTime());
+   }
+
+   /**
+    * Test that the statistics can be registered and read through JMX
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testRegister(
+   ) throws Exception
+   {
+      MBeanServer       server = ManagementFactory.getPlatformMBeanServer();
+      FactoryStatistics statistics = m_monitoredEntryFactory.getStatistics();
+
+      createTestEntry(m_monitoredEntryFactory, createTestBlog("folder1"), 
+                      "first");
+      statistics.register("TestEntryFactory");
+      try
+      {
+         assertTrue("Statistics were not registered", 
+                    server.isRegistered(statistics.getObjectName()));
+         assertEquals("Calls are not available through JMX", 1L, 
+                      server.getAttribute(statistics.getObjectName(), "Calls"));
+         assertNotNull("Operations are not available through JMX", 
+                       server.getAttribute(statistics.getObjectName(), 
+                                           "Operations"));
+      }
+      finally
+      {
+         statistics.unregister();
+      }
+      assertNull("Statistics were not unregistered", 
+                 statistics.getObjectName());
+   }
+}
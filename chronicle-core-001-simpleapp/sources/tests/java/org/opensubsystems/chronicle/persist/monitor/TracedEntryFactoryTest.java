@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase;
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactory;
+import org.opensubsystems.core.data.DataObject;
+
+/**
+ * Tests for TracedBlogFactory, TracedEntryFactory and FlightRecorderEventSink
+ * classes.
+ * 
+ * @author bastafidli
+ */
+public class TracedEntryFactoryTest extends ChronicleDatabaseTestCase
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Sink collecting the events reported by the tested factories.
+    */
+   protected CollectingEventSink m_events;
+
+   /**
+    * Blog factory being tested.
+    */
+   protected TracedBlogFactory m_tracedBlogFactory;
+
+   /**
+    * Entry factory being tested.
+    */
+   protected TracedEntryFactory m_tracedEntryFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for TracedEntryFactoryTest.
+    * 
+    * @param strName - name of the test
+    */
+   public TracedEntryFactoryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_events = new CollectingEventSink();
+      m_tracedBlogFactory = new TracedBlogFactory(m_blogFactory, m_events);
+      m_tracedEntryFactory = new TracedEntryFactory(
+                                    new EntryDatabaseFactory(m_dataSource), 
+                                    m_events);
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that calls of the factories are reported with the accessed blog
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testEvents(
+   ) throws Exception
+   {
+      Blog blog = createTestBlog("folder1");
+
+      m_tracedEntryFactory.create(new Entry(DataObject.NEW_ID, TEST_DOMAIN_ID, 
+                                            null, null, blog.getId(), "first", 
+                                            "comments", null, null));
+      m_tracedEntryFactory.getAll(blog.getId());
+      m_tracedBlogFactory.get("folder1");
+      try
+      {
+         m_tracedEntryFactory.getPage(blog.getId(), null, -1);
+         fail("Invalid limit should be reported");
+      }
+      catch (Exception exc)
+      {
+         // This is expected
+      }
+
+      assertEquals("Not all calls were reported", 4, 
+                   m_events.m_lstEvents.size());
+      assertEquals("Created entry doesn't match", 
+                   "EntryFactory.create " + blog.getId() + " null 1 true", 
+                   m_events.m_lstEvents.get(0));
+      assertEquals("Listed entries don't match", 
+                   "EntryFactory.getAll " + blog.getId() + " null 1 true", 
+                   m_events.m_lstEvents.get(1));
+      assertEquals("Found blog doesn't match", 
+                   "BlogFactory.getByFolder " + blog.getId() 
+                   + " folder1 1 true", 
+                   m_events.m_lstEvents.get(2));
+      assertEquals("Failed call doesn't match", 
+                   "EntryFactory.getPage " + blog.getId() + " null 0 false", 
+                   m_events.m_lstEvents.get(3));
+
+      m_events.m_bEnabled = false;
+      m_tracedEntryFactory.getAll(blog.getId());
+      assertEquals("Calls should not be reported when disabled", 4, 
+                   m_events.m_lstEvents.size());
+   }
+
+   /**
+    * Test that calls of the entry factory are reported with folder of the blog
+    * once the blog was accessed using the traced blog factory
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testEntryEventsWithFolder(
+   ) throws Exception
+   {
+      Blog               blog = createTestBlog("folder1");
+      TracedEntryFactory entryFactory;
+
+      entryFactory = new TracedEntryFactory(
+                            new EntryDatabaseFactory(m_dataSource), m_events, 
+                            m_tracedBlogFactory);
+      entryFactory.getAll(blog.getId());
+      m_tracedBlogFactory.get("folder1");
+      entryFactory.getAll(blog.getId());
+      m_tracedBlogFactory.delete(blog.getId(), blog.getDomainId());
+      entryFactory.getAll(blog.getId());
+
+      assertEquals("Not all calls were reported", 5, 
+                   m_events.m_lstEvents.size());
+      assertEquals("Folder of unknown blog should not be reported", 
+                   "EntryFactory.getAll " + blog.getId() + " null 0 true", 
+                   m_events.m_lstEvents.get(0));
+      assertEquals("Folder of known blog should be reported", 
+                   "EntryFactory.getAll " + blog.getId() + " folder1 0 true", 
+                   m_events.m_lstEvents.get(2));
+      assertEquals("Folder of deleted blog should not be reported", 
+                   "EntryFactory.getAll " + blog.getId() + " null 0 true", 
+                   m_events.m_lstEvents.get(4));
+   }
+
+   /**
+    * Test that the flight recorder sink doesn't create events when there is
+    * no recording
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testFlightRecorderSink(
+   ) throws Exception
+   {
+      FlightRecorderEventSink sink = FlightRecorderEventSink.getInstance();
+
+      if (!sink.isRecording())
+      {
+         assertNull("Event should not be created without recording", 
+                    sink.begin());
+      }
+      if (!sink.isAvailable())
+      {
+         assertFalse("Events cannot be recorded without flight recorder", 
+                     sink.isRecording());
+      }
+   }
+
+   // Inner classes ////////////////////////////////////////////////////////////
+
+   /**
+    * Sink remembering description of every reported event.
+    */
+   protected static class CollectingEventSink implements FactoryEventSink
+   {
+      /**
+       * Descriptions of the reported events.
+       */
+      protected List<String> m_lstEvents = new ArrayList<>();
+
+      /**
+       * Flag signaling if the events should be created.
+       */
+      protected boolean m_bEnabled = true;
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public Object begin(
+      )
+      {
+         return m_bEnabled ? new Object() : null;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void commit(
+         Object  event,
+         String  strOperation,
+         long    lBlogId,
+         String  strFolder,
+         int     iRows,
+         boolean bSuccess
+      )
+      {
+         m_lstEvents.add(strOperation + " " + lBlogId + " " + strFolder + " " 
+                         + iRows + " " + bSuccess);
+      }
+   }
+}
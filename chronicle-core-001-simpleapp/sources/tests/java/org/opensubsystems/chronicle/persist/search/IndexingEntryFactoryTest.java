@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 OpenSubsystems.com/net/org and its owners. All rights reserved.
+ * 
+ * This file is part of OpenSubsystems.
+ *
+ * OpenSubsystems is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package org.opensubsystems.chronicle.persist.search;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opensubsystems.chronicle.data.Blog;
+import org.opensubsystems.chronicle.data.Entry;
+import org.opensubsystems.chronicle.persist.db.ChronicleDatabaseTestCase;
+import org.opensubsystems.chronicle.persist.db.EntryDatabaseFactory;
+import org.opensubsystems.core.data.DataObject;
+
+/**
+ * Tests for IndexingEntryFactory and EntryIndex classes.
+ * 
+ * @author bastafidli
+ */
+public class IndexingEntryFactoryTest extends ChronicleDatabaseTestCase
+{
+   // Attributes ///////////////////////////////////////////////////////////////
+
+   /**
+    * Factory being tested.
+    */
+   protected IndexingEntryFactory m_indexingFactory;
+
+   // Constructors /////////////////////////////////////////////////////////////
+
+   /**
+    * Constructor for IndexingEntryFactoryTest.
+    * 
+    * @param strName - name of the test
+    */
+   public IndexingEntryFactoryTest(
+      String strName
+   )
+   {
+      super(strName);
+   }
+
+   // Helper methods ///////////////////////////////////////////////////////////
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void setUp(
+   ) throws Exception
+   {
+      super.setUp();
+      m_indexingFactory = new IndexingEntryFactory(
+                                 new EntryDatabaseFactory(m_dataSource), 
+                                 new EntryIndex());
+   }
+
+   // Tests ////////////////////////////////////////////////////////////////////
+
+   /**
+    * Test that entries are found and ranked 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testSearch(
+   ) throws Exception
+   {
+      Blog        blog1 = createTestBlog("folder1");
+      Blog        blog2 = createTestBlog("folder2");
+      Entry       data1;
+      Entry       data2;
+      Entry       data3;
+      List<Long>  lstResults;
+
+      data1 = createTestEntry(m_indexingFactory, blog1, "Walking in the Alps", 
+                              "We went hiking in the mountains.");
+      data2 = createTestEntry(m_indexingFactory, blog1, "Cooking", 
+                              "Dinner after walking in the Alps.");
+      data3 = createTestEntry(m_indexingFactory, blog1, "Garden", 
+                              "Roses and tulips.");
+      createTestEntry(m_indexingFactory, blog2, "Alps", 
+                      "Alps in the other blog");
+
+      lstResults = m_indexingFactory.search(blog1.getId(), "alps", 10);
+      assertEquals("Entries of other blogs should not be found", 2, 
+                   lstResults.size());
+      assertEquals("Entry with the term in caption should be first", 
+                   Long.valueOf(data1.getId()), lstResults.get(0));
+      assertEquals("Entry with the term in comments should be found", 
+                   Long.valueOf(data2.getId()), lstResults.get(1));
+
+      lstResults = m_indexingFactory.search(blog1.getId(), "TULIPS, mountains", 
+                                            1);
+      assertEquals("Number of results should be limited", 1, lstResults.size());
+      assertTrue("Search should ignore case", 
+                 lstResults.contains(data3.getId()) 
+                 || lstResults.contains(data1.getId()));
+      assertTrue("Unknown term should not be found", 
+                 m_indexingFactory.search(blog1.getId(), "sea", 10).isEmpty());
+   }
+
+   /**
+    * Test that the index is updated when entries are saved and deleted 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testUpdate(
+   ) throws Exception
+   {
+      Blog  blog = createTestBlog("folder1");
+      Entry data = createTestEntry(m_indexingFactory, blog, "Sailing", 
+                                   "Sailing around islands.");
+
+      data = (Entry)m_indexingFactory.save(
+                       new Entry(data.getId(), data.getDomainId(), 
+                                 data.getCreationTimestamp(), 
+                                 data.getModificationTimestamp(), blog.getId(), 
+                                 "Skiing", "Skiing in the mountains.", null, 
+                                 null));
+      assertTrue("Old version should not be found", 
+                 m_indexingFactory.search(blog.getId(), "sailing", 10).isEmpty());
+      assertEquals("New version was not indexed", 1, 
+                   m_indexingFactory.search(blog.getId(), "skiing", 10).size());
+
+      m_indexingFactory.delete(data.getId(), TEST_DOMAIN_ID);
+      assertFalse("Deleted entry should not be indexed", 
+                  m_indexingFactory.getIndex().contains(data.getId()));
+      assertTrue("Deleted entry should not be found", 
+                 m_indexingFactory.search(blog.getId(), "skiing", 10).isEmpty());
+   }
+
+   /**
+    * Test that the index can be built from the persistence store, saved and
+    * loaded back 
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testIndexSaveAndLoad(
+   ) throws Exception
+   {
+      Blog                  blog = createTestBlog("folder1");
+      Entry                 data = createTestEntry(m_indexingFactory, blog, 
+                                                   "Reading", 
+                                                   "Books about history.");
+      EntryIndex            loaded = new EntryIndex();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      createTestEntry(m_indexingFactory, blog, "Writing", 
+                      "Notes about books.");
+      m_indexingFactory.getIndex().clear();
+      assertEquals("Not all entries were indexed", 2, 
+                   m_indexingFactory.index(blog.getId()));
+
+      m_indexingFactory.getIndex().save(out);
+      loaded.load(new ByteArrayInputStream(out.toByteArray()));
+      assertEquals("Not all entries were loaded", 2, loaded.size());
+      assertEquals("Loaded index doesn't match", 
+                   m_indexingFactory.search(blog.getId(), "books history", 10),
+                   loaded.search(blog.getId(), "books history", 10));
+      assertEquals("Loaded index doesn't match", Long.valueOf(data.getId()),
+                   loaded.search(blog.getId(), "history", 10).get(0));
+   }
+
+   /**
+    * Test that entries created at once are indexed without indexing their 
+    * blog again and that entries of deleted blog are removed from the index
+    * 
+    * @throws Exception - and error has occurred  
+    */
+   public void testCreateAndDeleteBlog(
+   ) throws Exception
+   {
+      Blog                blog1 = createTestBlog("folder1");
+      Blog                blog2 = createTestBlog("folder2");
+      Entry               data = createTestEntry(m_indexingFactory, blog2, 
+                                                 "Alps", "Hiking.");
+      List<DataObject>    lstEntries = new ArrayList<>();
+      IndexingBlogFactory blogFactory;
+
+      lstEntries.add(new Entry(DataObject.NEW_ID, TEST_DOMAIN_ID, null, null, 
+                               blog1.getId(), "Alps", "Skiing.", null, null));
+      lstEntries.add(new Entry(DataObject.NEW_ID, TEST_DOMAIN_ID, null, null, 
+                               blog1.getId(), "Sea", "Sailing.", null, null));
+      assertEquals("Not all entries were created", 2, 
+                   m_indexingFactory.create(lstEntries));
+      assertEquals("Created entries were not indexed", 3, 
+                   m_indexingFactory.getIndex().size());
+      assertEquals("Created entries were not indexed", 1, 
+                   m_indexingFactory.search(blog1.getId(), "sailing", 10).size());
+
+      blogFactory = new IndexingBlogFactory(m_blogFactory, 
+                                            m_indexingFactory.getIndex());
+      blogFactory.delete(blog1.getId(), TEST_DOMAIN_ID);
+      assertTrue("Entries of deleted blog should not be found", 
+                 m_indexingFactory.search(blog1.getId(), "alps", 10).isEmpty());
+      assertEquals("Entries of deleted blog were not removed", 1, 
+                   m_indexingFactory.getIndex().size());
+      assertEquals("Entries of other blogs should be kept", 
+                   Long.valueOf(data.getId()), 
+                   m_indexingFactory.search(blog2.getId(), "alps", 10).get(0));
+   }
+}